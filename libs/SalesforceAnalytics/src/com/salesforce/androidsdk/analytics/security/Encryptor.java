@@ -29,9 +29,14 @@ package com.salesforce.androidsdk.analytics.security;
 import android.os.Build;
 import android.text.TextUtils;
 import android.util.Base64;
+import android.util.Base64InputStream;
+import android.util.Base64OutputStream;
 
 import com.salesforce.androidsdk.analytics.util.SalesforceAnalyticsLogger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
@@ -41,6 +46,8 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.Mac;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -58,6 +65,14 @@ public class Encryptor {
     private static final String SHA1PRNG = "SHA1PRNG";
     private static final String RSA_PKCS1 = "RSA/ECB/PKCS1Padding";
     private static final String BOUNCY_CASTLE = "BC";
+    private static final int IV_LENGTH = 16;
+
+    /*
+     * Cipher and Mac instances are expensive to create: one-shot calls reuse one per thread
+     * (they are re-initialized on every call). Streams get their own since they outlive the call.
+     */
+    private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<>();
+    private static final ThreadLocal<Mac> MACS = new ThreadLocal<>();
 
     /**
      * Decrypts data with key using AES-128.
@@ -241,16 +256,7 @@ public class Encryptor {
             // Signs with SHA-256.
             byte [] keyBytes = key.getBytes(UTF8);
             byte [] dataBytes = data.getBytes(UTF8);
-            Mac sha;
-
-            /*
-             * TODO: Remove this check once minAPI >= 28.
-             */
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                sha = Mac.getInstance(MAC_TRANSFORMATION);
-            } else {
-                sha = Mac.getInstance(MAC_TRANSFORMATION, getLegacyEncryptionProvider());
-            }
+            final Mac sha = getThreadMac();
             final SecretKeySpec keySpec = new SecretKeySpec(keyBytes, sha.getAlgorithm());
             sha.init(keySpec);
             byte [] sig = sha.doFinal(dataBytes);
@@ -352,7 +358,7 @@ public class Encryptor {
      */
     public static String decryptBytes(byte[] data, byte[] key, byte[] iv) {
         try {
-            final Cipher cipher = getBestCipher();
+            final Cipher cipher = getThreadCipher();
             final SecretKeySpec skeySpec = new SecretKeySpec(key, cipher.getAlgorithm());
             final IvParameterSpec ivSpec = new IvParameterSpec(iv);
             cipher.init(Cipher.DECRYPT_MODE, skeySpec, ivSpec);
@@ -364,15 +370,116 @@ public class Encryptor {
         return null;
     }
 
+    /**
+     * Returns a stream that encrypts with key using AES-128 all data written to it, and writes it to out
+     * in the same format as {@link #encryptBytes(String, String)} (Base64 encoded init vector followed by encrypted data).
+     * Data goes through in small blocks, so it never needs to be in memory as a whole.
+     * Closing the returned stream closes out.
+     *
+     * @param out Stream to write encrypted data to.
+     * @param key Base64 encoded 128 bit key or null (to leave data unchanged).
+     * @return Stream to write data to.
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    public static OutputStream getEncryptingOutputStream(OutputStream out, String key) throws GeneralSecurityException, IOException {
+        if (TextUtils.isEmpty(key)) {
+            return out;
+        }
+        final byte[] iv = generateInitVector();
+        final Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, Base64.decode(key, Base64.DEFAULT), iv);
+        final OutputStream base64Out = new Base64OutputStream(out, Base64.DEFAULT);
+
+        // Prepends the IV to the encoded data (first 16 bytes / 128 bits).
+        base64Out.write(iv);
+        return new CipherOutputStream(base64Out, cipher);
+    }
+
+    /**
+     * Returns a stream that decrypts with key using AES-128 data read from in, which should be
+     * in the format produced by {@link #encryptBytes(String, String)} or {@link #getEncryptingOutputStream(OutputStream, String)}.
+     * Data goes through in small blocks, so it never needs to be in memory as a whole.
+     * Closing the returned stream closes in.
+     *
+     * @param in Stream to read encrypted data from.
+     * @param key Base64 encoded 128 bit key or null (to leave data unchanged).
+     * @return Stream to read decrypted data from.
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    public static InputStream getDecryptingInputStream(InputStream in, String key) throws GeneralSecurityException, IOException {
+        if (TextUtils.isEmpty(key)) {
+            return in;
+        }
+        final InputStream base64In = new Base64InputStream(in, Base64.DEFAULT);
+
+        // Grabs the init vector prefix (first 16 bytes / 128 bits).
+        final byte[] iv = new byte[IV_LENGTH];
+        int read = 0;
+        while (read < iv.length) {
+            int count = base64In.read(iv, read, iv.length - read);
+            if (count < 0) {
+                throw new IOException("Encrypted data is too short");
+            }
+            read += count;
+        }
+        final Cipher cipher = newCipher(Cipher.DECRYPT_MODE, Base64.decode(key, Base64.DEFAULT), iv);
+        return new CipherInputStream(base64In, cipher);
+    }
+
+    private static Cipher newCipher(int mode, byte[] key, byte[] iv) throws GeneralSecurityException {
+        final Cipher cipher = getBestCipher();
+        if (cipher == null) {
+            throw new GeneralSecurityException("No cipher transformation available");
+        }
+        cipher.init(mode, new SecretKeySpec(key, cipher.getAlgorithm()), new IvParameterSpec(iv));
+        return cipher;
+    }
+
+    /**
+     * @return cipher of the calling thread (created on first use, a failed lookup is not cached)
+     */
+    private static Cipher getThreadCipher() throws GeneralSecurityException {
+        Cipher cipher = CIPHERS.get();
+        if (cipher == null) {
+            cipher = getBestCipher();
+            if (cipher == null) {
+                throw new GeneralSecurityException("No cipher transformation available");
+            }
+            CIPHERS.set(cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * @return mac of the calling thread (created on first use, a failed lookup is not cached)
+     */
+    private static Mac getThreadMac() throws GeneralSecurityException {
+        Mac mac = MACS.get();
+        if (mac == null) {
+
+            /*
+             * TODO: Remove this check once minAPI >= 28.
+             */
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                mac = Mac.getInstance(MAC_TRANSFORMATION);
+            } else {
+                mac = Mac.getInstance(MAC_TRANSFORMATION, getLegacyEncryptionProvider());
+            }
+            MACS.set(mac);
+        }
+        return mac;
+    }
+
     private static byte[] generateInitVector() throws NoSuchAlgorithmException {
         final SecureRandom random = SecureRandom.getInstance(SHA1PRNG);
-        byte[] iv = new byte[16];
+        byte[] iv = new byte[IV_LENGTH];
         random.nextBytes(iv);
         return iv;
     }
 
     private static byte[] encrypt(byte[] data, byte[] key, byte[] iv) throws GeneralSecurityException {
-        final Cipher cipher = getBestCipher();
+        final Cipher cipher = getThreadCipher();
         final SecretKeySpec skeySpec = new SecretKeySpec(key, cipher.getAlgorithm());
         final IvParameterSpec ivSpec = new IvParameterSpec(iv);
         cipher.init(Cipher.ENCRYPT_MODE, skeySpec, ivSpec);
@@ -390,16 +497,14 @@ public class Encryptor {
         // Grabs the init vector prefix (first 16 bytes / 128 bits).
         System.arraycopy(data, offset, iv, 0, iv.length);
 
-        // Grabs the encrypted body after the init vector prefix.
+        // Decrypts the encrypted body after the init vector prefix (in place, without copying it first).
         int meatLen = length - iv.length;
         int meatOffset = offset + iv.length;
-        byte[] meat = new byte[meatLen];
-        System.arraycopy(data, meatOffset, meat, 0, meatLen);
-        final Cipher cipher = getBestCipher();
+        final Cipher cipher = getThreadCipher();
         final SecretKeySpec skeySpec = new SecretKeySpec(key, cipher.getAlgorithm());
         final IvParameterSpec ivSpec = new IvParameterSpec(iv);
         cipher.init(Cipher.DECRYPT_MODE, skeySpec, ivSpec);
-        return cipher.doFinal(meat, 0, meatLen);
+        return cipher.doFinal(data, meatOffset, meatLen);
     }
 
     private static Cipher getBestCipher() {
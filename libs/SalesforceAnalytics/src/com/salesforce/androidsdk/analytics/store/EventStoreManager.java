@@ -36,11 +36,17 @@ import com.salesforce.androidsdk.analytics.util.SalesforceAnalyticsLogger;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -53,6 +59,8 @@ import java.util.List;
 public class EventStoreManager {
 
     private static final String TAG = "EventStoreManager";
+    private static final String UTF8 = "UTF-8";
+    private static final int BUFFER_SIZE = 4096;
 
     private String filenameSuffix;
     private File rootDir;
@@ -93,11 +101,11 @@ public class EventStoreManager {
             return;
         }
         final String filename = event.getEventId() + filenameSuffix;
-        FileOutputStream outputStream;
-        try {
-            outputStream = context.openFileOutput(filename, Context.MODE_PRIVATE);
-            outputStream.write(encrypt(event.toJson().toString()).getBytes());
-            outputStream.close();
+        try (final OutputStream outputStream = context.openFileOutput(filename, Context.MODE_PRIVATE)) {
+            final Writer writer = new OutputStreamWriter(Encryptor.getEncryptingOutputStream(
+                    new BufferedOutputStream(outputStream), encryptionKey), UTF8);
+            writer.write(event.toJson().toString());
+            writer.close();
         } catch (Exception e) {
             SalesforceAnalyticsLogger.e(context, TAG, "Exception occurred while saving event to filesystem", e);
         }
@@ -284,14 +292,15 @@ public class EventStoreManager {
         InstrumentationEvent event = null;
         String eventString = null;
         final StringBuilder json = new StringBuilder();
-        try {
-            final BufferedReader br = new BufferedReader(new FileReader(file));
-            String line;
-            while ((line = br.readLine()) != null) {
-                json.append(line).append('\n');
+        try (final InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            final Reader reader = new InputStreamReader(Encryptor.getDecryptingInputStream(inputStream,
+                    encryptionKey), UTF8);
+            final char[] buffer = new char[BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(buffer)) >= 0) {
+                json.append(buffer, 0, count);
             }
-            br.close();
-            eventString = decrypt(json.toString());
+            eventString = json.toString();
         } catch (Exception ex) {
             SalesforceAnalyticsLogger.e(context, TAG, "Exception occurred while attempting to read file contents", ex);
         }
@@ -317,14 +326,6 @@ public class EventStoreManager {
         return files;
     }
 
-    private String encrypt(String data) {
-        return Encryptor.encrypt(data, encryptionKey);
-    }
-
-    private String decrypt(String data) {
-        return Encryptor.decrypt(data, encryptionKey);
-    }
-
     /**
      * This class acts as a filter to identify only the relevant event files.
      *
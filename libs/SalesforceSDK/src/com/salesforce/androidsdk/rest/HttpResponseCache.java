@@ -0,0 +1,509 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import com.salesforce.androidsdk.analytics.security.Encryptor;
+import com.salesforce.androidsdk.util.SalesforceSDKLogger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Encrypted on-disk cache of GET responses (e.g. describe, metadata and layout calls).
+ * Installed as an interceptor by RestClient.enableResponseCache, one cache per user.
+ *
+ * Responses are stored if they are textual (e.g. json), allowed by their Cache-Control header
+ * and carry validators (ETag / Last-Modified) or a max-age.
+ * A cached response is only used for requests with the same values for the request headers named in its Vary header.
+ * Fresh responses are served without a server call, stale ones are revalidated with a conditional request:
+ * a 304 from the server is answered with the cached response.
+ */
+public class HttpResponseCache implements Interceptor {
+
+    public static final String CACHE_DIRECTORY = "http_response_cache";
+
+    private static final String TAG = "HttpResponseCache";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // Fields of cached entries
+    private static final String URL = "url";
+    private static final String CODE = "code";
+    private static final String MESSAGE = "message";
+    private static final String HEADER_NAMES = "headerNames";
+    private static final String HEADER_VALUES = "headerValues";
+    private static final String BODY = "body";
+    private static final String RECEIVED_AT = "receivedAt";
+    private static final String VARY_HEADERS = "varyHeaders";
+
+    // Headers of a 304 response that should not replace the cached ones
+    private static final String[] ENTITY_HEADERS = { "Content-Length", "Content-Encoding", "Transfer-Encoding" };
+
+    private final File directory;
+    private final long maxSize;
+    private final String encryptionKey;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param directory directory for the cached responses (should be specific to the user)
+     * @param maxSize maximum size in bytes of the cached responses on disk (least recently used ones are evicted first)
+     * @param encryptionKey key used to encrypt cached responses
+     */
+    public HttpResponseCache(File directory, long maxSize, String encryptionKey) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.encryptionKey = encryptionKey;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Request request = chain.request();
+
+        // Only caching GET requests that are not already conditional and allow it
+        if (!"GET".equals(request.method())
+                || request.header("If-None-Match") != null
+                || request.header("If-Modified-Since") != null
+                || request.cacheControl().noStore()) {
+            return chain.proceed(request);
+        }
+
+        final String url = request.url().toString();
+        final JSONObject entry = read(url);
+        if (entry != null && matchesVary(entry, request)) {
+            // Fresh entry
+            if (!request.cacheControl().noCache() && isFresh(entry)) {
+                hitCount.incrementAndGet();
+                return buildResponse(request, entry);
+            }
+
+            // Stale entry
+            final Request conditionalRequest = buildConditionalRequest(request, entry);
+            if (conditionalRequest != null) {
+                final Response response = chain.proceed(conditionalRequest);
+                if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    revalidationCount.incrementAndGet();
+                    closeBody(response);
+                    final JSONObject refreshedEntry = refresh(entry, response.headers());
+                    write(url, refreshedEntry);
+                    return buildResponse(request, refreshedEntry);
+                }
+                missCount.incrementAndGet();
+                return store(request, url, response);
+            }
+        }
+        missCount.incrementAndGet();
+        return store(request, url, chain.proceed(request));
+    }
+
+    /**
+     * @return number of responses served from the cache without a server call
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of responses that had to be fetched from the server
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of cached responses found unchanged by the server (304)
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    /**
+     * @return size in bytes of the cached responses on disk
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (File file : listEntries()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Delete a cache directory and the cached responses in it, whether or not a cache is using it
+     * @param directory
+     */
+    public static void deleteDirectory(File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Remove all cached responses
+     */
+    public synchronized void evictAll() {
+        for (File file : listEntries()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Save response (if cacheable) and return a response that can still be read by the caller
+     * @param request
+     * @param url
+     * @param response
+     * @return
+     */
+    private Response store(Request request, String url, Response response) throws IOException {
+        final ResponseBody body = response.body();
+        if (response.code() != HttpURLConnection.HTTP_OK || body == null) {
+            return response;
+        }
+        final CacheControl cacheControl = response.cacheControl();
+        final boolean hasValidators = response.header("ETag") != null || response.header("Last-Modified") != null;
+        final List<String> varyHeaderNames = getVaryHeaderNames(response.headers());
+        if (cacheControl.noStore()
+                || varyHeaderNames.contains("*")
+                || (!hasValidators && cacheControl.maxAgeSeconds() <= 0)
+                || !isTextual(body.contentType())
+                || body.contentLength() > maxSize) {
+            remove(url);
+            return response;
+        }
+        final String content = body.string();
+        try {
+            final JSONObject entry = new JSONObject();
+            entry.put(URL, url);
+            entry.put(CODE, response.code());
+            entry.put(MESSAGE, response.message());
+            putHeaders(entry, response.headers());
+            entry.put(BODY, content);
+            entry.put(RECEIVED_AT, response.receivedResponseAtMillis());
+            final JSONObject varyHeaders = new JSONObject();
+            for (String name : varyHeaderNames) {
+                varyHeaders.put(name, request.header(name) == null ? JSONObject.NULL : request.header(name));
+            }
+            entry.put(VARY_HEADERS, varyHeaders);
+            write(url, entry);
+        } catch (JSONException e) {
+            SalesforceSDKLogger.w(TAG, "Could not cache response for " + url, e);
+        }
+        return response.newBuilder().body(ResponseBody.create(body.contentType(), content)).build();
+    }
+
+    /**
+     * @return names (lower case) of the request headers listed in the Vary headers
+     */
+    private static List<String> getVaryHeaderNames(Headers headers) {
+        final List<String> names = new ArrayList<>();
+        for (String value : headers.values("Vary")) {
+            for (String name : value.split(",")) {
+                final String trimmedName = name.trim().toLowerCase(Locale.US);
+                if (!trimmedName.isEmpty()) {
+                    names.add(trimmedName);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return true if request has the same values as the cached request for the headers named in the cached Vary headers
+     */
+    private static boolean matchesVary(JSONObject entry, Request request) {
+        final JSONObject varyHeaders = entry.optJSONObject(VARY_HEADERS);
+        if (varyHeaders == null) {
+            return true;
+        }
+        final Iterator<String> names = varyHeaders.keys();
+        while (names.hasNext()) {
+            final String name = names.next();
+            final String cachedValue = varyHeaders.isNull(name) ? null : varyHeaders.optString(name);
+            final String value = request.header(name);
+            if (cachedValue == null ? value != null : !cachedValue.equals(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTextual(MediaType contentType) {
+        return contentType != null && ("text".equals(contentType.type()) || contentType.subtype().contains("json") || contentType.subtype().contains("xml"));
+    }
+
+    private boolean isFresh(JSONObject entry) {
+        final CacheControl cacheControl = CacheControl.parse(getHeaders(entry));
+        if (cacheControl.noCache() || cacheControl.maxAgeSeconds() <= 0) {
+            return false;
+        }
+        final long age = System.currentTimeMillis() - entry.optLong(RECEIVED_AT);
+        return age >= 0 && age < cacheControl.maxAgeSeconds() * 1000L;
+    }
+
+    private Request buildConditionalRequest(Request request, JSONObject entry) {
+        final Headers headers = getHeaders(entry);
+        final String etag = headers.get("ETag");
+        final String lastModified = headers.get("Last-Modified");
+        if (etag != null) {
+            return request.newBuilder().header("If-None-Match", etag).build();
+        } else if (lastModified != null) {
+            return request.newBuilder().header("If-Modified-Since", lastModified).build();
+        }
+        return null;
+    }
+
+    /**
+     * Update cached entry with the headers of a 304 response
+     */
+    private JSONObject refresh(JSONObject entry, Headers notModifiedHeaders) throws IOException {
+        final Headers.Builder builder = getHeaders(entry).newBuilder();
+        for (String name : notModifiedHeaders.names()) {
+            boolean entityHeader = false;
+            for (String entityHeaderName : ENTITY_HEADERS) {
+                entityHeader |= entityHeaderName.equalsIgnoreCase(name);
+            }
+            if (!entityHeader) {
+                builder.removeAll(name);
+                for (String value : notModifiedHeaders.values(name)) {
+                    builder.add(name, value);
+                }
+            }
+        }
+        try {
+            final JSONObject refreshedEntry = new JSONObject(entry.toString());
+            putHeaders(refreshedEntry, builder.build());
+            refreshedEntry.put(RECEIVED_AT, System.currentTimeMillis());
+            return refreshedEntry;
+        } catch (JSONException e) {
+            throw new IOException("Could not refresh cached response", e);
+        }
+    }
+
+    private Response buildResponse(Request request, JSONObject entry) {
+        final Headers headers = getHeaders(entry);
+        final String contentType = headers.get("Content-Type");
+        final long now = System.currentTimeMillis();
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(entry.optInt(CODE))
+                .message(entry.optString(MESSAGE))
+                .headers(headers)
+                .body(ResponseBody.create(contentType == null ? null : MediaType.parse(contentType), entry.optString(BODY)))
+                .sentRequestAtMillis(now)
+                .receivedResponseAtMillis(now)
+                .build();
+    }
+
+    private static void putHeaders(JSONObject entry, Headers headers) throws JSONException {
+        final JSONArray names = new JSONArray();
+        final JSONArray values = new JSONArray();
+        for (int i = 0; i < headers.size(); i++) {
+            names.put(headers.name(i));
+            values.put(headers.value(i));
+        }
+        entry.put(HEADER_NAMES, names);
+        entry.put(HEADER_VALUES, values);
+    }
+
+    private static Headers getHeaders(JSONObject entry) {
+        final Headers.Builder builder = new Headers.Builder();
+        final JSONArray names = entry.optJSONArray(HEADER_NAMES);
+        final JSONArray values = entry.optJSONArray(HEADER_VALUES);
+        if (names != null && values != null) {
+            for (int i = 0; i < names.length(); i++) {
+                builder.add(names.optString(i), values.optString(i));
+            }
+        }
+        return builder.build();
+    }
+
+    private static void closeBody(Response response) {
+        if (response.body() != null) {
+            response.body().close();
+        }
+    }
+
+    /**
+     * @return cached entry for url or null if none (or if it could not be read)
+     */
+    private synchronized JSONObject read(String url) {
+        final File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final String decrypted = Encryptor.decrypt(readFile(file), encryptionKey);
+            final JSONObject entry = decrypted == null ? null : new JSONObject(decrypted);
+            if (entry == null || !url.equals(entry.optString(URL))) {
+                file.delete();
+                return null;
+            }
+
+            // Keeping track of use for eviction
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException | JSONException e) {
+            SalesforceSDKLogger.w(TAG, "Could not read cached response for " + url, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private synchronized void write(String url, JSONObject entry) {
+        final String encrypted = Encryptor.encrypt(entry.toString(), encryptionKey);
+        if (encrypted == null) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            SalesforceSDKLogger.w(TAG, "Could not create cache directory " + directory);
+            return;
+        }
+        final File file = getFile(url);
+        final File tmpFile = new File(directory, file.getName() + TMP_SUFFIX);
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(encrypted.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            SalesforceSDKLogger.w(TAG, "Could not cache response for " + url, e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            return;
+        }
+        trimToSize();
+    }
+
+    private synchronized void remove(String url) {
+        getFile(url).delete();
+    }
+
+    /**
+     * Evict least recently used entries until the cache fits in maxSize
+     */
+    private void trimToSize() {
+        final File[] files = listEntries();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            size -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private File[] listEntries() {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private File getFile(String url) {
+        return new File(directory, sha256Hex(url) + ENTRY_SUFFIX);
+    }
+
+    private static String readFile(File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int read = in.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file " + file);
+                }
+                offset += read;
+            }
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
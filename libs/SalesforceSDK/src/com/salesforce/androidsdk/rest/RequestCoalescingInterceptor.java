@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Interceptor that coalesces identical GET requests (same url and headers) that are in flight at the same time.
+ * The first caller goes to the server, later callers wait for its response and each get their own copy of it.
+ * Installed by RestClient.enableRequestCoalescing on the client of a user.
+ *
+ * Requests with Cache-Control no-cache are never coalesced, and a GET sent after a write (any other method)
+ * started never joins a GET that was in flight before it.
+ * Only JSON responses of at most MAX_SHARED_BODY_SIZE bytes are shared: for other responses (e.g. file downloads)
+ * the waiting callers send their own request.
+ *
+ * Cancelling the call of a waiting caller only affects that caller.
+ * If the call that went to the server is cancelled, the waiting callers send their own request.
+ */
+public class RequestCoalescingInterceptor implements Interceptor {
+
+    // How often waiting callers check whether their call was cancelled
+    private static final long WAIT_SLICE_MILLIS = 50;
+
+    // Largest response body buffered to be shared with waiting callers
+    public static final int MAX_SHARED_BODY_SIZE = 1024 * 1024;
+
+    private final Map<String, InFlightRequest> inFlightRequests = new HashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+
+            // GETs sent from now on (until the write is done) should not get a response read before the write
+            forgetInFlight();
+            try {
+                return chain.proceed(request);
+            } finally {
+                forgetInFlight();
+            }
+        }
+        if (request.cacheControl().noCache()) {
+            return chain.proceed(request);
+        }
+        final String key = getKey(request);
+        final InFlightRequest inFlightRequest;
+        final boolean isLeader;
+        synchronized (inFlightRequests) {
+            InFlightRequest existing = inFlightRequests.get(key);
+            isLeader = existing == null;
+            if (isLeader) {
+                existing = new InFlightRequest();
+                inFlightRequests.put(key, existing);
+            } else {
+                existing.followers++;
+            }
+            inFlightRequest = existing;
+        }
+        return isLeader ? lead(chain, key, inFlightRequest) : follow(chain, inFlightRequest);
+    }
+
+    /**
+     * @return number of requests that were answered with the response of an identical in-flight request
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Send request to the server and share response with callers that joined in the meantime
+     */
+    private Response lead(Chain chain, String key, InFlightRequest inFlightRequest) throws IOException {
+        final Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException e) {
+            removeInFlight(key, inFlightRequest);
+            inFlightRequest.fail(e, chain.call().isCanceled());
+            throw e;
+        } catch (RuntimeException e) {
+            removeInFlight(key, inFlightRequest);
+            inFlightRequest.fail(new IOException(e), chain.call().isCanceled());
+            throw e;
+        }
+
+        // No one joined: response is returned unbuffered (no one can join once it's removed)
+        if (removeInFlight(key, inFlightRequest) == 0) {
+            return response;
+        }
+
+        // Not sharing non-json responses (e.g. file downloads): waiting callers send their own request
+        final ResponseBody body = response.body();
+        final MediaType contentType = body == null ? null : body.contentType();
+        if (body != null && (contentType == null || !contentType.subtype().contains("json"))) {
+            inFlightRequest.fail(null, true);
+            return response;
+        }
+
+        // Buffering response so that each caller gets its own copy
+        final byte[] bytes;
+        try {
+            if (body == null) {
+                bytes = new byte[0];
+            } else {
+                final BufferedSource source = body.source();
+
+                // Too large to be held in memory: response is returned with what was read so far still in its buffer
+                if (source.request(MAX_SHARED_BODY_SIZE + 1)) {
+                    inFlightRequest.fail(null, true);
+                    return response;
+                }
+                bytes = source.readByteArray();
+                body.close();
+            }
+        } catch (IOException e) {
+            inFlightRequest.fail(e, chain.call().isCanceled());
+            throw e;
+        }
+        final Response bodyless = response.newBuilder().body(null).build();
+        inFlightRequest.complete(bodyless, contentType, bytes);
+        return inFlightRequest.copyResponse();
+    }
+
+    /**
+     * Wait for the in-flight request and return a copy of its response
+     */
+    private Response follow(Chain chain, InFlightRequest inFlightRequest) throws IOException {
+        try {
+            while (!inFlightRequest.done.await(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (chain.call().isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for in-flight request");
+        }
+        if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+        }
+        if (inFlightRequest.response == null) {
+
+            // Cancellation of the leading call (or a response that can't be shared) should not fail the other callers
+            if (inFlightRequest.sendOwnRequest) {
+                return chain.proceed(chain.request());
+            }
+            throw inFlightRequest.error;
+        }
+        coalescedCount.incrementAndGet();
+        return inFlightRequest.copyResponse();
+    }
+
+    /**
+     * Remove in-flight request for key (unless it was already replaced by a newer one)
+     * @return number of callers that joined it
+     */
+    private int removeInFlight(String key, InFlightRequest inFlightRequest) {
+        synchronized (inFlightRequests) {
+            if (inFlightRequests.get(key) == inFlightRequest) {
+                inFlightRequests.remove(key);
+            }
+            return inFlightRequest.followers;
+        }
+    }
+
+    /**
+     * Prevent GETs sent from now on from joining the requests currently in flight
+     * NB: the requests in flight still share their response with the callers that already joined them
+     */
+    private void forgetInFlight() {
+        synchronized (inFlightRequests) {
+            inFlightRequests.clear();
+        }
+    }
+
+    private static String getKey(Request request) {
+        return request.method() + " " + request.url() + "\n" + request.headers();
+    }
+
+    /**
+     * Request in flight and its outcome once done
+     */
+    private static class InFlightRequest {
+        final CountDownLatch done = new CountDownLatch(1);
+        int followers; // guarded by inFlightRequests
+        volatile Response response;
+        volatile MediaType contentType;
+        volatile byte[] bytes;
+        volatile IOException error;
+        volatile boolean sendOwnRequest;
+
+        void complete(Response response, MediaType contentType, byte[] bytes) {
+            this.contentType = contentType;
+            this.bytes = bytes;
+            this.response = response;
+            done.countDown();
+        }
+
+        void fail(IOException error, boolean sendOwnRequest) {
+            this.error = error;
+            this.sendOwnRequest = sendOwnRequest;
+            done.countDown();
+        }
+
+        Response copyResponse() {
+            return response.newBuilder().body(ResponseBody.create(contentType, bytes)).build();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import com.salesforce.androidsdk.rest.RestClient.AsyncRequestCallback;
+import com.salesforce.androidsdk.rest.RestRequest.RestEndpoint;
+import com.salesforce.androidsdk.util.SalesforceSDKLogger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Opt-in helper that groups independent requests sent through it into composite/batch requests.
+ * Requests sent within a short window (or until MAX_BATCH_SIZE requests are pending) go to the server
+ * as one batch request, and each caller gets its own RestResponse from the matching subresponse.
+ *
+ * Only requests to the data api (/services/data/) on the instance with no body or a json body
+ * and no additional headers can be batched, others are sent directly with the RestClient.
+ * Requests are independent: a failure of one does not stop the others (haltOnError is false).
+ * Idempotent requests (GET / HEAD or sent as idempotent) that fail with a server error (5xx), a rate limit (429)
+ * or a network error are retried in a later batch after a backoff (or the delay asked by a Retry-After header).
+ * Other requests might have run on the server already: their failures are reported to the caller.
+ */
+public class RestBatcher {
+
+    /**
+     * Maximum number of subrequests in a composite/batch request
+     */
+    public static final int MAX_BATCH_SIZE = 25;
+
+    public static final long DEFAULT_WINDOW_MILLIS = 50;
+    public static final int DEFAULT_MAX_RETRIES = 1;
+
+    // Delay before first retry (doubled for each following retry) when the server does not send a Retry-After header
+    public static final long RETRY_BASE_DELAY_MILLIS = 500;
+
+    // Keys in batch response
+    private static final String RESULTS = "results";
+    private static final String STATUS_CODE = "statusCode";
+    private static final String RESULT = "result";
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String RETRY_AFTER = "retry-after";
+    private static final String TAG = "RestBatcher";
+
+    private final RestClient restClient;
+    private final String apiVersion;
+    private final long windowMillis;
+    private final int maxRetries;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<PendingRequest> pendingRequests = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Constructor
+     * @param restClient
+     * @param apiVersion
+     */
+    public RestBatcher(RestClient restClient, String apiVersion) {
+        this(restClient, apiVersion, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * Constructor
+     * @param restClient
+     * @param apiVersion
+     * @param windowMillis how long to wait for other requests before sending a batch
+     * @param maxRetries how many times a subrequest that failed with a server error is retried
+     */
+    public RestBatcher(RestClient restClient, String apiVersion, long windowMillis, int maxRetries) {
+        this.restClient = restClient;
+        this.apiVersion = apiVersion;
+        this.windowMillis = windowMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Send request as part of a batch (or directly if it cannot be batched)
+     * Only GET / HEAD requests are retried on failure (see send(RestRequest, AsyncRequestCallback, boolean))
+     * NB: callback runs on a network thread (see AsyncRequestCallback)
+     * @param restRequest
+     * @param callback
+     */
+    public void send(RestRequest restRequest, AsyncRequestCallback callback) {
+        final RestRequest.RestMethod method = restRequest.getMethod();
+        send(restRequest, callback, method == RestRequest.RestMethod.GET || method == RestRequest.RestMethod.HEAD);
+    }
+
+    /**
+     * Send request as part of a batch (or directly if it cannot be batched)
+     * NB: callback runs on a network thread (see AsyncRequestCallback)
+     * @param restRequest
+     * @param callback
+     * @param idempotent true if the request can safely run more than once on the server (it is then retried on failure)
+     */
+    public void send(RestRequest restRequest, AsyncRequestCallback callback, boolean idempotent) {
+        if (!isBatchable(restRequest)) {
+            restClient.sendAsync(restRequest, callback);
+            return;
+        }
+        enqueue(new PendingRequest(restRequest, callback, idempotent));
+    }
+
+    /**
+     * Send pending requests now
+     */
+    public void flush() {
+        final List<PendingRequest> requests;
+        synchronized (pendingRequests) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            requests = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+        for (int i = 0; i < requests.size(); i += MAX_BATCH_SIZE) {
+            sendBatch(requests.subList(i, Math.min(i + MAX_BATCH_SIZE, requests.size())));
+        }
+    }
+
+    /**
+     * Send pending requests and stop batching (requests sent afterwards go out without waiting for others)
+     */
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    /**
+     * @param restRequest
+     * @return true if restRequest can be a subrequest of a composite/batch request
+     */
+    public static boolean isBatchable(RestRequest restRequest) {
+        final Map<String, String> additionalHttpHeaders = restRequest.getAdditionalHttpHeaders();
+        return restRequest.getEndpoint() == RestEndpoint.INSTANCE
+                && restRequest.getPath().startsWith(RestRequest.SERVICES_DATA)
+                && (restRequest.getRequestBody() == null || restRequest.getRequestBodyAsJson() != null)
+                && (additionalHttpHeaders == null || additionalHttpHeaders.isEmpty());
+    }
+
+    private void enqueue(PendingRequest pendingRequest) {
+        boolean flushNow;
+        synchronized (pendingRequests) {
+            pendingRequests.add(pendingRequest);
+            flushNow = pendingRequests.size() >= MAX_BATCH_SIZE;
+            if (!flushNow && scheduledFlush == null) {
+                try {
+                    scheduledFlush = scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shut down
+                    flushNow = true;
+                }
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    private void sendBatch(final List<PendingRequest> requests) {
+
+        // No need for a batch for a single request
+        if (requests.size() == 1) {
+            final PendingRequest pendingRequest = requests.get(0);
+            restClient.sendAsync(pendingRequest.restRequest, pendingRequest.callback);
+            return;
+        }
+        final List<RestRequest> subrequests = new ArrayList<>();
+        for (PendingRequest pendingRequest : requests) {
+            subrequests.add(pendingRequest.restRequest);
+        }
+        final RestRequest batchRequest;
+        try {
+            batchRequest = RestRequest.getBatchRequest(apiVersion, false, subrequests);
+        } catch (JSONException e) {
+            for (PendingRequest pendingRequest : requests) {
+                pendingRequest.callback.onError(e);
+            }
+            return;
+        }
+        restClient.sendAsync(batchRequest, new AsyncRequestCallback() {
+            @Override
+            public void onSuccess(RestRequest request, RestResponse response) {
+                onBatchResponse(requests, response);
+            }
+
+            @Override
+            public void onError(Exception exception) {
+                SalesforceSDKLogger.w(TAG, "Batch request failed", exception);
+                for (PendingRequest pendingRequest : requests) {
+                    if (canRetry(pendingRequest)) {
+                        retry(pendingRequest, -1);
+                    } else {
+                        pendingRequest.callback.onError(exception);
+                    }
+                }
+            }
+        });
+    }
+
+    private void onBatchResponse(List<PendingRequest> requests, RestResponse batchResponse) {
+        final JSONArray results;
+        try {
+            final int batchStatusCode = batchResponse.getStatusCode();
+            if (isRetryable(batchStatusCode)) {
+
+                // Batch failed on the server: some subrequests might have run
+                SalesforceSDKLogger.w(TAG, "Batch request failed with status " + batchStatusCode);
+                final long retryAfterMillis = getRetryAfterMillis(batchResponse);
+                batchResponse.consumeQuietly();
+                for (PendingRequest pendingRequest : requests) {
+                    if (canRetry(pendingRequest)) {
+                        retry(pendingRequest, retryAfterMillis);
+                    } else {
+                        pendingRequest.callback.onError(new IOException("Batch request failed with status " + batchStatusCode));
+                    }
+                }
+                return;
+            }
+            if (!batchResponse.isSuccess()) {
+
+                // Batch itself was rejected (none of the subrequests ran): sending the requests individually
+                SalesforceSDKLogger.w(TAG, "Batch request rejected with status " + batchStatusCode + ", sending requests individually");
+                batchResponse.consumeQuietly();
+                for (PendingRequest pendingRequest : requests) {
+                    restClient.sendAsync(pendingRequest.restRequest, pendingRequest.callback);
+                }
+                return;
+            }
+            results = batchResponse.asJSONObject().getJSONArray(RESULTS);
+        } catch (Exception e) {
+            for (PendingRequest pendingRequest : requests) {
+                pendingRequest.callback.onError(e);
+            }
+            return;
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            final PendingRequest pendingRequest = requests.get(i);
+            final JSONObject result = results.optJSONObject(i);
+            if (result == null) {
+                pendingRequest.callback.onError(new JSONException("No result for subrequest " + i));
+                continue;
+            }
+            final int statusCode = result.optInt(STATUS_CODE);
+            if (isRetryable(statusCode) && canRetry(pendingRequest)) {
+                retry(pendingRequest, getRetryAfterMillis(batchResponse));
+                continue;
+            }
+            pendingRequest.callback.onSuccess(pendingRequest.restRequest, buildSubresponse(pendingRequest.restRequest, statusCode, result.opt(RESULT)));
+        }
+    }
+
+    private boolean canRetry(PendingRequest pendingRequest) {
+        return pendingRequest.idempotent && pendingRequest.attempts < maxRetries;
+    }
+
+    /**
+     * Send request again in a later batch
+     * @param pendingRequest
+     * @param delayMillis delay asked by the server or -1 to back off exponentially
+     */
+    private void retry(final PendingRequest pendingRequest, long delayMillis) {
+        final long delay = delayMillis >= 0 ? delayMillis : RETRY_BASE_DELAY_MILLIS << pendingRequest.attempts;
+        pendingRequest.attempts++;
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    enqueue(pendingRequest);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down
+            restClient.sendAsync(pendingRequest.restRequest, pendingRequest.callback);
+        }
+    }
+
+    /**
+     * @param response
+     * @return delay in milliseconds asked by Retry-After header of response or -1 if there is none
+     */
+    private static long getRetryAfterMillis(RestResponse response) {
+        final List<String> values = response.getAllHeaders().get(RETRY_AFTER);
+        if (values == null || values.isEmpty()) {
+            return -1;
+        }
+        final String value = values.get(0).trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, should be a date
+        }
+        try {
+            final Date date;
+            synchronized (RestRequest.HTTP_DATE_FORMAT) {
+                date = RestRequest.HTTP_DATE_FORMAT.parse(value);
+            }
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isRetryable(int statusCode) {
+        return statusCode >= 500 || statusCode == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Build RestResponse for a subrequest out of its result in the batch response
+     */
+    private RestResponse buildSubresponse(RestRequest restRequest, int statusCode, Object result) {
+        final String body = result == null || result == JSONObject.NULL ? "" : result.toString();
+        final Response response = new Response.Builder()
+                .request(new Request.Builder().url(HttpUrl.get(restClient.getClientInfo().resolveUrl(restRequest))).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(statusCode)
+                .message("")
+                .body(ResponseBody.create(RestRequest.MEDIA_TYPE_JSON, body))
+                .build();
+        return new RestResponse(response);
+    }
+
+    /**
+     * Request waiting to be sent
+     */
+    private static class PendingRequest {
+        final RestRequest restRequest;
+        final AsyncRequestCallback callback;
+        final boolean idempotent;
+        int attempts;
+
+        PendingRequest(RestRequest restRequest, AsyncRequestCallback callback, boolean idempotent) {
+            this.restRequest = restRequest;
+            this.callback = callback;
+            this.idempotent = idempotent;
+        }
+    }
+}
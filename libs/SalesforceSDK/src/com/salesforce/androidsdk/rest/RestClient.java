@@ -26,6 +26,8 @@
  */
 package com.salesforce.androidsdk.rest;
 
+import android.content.Context;
+
 import com.salesforce.androidsdk.accounts.UserAccount;
 import com.salesforce.androidsdk.app.SalesforceSDKManager;
 import com.salesforce.androidsdk.auth.HttpAccess;
@@ -34,12 +36,15 @@ import com.salesforce.androidsdk.util.SalesforceSDKLogger;
 
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -70,6 +75,9 @@ public class RestClient {
 	private static Map<String, OAuthRefreshInterceptor> OAUTH_REFRESH_INTERCEPTORS = new HashMap<>();
 	private static Map<String, OkHttpClient.Builder> OK_CLIENT_BUILDERS = new HashMap<>();
     private static Map<String, OkHttpClient> OK_CLIENTS = new HashMap<>();
+    private static Map<String, HttpResponseCache> RESPONSE_CACHES = new HashMap<>();
+    private static Map<String, RequestCoalescingInterceptor> REQUEST_COALESCERS = new HashMap<>();
+    private static Map<String, RestClientMetrics> NETWORK_METRICS = new HashMap<>();
 
 	private ClientInfo clientInfo;
     private HttpAccess httpAccessor;
@@ -158,6 +166,17 @@ public class RestClient {
 		if (client != null) {
 			client.dispatcher().cancelAll();
 		}
+		HttpResponseCache responseCache = RESPONSE_CACHES.remove(cacheKey);
+		if (responseCache != null) {
+			responseCache.evictAll();
+		}
+
+		// Cache from a previous run of the app might be on disk even if it was not enabled in this run
+		if (SalesforceSDKManager.hasInstance() && SalesforceSDKManager.getInstance().getAppContext() != null) {
+			HttpResponseCache.deleteDirectory(getResponseCacheDirectory(SalesforceSDKManager.getInstance().getAppContext(), cacheKey));
+		}
+		REQUEST_COALESCERS.remove(cacheKey);
+		NETWORK_METRICS.remove(cacheKey);
 	}
 
 	/**
@@ -167,8 +186,15 @@ public class RestClient {
 		OAUTH_REFRESH_INTERCEPTORS.clear();
 		OK_CLIENT_BUILDERS.clear();
 		OK_CLIENTS.clear();
+		RESPONSE_CACHES.clear();
+		REQUEST_COALESCERS.clear();
+		NETWORK_METRICS.clear();
     }
 
+	private static File getResponseCacheDirectory(Context context, String cacheKey) {
+		return new File(new File(context.getCacheDir(), HttpResponseCache.CACHE_DIRECTORY), cacheKey);
+	}
+
 	private String getCacheKey() {
 		return computeCacheKey(clientInfo.orgId, clientInfo.userId);
 	}
@@ -204,7 +230,8 @@ public class RestClient {
 		// If none cached, create new one
 		if (okHttpClientBuilder == null) {
 			okHttpClientBuilder = httpAccessor.getOkHttpClientBuilder()
-					.addInterceptor(getOAuthRefreshInterceptor());
+					.addInterceptor(getOAuthRefreshInterceptor())
+					.eventListenerFactory(getNetworkMetrics().getEventListenerFactory());
 			OK_CLIENT_BUILDERS.put(getCacheKey(), okHttpClientBuilder);
 		}
 		this.okHttpClientBuilder = okHttpClientBuilder;
@@ -232,6 +259,71 @@ public class RestClient {
 		this.okHttpClient = okHttpClient;
 	}
 
+	/**
+	 * Enables an encrypted on-disk cache of GET responses for this user (e.g. describe, metadata and layout calls).
+	 * Cached responses are served while fresh (Cache-Control max-age) and otherwise revalidated with
+	 * the server (ETag / Last-Modified) which answers 304 when they are unchanged.
+	 * The cache is removed when the user logs out.
+	 *
+	 * @param context
+	 * @param maxSizeBytes maximum size of the cache on disk
+	 * @return cache for this user (e.g. to get hit / miss / revalidation counts)
+	 */
+	public synchronized HttpResponseCache enableResponseCache(Context context, long maxSizeBytes) {
+		final String cacheKey = getCacheKey();
+		HttpResponseCache responseCache = RESPONSE_CACHES.get(cacheKey);
+
+		// If none cached, create new one and use a client with it
+		if (responseCache == null) {
+			responseCache = new HttpResponseCache(getResponseCacheDirectory(context, cacheKey), maxSizeBytes, SalesforceSDKManager.getEncryptionKey());
+			RESPONSE_CACHES.put(cacheKey, responseCache);
+			setOkHttpClient(okHttpClient.newBuilder().addInterceptor(responseCache).build());
+		}
+		return responseCache;
+	}
+
+	/**
+	 * Enables coalescing of identical GET requests in flight at the same time for this user:
+	 * only one of them goes to the server, the others get a copy of its response.
+	 * Requests with Cache-Control no-cache and non-json responses are not coalesced (see RequestCoalescingInterceptor).
+	 *
+	 * @return interceptor doing the coalescing for this user (e.g. to get the coalesced count)
+	 */
+	public synchronized RequestCoalescingInterceptor enableRequestCoalescing() {
+		final String cacheKey = getCacheKey();
+		RequestCoalescingInterceptor requestCoalescer = REQUEST_COALESCERS.get(cacheKey);
+
+		// If none cached, create new one and use a client with it
+		if (requestCoalescer == null) {
+			requestCoalescer = new RequestCoalescingInterceptor();
+			REQUEST_COALESCERS.put(cacheKey, requestCoalescer);
+			setOkHttpClient(okHttpClient.newBuilder().addInterceptor(requestCoalescer).build());
+		}
+		return requestCoalescer;
+	}
+
+	/**
+	 * @return network metrics (dns, connect, tls, time to first byte etc) of the calls made for this user
+	 */
+	public synchronized RestClientMetrics getNetworkMetrics() {
+		final String cacheKey = getCacheKey();
+		RestClientMetrics networkMetrics = NETWORK_METRICS.get(cacheKey);
+
+		// If none cached, create new one
+		if (networkMetrics == null) {
+			networkMetrics = new RestClientMetrics();
+			NETWORK_METRICS.put(cacheKey, networkMetrics);
+		}
+		return networkMetrics;
+	}
+
+	/**
+	 * @return response cache for this user or null if not enabled (see enableResponseCache)
+	 */
+	public synchronized HttpResponseCache getResponseCache() {
+		return RESPONSE_CACHES.get(getCacheKey());
+	}
+
 	/**
 	 * Set the client info. Used by clients to implement Login As
 	 * @param clientInfo The new client info to set
@@ -335,6 +427,7 @@ public class RestClient {
 	/**
 	 * Send the given restRequest and process the result asynchronously with the given callback.
 	 * Note: Intended to be used by code on the UI thread.
+	 * Note: identical GET requests in flight at the same time can be coalesced into one server call (see enableRequestCoalescing).
 	 * @param restRequest
 	 * @param callback
 	 * @return okHttp Call object (through which you can cancel the request or get the request back)
@@ -360,6 +453,7 @@ public class RestClient {
 	/**
 	 * Send the given restRequest synchronously and return a RestResponse
 	 * Note: Cannot be used by code on the UI thread (use sendAsync instead).
+	 * Note: identical GET requests in flight at the same time can be coalesced into one server call (see enableRequestCoalescing).
 	 * @param restRequest
 	 * @return
 	 * @throws IOException 
@@ -626,8 +720,10 @@ public class RestClient {
 
         private final AuthTokenProvider authTokenProvider;
         private String authToken;
-        private ClientInfo clientInfo;
+        private volatile ClientInfo clientInfo;
         private boolean shouldRefreshOn403 = true;
+        private final Object refreshLock = new Object();
+        private TokenRefresh inFlightRefresh; // guarded by refreshLock
 
         /**
          * Constructs a SalesforceHttpInterceptor with the given clientInfo, authToken and authTokenProvider.
@@ -650,7 +746,10 @@ public class RestClient {
         @Override
         public Response intercept(Chain chain) throws IOException {
             Request request = chain.request();
-            request = buildAuthenticatedRequest(request);
+
+            // Always sending the latest token (requests built with a token known to be stale get the new one)
+            final String sentAuthToken = getAuthToken();
+            request = buildAuthenticatedRequest(request, sentAuthToken);
             Response response = chain.proceed(request);
 			int responseCode = response.code();
 			boolean refreshRequired = shouldRefreshOn403 ? (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED
@@ -661,9 +760,13 @@ public class RestClient {
 			 * return 403 as the error code when an instance split or migration occurs.
 			 */
             if (refreshRequired) {
-                refreshAccessToken();
-                if (getAuthToken() != null) {
-                    request = buildAuthenticatedRequest(request);
+                refreshAccessToken(sentAuthToken);
+                final String newAuthToken = getAuthToken();
+                if (newAuthToken != null) {
+                    if (response.body() != null) {
+                        response.body().close();
+                    }
+                    request = buildAuthenticatedRequest(request, newAuthToken);
 					HttpUrl currentInstanceUrl = HttpUrl.get(clientInfo.getInstanceUrl());
 					if (currentInstanceUrl != null && currentInstanceUrl.host() != null) {
 
@@ -719,9 +822,9 @@ public class RestClient {
          * @param request
          * @return
          */
-        private Request buildAuthenticatedRequest(Request request) {
+        private Request buildAuthenticatedRequest(Request request, String authToken) {
             Request.Builder builder = request.newBuilder();
-            setAuthHeader(builder);
+            setAuthHeader(builder, authToken);
             return builder.build();
         }
 
@@ -736,8 +839,9 @@ public class RestClient {
          * Set auth header
          *
          * @param builder
+         * @param authToken
          */
-        private void setAuthHeader(Request.Builder builder) {
+        private void setAuthHeader(Request.Builder builder, String authToken) {
             if (authToken != null) { //Add Auth token to each request if authorized
                 OAuth2.addAuthorizationHeader(builder, authToken);
             }
@@ -771,6 +875,54 @@ public class RestClient {
             }
         }
 
+        /**
+         * Swaps the access token a request failed with for a new one.
+         * Only one refresh runs at a time: requests that failed with the same token wait for it and share its outcome,
+         * requests that failed with a token that was already replaced don't trigger a refresh.
+         *
+         * @param failedAuthToken token sent with the request that failed
+         */
+        private void refreshAccessToken(String failedAuthToken) throws IOException {
+            final TokenRefresh refresh;
+            final boolean leader;
+            synchronized (refreshLock) {
+                final String currentAuthToken = getAuthToken();
+                if (currentAuthToken != null && !currentAuthToken.equals(failedAuthToken)) {
+                    // Token already refreshed by another request
+                    return;
+                }
+                leader = inFlightRefresh == null;
+                if (leader) {
+                    inFlightRefresh = new TokenRefresh();
+                }
+                refresh = inFlightRefresh;
+            }
+            if (leader) {
+                try {
+                    refreshAccessToken();
+                } catch (IOException | RuntimeException e) {
+                    refresh.error = e;
+                    throw e;
+                } finally {
+                    synchronized (refreshLock) {
+                        inFlightRefresh = null;
+                    }
+                    refresh.done.countDown();
+                }
+            } else {
+                try {
+                    refresh.done.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted while waiting for token refresh");
+                }
+                if (refresh.error instanceof RefreshTokenRevokedException) {
+                    throw new RefreshTokenRevokedException(refresh.error.getMessage());
+                } else if (refresh.error != null) {
+                    throw new IOException("Token refresh failed", refresh.error);
+                }
+            }
+        }
+
         /**
          * Swaps the existing access token for a new one.
          */
@@ -811,6 +963,14 @@ public class RestClient {
         public void setClientInfo(final ClientInfo clientInfo) {
             this.clientInfo = clientInfo;
         }
+
+        /**
+         * Token refresh in flight, shared by the requests waiting for it
+         */
+        private static class TokenRefresh {
+            final CountDownLatch done = new CountDownLatch(1);
+            volatile Exception error;
+        }
     }
 
 	/**
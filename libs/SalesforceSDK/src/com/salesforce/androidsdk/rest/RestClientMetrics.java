@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import com.salesforce.androidsdk.analytics.EventBuilderHelper;
+import com.salesforce.androidsdk.util.SalesforceSDKLogger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Network metrics of the calls made by a RestClient, collected with an okHttp EventListener.
+ * Metrics are aggregated per endpoint template (sobjects, query, composite etc):
+ * call, failure, connection reuse and retry counts and histograms of the
+ * dns, connect, tls, time to first byte, body transfer and total times and of the request and response sizes.
+ */
+public class RestClientMetrics {
+
+    // Endpoint templates
+    public static final String SOBJECTS = "sobjects";
+    public static final String QUERY = "query";
+    public static final String SEARCH = "search";
+    public static final String COMPOSITE = "composite";
+    public static final String CONNECT_FILES = "connect/files";
+    public static final String CONNECT = "connect";
+    public static final String OTHER = "other";
+
+    // Keys in json representation
+    public static final String ENDPOINT = "endpoint";
+    public static final String CALLS = "calls";
+    public static final String FAILURES = "failures";
+    public static final String CONNECTION_REUSES = "connectionReuses";
+    public static final String RETRIES = "retries";
+    public static final String DNS = "dnsMs";
+    public static final String CONNECT_TIME = "connectMs";
+    public static final String TLS = "tlsMs";
+    public static final String TIME_TO_FIRST_BYTE = "timeToFirstByteMs";
+    public static final String BODY_TRANSFER = "bodyTransferMs";
+    public static final String TOTAL = "totalMs";
+    public static final String REQUEST_SIZE = "requestBytes";
+    public static final String RESPONSE_SIZE = "responseBytes";
+    public static final String COUNT = "count";
+    public static final String SUM = "sum";
+    public static final String MIN = "min";
+    public static final String MAX = "max";
+    public static final String BOUNDS = "bounds";
+    public static final String BUCKETS = "buckets";
+
+    /**
+     * Name of analytics events published by publishToAnalytics
+     */
+    public static final String EVENT_NAME = "networkMetrics";
+
+    // Histogram bucket upper bounds (last bucket is for larger values)
+    private static final long[] TIME_BOUNDS_MS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+    private static final long[] SIZE_BOUNDS_BYTES = { 1024, 4096, 16384, 65536, 262144, 1048576, 4194304 };
+
+    private static final String TAG = "RestClientMetrics";
+
+    private final Map<String, EndpointMetrics> endpointMetrics = new TreeMap<>();
+
+    private final EventListener.Factory eventListenerFactory = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            return new CallListener();
+        }
+    };
+
+    /**
+     * @return factory to install on the okHttp client (see OkHttpClient.Builder.eventListenerFactory)
+     */
+    public EventListener.Factory getEventListenerFactory() {
+        return eventListenerFactory;
+    }
+
+    /**
+     * @param endpoint endpoint template e.g. SOBJECTS
+     * @return metrics for endpoint or null if no call was made to it
+     */
+    public EndpointMetrics getEndpointMetrics(String endpoint) {
+        synchronized (endpointMetrics) {
+            return endpointMetrics.get(endpoint);
+        }
+    }
+
+    /**
+     * @return endpoint templates with metrics
+     */
+    public List<String> getEndpoints() {
+        synchronized (endpointMetrics) {
+            return new ArrayList<>(endpointMetrics.keySet());
+        }
+    }
+
+    /**
+     * Discard all metrics collected so far
+     */
+    public void reset() {
+        synchronized (endpointMetrics) {
+            endpointMetrics.clear();
+        }
+    }
+
+    /**
+     * @return metrics of all endpoints as a JSONArray
+     * @throws JSONException
+     */
+    public JSONArray asJSON() throws JSONException {
+        final JSONArray array = new JSONArray();
+        for (String endpoint : getEndpoints()) {
+            array.put(getEndpointMetrics(endpoint).asJSON());
+        }
+        return array;
+    }
+
+    /**
+     * Store metrics of each endpoint as an analytics event (for the current user) and reset them
+     */
+    public void publishToAnalytics() {
+        final List<EndpointMetrics> metricsToPublish;
+        synchronized (endpointMetrics) {
+            metricsToPublish = new ArrayList<>(endpointMetrics.values());
+            endpointMetrics.clear();
+        }
+        for (EndpointMetrics metrics : metricsToPublish) {
+            try {
+                EventBuilderHelper.createAndStoreEvent(EVENT_NAME, null, TAG, metrics.asJSON());
+            } catch (JSONException e) {
+                SalesforceSDKLogger.e(TAG, "Exception thrown while publishing network metrics", e);
+            }
+        }
+    }
+
+    /**
+     * @param path url path e.g. /services/data/v46.0/sobjects/Account/001...
+     * @return endpoint template for path
+     */
+    public static String getEndpointTemplate(String path) {
+        if (path.contains("/composite")) {
+            return COMPOSITE;
+        }
+        if (path.contains("/connect/files")) {
+            return CONNECT_FILES;
+        }
+        if (path.contains("/connect/")) {
+            return CONNECT;
+        }
+        if (path.contains("/sobjects")) {
+            return SOBJECTS;
+        }
+        if (path.contains("/query")) {
+            return QUERY;
+        }
+        if (path.contains("/search") || path.contains("/parameterizedSearch")) {
+            return SEARCH;
+        }
+        return OTHER;
+    }
+
+    private void record(String endpoint, CallListener call) {
+        EndpointMetrics metrics;
+        synchronized (endpointMetrics) {
+            metrics = endpointMetrics.get(endpoint);
+            if (metrics == null) {
+                metrics = new EndpointMetrics(endpoint);
+                endpointMetrics.put(endpoint, metrics);
+            }
+        }
+        metrics.record(call);
+    }
+
+    /**
+     * Metrics of calls to one endpoint template
+     */
+    public static class EndpointMetrics {
+        private final String endpoint;
+        private long calls;
+        private long failures;
+        private long connectionReuses;
+        private long retries;
+        private final Histogram dns = new Histogram(TIME_BOUNDS_MS);
+        private final Histogram connect = new Histogram(TIME_BOUNDS_MS);
+        private final Histogram tls = new Histogram(TIME_BOUNDS_MS);
+        private final Histogram timeToFirstByte = new Histogram(TIME_BOUNDS_MS);
+        private final Histogram bodyTransfer = new Histogram(TIME_BOUNDS_MS);
+        private final Histogram total = new Histogram(TIME_BOUNDS_MS);
+        private final Histogram requestSize = new Histogram(SIZE_BOUNDS_BYTES);
+        private final Histogram responseSize = new Histogram(SIZE_BOUNDS_BYTES);
+
+        EndpointMetrics(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String getEndpoint() { return endpoint; }
+        public synchronized long getCalls() { return calls; }
+        public synchronized long getFailures() { return failures; }
+        public synchronized long getConnectionReuses() { return connectionReuses; }
+        public synchronized long getRetries() { return retries; }
+        public Histogram getDns() { return dns; }
+        public Histogram getConnect() { return connect; }
+        public Histogram getTls() { return tls; }
+        public Histogram getTimeToFirstByte() { return timeToFirstByte; }
+        public Histogram getBodyTransfer() { return bodyTransfer; }
+        public Histogram getTotal() { return total; }
+        public Histogram getRequestSize() { return requestSize; }
+        public Histogram getResponseSize() { return responseSize; }
+
+        private synchronized void record(CallListener call) {
+            calls++;
+            if (call.failed) failures++;
+            connectionReuses += call.connectionReuses;
+            retries += Math.max(0, call.requests - 1) + call.connectFailures;
+            recordMillis(dns, call.dnsNanos);
+            recordMillis(connect, call.connectNanos);
+            recordMillis(tls, call.tlsNanos);
+            recordMillis(timeToFirstByte, call.timeToFirstByteNanos);
+            recordMillis(bodyTransfer, call.bodyTransferNanos);
+            recordMillis(total, call.callEndNanos - call.callStartNanos);
+            if (call.requests > 0) {
+                requestSize.record(call.requestBytes);
+            }
+            if (call.responseBytes >= 0) {
+                responseSize.record(call.responseBytes);
+            }
+        }
+
+        private static void recordMillis(Histogram histogram, long nanos) {
+            if (nanos >= 0) {
+                histogram.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+            }
+        }
+
+        /**
+         * @return json representation
+         * @throws JSONException
+         */
+        public synchronized JSONObject asJSON() throws JSONException {
+            final JSONObject json = new JSONObject();
+            json.put(ENDPOINT, endpoint);
+            json.put(CALLS, calls);
+            json.put(FAILURES, failures);
+            json.put(CONNECTION_REUSES, connectionReuses);
+            json.put(RETRIES, retries);
+            json.put(DNS, dns.asJSON());
+            json.put(CONNECT_TIME, connect.asJSON());
+            json.put(TLS, tls.asJSON());
+            json.put(TIME_TO_FIRST_BYTE, timeToFirstByte.asJSON());
+            json.put(BODY_TRANSFER, bodyTransfer.asJSON());
+            json.put(TOTAL, total.asJSON());
+            json.put(REQUEST_SIZE, requestSize.asJSON());
+            json.put(RESPONSE_SIZE, responseSize.asJSON());
+            return json;
+        }
+    }
+
+    /**
+     * Histogram with fixed buckets
+     */
+    public static class Histogram {
+        private final long[] bounds;
+        private final long[] buckets;
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        /**
+         * Constructor
+         * @param bounds upper bounds (inclusive) of the buckets, an extra bucket holds larger values
+         */
+        public Histogram(long[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new long[bounds.length + 1];
+        }
+
+        public synchronized void record(long value) {
+            int i = 0;
+            while (i < bounds.length && value > bounds[i]) {
+                i++;
+            }
+            buckets[i]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public synchronized long getCount() { return count; }
+        public synchronized long getSum() { return sum; }
+        public synchronized long getMin() { return count == 0 ? 0 : min; }
+        public synchronized long getMax() { return count == 0 ? 0 : max; }
+
+        /**
+         * @param i bucket index
+         * @return number of values in bucket
+         */
+        public synchronized long getBucket(int i) {
+            return buckets[i];
+        }
+
+        /**
+         * @return json representation
+         * @throws JSONException
+         */
+        public synchronized JSONObject asJSON() throws JSONException {
+            final JSONObject json = new JSONObject();
+            json.put(COUNT, count);
+            json.put(SUM, sum);
+            json.put(MIN, getMin());
+            json.put(MAX, getMax());
+            final JSONArray boundsJson = new JSONArray();
+            for (long bound : bounds) {
+                boundsJson.put(bound);
+            }
+            json.put(BOUNDS, boundsJson);
+            final JSONArray bucketsJson = new JSONArray();
+            for (long bucket : buckets) {
+                bucketsJson.put(bucket);
+            }
+            json.put(BUCKETS, bucketsJson);
+            return json;
+        }
+    }
+
+    /**
+     * Listener for a single call (events of a call are delivered sequentially)
+     * Phases that did not happen (e.g. dns when the connection is reused) are left at -1
+     */
+    private class CallListener extends EventListener {
+        long callStartNanos;
+        long callEndNanos;
+        long dnsStartNanos;
+        long dnsNanos = -1;
+        long connectStartNanos;
+        long connectNanos = -1;
+        long tlsStartNanos;
+        long tlsNanos = -1;
+        long requestSentNanos;
+        long timeToFirstByteNanos = -1;
+        long bodyStartNanos;
+        long bodyTransferNanos = -1;
+        long requestBytes;
+        long responseBytes = -1;
+        int requests;
+        int connectFailures;
+        int connectionReuses;
+        boolean connecting;
+        boolean failed;
+
+        @Override
+        public void callStart(Call call) {
+            callStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsNanos = Math.max(dnsNanos, 0) + System.nanoTime() - dnsStartNanos;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connecting = true;
+            connectStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsNanos = Math.max(tlsNanos, 0) + System.nanoTime() - tlsStartNanos;
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectNanos = Math.max(connectNanos, 0) + System.nanoTime() - connectStartNanos;
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+            connectNanos = Math.max(connectNanos, 0) + System.nanoTime() - connectStartNanos;
+            connectFailures++;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (!connecting) {
+                connectionReuses++;
+            }
+            connecting = false;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requests++;
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestSentNanos = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestSentNanos = System.nanoTime();
+            requestBytes += byteCount;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            timeToFirstByteNanos = System.nanoTime() - requestSentNanos;
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            bodyStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bodyTransferNanos = Math.max(bodyTransferNanos, 0) + System.nanoTime() - bodyStartNanos;
+            responseBytes = Math.max(responseBytes, 0) + byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            callEndNanos = System.nanoTime();
+            record(getEndpointTemplate(call.request().url().encodedPath()), this);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            callEndNanos = System.nanoTime();
+            failed = true;
+            record(getEndpointTemplate(call.request().url().encodedPath()), this);
+        }
+    }
+}
@@ -75,6 +75,7 @@ import okhttp3.RequestBody;
  * <li> composite</li>
  * <li> batch</li>
  * <li> tree</li>
+ * <li> collections</li>
  * </ul>
  * 
  * It also has constructors to build any arbitrary request.
@@ -153,7 +154,8 @@ public class RestRequest {
         OBJECT_LAYOUT(SERVICES_DATA + "%s/ui-api/layout/%s"),
 		COMPOSITE(SERVICES_DATA + "%s/composite"),
         BATCH(SERVICES_DATA + "%s/composite/batch"),
-        SOBJECT_TREE(SERVICES_DATA + "%s/composite/tree/%s");
+        SOBJECT_TREE(SERVICES_DATA + "%s/composite/tree/%s"),
+        SOBJECT_COLLECTIONS(SERVICES_DATA + "%s/composite/sobjects");
 
 		private final String pathTemplate;
 
@@ -685,6 +687,60 @@ public class RestRequest {
         return new RestRequest(RestMethod.POST, RestAction.SOBJECT_TREE.getPath(apiVersion, objectType), body);
     }
 
+    /**
+     * Request to create up to 200 records in one round trip.
+     *
+     * @param apiVersion    Salesforce API version.
+     * @param allOrNone     Indicates whether to roll back the entire request when the creation of any record fails.
+     * @param records       Records to create, each with an attributes object giving its type.
+     * @return              RestRequest object that requests creation of the given records.
+     * @throws JSONException
+     * @see <a href="https://developer.salesforce.com/docs/atlas.en-us.api_rest.meta/api_rest/resources_composite_sobjects_collections_create.htm">https://developer.salesforce.com/docs/atlas.en-us.api_rest.meta/api_rest/resources_composite_sobjects_collections_create.htm</a>
+     */
+    public static RestRequest getRequestForCollectionCreate(String apiVersion, boolean allOrNone, JSONArray records) throws JSONException {
+        return new RestRequest(RestMethod.POST, RestAction.SOBJECT_COLLECTIONS.getPath(apiVersion), makeCollectionRequestJson(allOrNone, records));
+    }
+
+    /**
+     * Request to update up to 200 records in one round trip.
+     *
+     * @param apiVersion    Salesforce API version.
+     * @param allOrNone     Indicates whether to roll back the entire request when the update of any record fails.
+     * @param records       Records to update, each with an attributes object giving its type and an Id field.
+     * @return              RestRequest object that requests update of the given records.
+     * @throws JSONException
+     * @see <a href="https://developer.salesforce.com/docs/atlas.en-us.api_rest.meta/api_rest/resources_composite_sobjects_collections_update.htm">https://developer.salesforce.com/docs/atlas.en-us.api_rest.meta/api_rest/resources_composite_sobjects_collections_update.htm</a>
+     */
+    public static RestRequest getRequestForCollectionUpdate(String apiVersion, boolean allOrNone, JSONArray records) throws JSONException {
+        return new RestRequest(RestMethod.PATCH, RestAction.SOBJECT_COLLECTIONS.getPath(apiVersion), makeCollectionRequestJson(allOrNone, records));
+    }
+
+    /**
+     * Request to delete up to 200 records in one round trip.
+     *
+     * @param apiVersion    Salesforce API version.
+     * @param allOrNone     Indicates whether to roll back the entire request when the deletion of any record fails.
+     * @param objectIds     Salesforce IDs of the records to delete.
+     * @return              RestRequest object that requests deletion of the given records.
+     * @throws UnsupportedEncodingException
+     * @see <a href="https://developer.salesforce.com/docs/atlas.en-us.api_rest.meta/api_rest/resources_composite_sobjects_collections_delete.htm">https://developer.salesforce.com/docs/atlas.en-us.api_rest.meta/api_rest/resources_composite_sobjects_collections_delete.htm</a>
+     */
+    public static RestRequest getRequestForCollectionDelete(String apiVersion, boolean allOrNone, List<String> objectIds) throws UnsupportedEncodingException {
+        StringBuilder path = new StringBuilder(RestAction.SOBJECT_COLLECTIONS.getPath(apiVersion));
+        path.append("?ids=");
+        path.append(URLEncoder.encode(TextUtils.join(",", objectIds), UTF_8));
+        path.append("&allOrNone=");
+        path.append(allOrNone);
+        return new RestRequest(RestMethod.DELETE, path.toString());
+    }
+
+    private static JSONObject makeCollectionRequestJson(boolean allOrNone, JSONArray records) throws JSONException {
+        JSONObject collectionRequestJson = new JSONObject();
+        collectionRequestJson.put(ALL_OR_NONE, allOrNone);
+        collectionRequestJson.put(RECORDS, records);
+        return collectionRequestJson;
+    }
+
     /**
      * Helper method for creating conditional HTTP header.
      *
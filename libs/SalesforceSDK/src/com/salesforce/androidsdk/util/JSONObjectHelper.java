@@ -26,10 +26,14 @@
  */
 package com.salesforce.androidsdk.util;
 
+import android.util.JsonReader;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -168,4 +172,56 @@ public class JSONObjectHelper {
 		return result;
 	}
 
+	/**
+	 * Read the next object from a streaming reader
+	 * Values are typed the same way as when parsing the whole document with new JSONObject(String)
+	 *
+	 * @param reader positioned on the beginning of an object
+	 * @return the object
+	 */
+	public static JSONObject readJSONObject(JsonReader reader) throws IOException, JSONException {
+		JSONObject obj = new JSONObject();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			obj.put(name, readJSONValue(reader));
+		}
+		reader.endObject();
+		return obj;
+	}
+
+	/**
+	 * Read the next array from a streaming reader
+	 *
+	 * @param reader positioned on the beginning of an array
+	 * @return the array
+	 */
+	public static JSONArray readJSONArray(JsonReader reader) throws IOException, JSONException {
+		JSONArray arr = new JSONArray();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			arr.put(readJSONValue(reader));
+		}
+		reader.endArray();
+		return arr;
+	}
+
+	private static Object readJSONValue(JsonReader reader) throws IOException, JSONException {
+		switch (reader.peek()) {
+			case BEGIN_OBJECT:
+				return readJSONObject(reader);
+			case BEGIN_ARRAY:
+				return readJSONArray(reader);
+			case BOOLEAN:
+				return reader.nextBoolean();
+			case NUMBER:
+				return new JSONTokener(reader.nextString()).nextValue();
+			case NULL:
+				reader.nextNull();
+				return JSONObject.NULL;
+			default:
+				return reader.nextString();
+		}
+	}
+
 }
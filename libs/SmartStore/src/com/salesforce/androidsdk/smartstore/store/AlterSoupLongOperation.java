@@ -61,6 +61,10 @@ public class AlterSoupLongOperation extends LongOperation {
 	private static final String OLD_INDEX_SPECS = "oldIndexSpecs";
 	private static final String NEW_INDEX_SPECS = "newIndexSpecs";
 	private static final String RE_INDEX_DATA = "reIndexData";
+	private static final String RE_INDEX_HIGH_WATER_MARK = "reIndexHighWaterMark";
+
+	// Number of soup elements re-indexed per transaction
+	private static final int RE_INDEX_CHUNK_SIZE = 1000;
 	public static final String TAG = "AlterSoup:Status";
 
 	/**
@@ -101,6 +105,9 @@ public class AlterSoupLongOperation extends LongOperation {
 	
 	// True if soup elements should be brought to memory to be re-indexed
 	private boolean reIndexData;
+
+	// Soup entry id of last soup element re-indexed (-1 if none were)
+	private long reIndexHighWaterMark = -1;
 	
 	// Instance of smartstore
 	private SmartStore store;
@@ -138,35 +145,37 @@ public class AlterSoupLongOperation extends LongOperation {
     		
     		// Setting db field
     		this.db = store.getDatabase();
-    		
-    		// Setting soupName field
-    		this.soupName = soupName;
-
-    		// Setting new soup spec
-    		this.newSoupSpec = newSoupSpec;
-
-    		// Get old soup spec
-    		List<String> features = DBHelper.getInstance(db).getFeatures(db, soupName);
-    		this.oldSoupSpec = new SoupSpec(soupName, features.size() == 0 ? null : features.toArray(new String[features.size()]));
-
-			// Get backing table for soup
-	        this.soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
-	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
-	        
-	        // Setting newIndexSpecs field
-	        this.newIndexSpecs = newIndexSpecs;
-	        
-	        // Setting reIndexData field
-	        this.reIndexData = reIndexData;
-	        
-	        // Get old indexSpecs
-	        this.oldIndexSpecs = DBHelper.getInstance(db).getIndexSpecs(db, soupName);
-
-    		// Create row in alter status table - auto commit
-    		this.rowId = createLongOperationDbRow();
-	        
-    		// Last step completed
-    		this.afterStep = AlterSoupStep.STARTING;
+
+    		synchronized(db) {
+	    		// Setting soupName field
+	    		this.soupName = soupName;
+
+	    		// Setting new soup spec
+	    		this.newSoupSpec = newSoupSpec;
+
+	    		// Get old soup spec
+	    		List<String> features = DBHelper.getInstance(db).getFeatures(db, soupName);
+	    		this.oldSoupSpec = new SoupSpec(soupName, features.size() == 0 ? null : features.toArray(new String[features.size()]));
+
+				// Get backing table for soup
+		        this.soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+		        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+
+		        // Setting newIndexSpecs field
+		        this.newIndexSpecs = newIndexSpecs;
+
+		        // Setting reIndexData field
+		        this.reIndexData = reIndexData;
+
+		        // Get old indexSpecs
+		        this.oldIndexSpecs = DBHelper.getInstance(db).getIndexSpecs(db, soupName);
+
+	    		// Create row in alter status table - auto commit
+	    		this.rowId = createLongOperationDbRow();
+
+	    		// Last step completed
+	    		this.afterStep = AlterSoupStep.STARTING;
+    		}
     	}
 	}
 	
@@ -209,6 +218,7 @@ public class AlterSoupLongOperation extends LongOperation {
 		this.oldIndexSpecs = IndexSpec.fromJSON(details.getJSONArray(OLD_INDEX_SPECS));
 		this.reIndexData = details.getBoolean(RE_INDEX_DATA);
 		this.soupTableName = details.getString(SOUP_TABLE_NAME);
+		this.reIndexHighWaterMark = details.optLong(RE_INDEX_HIGH_WATER_MARK, -1);
 	}
 
 
@@ -220,24 +230,24 @@ public class AlterSoupLongOperation extends LongOperation {
 		
 		switch(afterStep) {
 		case STARTING:
-			renameOldSoupTable();
+			runSchemaStep(AlterSoupStep.RENAME_OLD_SOUP_TABLE);
 			if (toStep == AlterSoupStep.RENAME_OLD_SOUP_TABLE) break;
 		case RENAME_OLD_SOUP_TABLE:
-			dropOldIndexes();
+			runSchemaStep(AlterSoupStep.DROP_OLD_INDEXES);
 			if (toStep == AlterSoupStep.DROP_OLD_INDEXES) break;
 		case DROP_OLD_INDEXES:
-			registerSoupUsingTableName();
+			runSchemaStep(AlterSoupStep.REGISTER_SOUP_USING_TABLE_NAME);
 			if (toStep == AlterSoupStep.REGISTER_SOUP_USING_TABLE_NAME) break;
 		case REGISTER_SOUP_USING_TABLE_NAME:
-			copyTable();
+			runSchemaStep(AlterSoupStep.COPY_TABLE);
 			if (toStep == AlterSoupStep.COPY_TABLE) break;
 		case COPY_TABLE:
-			// Re-index soup (if requested)
+			// Re-index soup (if requested) - takes the lock one chunk at a time
 			if (reIndexData)
 				reIndexSoup();
 			if (toStep == AlterSoupStep.RE_INDEX_SOUP) break;
 		case RE_INDEX_SOUP:
-			dropOldTable();		
+			runSchemaStep(AlterSoupStep.DROP_OLD_TABLE);
 			if (toStep == AlterSoupStep.DROP_OLD_TABLE) break;
 		case DROP_OLD_TABLE:
 			// Nothing left to do
@@ -245,6 +255,45 @@ public class AlterSoupLongOperation extends LongOperation {
 		}
 	}
 
+	/**
+	 * Run one of the steps changing the schema
+	 * Holds the database lock and the read connection pool's exclusive lock for that step only
+	 * @param step
+	 */
+	private void runSchemaStep(AlterSoupStep step) {
+		synchronized(db) {
+			final ReadConnectionPool pool = ReadConnectionPool.getPool(db.getPath());
+			if (pool != null) pool.lockExclusive();
+			try {
+				switch(step) {
+				case RENAME_OLD_SOUP_TABLE:
+					renameOldSoupTable();
+					break;
+				case DROP_OLD_INDEXES:
+					dropOldIndexes();
+					break;
+				case REGISTER_SOUP_USING_TABLE_NAME:
+					registerSoupUsingTableName();
+					break;
+				case COPY_TABLE:
+					copyTable();
+					break;
+				case DROP_OLD_TABLE:
+					dropOldTable();
+					break;
+				default:
+					throw new SmartStoreException("Not a schema step: " + step);
+				}
+
+				// Converted smart sql / count statements for the soup are stale
+				DBHelper.getInstance(db).removeFromCache(soupName);
+				if (pool != null) pool.removeFromCaches(soupName);
+			} finally {
+				if (pool != null) pool.unlockExclusive();
+			}
+		}
+	}
+
 
 	/**
 	 * Step 1: rename old table
@@ -373,16 +422,31 @@ public class AlterSoupLongOperation extends LongOperation {
 			}
 		}
 		
-		db.beginTransaction();
-        try {
-            store.reIndexSoup(soupName, indexPaths.toArray(new String[0]), false);
-            updateLongOperationDbRow(AlterSoupStep.RE_INDEX_SOUP);
-
-            db.setTransactionSuccessful();
-        }
-        finally {
-            db.endTransaction();
-        }
+		// Committing one chunk at a time (recording progress) so that an interrupted re-index does not start over
+		String[] indexPathsArray = indexPaths.toArray(new String[0]);
+		boolean done = false;
+		while (!done) {
+			// Lock is only held for one chunk at a time
+			synchronized(db) {
+				db.beginTransaction();
+				try {
+					long lastSoupEntryId = store.reIndexSoupChunk(soupName, indexPathsArray, reIndexHighWaterMark, RE_INDEX_CHUNK_SIZE);
+					done = lastSoupEntryId < 0;
+					if (done) {
+						updateLongOperationDbRow(AlterSoupStep.RE_INDEX_SOUP);
+					} else {
+						updateLongOperationDbRow(lastSoupEntryId);
+					}
+					db.setTransactionSuccessful();
+					if (!done) {
+						reIndexHighWaterMark = lastSoupEntryId;
+					}
+				}
+				finally {
+					db.endTransaction();
+				}
+			}
+		}
 	}
 
 
@@ -445,6 +509,7 @@ public class AlterSoupLongOperation extends LongOperation {
     	details.put(OLD_INDEX_SPECS, IndexSpec.toJSON(oldIndexSpecs));
     	details.put(NEW_INDEX_SPECS, IndexSpec.toJSON(newIndexSpecs));
     	details.put(RE_INDEX_DATA, reIndexData);
+    	details.put(RE_INDEX_HIGH_WATER_MARK, reIndexHighWaterMark);
 		return details;
 	}
 	
@@ -469,6 +534,25 @@ public class AlterSoupLongOperation extends LongOperation {
         SmartStoreLogger.i(TAG, soupName + " " + newStatus);
 	}
 	
+	/**
+	 * Update row in long operations status table with re-index progress for on-going alter soup operation
+	 * @param newReIndexHighWaterMark soup entry id of last soup element re-indexed
+	 */
+	protected void updateLongOperationDbRow(long newReIndexHighWaterMark) {
+		try {
+			JSONObject details = getDetails();
+			details.put(RE_INDEX_HIGH_WATER_MARK, newReIndexHighWaterMark);
+			Long now = System.currentTimeMillis();
+			ContentValues contentValues = new ContentValues();
+			contentValues.put(SmartStore.DETAILS_COL, details.toString());
+			contentValues.put(SmartStore.LAST_MODIFIED_COL, now);
+			DBHelper.getInstance(db).update(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, contentValues, SmartStore.ID_PREDICATE, rowId + "");
+		} catch (JSONException e) {
+			// Progress not recorded - re-index would start over if interrupted
+			SmartStoreLogger.w(TAG, "Could not record re-index progress for " + soupName, e);
+		}
+	}
+
 	/**
 	 * Helper method
 	 *
@@ -599,6 +683,13 @@ public class AlterSoupLongOperation extends LongOperation {
 				}
 			}
 		}
+
+		// Change journal turned on: journaling all existing entries (otherwise changes made before the alter would never be reported)
+		// Consumers drop entries that turn out to be unchanged (e.g. clean records during sync up)
+		if (!oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_CHANGE_JOURNAL) && newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_CHANGE_JOURNAL)) {
+			db.execSQL(String.format("INSERT OR IGNORE INTO %s%s (%s) SELECT %s FROM %s",
+					soupTableName, SmartStore.JOURNAL_SUFFIX, SmartStore.ID_COL, SmartStore.ID_COL, soupTableName));
+		}
 	}
 	
 	/**
@@ -48,9 +48,12 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * SmartStore Database Helper
@@ -66,31 +69,49 @@ public class DBHelper {
 	public static final String EXPLAIN_ROWS = "rows";
 	public static final String EXPLAIN_TAG = "EXPLAIN";
 
-	private static Map<SQLiteDatabase, DBHelper> INSTANCES;
+	private static final ConcurrentMap<SQLiteDatabase, DBHelper> INSTANCES = new ConcurrentHashMap<SQLiteDatabase, DBHelper>();
 
 	/**
 	 * Returns the instance of this class associated with the database specified.
+	 * NB: does not take any lock on the fast path, so concurrent readers don't contend on it
 	 *
 	 * @param db Database.
 	 * @return Instance of this class.
 	 */
-	public static synchronized DBHelper getInstance(SQLiteDatabase db) {
-		if (INSTANCES == null) {
-			INSTANCES = new HashMap<SQLiteDatabase, DBHelper>();
-		}
+	public static DBHelper getInstance(SQLiteDatabase db) {
 		DBHelper instance = INSTANCES.get(db);
 		if (instance == null) {
-			instance = new DBHelper();
-			INSTANCES.put(db, instance);
+			final DBHelper newInstance = new DBHelper();
+			instance = INSTANCES.putIfAbsent(db, newInstance);
+			if (instance == null) {
+				instance = newInstance;
+			}
 		}
 		return instance;
 	}
 
+	/**
+	 * Clears and forgets the instance associated with the database specified (if any).
+	 * Should be called before closing a database that won't be reopened (e.g. a pooled read connection).
+	 *
+	 * @param db Database.
+	 */
+	static void removeInstance(SQLiteDatabase db) {
+		DBHelper instance = INSTANCES.remove(db);
+		if (instance != null) {
+			instance.clearMemoryCache();
+		}
+	}
+
 	// Some queries
 	private static final String COUNT_SELECT = "SELECT count(*) FROM %s %s";
 	private static final String SEQ_SELECT = "SELECT seq FROM SQLITE_SEQUENCE WHERE name = ?";
 	private static final String LIMIT_SELECT = "SELECT * FROM (%s) LIMIT %s";
 
+	// Max number of entries in the (least recently used) caches of converted smart sql and compiled count statements
+	private static final int MAX_CACHED_SMART_SQL = 100;
+	private static final int MAX_CACHED_COUNT_STATEMENTS = 50;
+
 	// Cache of soup name to soup table names
 	private Map<String, String> soupNameToTableNamesMap = new HashMap<String, String>();
 
@@ -109,8 +130,25 @@ public class DBHelper {
 	// Cache of table name to insert helpers
 	private Map<String, InsertHelper> tableNameToInsertHelpersMap = new HashMap<String, InsertHelper>();
 
-	// Cache of raw count sql to compiled statements
-	private Map<String, SQLiteStatement> rawCountSqlToStatementsMap = new HashMap<String, SQLiteStatement>();
+	// Cache of raw count sql to compiled statements (least recently used statement is closed when full)
+	private Map<String, SQLiteStatement> rawCountSqlToStatementsMap = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Entry<String, SQLiteStatement> eldest) {
+			if (size() > MAX_CACHED_COUNT_STATEMENTS) {
+				eldest.getValue().close();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	// Cache of smart sql to converted sql (least recently used entry is dropped when full)
+	private Map<String, String> smartSqlToSqlMap = new LinkedHashMap<String, String>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Entry<String, String> eldest) {
+			return size() > MAX_CACHED_SMART_SQL;
+		}
+	};
 
 	// Boolean to turn explain query plan capture on or off
 	private boolean captureExplainQueryPlan;
@@ -177,6 +215,22 @@ public class DBHelper {
 		return soupNameToHasFTS.get(soupName);
 	}
 
+	/**
+	 * @param smartSql
+	 * @param sql
+	 */
+	public synchronized void cacheConvertedSql(String smartSql, String sql) {
+		smartSqlToSqlMap.put(smartSql, sql);
+	}
+
+	/**
+	 * @param smartSql
+	 * @return
+	 */
+	public synchronized String getCachedConvertedSql(String smartSql) {
+		return smartSqlToSqlMap.get(smartSql);
+	}
+
 	/**
 	 * @param soupName
 	 */
@@ -197,6 +251,19 @@ public class DBHelper {
 		soupNameToIndexSpecsMap.remove(soupName);
 		soupNameToHasFTS.remove(soupName);
 		soupNameToFeaturesMap.remove(soupName);
+		cleanupSmartSqlToSqlMap(soupName);
+	}
+
+	private synchronized void cleanupSmartSqlToSqlMap(String soupName) {
+		List<String> smartSqlToRemove = new ArrayList<String>();
+		for (String smartSql : smartSqlToSqlMap.keySet()) {
+			if (smartSql.contains("{" + soupName + "}") || smartSql.contains("{" + soupName + ":")) {
+				smartSqlToRemove.add(smartSql);
+			}
+		}
+		for (String smartSql : smartSqlToRemove) {
+			smartSqlToSqlMap.remove(smartSql);
+		}
 	}
 
 	private void cleanupRawCountSqlToStatementMaps(String tableName) {
@@ -447,6 +514,7 @@ public class DBHelper {
 		tableNameToInsertHelpersMap.clear();
 		tableNameToNextIdStatementsMap.clear();
 		rawCountSqlToStatementsMap.clear();
+		smartSqlToSqlMap.clear();
 	}
 
     /**
@@ -41,18 +41,32 @@ import net.sqlcipher.database.SQLiteOpenHelper;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Helper class to manage SmartStore's database creation and version management.
@@ -62,7 +76,9 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	// 1 --> up until 2.3
 	// 2 --> starting at 2.3 (new meta data table long_operations_status)
 	// 3 --> starting at 4.3 (soup_names table changes to soup_attr)
-	public static final int DB_VERSION = 3;
+	// 4 --> content hash column in soup_attrs
+	// 5 --> change journal column in soup_attrs
+	public static final int DB_VERSION = 5;
 	public static final String DEFAULT_DB_NAME = "smartstore";
 	public static final String SOUP_ELEMENT_PREFIX = "soupelt_";
 	private static final String TAG = "DBOpenHelper";
@@ -73,6 +89,14 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	private static String dataDir;
 	private String dbName;
 
+	// Bounded pool of threads reading / writing batches of external soup blobs
+	private static final int BLOB_IO_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	// Batches smaller than that are handled on the calling thread
+	private static final int MIN_BLOBS_PER_TASK = 8;
+	private static final int BLOB_BUFFER_SIZE = 8192;
+	private static final String REENCRYPTED_SUFFIX = ".rekey";
+	private static ExecutorService blobIOExecutor;
+
 	/*
 	 * Cache for the helper instances
 	 */
@@ -215,6 +239,7 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 			}
 			EventBuilderHelper.createAndStoreEvent(eventName, account, TAG, storeAttributes);
 			helper = new DBOpenHelper(ctx, fullDBName);
+			deleteLeftoverReEncryptedFiles(new File(helper.getExternalSoupBlobsPath(null)));
 			openHelpers.put(fullDBName, helper);
 		}
 		return helper;
@@ -267,6 +292,18 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_NAMES_TABLE,
 													SmartStore.SOUP_ATTRS_TABLE, new String[] { SoupSpec.FEATURE_EXTERNAL_STORAGE });
 		}
+
+		if (oldVersion < 4) {
+			// DB versions before 4 did not have the content hash feature
+			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_ATTRS_TABLE,
+													null, new String[] { SoupSpec.FEATURE_CONTENT_HASH });
+		}
+
+		if (oldVersion < 5) {
+			// DB versions before 5 did not have the change journal feature
+			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_ATTRS_TABLE,
+													null, new String[] { SoupSpec.FEATURE_CHANGE_JOURNAL });
+		}
 	}
 
 	@Override
@@ -275,6 +312,20 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		(new SmartStore(db)).resumeLongOperations();
 	}
 
+	/**
+	 * @return path of database file (same as getWritableDatabase().getPath() without opening the database)
+	 */
+	private String getDatabasePath() {
+		return dataDir + "/databases/" + dbName;
+	}
+
+	@Override
+	public synchronized void close() {
+		// Closing read-only connections first (if concurrent reads were turned on)
+		ReadConnectionPool.close(getDatabasePath());
+		super.close();
+	}
+
 	/**
 	 * Deletes the underlying database for the specified user account.
 	 *
@@ -579,6 +630,7 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	public static void reEncryptAllFiles(SQLiteDatabase db, String oldKey, String newKey) {
 		StringBuilder path = new StringBuilder(db.getPath()).append(EXTERNAL_BLOBS_SUFFIX);
 		File dir = new File(path.toString());
+		deleteLeftoverReEncryptedFiles(dir);
 		if (dir.exists()) {
 			File[] tables = dir.listFiles();
 			if (tables != null) {
@@ -586,22 +638,22 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 					File[] blobs = table.listFiles();
 					if (blobs != null) {
 						for (File blob : blobs) {
-							StringBuilder json = new StringBuilder();
-							String result = null;
-							try {
-								BufferedReader br = new BufferedReader(new FileReader(blob));
-								String line;
-								while ((line = br.readLine()) != null) {
-									json.append(line).append('\n');
+							// Streams blob through decryption with old key and encryption with new key (into temp file)
+							File reEncryptedBlob = new File(blob.getPath() + REENCRYPTED_SUFFIX);
+							try (InputStream in = Encryptor.getDecryptingInputStream(openBlobInputStream(blob), oldKey);
+								 OutputStream out = Encryptor.getEncryptingOutputStream(openBlobOutputStream(reEncryptedBlob), newKey)) {
+								byte[] buffer = new byte[BLOB_BUFFER_SIZE];
+								int count;
+								while ((count = in.read(buffer)) >= 0) {
+									out.write(buffer, 0, count);
 								}
-								br.close();
-								result = Encryptor.decrypt(json.toString(), oldKey);
-								blob.delete();
-								FileOutputStream outputStream = new FileOutputStream(blob, false);
-								outputStream.write(Encryptor.encrypt(result, newKey).getBytes());
-								outputStream.close();
-							} catch (IOException ex) {
+							} catch (IOException | GeneralSecurityException ex) {
                                 SmartStoreLogger.e(TAG, "Exception occurred while rekeying external files", ex);
+								reEncryptedBlob.delete();
+								continue;
+							}
+							if (!reEncryptedBlob.renameTo(blob)) {
+                                SmartStoreLogger.e(TAG, "Could not replace external file after rekeying: " + blob.getName());
 							}
 						}
 					}
@@ -610,6 +662,33 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		}
 	}
 
+	/**
+	 * Deletes the temp files left behind by a re-encryption that was interrupted (e.g. app killed during a rekey).
+	 * The blob a temp file was made from is only replaced once the temp file is complete, so it is still there
+	 * (encrypted with the key it had before the interrupted re-encryption).
+	 *
+	 * @param dir Folder for external blobs of a db.
+	 */
+	private static void deleteLeftoverReEncryptedFiles(File dir) {
+		File[] tables = dir.listFiles();
+		if (tables != null) {
+			for (File table : tables) {
+				File[] leftovers = table.listFiles(new FilenameFilter() {
+					@Override
+					public boolean accept(File dir, String name) {
+						return name.endsWith(REENCRYPTED_SUFFIX);
+					}
+				});
+				if (leftovers != null) {
+					for (File leftover : leftovers) {
+                        SmartStoreLogger.w(TAG, "Deleting leftover from interrupted rekey: " + leftover.getName());
+						leftover.delete();
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Places the soup blob on file storage. The name and folder are determined by the soup and soup entry id.
 	 *
@@ -636,18 +715,73 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 */
 	public boolean saveSoupBlobFromString(String soupTableName, long soupEntryId, String soupEltStr, String encryptionKey) {
 		File file = getSoupBlobFile(soupTableName, soupEntryId);
-		try (FileOutputStream outputStream = new FileOutputStream(file, false)) {
-			byte[] data = Encryptor.encryptBytes(soupEltStr, encryptionKey);
-			if (data != null) {
-				outputStream.write(data);
-				return true;
-			}
-		} catch (IOException ex) {
+		try (OutputStream out = openBlobOutputStream(file)) {
+			// Encrypts as it writes through the file channel (the whole encrypted blob is never in memory)
+			Writer writer = new OutputStreamWriter(Encryptor.getEncryptingOutputStream(out, encryptionKey), UTF8);
+			writer.write(soupEltStr);
+			writer.close();
+			return true;
+		} catch (IOException | GeneralSecurityException ex) {
             SmartStoreLogger.e(TAG, "Exception occurred while attempting to write external soup blob", ex);
 		}
 		return false;
 	}
 
+	/**
+	 * Places a batch of soup blobs on file storage.
+	 * Blobs are encrypted and written in parallel on a bounded pool of threads (the calling thread takes its share),
+	 * the call returns once all the blobs have been written.
+	 *
+	 * @param soupTableName Name of the soup that the blobs belong to.
+	 * @param soupEntryIds Entry ids for the soup blobs.
+	 * @param soupEltStrs Blobs to store on file storage as Strings (same order as soupEntryIds).
+	 * @param encryptionKey Key with which to encrypt the data.
+	 *
+	 * @return True if all blobs were written, false otherwise.
+	 */
+	public boolean saveSoupBlobsFromStrings(final String soupTableName, final long[] soupEntryIds, final String[] soupEltStrs, final String encryptionKey) {
+		final AtomicBoolean success = new AtomicBoolean(true);
+		boolean completed = runInParallel(soupEntryIds.length, new BlobChunkProcessor() {
+			@Override
+			public void process(int start, int end) {
+				for (int i = start; i < end && success.get(); i++) {
+					if (!saveSoupBlobFromString(soupTableName, soupEntryIds[i], soupEltStrs[i], encryptionKey)) {
+						success.set(false);
+					}
+				}
+			}
+		});
+		return completed && success.get();
+	}
+
+	/**
+	 * Retrieves a batch of soup blobs from file storage.
+	 * Blobs are read and decrypted in parallel on a bounded pool of threads (the calling thread takes its share),
+	 * the call returns once all the blobs have been read.
+	 *
+	 * @param soupTableName Soup name to which the blobs belong.
+	 * @param soupEntryIds Entry ids for the requested soup blobs.
+	 * @param encryptionKey Key with which to decrypt the data.
+	 *
+	 * @return Map of entry id to blob represented as String. Blobs that could not be read are missing from the map.
+	 */
+	public Map<Long, String> loadSoupBlobsAsStrings(final String soupTableName, final List<Long> soupEntryIds, final String encryptionKey) {
+		final Map<Long, String> results = new ConcurrentHashMap<>();
+		runInParallel(soupEntryIds.size(), new BlobChunkProcessor() {
+			@Override
+			public void process(int start, int end) {
+				for (int i = start; i < end; i++) {
+					long soupEntryId = soupEntryIds.get(i);
+					String soupEltStr = loadSoupBlobAsString(soupTableName, soupEntryId, encryptionKey);
+					if (soupEltStr != null) {
+						results.put(soupEntryId, soupEltStr);
+					}
+				}
+			}
+		});
+		return results;
+	}
+
 	/**
 	 * Retrieves the soup blob for the given soup entry id from file storage.
 	 *
@@ -681,12 +815,17 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 */
 	public String loadSoupBlobAsString(String soupTableName, long soupEntryId, String encryptionKey) {
 		File file = getSoupBlobFile(soupTableName, soupEntryId);
-		try (FileInputStream f = new FileInputStream(file)) {
-			DataInputStream data = new DataInputStream(f);
-			byte[] bytes = new byte[(int) file.length()];
-			data.readFully(bytes);
-			return Encryptor.decrypt(bytes, encryptionKey);
-		} catch (IOException ex) {
+		try (InputStream in = openBlobInputStream(file)) {
+			// Decrypts as it reads through the file channel (the whole encrypted blob is never in memory)
+			Reader reader = new InputStreamReader(Encryptor.getDecryptingInputStream(in, encryptionKey), UTF8);
+			StringBuilder soupEltStr = new StringBuilder((int) file.length());
+			char[] buffer = new char[BLOB_BUFFER_SIZE];
+			int count;
+			while ((count = reader.read(buffer)) >= 0) {
+				soupEltStr.append(buffer, 0, count);
+			}
+			return soupEltStr.toString();
+		} catch (IOException | GeneralSecurityException ex) {
             SmartStoreLogger.e(TAG, "Exception occurred while attempting to read external soup blob", ex);
 		}
 		return null;
@@ -710,6 +849,23 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		return success;
 	}
 
+	/**
+	 * Removes the blobs represented by the given list of soup entry ids from external storage on a background thread.
+	 *
+	 * @param soupTableName Soup name to which the blobs belong.
+	 * @param soupEntryIds List of soup entry ids to delete.
+	 */
+	public void removeSoupBlobsInBackground(final String soupTableName, final Long[] soupEntryIds) {
+		getBlobIOExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!removeSoupBlob(soupTableName, soupEntryIds)) {
+					SmartStoreLogger.w(TAG, "Could not remove all external soup blobs of " + soupTableName);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Returns a file that the soup data is stored in for the given soup name and entry id.
 	 *
@@ -721,4 +877,77 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	public File getSoupBlobFile(String soupTableName, long soupEntryId) {
 		return new File(getExternalSoupBlobsPath(soupTableName), SOUP_ELEMENT_PREFIX + soupEntryId);
 	}
+
+	/**
+	 * Processes a slice [start, end) of a batch of blobs
+	 */
+	private interface BlobChunkProcessor {
+		void process(int start, int end);
+	}
+
+	/**
+	 * Splits a batch of count blobs in slices processed in parallel on the blob I/O threads and the calling thread
+	 *
+	 * @param count Number of blobs in the batch.
+	 * @param processor Processor for one slice.
+	 *
+	 * @return True if all slices were processed, false if one failed or the calling thread was interrupted.
+	 */
+	private static boolean runInParallel(int count, BlobChunkProcessor processor) {
+		int numberSlices = Math.min(BLOB_IO_THREADS + 1, (count + MIN_BLOBS_PER_TASK - 1) / MIN_BLOBS_PER_TASK);
+		if (numberSlices <= 1) {
+			processor.process(0, count);
+			return true;
+		}
+		int sliceSize = (count + numberSlices - 1) / numberSlices;
+		List<Future<Void>> futures = new ArrayList<>();
+		for (int start = sliceSize; start < count; start += sliceSize) {
+			futures.add(getBlobIOExecutor().submit(newSliceTask(processor, start, Math.min(count, start + sliceSize))));
+		}
+		processor.process(0, sliceSize);
+		boolean completed = true;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				completed = false;
+			} catch (ExecutionException e) {
+				SmartStoreLogger.e(TAG, "Exception occurred while processing external soup blobs", e.getCause());
+				completed = false;
+			}
+		}
+		return completed;
+	}
+
+	private static Callable<Void> newSliceTask(final BlobChunkProcessor processor, final int start, final int end) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() {
+				processor.process(start, end);
+				return null;
+			}
+		};
+	}
+
+	private static synchronized ExecutorService getBlobIOExecutor() {
+		if (blobIOExecutor == null) {
+			blobIOExecutor = Executors.newFixedThreadPool(BLOB_IO_THREADS);
+		}
+		return blobIOExecutor;
+	}
+
+	/**
+	 * Opens a buffered stream reading the file through its FileChannel
+	 */
+	private static InputStream openBlobInputStream(File file) throws IOException {
+		return new BufferedInputStream(Channels.newInputStream(new FileInputStream(file).getChannel()), BLOB_BUFFER_SIZE);
+	}
+
+	/**
+	 * Opens a buffered stream writing the file through its FileChannel
+	 */
+	private static OutputStream openBlobOutputStream(File file) throws IOException {
+		return new BufferedOutputStream(Channels.newOutputStream(new FileOutputStream(file, false).getChannel()), BLOB_BUFFER_SIZE);
+	}
 }
@@ -44,17 +44,27 @@ public class IndexSpec {
     public final String path;
     public final Type type;
     public final String columnName;
+    private final JsonPath jsonPath;
 
     public IndexSpec(String path, Type type) {
         this.path = path;
         this.type = type;
         this.columnName = null; // undefined
+        this.jsonPath = JsonPath.compile(path);
     }
 
     public IndexSpec(String path, Type type, String columnName) {
         this.path = path;
         this.type = type;
         this.columnName = columnName;
+        this.jsonPath = JsonPath.compile(path);
+    }
+
+    /**
+     * @return compiled path (to project soup elements without parsing path every time)
+     */
+    public JsonPath getJsonPath() {
+        return jsonPath;
     }
 
     @Override
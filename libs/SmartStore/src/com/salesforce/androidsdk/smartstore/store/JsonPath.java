@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-compiled path into a soup element (e.g. "Owner.Name")
+ * Compiled once per IndexSpec so projecting does not need to parse the path again
+ * and does not allocate anything unless it goes through arrays
+ */
+public class JsonPath {
+
+    private final String path;
+    private final String[] pathElements;
+
+    private JsonPath(String path, String[] pathElements) {
+        this.path = path;
+        this.pathElements = pathElements;
+    }
+
+    /**
+     * Compile path
+     * NB: same splitting as String.split("[.]") i.e. trailing empty elements are dropped
+     *
+     * @param path dot separated path (null or empty for the whole soup element)
+     * @return compiled path
+     */
+    public static JsonPath compile(String path) {
+        List<String> pathElements = new ArrayList<>();
+        if (path != null && !path.isEmpty()) {
+            int start = 0;
+            int end;
+            while ((end = path.indexOf('.', start)) >= 0) {
+                pathElements.add(path.substring(start, end));
+                start = end + 1;
+            }
+            pathElements.add(path.substring(start));
+            while (!pathElements.isEmpty() && pathElements.get(pathElements.size() - 1).isEmpty()) {
+                pathElements.remove(pathElements.size() - 1);
+            }
+        }
+        return new JsonPath(path, pathElements.toArray(new String[0]));
+    }
+
+    /**
+     * @return path this was compiled from
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Return object at path in soup (arrays along the way are fanned out into arrays of results)
+     * Same as SmartStore.project(soup, path)
+     *
+     * @param soup
+     * @return object at path or null if there is none
+     */
+    public Object project(JSONObject soup) {
+        if (soup == null) {
+            return null;
+        }
+        return project(soup, 0);
+    }
+
+    private Object project(Object jsonObj, int index) {
+        Object current = jsonObj;
+        for (int i = index; i < pathElements.length; i++) {
+            if (current instanceof JSONObject) {
+                current = ((JSONObject) current).opt(pathElements[i]);
+                if (current == JSONObject.NULL) {
+                    return null;
+                }
+            } else if (current instanceof JSONArray) {
+                return projectArray((JSONArray) current, i);
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    private Object projectArray(JSONArray jsonArr, int index) {
+        JSONArray result = null;
+        for (int i = 0; i < jsonArr.length(); i++) {
+            Object arrayElt = jsonArr.opt(i);
+            Object resultPart = (arrayElt == null || arrayElt == JSONObject.NULL) ? null : project(arrayElt, index);
+            if (resultPart != null) {
+                if (result == null) {
+                    result = new JSONArray();
+                }
+                result.put(resultPart);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
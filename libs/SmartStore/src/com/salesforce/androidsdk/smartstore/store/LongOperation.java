@@ -35,7 +35,8 @@ public abstract class LongOperation {
      * Enum for long operations types
      */
     public enum LongOperationType {
-    	alterSoup(AlterSoupLongOperation.class);
+    	alterSoup(AlterSoupLongOperation.class),
+    	reIndexSoup(ReIndexSoupLongOperation.class);
     	
     	private Class<? extends LongOperation> operationClass;
 
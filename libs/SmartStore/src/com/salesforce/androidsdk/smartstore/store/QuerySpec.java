@@ -35,6 +35,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -457,6 +458,86 @@ public class QuerySpec {
 		return "{" + soupName + ":" + field + "}";
 	}
 
+    /**
+     * @return true if the query can be paged with keyset (seek) pagination
+     * i.e. it is an exact/like/range/all query with an orderPath
+     */
+    public boolean supportsKeysetPagination() {
+        return orderPath != null
+                && (queryType == QueryType.exact || queryType == QueryType.like || queryType == QueryType.range);
+    }
+
+    /**
+     * Compute smartSql for keyset (seek) pagination
+     * Rows are ordered by orderPath then _soupEntryId and the last two columns returned are the orderPath value and the _soupEntryId
+     * Rows returned come after the given keyset
+     *
+     * @param after keyset of the last row of the previous page or null for the first page
+     * @return smartSql
+     */
+    public String computeKeysetSmartSql(Keyset after) {
+        if (!supportsKeysetPagination()) {
+            throw new SmartStoreException("Keyset pagination not supported for query: " + smartSql);
+        }
+        String orderField = computeFieldReference(orderPath);
+        String idField = computeFieldReference(SmartStore.SOUP_ENTRY_ID);
+        String selectClause = computeSelectClause().trim() + ", " + orderField + ", " + idField + " ";
+        String whereClause = computeWhereClause();
+        if (after != null) {
+            String keysetPred = computeKeysetPredicate(orderField, idField, after);
+            whereClause = (whereClause.equals("") ? WHERE : whereClause + "AND ") + keysetPred + " ";
+        }
+        String sqlOrder = getKeysetOrder().sql;
+        String orderClause = ORDER_BY + orderField + " " + sqlOrder + ", " + idField + " " + sqlOrder + " ";
+        return selectClause + computeFromClause() + whereClause + orderClause;
+    }
+
+    /**
+     * @param after keyset of the last row of the previous page or null for the first page
+     * @return args going with the sql returned by computeKeysetSmartSql
+     */
+    public String[] getKeysetArgs(Keyset after) {
+        List<String> args = new ArrayList<>();
+        String[] queryArgs = getArgs();
+        if (queryArgs != null) {
+            args.addAll(Arrays.asList(queryArgs));
+        }
+        if (after != null) {
+            if (after.orderValue != null) {
+                args.add(after.orderValue.toString());
+                args.add(after.orderValue.toString());
+            }
+            args.add(Long.toString(after.soupEntryId));
+        }
+        return args.size() == 0 ? null : args.toArray(new String[0]);
+    }
+
+    /**
+     * NULLs come first in ascending order and last in descending order
+     * @return predicate selecting rows that come after the given keyset
+     */
+    private String computeKeysetPredicate(String orderField, String idField, Keyset after) {
+        // Args are bound as text: integer values are cast back so that they compare as integers (e.g. with json_extract values that have no affinity)
+        String value = after.orderValue instanceof Long ? "CAST(? AS INTEGER)" : "?";
+        if (getKeysetOrder() == Order.ascending) {
+            if (after.orderValue != null) {
+                return "(" + orderField + " > " + value + " OR (" + orderField + " = " + value + " AND " + idField + " > ?))";
+            } else {
+                return "((" + orderField + " IS NULL AND " + idField + " > ?) OR " + orderField + " IS NOT NULL)";
+            }
+        } else {
+            if (after.orderValue != null) {
+                return "(" + orderField + " < " + value + " OR (" + orderField + " = " + value + " AND " + idField + " < ?) OR " + orderField + " IS NULL)";
+            } else {
+                return "(" + orderField + " IS NULL AND " + idField + " < ?)";
+            }
+        }
+    }
+
+    private Order getKeysetOrder() {
+        return order == null ? Order.ascending : order;
+    }
+
     /**
      * @return args going with the sql predicate returned by getKeyPredicate
      */
@@ -517,6 +598,23 @@ public class QuerySpec {
 		return querySpec;
 	}
 
+	/**
+	 * Position of a row in the results of a query used for keyset (seek) pagination:
+	 * value of the orderPath (a String or a Long, null if the row has no value for it) and soup entry id of the row
+	 */
+	public static class Keyset {
+		public final Object orderValue;
+		public final long soupEntryId;
+
+		public Keyset(Object orderValue, long soupEntryId) {
+			if (orderValue != null && !(orderValue instanceof String) && !(orderValue instanceof Long)) {
+				throw new SmartStoreException("Keyset order value must be a String or a Long: " + orderValue);
+			}
+			this.orderValue = orderValue;
+			this.soupEntryId = soupEntryId;
+		}
+	}
+
 	/**
      * Query type enum
      */
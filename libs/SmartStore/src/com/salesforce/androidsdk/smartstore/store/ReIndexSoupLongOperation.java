@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import android.content.ContentValues;
+
+import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Class taking care of chunked re-index of a soup
+ * Two entry points:
+ * - new ReIndexSoupLongOperation(...) + run() => when asked to reIndexSoup with a chunk size in SmartStore
+ * - LongOperation.getOperation(...) + run() => when completing interrupted long operations when opening the database
+ *
+ * Each chunk is re-indexed in its own transaction, which also records the soup entry id of the last
+ * soup element re-indexed (high-water mark) in the status column of the long operations status table.
+ */
+public class ReIndexSoupLongOperation extends LongOperation {
+
+	// Fields of details for re-index soup long operation row in long_operations_status table
+	private static final String SOUP_NAME = "soupName";
+	private static final String INDEX_PATHS = "indexPaths";
+	private static final String CHUNK_SIZE = "chunkSize";
+	public static final String TAG = "ReIndexSoup:Status";
+
+	// Soup being re-indexed
+	private String soupName;
+
+	// Paths being re-indexed
+	private String[] indexPaths;
+
+	// Number of soup elements re-indexed per transaction
+	private int chunkSize;
+
+	// Soup entry id of last soup element re-indexed
+	private long highWaterMark;
+
+	// Instance of smartstore
+	private SmartStore store;
+
+	// Underlying database
+	private SQLiteDatabase db;
+
+	// Row id for long_operations_status
+	private long rowId;
+
+	/**
+	 * Default constructor when reading back from long operations status table
+	 * Should be followed by a call to: initFromDbRow
+	 */
+	public ReIndexSoupLongOperation() {
+
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param store
+	 * @param soupName
+	 * @param indexPaths
+	 * @param chunkSize
+	 * @throws JSONException
+	 */
+	public ReIndexSoupLongOperation(SmartStore store, String soupName, String[] indexPaths, int chunkSize) throws JSONException {
+		if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+		this.store = store;
+		this.db = store.getDatabase();
+		this.soupName = soupName;
+		this.indexPaths = indexPaths;
+		this.chunkSize = chunkSize;
+		this.highWaterMark = -1;
+		synchronized(db) {
+			// Create row in long operations status table - auto commit
+			this.rowId = createLongOperationDbRow();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.salesforce.androidsdk.smartstore.store.LongOperation#run()
+	 */
+	@Override
+	public void run() {
+		boolean done = false;
+		while (!done) {
+			// Lock is only held for one chunk at a time
+			synchronized(db) {
+				db.beginTransaction();
+				try {
+					long lastSoupEntryId = store.reIndexSoupChunk(soupName, indexPaths, highWaterMark, chunkSize);
+					done = lastSoupEntryId < 0;
+					if (done) {
+						deleteLongOperationDbRow();
+					} else {
+						updateLongOperationDbRow(lastSoupEntryId);
+					}
+					db.setTransactionSuccessful();
+					if (!done) {
+						highWaterMark = lastSoupEntryId;
+					}
+				} finally {
+					db.endTransaction();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return soup entry id of last soup element re-indexed (-1 if none were)
+	 */
+	public long getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.salesforce.androidsdk.smartstore.store.LongOperation#initFromDbRow(com.salesforce.androidsdk.smartstore.store.SmartStore, long, org.json.JSONObject, java.lang.String)
+	 */
+	@Override
+	protected void initFromDbRow(SmartStore store, long rowId, JSONObject details, String statusStr) throws JSONException {
+		this.store = store;
+		this.db = store.getDatabase();
+		this.rowId = rowId;
+		this.highWaterMark = Long.parseLong(statusStr);
+		this.soupName = details.getString(SOUP_NAME);
+		JSONArray indexPathsJson = details.getJSONArray(INDEX_PATHS);
+		this.indexPaths = new String[indexPathsJson.length()];
+		for (int i = 0; i < indexPathsJson.length(); i++) {
+			this.indexPaths[i] = indexPathsJson.getString(i);
+		}
+		this.chunkSize = details.getInt(CHUNK_SIZE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.salesforce.androidsdk.smartstore.store.LongOperation#getDetails()
+	 */
+	@Override
+	public JSONObject getDetails() throws JSONException {
+		JSONObject details = new JSONObject();
+		details.put(SOUP_NAME, soupName);
+		JSONArray indexPathsJson = new JSONArray();
+		for (String indexPath : indexPaths) {
+			indexPathsJson.put(indexPath);
+		}
+		details.put(INDEX_PATHS, indexPathsJson);
+		details.put(CHUNK_SIZE, chunkSize);
+		return details;
+	}
+
+	/**
+	 * Create row in long operations status table for a new re-index soup operation
+	 * @return
+	 * @throws JSONException
+	 */
+	protected long createLongOperationDbRow() throws JSONException {
+		Long now = System.currentTimeMillis();
+		ContentValues contentValues = new ContentValues();
+		contentValues.put(SmartStore.TYPE_COL, LongOperationType.reIndexSoup.toString());
+		contentValues.put(SmartStore.STATUS_COL, highWaterMark + "");
+		contentValues.put(SmartStore.DETAILS_COL, getDetails().toString());
+		contentValues.put(SmartStore.CREATED_COL, now);
+		contentValues.put(SmartStore.LAST_MODIFIED_COL, now);
+		SmartStoreLogger.i(TAG, soupName + " " + highWaterMark);
+		return DBHelper.getInstance(db).insert(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, contentValues);
+	}
+
+	/**
+	 * Update row in long operations status table with new high-water mark
+	 * @param newHighWaterMark
+	 */
+	protected void updateLongOperationDbRow(long newHighWaterMark) {
+		Long now = System.currentTimeMillis();
+		ContentValues contentValues = new ContentValues();
+		contentValues.put(SmartStore.STATUS_COL, newHighWaterMark + "");
+		contentValues.put(SmartStore.LAST_MODIFIED_COL, now);
+		DBHelper.getInstance(db).update(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, contentValues, SmartStore.ID_PREDICATE, rowId + "");
+		SmartStoreLogger.d(TAG, soupName + " " + newHighWaterMark);
+	}
+
+	/**
+	 * Delete row in long operations status table once re-index is complete
+	 */
+	protected void deleteLongOperationDbRow() {
+		DBHelper.getInstance(db).delete(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, SmartStore.ID_PREDICATE, rowId + "");
+		SmartStoreLogger.i(TAG, soupName + " done");
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+
+import net.sqlcipher.Cursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pool of read-only connections to a SmartStore database running in write-ahead logging (WAL) mode
+ *
+ * Queries run on those connections without holding the database monitor, so they run in parallel with each other
+ * and with the writer (writes still go through the main connection under synchronized(db))
+ * Connections are opened directly on the database file, with the same key and key settings as the main connection
+ * A query holds the shared lock for as long as it uses a connection
+ * Operations that invalidate what the connections have cached (drop soup, alter soup, rekey) take the exclusive lock
+ */
+public class ReadConnectionPool {
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 3;
+
+	// How long a query waits for a connection to be released before checking the pool again
+	private static final long WAIT_SLICE_MILLIS = 50;
+
+	// Pools by database path
+	private static final Map<String, ReadConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+	private final String path;
+	private final int maxConnections;
+	private String encryptionKey; // guarded by connections
+	private boolean closed; // guarded by connections
+	private final List<SQLiteDatabase> connections = new ArrayList<>();
+	private final Deque<SQLiteDatabase> idleConnections = new ArrayDeque<>(); // guarded by connections
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Returns the pool for the database at the given path
+	 *
+	 * @param path
+	 * @return pool or null if concurrent reads are not enabled for that database
+	 */
+	public static ReadConnectionPool getPool(String path) {
+		return POOLS.get(path);
+	}
+
+	/**
+	 * Create pool for database (if there isn't one already)
+	 * NB: database should already be in WAL mode
+	 *
+	 * @param db main (writable) connection
+	 * @param encryptionKey
+	 * @param maxConnections
+	 * @return pool
+	 */
+	static ReadConnectionPool open(SQLiteDatabase db, String encryptionKey, int maxConnections) {
+		synchronized (POOLS) {
+			ReadConnectionPool pool = POOLS.get(db.getPath());
+			if (pool == null) {
+				pool = new ReadConnectionPool(db.getPath(), encryptionKey, maxConnections);
+				POOLS.put(db.getPath(), pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Close pool for database at the given path (if there is one)
+	 * Waits for queries in flight to complete (only holding that pool's lock while doing so)
+	 *
+	 * @param path
+	 */
+	static void close(String path) {
+		final ReadConnectionPool pool;
+		synchronized (POOLS) {
+			pool = POOLS.remove(path);
+		}
+		if (pool != null) {
+			pool.lockExclusive();
+			try {
+				synchronized (pool.connections) {
+					pool.closed = true;
+				}
+				pool.closeConnections();
+			} finally {
+				pool.unlockExclusive();
+			}
+		}
+	}
+
+	private ReadConnectionPool(String path, String encryptionKey, int maxConnections) {
+		this.path = path;
+		this.encryptionKey = encryptionKey;
+		this.maxConnections = Math.max(1, maxConnections);
+	}
+
+	/**
+	 * @return max number of connections
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Get a connection for a query (opening one if all are in use and max number of connections has not been reached,
+	 * waiting for one to be released otherwise)
+	 * Holds the shared lock until the connection is released, but not while waiting for a connection
+	 * (so that close and rekey are not blocked by queries waiting for a connection)
+	 *
+	 * @return connection or null if pool was closed
+	 */
+	SQLiteDatabase acquire() {
+		while (true) {
+			lock.readLock().lock();
+			boolean keepLock = false;
+			try {
+				synchronized (connections) {
+					if (closed) {
+						return null;
+					}
+					SQLiteDatabase connection = idleConnections.poll();
+					if (connection == null && connections.size() < maxConnections) {
+						connection = openConnection();
+					}
+					if (connection != null) {
+						keepLock = true;
+						return connection;
+					}
+				}
+			} finally {
+				if (!keepLock) {
+					lock.readLock().unlock();
+				}
+			}
+
+			// All connections in use: waiting for one to be released without holding the shared lock
+			synchronized (connections) {
+				if (idleConnections.isEmpty() && !closed) {
+					try {
+						connections.wait(WAIT_SLICE_MILLIS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SmartStoreException("Interrupted while waiting for a read connection");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hand back connection obtained from acquire and release shared lock
+	 *
+	 * @param connection
+	 */
+	void release(SQLiteDatabase connection) {
+		synchronized (connections) {
+			idleConnections.offer(connection);
+			connections.notifyAll();
+		}
+		lock.readLock().unlock();
+	}
+
+	/**
+	 * Wait for all queries in flight to complete and block new ones until unlockExclusive is called
+	 * NB: to avoid deadlock, caller should already have synchronized(db) on the main connection
+	 */
+	void lockExclusive() {
+		lock.writeLock().lock();
+	}
+
+	/**
+	 * Let queries run again
+	 */
+	void unlockExclusive() {
+		lock.writeLock().unlock();
+	}
+
+	/**
+	 * Remove soup from the caches of all connections
+	 * NB: caller should have called lockExclusive
+	 *
+	 * @param soupName
+	 */
+	void removeFromCaches(String soupName) {
+		synchronized (connections) {
+			for (SQLiteDatabase connection : connections) {
+				DBHelper.getInstance(connection).removeFromCache(soupName);
+			}
+		}
+	}
+
+	/**
+	 * Close all connections (new ones will be opened with the new key when needed)
+	 * NB: caller should have called lockExclusive
+	 *
+	 * @param newEncryptionKey
+	 */
+	void reset(String newEncryptionKey) {
+		closeConnections();
+		synchronized (connections) {
+			encryptionKey = newEncryptionKey;
+		}
+	}
+
+	/**
+	 * Open a new read-only connection on the database file
+	 * Uses the same key and key settings (DBOpenHelper.DBHook) as the main connection and checks that the database is in WAL mode
+	 * NB: caller should hold the connections monitor
+	 *
+	 * @return connection
+	 */
+	private SQLiteDatabase openConnection() {
+		final SQLiteDatabase connection = SQLiteDatabase.openDatabase(path, encryptionKey, null, SQLiteDatabase.OPEN_READONLY, new DBOpenHelper.DBHook());
+		final String journalMode;
+		try {
+			journalMode = getJournalMode(connection);
+		} catch (RuntimeException e) {
+			connection.close();
+			throw e;
+		}
+		if (!"wal".equalsIgnoreCase(journalMode)) {
+			connection.close();
+			throw new SmartStoreException("Read connections require write-ahead logging, journal mode is: " + journalMode);
+		}
+
+		// Each connection is only used by one thread at a time
+		connection.setLockingEnabled(false);
+		connections.add(connection);
+		return connection;
+	}
+
+	private static String getJournalMode(SQLiteDatabase connection) {
+		Cursor cursor = null;
+		try {
+			cursor = connection.rawQuery("PRAGMA journal_mode", null);
+			return cursor.moveToFirst() ? cursor.getString(0) : null;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	private void closeConnections() {
+		synchronized (connections) {
+			for (SQLiteDatabase connection : connections) {
+				DBHelper.removeInstance(connection);
+				SmartSqlHelper.removeInstance(connection);
+				connection.close();
+			}
+			connections.clear();
+			idleConnections.clear();
+			connections.notifyAll();
+		}
+	}
+}
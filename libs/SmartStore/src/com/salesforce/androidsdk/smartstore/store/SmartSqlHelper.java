@@ -26,9 +26,9 @@
  */
 package com.salesforce.androidsdk.smartstore.store;
 
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,7 +44,7 @@ import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException
 public class SmartSqlHelper  {
 
 	public static final Pattern SOUP_PATH_PATTERN = Pattern.compile("\\{([^}]+)\\}");
-	private static Map<SQLiteDatabase, SmartSqlHelper> INSTANCES;
+	private static final ConcurrentMap<SQLiteDatabase, SmartSqlHelper> INSTANCES = new ConcurrentHashMap<>();
 
 	/**
 	 * Returns the instance of this class associated with the database specified.
@@ -52,22 +52,32 @@ public class SmartSqlHelper  {
 	 * @param db Database.
 	 * @return Instance of this class.
 	 */
-	public static synchronized SmartSqlHelper getInstance(SQLiteDatabase db) {
-		if (INSTANCES == null) {
-			INSTANCES = new HashMap<>();
-		}
+	public static SmartSqlHelper getInstance(SQLiteDatabase db) {
 		SmartSqlHelper instance = INSTANCES.get(db);
 		if (instance == null) {
-			instance = new SmartSqlHelper();
-			INSTANCES.put(db, instance);
+			final SmartSqlHelper newInstance = new SmartSqlHelper();
+			instance = INSTANCES.putIfAbsent(db, newInstance);
+			if (instance == null) {
+				instance = newInstance;
+			}
 		}
 		return instance;
 	}
 
+	/**
+	 * Forgets the instance associated with the database specified (if any).
+	 *
+	 * @param db Database.
+	 */
+	static void removeInstance(SQLiteDatabase db) {
+		INSTANCES.remove(db);
+	}
+
     public static final String SOUP = "_soup";
 	
 	/**
 	 * Convert "smart" sql query to actual sql
+	 * Converted sql is cached by DBHelper (until the soups it references are dropped or altered)
 	 * A "smart" sql query is a query where columns are of the form {soupName:path} and tables are of the form {soupName}
 	 * 
 	 * NB: only select's are allowed
@@ -79,6 +89,10 @@ public class SmartSqlHelper  {
 	 * @return actual sql     
 	 */
 	public String convertSmartSql(SQLiteDatabase db, String smartSql) {
+		String cachedSql = DBHelper.getInstance(db).getCachedConvertedSql(smartSql);
+		if (cachedSql != null) {
+			return cachedSql;
+		}
 
 		// Select's only
 		String smartSqlLowerCase = smartSql.toLowerCase(Locale.getDefault()).trim();
@@ -148,6 +162,7 @@ public class SmartSqlHelper  {
 		sqlStr = sqlStr.replaceAll("([^ ]+)\\.json_extract\\(soup", "json_extract($1.soup");
 
 		// Done
+		DBHelper.getInstance(db).cacheConvertedSql(smartSql, sqlStr);
 		return sqlStr;
 	}
 	
@@ -30,25 +30,39 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import androidx.annotation.NonNull;
 import android.text.TextUtils;
+import android.util.Base64;
 
 import com.salesforce.androidsdk.analytics.EventBuilderHelper;
 import com.salesforce.androidsdk.app.SalesforceSDKManager;
 import com.salesforce.androidsdk.smartstore.store.LongOperation.LongOperationType;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec.QueryType;
 import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
-import com.salesforce.androidsdk.util.JSONObjectHelper;
 
 import net.sqlcipher.database.SQLiteDatabase;
 import net.sqlcipher.database.SQLiteOpenHelper;
+import net.sqlcipher.database.SQLiteStatement;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -79,12 +93,20 @@ public class SmartStore  {
 	// Fts table suffix
 	public static final String FTS_SUFFIX = "_fts";
 
+	// Change journal table suffix (only for soups with the change journal feature)
+	public static final String JOURNAL_SUFFIX = "_journal";
+
 	// Table to keep track of soup's index specs
     public static final String SOUP_INDEX_MAP_TABLE = "soup_index_map";
 
     // Table to keep track of status of long operations in flight
     protected static final String LONG_OPERATIONS_STATUS_TABLE = "long_operations_status";
 
+    // Temporary tables (connection specific and never persisted) used to stage bulk deletes
+    protected static final String BULK_DELETE_IDS_TABLE = "temp.bulk_delete_ids";
+    protected static final String BULK_DELETE_VALUES_TABLE = "temp.bulk_delete_values";
+    protected static final String VALUE_COL = "value";
+
     // Columns of the soup index map table
     public static final String SOUP_NAME_COL = "soupName";
     public static final String PATH_COL = "path";
@@ -96,6 +118,7 @@ public class SmartStore  {
     protected static final String CREATED_COL = "created";
     protected static final String LAST_MODIFIED_COL = "lastModified";
     protected static final String SOUP_COL = "soup";
+    protected static final String CONTENT_HASH_COL = "contentHash"; // only for soups with the content hash feature
 
 	// Column of a fts soup table
 	protected static final String ROWID_COL = "rowid";
@@ -115,6 +138,15 @@ public class SmartStore  {
 	protected static final String ID_PREDICATE = ID_COL + " = ?";
 	protected static final String ROWID_PREDICATE = ROWID_COL + " =?";
 
+	// Number of trailing columns added to results of keyset pagination queries (order path value and soup entry id)
+	private static final int KEYSET_COLUMNS = 2;
+
+	// Max number of externally stored soup elements held in memory at once while writing query results
+	private static final int SOUP_BLOBS_WINDOW_SIZE = 16;
+
+	// Max number of arguments bound in a single IN (...) predicate (sqlite limit is 999)
+	protected static final int MAX_IN_ARGS = 500;
+
 	// Backing database
 	protected SQLiteDatabase dbLocal;
 	protected SQLiteOpenHelper dbOpenHelper;
@@ -126,6 +158,9 @@ public class SmartStore  {
 	// background executor
 	private final ExecutorService threadPool = Executors.newFixedThreadPool(1);
 
+	// Ids of externally stored soup elements deleted by bulk deletes, by soup name - blobs are removed once no transaction is in progress (guarded by db)
+	private final Map<String, List<Long>> soupNameToDeletedBlobIds = new HashMap<>();
+
 	/**
      * Changes the encryption key on the smartstore.
      *
@@ -136,8 +171,16 @@ public class SmartStore  {
     public static synchronized void changeKey(SQLiteDatabase db, String oldKey, String newKey) {
     	synchronized(db) {
 	        if (newKey != null && !newKey.trim().equals("")) {
-	            db.execSQL("PRAGMA rekey = '" + newKey + "'");
-	            DBOpenHelper.reEncryptAllFiles(db, oldKey, newKey);
+	        	// Read connections can't be used once the database is rekeyed
+	        	final ReadConnectionPool pool = ReadConnectionPool.getPool(db.getPath());
+	        	if (pool != null) pool.lockExclusive();
+	        	try {
+		            db.execSQL("PRAGMA rekey = '" + newKey + "'");
+		            DBOpenHelper.reEncryptAllFiles(db, oldKey, newKey);
+		            if (pool != null) pool.reset(newKey);
+	        	} finally {
+	        		if (pool != null) pool.unlockExclusive();
+	        	}
 	        }
     	}
     }
@@ -234,6 +277,57 @@ public class SmartStore  {
         }
     }
 
+	/**
+	 * Turn on concurrent reads: the database is switched to write-ahead logging (WAL) and queries (query, queryAsString, countQuery etc)
+	 * run on a small pool of read-only connections instead of waiting for the main connection, so they no longer block on
+	 * (or get blocked by) writes such as a sync down in progress
+	 * Writes still go through the main connection under synchronized(db)
+	 * NB: applies to all SmartStore instances on that database, a query run while holding synchronized(db) (e.g. inside a transaction)
+	 *     still uses the main connection so it sees uncommitted changes
+	 *
+	 * @param maxReadConnections max number of read-only connections (see {@link ReadConnectionPool#DEFAULT_MAX_CONNECTIONS})
+	 */
+	public void enableConcurrentReads(int maxReadConnections) {
+		if (dbOpenHelper == null) {
+			throw new SmartStoreException("Concurrent reads are only supported for stores backed by a SQLiteOpenHelper");
+		}
+		final SQLiteDatabase db = getDatabase();
+		synchronized(db) {
+			if (!queryPragma("journal_mode = WAL").contains("wal")) {
+				throw new SmartStoreException("Could not turn on write-ahead logging");
+			}
+			ReadConnectionPool.open(db, encryptionKey, maxReadConnections);
+		}
+	}
+
+	/**
+	 * Turn off concurrent reads (waits for queries in flight on read-only connections)
+	 * The database goes back to rollback journal mode
+	 */
+	public void disableConcurrentReads() {
+		final SQLiteDatabase db = getDatabase();
+		synchronized(db) {
+			ReadConnectionPool.close(db.getPath());
+			queryPragma("journal_mode = DELETE");
+		}
+	}
+
+	/**
+	 * @return true if concurrent reads are turned on for the database
+	 */
+	public boolean isConcurrentReadsEnabled() {
+		return ReadConnectionPool.getPool(getDatabase().getPath()) != null;
+	}
+
+	/**
+	 * @param db main connection
+	 * @return pool to run a query on or null if concurrent reads are off or if calling thread holds the database
+	 *         (it could be in the middle of a transaction and must see its own changes)
+	 */
+	private ReadConnectionPool getReadConnectionPoolForQuery(SQLiteDatabase db) {
+		return Thread.holdsLock(db) ? null : ReadConnectionPool.getPool(db.getPath());
+	}
+
 	/**
 	 * If turned on, explain query plan is run before executing a query and stored in lastExplainQueryPlan
 	 * and also get logged
@@ -273,7 +367,9 @@ public class SmartStore  {
      * End transaction (commit or rollback)
      */
     public void endTransaction() {
-    	getDatabase().endTransaction();
+    	final SQLiteDatabase db = getDatabase();
+    	db.endTransaction();
+    	removeDeletedSoupBlobs(db, true);
     }
 
     /**
@@ -367,6 +463,12 @@ public class SmartStore  {
 		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
 			features.put("ExternalStorage");
 		}
+		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_CONTENT_HASH)) {
+			features.put("ContentHash");
+		}
+		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_CHANGE_JOURNAL)) {
+			features.put("ChangeJournal");
+		}
 		final JSONObject attributes = new JSONObject();
 		try {
 			attributes.put("features", features);
@@ -405,6 +507,10 @@ public class SmartStore  {
         createTableStmt.append(", ").append(CREATED_COL).append(" INTEGER")
                         .append(", ").append(LAST_MODIFIED_COL).append(" INTEGER");
 
+        if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_CONTENT_HASH)) {
+            createTableStmt.append(", ").append(CONTENT_HASH_COL).append(" TEXT");
+        }
+
         final String createIndexFormat = "CREATE INDEX %s_%s_idx on %s ( %s )";
 
         for (String col : new String[]{CREATED_COL, LAST_MODIFIED_COL}) {
@@ -461,6 +567,13 @@ public class SmartStore  {
 			db.execSQL(createFtsStmt.toString());
 		}
 
+		// change journal (kept when a soup is altered, dropped if the feature was removed)
+		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_CHANGE_JOURNAL)) {
+			db.execSQL(String.format("CREATE TABLE IF NOT EXISTS %s%s (%s INTEGER PRIMARY KEY)", soupTableName, JOURNAL_SUFFIX, ID_COL));
+		} else {
+			db.execSQL("DROP TABLE IF EXISTS " + soupTableName + JOURNAL_SUFFIX);
+		}
+
         for (String createIndexStmt : createIndexStmts) {
             db.execSQL(createIndexStmt.toString());
         }
@@ -489,16 +602,14 @@ public class SmartStore  {
 
 	/**
 	 * Finish long operations that were interrupted
+	 * NB: each long operation takes the database lock itself (chunked ones only hold it one chunk at a time)
 	 */
 	public void resumeLongOperations() {
-		final SQLiteDatabase db = getDatabase();
-		synchronized(db) {
-			for (LongOperation longOperation :  getLongOperations()) {
-				try {
-					longOperation.run();
-				} catch (Exception e) {
-					SmartStoreLogger.e(TAG, "Unexpected error", e);
-				}
+		for (LongOperation longOperation :  getLongOperations()) {
+			try {
+				longOperation.run();
+			} catch (Exception e) {
+				SmartStoreLogger.e(TAG, "Unexpected error", e);
 			}
 		}
 	}
@@ -562,6 +673,7 @@ public class SmartStore  {
 	 */
 	public void alterSoup(String soupName, SoupSpec soupSpec, IndexSpec[] indexSpecs,
 			boolean reIndexData) throws JSONException {
+		// Each step takes the database lock (and read connection pool's exclusive lock if it changes the schema) itself
 		AlterSoupLongOperation operation = new AlterSoupLongOperation(this, soupName, soupSpec, indexSpecs, reIndexData);
 		operation.run();
 	}
@@ -579,81 +691,142 @@ public class SmartStore  {
 		synchronized(db) {
 	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
-
-	        // Getting index specs from indexPaths skipping json1 index specs
-			Map<String, IndexSpec> mapAllSpecs = IndexSpec.mapForIndexSpecs(getSoupIndexSpecs(soupName));
-			List<IndexSpec> indexSpecsList = new ArrayList<IndexSpec>();
-			for (String indexPath : indexPaths) {
-				if (mapAllSpecs.containsKey(indexPath)) {
-					IndexSpec indexSpec = mapAllSpecs.get(indexPath);
-					if (TypeGroup.value_extracted_to_column.isMember(indexSpec.type)) {
-						indexSpecsList.add(indexSpec);
-					}
-				}
-				else {
-                    SmartStoreLogger.w(TAG, "Can not re-index " + indexPath + " - it does not have an index");
-				}
-			}
-			IndexSpec[] indexSpecs = indexSpecsList.toArray(new IndexSpec[0]);
+			IndexSpec[] indexSpecs = getIndexSpecsToReIndex(soupName, indexPaths);
 			if (indexSpecs.length == 0) {
 				// Nothing to do
 				return;
 			}
 
-			boolean hasFts = IndexSpec.hasFTS(indexSpecs);
-
 			if (handleTx) {
 				db.beginTransaction();
 			}
-			Cursor cursor = null;
 			try {
-			    String[] projection;
-			    if (usesExternalStorage(soupName)) {
-			        projection = new String[] {ID_COL};
-			    } else {
-			        projection = new String[] {ID_COL, SOUP_COL};
-			    }
-			    cursor = DBHelper.getInstance(db).query(db, soupTableName, projection, null, null, null);
-			    if (cursor.moveToFirst()) {
-			        do {
-			        	String soupEntryId = cursor.getString(0);
-			        	try {
-			                JSONObject soupElt;
-			                if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-			                	soupElt = ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, Long.parseLong(soupEntryId), encryptionKey);
-			                } else {
-			                	String soupRaw = cursor.getString(1);
-			                	soupElt = new JSONObject(soupRaw);
-			                }
-			                ContentValues contentValues = new ContentValues();
-			                projectIndexedPaths(soupElt, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
-			                DBHelper.getInstance(db).update(db, soupTableName, contentValues, ID_PREDICATE, soupEntryId + "");
-
-							// Fts
-							if (hasFts) {
-								String soupTableNameFts = soupTableName + FTS_SUFFIX;
-								ContentValues contentValuesFts = new ContentValues();
-								projectIndexedPaths(soupElt, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
-								DBHelper.getInstance(db).update(db, soupTableNameFts, contentValuesFts, ROWID_PREDICATE, soupEntryId + "");
-							}
-			        	}
-			        	catch (JSONException e) {
-                            SmartStoreLogger.w(TAG, "Could not parse soup element " + soupEntryId, e);
-			        		// Should not have happen - just keep going
-			        	}
-			        }
-			        while (cursor.moveToNext());
-			    }
+				reIndexSoupElements(db, soupName, soupTableName, indexSpecs, -1, null);
 			} finally {
 				if (handleTx) {
 					db.setTransactionSuccessful();
 					db.endTransaction();
 				}
-			    safeClose(cursor);
 			}
 		}
 	}
 
+	/**
+	 * Re-index all soup elements for passed indexPaths, committing every chunkSize elements
+	 * The database lock is released between chunks (so that other operations can interleave)
+	 * and progress is recorded in the long operations status table (so that an interrupted
+	 * re-index is continued by resumeLongOperations instead of starting over)
+	 * NB: only indexPath that have IndexSpec on them will be indexed
+	 *
+	 * @param soupName
+	 * @param indexPaths
+	 * @param chunkSize number of soup elements re-indexed per transaction
+	 * @throws JSONException
+	 */
+	public void reIndexSoup(String soupName, String[] indexPaths, int chunkSize) throws JSONException {
+		new ReIndexSoupLongOperation(this, soupName, indexPaths, chunkSize).run();
+	}
+
+	/**
+	 * Re-index next chunk of soup elements for passed indexPaths
+	 * NB: should be called within a transaction
+	 *
+	 * @param soupName
+	 * @param indexPaths
+	 * @param afterSoupEntryId only soup elements with a greater soup entry id are re-indexed
+	 * @param chunkSize maximum number of soup elements to re-index
+	 * @return soup entry id of last soup element re-indexed or -1 if there was none left
+	 */
+	long reIndexSoupChunk(String soupName, String[] indexPaths, long afterSoupEntryId, int chunkSize) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized(db) {
+	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+			IndexSpec[] indexSpecs = getIndexSpecsToReIndex(soupName, indexPaths);
+			if (indexSpecs.length == 0) {
+				// Nothing to do
+				return -1;
+			}
+			return reIndexSoupElements(db, soupName, soupTableName, indexSpecs, afterSoupEntryId, chunkSize + "");
+		}
+	}
+
+	/**
+	 * Helper method for reIndexSoup
+	 * @return index specs (with columns) for passed indexPaths skipping json1 index specs
+	 */
+	private IndexSpec[] getIndexSpecsToReIndex(String soupName, String[] indexPaths) {
+		Map<String, IndexSpec> mapAllSpecs = IndexSpec.mapForIndexSpecs(getSoupIndexSpecs(soupName));
+		List<IndexSpec> indexSpecsList = new ArrayList<IndexSpec>();
+		for (String indexPath : indexPaths) {
+			if (mapAllSpecs.containsKey(indexPath)) {
+				IndexSpec indexSpec = mapAllSpecs.get(indexPath);
+				if (TypeGroup.value_extracted_to_column.isMember(indexSpec.type)) {
+					indexSpecsList.add(indexSpec);
+				}
+			}
+			else {
+                SmartStoreLogger.w(TAG, "Can not re-index " + indexPath + " - it does not have an index");
+			}
+		}
+		return indexSpecsList.toArray(new IndexSpec[0]);
+	}
+
+	/**
+	 * Helper method for reIndexSoup
+	 * Re-index soup elements with soup entry id greater than afterSoupEntryId in soup entry id order
+	 *
+	 * @return soup entry id of last soup element re-indexed or -1 if there was none
+	 */
+	private long reIndexSoupElements(SQLiteDatabase db, String soupName, String soupTableName, IndexSpec[] indexSpecs, long afterSoupEntryId, String limit) {
+		boolean hasFts = IndexSpec.hasFTS(indexSpecs);
+		long lastSoupEntryId = -1;
+		Cursor cursor = null;
+		try {
+		    String[] projection;
+		    if (usesExternalStorage(soupName)) {
+		        projection = new String[] {ID_COL};
+		    } else {
+		        projection = new String[] {ID_COL, SOUP_COL};
+		    }
+		    cursor = DBHelper.getInstance(db).query(db, soupTableName, projection, ID_COL, limit, ID_COL + " > ?", afterSoupEntryId + "");
+		    if (cursor.moveToFirst()) {
+		        do {
+		        	String soupEntryId = cursor.getString(0);
+		        	lastSoupEntryId = cursor.getLong(0);
+		        	try {
+		                JSONObject soupElt;
+		                if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
+		                	soupElt = ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, Long.parseLong(soupEntryId), encryptionKey);
+		                } else {
+		                	String soupRaw = cursor.getString(1);
+		                	soupElt = new JSONObject(soupRaw);
+		                }
+		                ContentValues contentValues = new ContentValues();
+		                projectIndexedPaths(soupElt, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
+		                DBHelper.getInstance(db).update(db, soupTableName, contentValues, ID_PREDICATE, soupEntryId + "");
+
+						// Fts
+						if (hasFts) {
+							String soupTableNameFts = soupTableName + FTS_SUFFIX;
+							ContentValues contentValuesFts = new ContentValues();
+							projectIndexedPaths(soupElt, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+							DBHelper.getInstance(db).update(db, soupTableNameFts, contentValuesFts, ROWID_PREDICATE, soupEntryId + "");
+						}
+		        	}
+		        	catch (JSONException e) {
+                        SmartStoreLogger.w(TAG, "Could not parse soup element " + soupEntryId, e);
+		        		// Should not have happen - just keep going
+		        	}
+		        }
+		        while (cursor.moveToNext());
+		    }
+		} finally {
+		    safeClose(cursor);
+		}
+		return lastSoupEntryId;
+	}
+
 	/**
 	 * Return indexSpecs of soup
 	 *
@@ -684,6 +857,9 @@ public class SmartStore  {
 				if (hasFTS(soupName)) {
 					DBHelper.getInstance(db).delete(db, soupTableName + FTS_SUFFIX, null);
 				}
+				if (usesChangeJournal(soupName)) {
+					DBHelper.getInstance(db).delete(db, soupTableName + JOURNAL_SUFFIX, null);
+				}
 				if (dbOpenHelper instanceof DBOpenHelper) {
 					((DBOpenHelper) dbOpenHelper).removeExternalBlobsDirectory(soupTableName);
 				}
@@ -719,29 +895,43 @@ public class SmartStore  {
     	synchronized(db) {
 			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName != null) {
-	            db.execSQL("DROP TABLE IF EXISTS " + soupTableName);
-				if (hasFTS(soupName)) {
-					db.execSQL("DROP TABLE IF EXISTS " + soupTableName + FTS_SUFFIX);
-				}
-
-	            try {
-	                db.beginTransaction();
-	                DBHelper.getInstance(db).delete(db, SOUP_ATTRS_TABLE, SOUP_NAME_PREDICATE, soupName);
-	                DBHelper.getInstance(db).delete(db, SOUP_INDEX_MAP_TABLE, SOUP_NAME_PREDICATE, soupName);
-	                if (dbOpenHelper instanceof DBOpenHelper) {
-						((DBOpenHelper) dbOpenHelper).removeExternalBlobsDirectory(soupTableName);
-	                }
-	                db.setTransactionSuccessful();
-
-	                // Remove from cache
-	                DBHelper.getInstance(db).removeFromCache(soupName);
-	            } finally {
-	                db.endTransaction();
-	            }
+	        	final ReadConnectionPool pool = ReadConnectionPool.getPool(db.getPath());
+	        	if (pool != null) pool.lockExclusive();
+	        	try {
+	        		dropSoup(db, soupName, soupTableName);
+	        		if (pool != null) pool.removeFromCaches(soupName);
+	        	} finally {
+	        		if (pool != null) pool.unlockExclusive();
+	        	}
 	        }
     	}
     }
 
+    private void dropSoup(SQLiteDatabase db, String soupName, String soupTableName) {
+        db.execSQL("DROP TABLE IF EXISTS " + soupTableName);
+        if (hasFTS(soupName)) {
+            db.execSQL("DROP TABLE IF EXISTS " + soupTableName + FTS_SUFFIX);
+        }
+        if (usesChangeJournal(soupName)) {
+            db.execSQL("DROP TABLE IF EXISTS " + soupTableName + JOURNAL_SUFFIX);
+        }
+
+        try {
+            db.beginTransaction();
+            DBHelper.getInstance(db).delete(db, SOUP_ATTRS_TABLE, SOUP_NAME_PREDICATE, soupName);
+            DBHelper.getInstance(db).delete(db, SOUP_INDEX_MAP_TABLE, SOUP_NAME_PREDICATE, soupName);
+            if (dbOpenHelper instanceof DBOpenHelper) {
+                ((DBOpenHelper) dbOpenHelper).removeExternalBlobsDirectory(soupTableName);
+            }
+            db.setTransactionSuccessful();
+
+            // Remove from cache
+            DBHelper.getInstance(db).removeFromCache(soupName);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     /**
      * Destroy all the soups in the smartstore
      */
@@ -810,168 +1000,518 @@ public class SmartStore  {
 	 * @param pageIndex
 	 */
 	public void queryAsString(StringBuilder resultBuilder, QuerySpec querySpec, int pageIndex) {
-		final SQLiteDatabase db = getDatabase();
-		synchronized(db) {
-			QueryType qt = querySpec.queryType;
-			String sql = convertSmartSql(querySpec.smartSql);
-
-			// Page
-			int offsetRows = querySpec.pageSize * pageIndex;
-			int numberRows = querySpec.pageSize;
-			String limit = offsetRows + "," + numberRows;
-			Cursor cursor = null;
-			try {
-				cursor = DBHelper.getInstance(db).limitRawQuery(db, sql, limit, querySpec.getArgs());
-				resultBuilder.append("[");
-				int currentRow = 0;
-				if (cursor.moveToFirst()) {
-					do {
-						if (currentRow > 0) {
-							resultBuilder.append(", ");
-						}
-						currentRow++;
+		try {
+			queryAsString((Appendable) resultBuilder, querySpec, pageIndex);
+		} catch (IOException e) {
+			// Not expected when appending to a StringBuilder
+			throw new SmartStoreException("Failed to append results: " + e.getMessage());
+		}
+	}
 
-						// Smart queries
-						if (qt == QueryType.smart || querySpec.selectPaths != null) {
-							getDataFromRowAsString(resultBuilder, cursor);
-						}
-						// Exact/like/range queries
-						else {
-							if (cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE) >= 0) {
-								// Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
-								String soupTableName = cursor.getString(cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE));
-								Long soupEntryId = cursor.getLong(cursor.getColumnIndex(SmartStore.SOUP_ENTRY_ID));
-								resultBuilder.append(((DBOpenHelper) dbOpenHelper).loadSoupBlobAsString(soupTableName, soupEntryId, encryptionKey));
-							} else {
-								resultBuilder.append(cursor.getString(0));
-							}
-						}
-					} while (cursor.moveToNext());
-				}
-				resultBuilder.append("]");
+	/**
+	 * Run a query given by its query Spec, only returned results from selected page
+	 * Rows are read one at a time from the database and written straight to out (including externally stored soup elements)
+	 * so that the page never needs to be held in memory as a whole
+	 *
+	 * @param querySpec
+	 * @param pageIndex
+	 * @param out writer to which results are written
+	 * @throws IOException
+	 */
+	public void query(QuerySpec querySpec, int pageIndex, Writer out) throws IOException {
+		queryAsString(out, querySpec, pageIndex);
+	}
 
+	void queryAsString(Appendable out, QuerySpec querySpec, int pageIndex) throws IOException {
+		final SQLiteDatabase db = getDatabase();
+		final ReadConnectionPool pool = getReadConnectionPoolForQuery(db);
+		final SQLiteDatabase readDb = pool == null ? null : pool.acquire();
+		if (readDb != null) {
+			try {
+				queryAsString(db, readDb, out, querySpec, pageIndex);
 			} finally {
-				safeClose(cursor);
+				pool.release(readDb);
+			}
+		} else {
+			synchronized(db) {
+				queryAsString(db, db, out, querySpec, pageIndex);
 			}
 		}
 	}
 
-	private void getDataFromRowAsString(StringBuilder resultBuilder, Cursor cursor)  {
-		int columnCount = cursor.getColumnCount();
-		resultBuilder.append("[");
-		for (int i=0; i<columnCount; i++) {
-			if (i > 0) {
-				resultBuilder.append(",");
-			}
-			int valueType = cursor.getType(i);
-			String columnName = cursor.getColumnName(i);
-			if (valueType == Cursor.FIELD_TYPE_NULL) {
-				resultBuilder.append("null");
-			}
-			else if (valueType == Cursor.FIELD_TYPE_STRING) {
-				String raw = cursor.getString(i);
-				if (columnName.equals(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
-					// Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
-					String soupTableName = cursor.getString(i);
-					Long soupEntryId = cursor.getLong(i + 1);
-					resultBuilder.append(((DBOpenHelper) dbOpenHelper).loadSoupBlobAsString(soupTableName, soupEntryId, encryptionKey));
-					i++; // skip next column (_soupEntryId)
-				} else if (columnName.equals(SOUP_COL) || columnName.startsWith(SOUP_COL + ":") /* :num is appended to column name when result set has more than one column with same name */) {
-					resultBuilder.append(raw);
-					// Note: we could end up returning a string if you aliased the column
-				}
-				else {
-					raw = escapeStringValue(raw);
-					resultBuilder.append("\"").append(raw).append("\"");
-				}
-			}
-			else if (valueType == Cursor.FIELD_TYPE_INTEGER) {
-				resultBuilder.append(cursor.getLong(i));
-			}
-			else if (valueType == Cursor.FIELD_TYPE_FLOAT) {
-				resultBuilder.append(cursor.getDouble(i));
-			}
+	private void queryAsString(SQLiteDatabase db, SQLiteDatabase connection, Appendable out, QuerySpec querySpec, int pageIndex) throws IOException {
+		Cursor cursor = null;
+		try {
+			cursor = rawQueryPage(db, connection, querySpec, pageIndex);
+			appendRowsAsString(out, cursor, querySpec, 0);
+		} finally {
+			safeClose(cursor);
 		}
-		resultBuilder.append("]");
 	}
 
-	private String escapeStringValue(String raw) {
-		StringBuilder sb = new StringBuilder();
-
-		for (int i = 0; i < raw.length(); i ++) {
-			char c = raw.charAt(i);
-			switch (c) {
-				case '\\':
-				case '"':
-					sb.append('\\');
-					sb.append(c);
-					break;
-				case '/':
-					sb.append('\\');
-					sb.append(c);
-					break;
-				case '\b':
-					sb.append("\\b");
-					break;
-				case '\t':
-					sb.append("\\t");
-					break;
-				case '\n':
-					sb.append("\\n");
-					break;
-				case '\f':
-					sb.append("\\f");
-					break;
-				case '\r':
-					sb.append("\\r");
-					break;
-				default:
-					if (c < ' ') {
-						String t = "000" + Integer.toHexString(c);
-						sb.append("\\u" + t.substring(t.length() - 4));
-					} else {
-						sb.append(c);
-					}
-			}
+	/**
+	 * Open a cursor on the results of a query given by its query Spec for selected page
+	 * Rows are read one at a time when iterating through the returned cursor - caller must close it
+	 *
+	 * @param querySpec
+	 * @param pageIndex
+	 * @return soup cursor
+	 */
+	public SoupCursor openSoupCursor(QuerySpec querySpec, int pageIndex) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized(db) {
+			return new SoupCursor(this, querySpec, rawQueryPage(db, db, querySpec, pageIndex));
 		}
-		return sb.toString();
 	}
 
 	/**
+	 * @param db main connection
+	 * @param connection connection to run the query on (main connection or read-only connection)
 	 * @param querySpec
-	 * @return count of results for a query
+	 * @param pageIndex
+	 * @return cursor on selected page
 	 */
-	public int countQuery(QuerySpec querySpec) {
-		final SQLiteDatabase db = getDatabase();
-    	synchronized(db) {
-			String countSql = convertSmartSql(querySpec.countSmartSql);
-			return DBHelper.getInstance(db).countRawCountQuery(db, countSql, querySpec.getArgs());
-    	}
+	private Cursor rawQueryPage(SQLiteDatabase db, SQLiteDatabase connection, QuerySpec querySpec, int pageIndex) {
+		String sql = SmartSqlHelper.getInstance(connection).convertSmartSql(connection, querySpec.smartSql);
+
+		// Page
+		int offsetRows = querySpec.pageSize * pageIndex;
+		int numberRows = querySpec.pageSize;
+		String limit = offsetRows + "," + numberRows;
+		return limitRawQuery(db, connection, sql, limit, querySpec.getArgs());
 	}
 
 	/**
-	 * @param smartSql
-	 * @return
+	 * Run limit query using the DBHelper of the main connection (where explain query plan capture is configured)
+	 *
+	 * @param db main connection
+	 * @param connection connection to run the query on (main connection or read-only connection)
+	 * @param sql
+	 * @param limit
+	 * @param args
+	 * @return cursor
 	 */
-	public String convertSmartSql(String smartSql) {
-		final SQLiteDatabase db = getDatabase();
-    	synchronized (db) {
-			return SmartSqlHelper.getInstance(db).convertSmartSql(db, smartSql);
-    	}
+	private Cursor limitRawQuery(SQLiteDatabase db, SQLiteDatabase connection, String sql, String limit, String... args) {
+		return DBHelper.getInstance(db).limitRawQuery(connection, sql, limit, args);
 	}
 
+	/**
+	 * @param querySpec
+	 * @return true if querySpec can be paged with keyset (seek) pagination
+	 * i.e. it is an exact/like/range/all query with an orderPath that is not indexed as floating
+	 * (floating point values can't be bound back exactly to seek past them)
+	 */
+	public boolean supportsKeysetPagination(QuerySpec querySpec) {
+		if (!querySpec.supportsKeysetPagination()) {
+			return false;
+		}
+		for (IndexSpec indexSpec : getSoupIndexSpecs(querySpec.soupName)) {
+			if (indexSpec.path.equals(querySpec.orderPath) && indexSpec.type == Type.floating) {
+				return false;
+			}
+		}
+		return true;
+	}
 
-    /**
-     * Create (and commits)
-     * Note: Passed soupElt is modified (last modified date and soup entry id fields)
-     * @param soupName
-     * @param soupElt
-     * @return soupElt created or null if creation failed
-     * @throws JSONException
-     */
-    public JSONObject create(String soupName, JSONObject soupElt) throws JSONException {
-    	final SQLiteDatabase db = getDatabase();
-    	synchronized(db) {
+	/**
+	 * Run a query given by its query Spec using keyset (seek) pagination, only returning the page that follows the given keyset
+	 * without deserializing any JSON
+	 * Unlike offset pagination, the cost of fetching a page does not grow with its position in the results
+	 * NB: only exact/like/range/all queries with an orderPath can be paged that way (see {@link #supportsKeysetPagination(QuerySpec)})
+	 * NB: if the last row has a floating point value for the orderPath (e.g. json1 index), null is returned and the next page should be
+	 *     fetched with offset pagination
+	 *
+	 * @param resultBuilder string builder to which results are appended
+	 * @param querySpec
+	 * @param after keyset of last row of previous page or null to get the first page
+	 * @return keyset of the last row returned or null if no rows were returned (or the last row has a floating point order value)
+	 */
+	public QuerySpec.Keyset queryAsString(StringBuilder resultBuilder, QuerySpec querySpec, QuerySpec.Keyset after) {
+		try {
+			return queryAsString((Appendable) resultBuilder, querySpec, after);
+		} catch (IOException e) {
+			// Not expected when appending to a StringBuilder
+			throw new SmartStoreException("Failed to append results: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Run a query given by its query Spec using keyset (seek) pagination, only returning the page that follows the given keyset
+	 * Rows are read one at a time from the database and written straight to out
+	 *
+	 * @param querySpec
+	 * @param after keyset of last row of previous page or null to get the first page
+	 * @param out writer to which results are written
+	 * @return keyset of the last row returned or null if no rows were returned (or the last row has a floating point order value)
+	 * @throws IOException
+	 */
+	public QuerySpec.Keyset query(QuerySpec querySpec, QuerySpec.Keyset after, Writer out) throws IOException {
+		return queryAsString(out, querySpec, after);
+	}
+
+	QuerySpec.Keyset queryAsString(Appendable out, QuerySpec querySpec, QuerySpec.Keyset after) throws IOException {
+		if (!supportsKeysetPagination(querySpec)) {
+			throw new SmartStoreException("Keyset pagination not supported for query on: " + querySpec.orderPath);
+		}
+		final SQLiteDatabase db = getDatabase();
+		final ReadConnectionPool pool = getReadConnectionPoolForQuery(db);
+		final SQLiteDatabase readDb = pool == null ? null : pool.acquire();
+		if (readDb != null) {
+			try {
+				return queryAsString(db, readDb, out, querySpec, after);
+			} finally {
+				pool.release(readDb);
+			}
+		} else {
+			synchronized(db) {
+				return queryAsString(db, db, out, querySpec, after);
+			}
+		}
+	}
+
+	private QuerySpec.Keyset queryAsString(SQLiteDatabase db, SQLiteDatabase connection, Appendable out, QuerySpec querySpec, QuerySpec.Keyset after) throws IOException {
+		String sql = SmartSqlHelper.getInstance(connection).convertSmartSql(connection, querySpec.computeKeysetSmartSql(after));
+		Cursor cursor = null;
+		try {
+			cursor = limitRawQuery(db, connection, sql, querySpec.pageSize + "", querySpec.getKeysetArgs(after));
+			return appendRowsAsString(out, cursor, querySpec, KEYSET_COLUMNS);
+		} finally {
+			safeClose(cursor);
+		}
+	}
+
+	/**
+	 * Run a query given by its query Spec using keyset (seek) pagination, only returning the page that follows the given keyset
+	 * Use {@link #getKeysetAt(QuerySpec, int)} or {@link #queryAsString(StringBuilder, QuerySpec, QuerySpec.Keyset)} to get the keyset of the next page
+	 *
+	 * @param querySpec
+	 * @param after keyset of last row of previous page or null to get the first page
+	 * @throws JSONException
+	 */
+	public JSONArray query(QuerySpec querySpec, QuerySpec.Keyset after) throws JSONException {
+		StringBuilder resultBuilder = new StringBuilder();
+		queryAsString(resultBuilder, querySpec, after);
+		return new JSONArray(resultBuilder.toString());
+	}
+
+	/**
+	 * Return keyset of the row at the given position in the results of a query (ordered for keyset pagination)
+	 * Useful to jump to an arbitrary page before seeking from there
+	 *
+	 * @param querySpec
+	 * @param position
+	 * @return keyset of row at position or null if there are not that many rows (or the row has a floating point order value)
+	 */
+	public QuerySpec.Keyset getKeysetAt(QuerySpec querySpec, int position) {
+		if (!supportsKeysetPagination(querySpec)) {
+			throw new SmartStoreException("Keyset pagination not supported for query on: " + querySpec.orderPath);
+		}
+		final SQLiteDatabase db = getDatabase();
+		final ReadConnectionPool pool = getReadConnectionPoolForQuery(db);
+		final SQLiteDatabase readDb = pool == null ? null : pool.acquire();
+		if (readDb != null) {
+			try {
+				return getKeysetAt(db, readDb, querySpec, position);
+			} finally {
+				pool.release(readDb);
+			}
+		} else {
+			synchronized(db) {
+				return getKeysetAt(db, db, querySpec, position);
+			}
+		}
+	}
+
+	private QuerySpec.Keyset getKeysetAt(SQLiteDatabase db, SQLiteDatabase connection, QuerySpec querySpec, int position) {
+		String sql = SmartSqlHelper.getInstance(connection).convertSmartSql(connection, querySpec.computeKeysetSmartSql(null));
+		Cursor cursor = null;
+		try {
+			cursor = limitRawQuery(db, connection, sql, position + ",1", querySpec.getKeysetArgs(null));
+			return cursor.moveToFirst() ? getKeyset(cursor) : null;
+		} finally {
+			safeClose(cursor);
+		}
+	}
+
+	/**
+	 * Append rows of cursor as a json array to out
+	 *
+	 * @param out
+	 * @param cursor
+	 * @param querySpec
+	 * @param numberKeysetColumns number of trailing columns only there for keyset pagination (not returned)
+	 * @return keyset of the last row if numberKeysetColumns > 0 and there were rows, null otherwise
+	 * @throws IOException
+	 */
+	private QuerySpec.Keyset appendRowsAsString(Appendable out, Cursor cursor, QuerySpec querySpec, int numberKeysetColumns) throws IOException {
+		Map<String, Map<Long, String>> soupBlobs = null;
+		QuerySpec.Keyset lastKeyset = null;
+		out.append("[");
+		int currentRow = 0;
+		if (cursor.moveToFirst()) {
+			do {
+				if (currentRow > 0) {
+					out.append(", ");
+				}
+				// Externally stored soup elements are read a window at a time (so that out can be streamed)
+				if (currentRow % SOUP_BLOBS_WINDOW_SIZE == 0) {
+					soupBlobs = loadSoupBlobs(cursor, currentRow, SOUP_BLOBS_WINDOW_SIZE);
+					cursor.moveToPosition(currentRow);
+				}
+				currentRow++;
+				appendRowAsString(out, cursor, querySpec, numberKeysetColumns, soupBlobs);
+				if (numberKeysetColumns > 0 && cursor.isLast()) {
+					lastKeyset = getKeyset(cursor);
+				}
+			} while (cursor.moveToNext());
+		}
+		out.append("]");
+		return lastKeyset;
+	}
+
+	/**
+	 * Append current row of cursor to out
+	 * NB: caller should have synchronized(db) unless cursor is on a read-only connection
+	 *
+	 * @param out
+	 * @param cursor
+	 * @param querySpec
+	 * @param numberKeysetColumns number of trailing columns only there for keyset pagination (not returned)
+	 * @throws IOException
+	 */
+	void appendRowAsString(Appendable out, Cursor cursor, QuerySpec querySpec, int numberKeysetColumns) throws IOException {
+		appendRowAsString(out, cursor, querySpec, numberKeysetColumns, null);
+	}
+
+	private void appendRowAsString(Appendable out, Cursor cursor, QuerySpec querySpec, int numberKeysetColumns, Map<String, Map<Long, String>> soupBlobs) throws IOException {
+		// Smart queries
+		if (querySpec.queryType == QueryType.smart || querySpec.selectPaths != null) {
+			getDataFromRowAsString(out, cursor, cursor.getColumnCount() - numberKeysetColumns, soupBlobs);
+		}
+		// Exact/like/range queries
+		else {
+			if (cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE) >= 0) {
+				// Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
+				String soupTableName = cursor.getString(cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE));
+				Long soupEntryId = cursor.getLong(cursor.getColumnIndex(SmartStore.SOUP_ENTRY_ID));
+				out.append(loadSoupBlobAsString(soupTableName, soupEntryId, soupBlobs));
+			} else {
+				out.append(cursor.getString(0));
+			}
+		}
+	}
+
+	/**
+	 * @param cursor positioned on a row returned by a keyset pagination query
+	 * @return keyset of that row (found in the last two columns) or null if its order value is a floating point value
+	 */
+	private QuerySpec.Keyset getKeyset(Cursor cursor) {
+		int orderValueIndex = cursor.getColumnCount() - KEYSET_COLUMNS;
+		Object orderValue;
+		switch (cursor.getType(orderValueIndex)) {
+			case Cursor.FIELD_TYPE_NULL:
+				orderValue = null;
+				break;
+			case Cursor.FIELD_TYPE_INTEGER:
+				orderValue = cursor.getLong(orderValueIndex);
+				break;
+			case Cursor.FIELD_TYPE_FLOAT:
+				// Can't be bound back exactly (reading it as a string rounds it)
+				return null;
+			default:
+				orderValue = cursor.getString(orderValueIndex);
+		}
+		return new QuerySpec.Keyset(orderValue, cursor.getLong(orderValueIndex + 1));
+	}
+
+	/**
+	 * Read in parallel the externally stored soup elements referenced by some rows of cursor
+	 * NB: moves the cursor
+	 *
+	 * @param cursor
+	 * @param firstPosition position of first row to read soup elements for
+	 * @param count maximum number of rows to read soup elements for
+	 * @return map of soup table name to map of soup entry id to soup element or null if cursor does not reference any external storage
+	 */
+	private Map<String, Map<Long, String>> loadSoupBlobs(Cursor cursor, int firstPosition, int count) {
+		if (!(dbOpenHelper instanceof DBOpenHelper)) {
+			return null;
+		}
+		List<Integer> externalStorageColumns = new ArrayList<>();
+		for (int i = 0; i < cursor.getColumnCount() - 1; i++) {
+			if (cursor.getColumnName(i).equals(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
+				externalStorageColumns.add(i);
+			}
+		}
+		if (externalStorageColumns.isEmpty() || !cursor.moveToPosition(firstPosition)) {
+			return null;
+		}
+
+		// Soup entry ids by soup table name (soup entry id is in the column following the external storage column)
+		Map<String, List<Long>> soupEntryIds = new HashMap<>();
+		int rows = 0;
+		do {
+			for (int i : externalStorageColumns) {
+				String soupTableName = cursor.getString(i);
+				if (!soupEntryIds.containsKey(soupTableName)) {
+					soupEntryIds.put(soupTableName, new ArrayList<Long>());
+				}
+				soupEntryIds.get(soupTableName).add(cursor.getLong(i + 1));
+			}
+		} while (++rows < count && cursor.moveToNext());
+
+		Map<String, Map<Long, String>> soupBlobs = new HashMap<>();
+		for (Map.Entry<String, List<Long>> entry : soupEntryIds.entrySet()) {
+			soupBlobs.put(entry.getKey(), ((DBOpenHelper) dbOpenHelper).loadSoupBlobsAsStrings(entry.getKey(), entry.getValue(), encryptionKey));
+		}
+		return soupBlobs;
+	}
+
+	/**
+	 * @param soupTableName
+	 * @param soupEntryId
+	 * @param soupBlobs soup elements already read (see loadSoupBlobs) or null
+	 * @return externally stored soup element
+	 */
+	private String loadSoupBlobAsString(String soupTableName, long soupEntryId, Map<String, Map<Long, String>> soupBlobs) {
+		if (soupBlobs != null && soupBlobs.containsKey(soupTableName)) {
+			String soupBlob = soupBlobs.get(soupTableName).get(soupEntryId);
+			if (soupBlob != null) {
+				return soupBlob;
+			}
+		}
+		return ((DBOpenHelper) dbOpenHelper).loadSoupBlobAsString(soupTableName, soupEntryId, encryptionKey);
+	}
+
+	private void getDataFromRowAsString(Appendable out, Cursor cursor, int columnCount, Map<String, Map<Long, String>> soupBlobs) throws IOException {
+		out.append("[");
+		for (int i=0; i<columnCount; i++) {
+			if (i > 0) {
+				out.append(",");
+			}
+			int valueType = cursor.getType(i);
+			String columnName = cursor.getColumnName(i);
+			if (valueType == Cursor.FIELD_TYPE_NULL) {
+				out.append("null");
+			}
+			else if (valueType == Cursor.FIELD_TYPE_STRING) {
+				String raw = cursor.getString(i);
+				if (columnName.equals(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
+					// Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
+					String soupTableName = cursor.getString(i);
+					Long soupEntryId = cursor.getLong(i + 1);
+					out.append(loadSoupBlobAsString(soupTableName, soupEntryId, soupBlobs));
+					i++; // skip next column (_soupEntryId)
+				} else if (columnName.equals(SOUP_COL) || columnName.startsWith(SOUP_COL + ":") /* :num is appended to column name when result set has more than one column with same name */) {
+					out.append(raw);
+					// Note: we could end up returning a string if you aliased the column
+				}
+				else {
+					raw = escapeStringValue(raw);
+					out.append("\"").append(raw).append("\"");
+				}
+			}
+			else if (valueType == Cursor.FIELD_TYPE_INTEGER) {
+				out.append(Long.toString(cursor.getLong(i)));
+			}
+			else if (valueType == Cursor.FIELD_TYPE_FLOAT) {
+				out.append(Double.toString(cursor.getDouble(i)));
+			}
+		}
+		out.append("]");
+	}
+
+	private String escapeStringValue(String raw) {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < raw.length(); i ++) {
+			char c = raw.charAt(i);
+			switch (c) {
+				case '\\':
+				case '"':
+					sb.append('\\');
+					sb.append(c);
+					break;
+				case '/':
+					sb.append('\\');
+					sb.append(c);
+					break;
+				case '\b':
+					sb.append("\\b");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\f':
+					sb.append("\\f");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				default:
+					if (c < ' ') {
+						String t = "000" + Integer.toHexString(c);
+						sb.append("\\u" + t.substring(t.length() - 4));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param querySpec
+	 * @return count of results for a query
+	 */
+	public int countQuery(QuerySpec querySpec) {
+		final SQLiteDatabase db = getDatabase();
+		final ReadConnectionPool pool = getReadConnectionPoolForQuery(db);
+		final SQLiteDatabase readDb = pool == null ? null : pool.acquire();
+		if (readDb != null) {
+			try {
+				return countQuery(readDb, querySpec);
+			} finally {
+				pool.release(readDb);
+			}
+		} else {
+			synchronized(db) {
+				return countQuery(db, querySpec);
+			}
+		}
+	}
+
+	private int countQuery(SQLiteDatabase connection, QuerySpec querySpec) {
+		String countSql = SmartSqlHelper.getInstance(connection).convertSmartSql(connection, querySpec.countSmartSql);
+		return DBHelper.getInstance(connection).countRawCountQuery(connection, countSql, querySpec.getArgs());
+	}
+
+	/**
+	 * @param smartSql
+	 * @return
+	 */
+	public String convertSmartSql(String smartSql) {
+		final SQLiteDatabase db = getDatabase();
+    	synchronized (db) {
+			return SmartSqlHelper.getInstance(db).convertSmartSql(db, smartSql);
+    	}
+	}
+
+
+    /**
+     * Create (and commits)
+     * Note: Passed soupElt is modified (last modified date and soup entry id fields)
+     * @param soupName
+     * @param soupElt
+     * @return soupElt created or null if creation failed
+     * @throws JSONException
+     */
+    public JSONObject create(String soupName, JSONObject soupElt) throws JSONException {
+    	final SQLiteDatabase db = getDatabase();
+    	synchronized(db) {
     		return create(soupName, soupElt, true);
     	}
     }
@@ -1008,6 +1548,9 @@ public class SmartStore  {
 	            if (!usesExternalStorage(soupName)) {
 	                contentValues.put(SOUP_COL, soupElt.toString());
 	            }
+	            if (usesContentHash(soupName)) {
+	                contentValues.put(CONTENT_HASH_COL, computeContentHash(soupElt));
+	            }
 	            projectIndexedPaths(soupElt, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
 
 	            // Inserting into database
@@ -1023,6 +1566,11 @@ public class SmartStore  {
 					db.insert(soupTableNameFts, null, contentValuesFts);
 				}
 
+				// Change journal
+				if (success && usesChangeJournal(soupName)) {
+					addToChangeJournal(db, soupTableName, soupEntryId);
+				}
+
 	            // Add to external storage if applicable
 	            if (success && usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
 					success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, encryptionKey);
@@ -1078,7 +1626,7 @@ public class SmartStore  {
      * @param indexSpec
      */
     private void projectIndexedPath(JSONObject soupElt, ContentValues contentValues, IndexSpec indexSpec) {
-        Object value = project(soupElt, indexSpec.path);
+        Object value = indexSpec.getJsonPath().project(soupElt);
 
 		contentValues.put(indexSpec.columnName, (String) null); // fall back
 		if (value != null) {
@@ -1117,10 +1665,16 @@ public class SmartStore  {
 
 	        JSONArray result = new JSONArray();
 	        if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
+		        // Blobs are read in parallel
+		        Map<Long, String> blobs = ((DBOpenHelper) dbOpenHelper).loadSoupBlobsAsStrings(soupTableName, Arrays.asList(soupEntryIds), encryptionKey);
 		        for (long soupEntryId : soupEntryIds) {
-			        JSONObject raw = ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, soupEntryId, encryptionKey);
+			        String raw = blobs.get(soupEntryId);
 			        if (raw != null) {
-				        result.put(raw);
+				        try {
+					        result.put(new JSONObject(raw));
+				        } catch (JSONException e) {
+					        SmartStoreLogger.e(TAG, "Exception occurred while attempting to read external soup blob", e);
+				        }
 			        }
 		        }
 	        } else {
@@ -1196,6 +1750,9 @@ public class SmartStore  {
 				if (!usesExternalStorage(soupName)) {
 					contentValues.put(SOUP_COL, soupElt.toString());
 				}
+				if (usesContentHash(soupName)) {
+					contentValues.put(CONTENT_HASH_COL, computeContentHash(soupElt));
+				}
 
 				// Updating database
 				boolean success = DBHelper.getInstance(db).update(db, soupTableName, contentValues, ID_PREDICATE, soupEntryId + "") == 1;
@@ -1208,6 +1765,11 @@ public class SmartStore  {
 					success = DBHelper.getInstance(db).update(db, soupTableNameFts, contentValuesFts, ROWID_PREDICATE, soupEntryId + "") == 1;
 				}
 
+				// Change journal
+				if (success && usesChangeJournal(soupName)) {
+					addToChangeJournal(db, soupTableName, soupEntryId);
+				}
+
 				// Add to external storage if applicable
 				if (success && usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
 					success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, encryptionKey);
@@ -1295,6 +1857,352 @@ public class SmartStore  {
     	}
     }
 
+    /**
+     * Upsert all soup elements (and commits)
+     * Note: Passed soupElts are modified (last modified date and soup entry id fields)
+     * @param soupName
+     * @param soupElts
+     * @param externalIdPath
+     * @return soupElts upserted or null if any upsert failed
+     * @throws JSONException
+     */
+    public JSONArray upsertAll(String soupName, JSONArray soupElts, String externalIdPath) throws JSONException {
+    	final SQLiteDatabase db = getDatabase();
+    	synchronized(db) {
+    		return upsertAll(soupName, soupElts, externalIdPath, true);
+    	}
+    }
+
+    /**
+     * Upsert all soup elements
+     * Soup table name, index specs and features are resolved once for the whole batch,
+     * existing entries are looked up with a few IN (...) queries and the same compiled statements
+     * are used to write every element
+     *
+     * Note: Passed soupElts are modified (last modified date and soup entry id fields)
+     * @param soupName
+     * @param soupElts
+     * @param externalIdPath
+     * @param handleTx
+     * @return soupElts upserted or null if any upsert failed
+     * @throws JSONException
+     */
+    public JSONArray upsertAll(String soupName, JSONArray soupElts, String externalIdPath, boolean handleTx) throws JSONException {
+    	final SQLiteDatabase db = getDatabase();
+    	synchronized(db) {
+    		final DBHelper dbHelper = DBHelper.getInstance(db);
+	        String soupTableName = dbHelper.getSoupTableName(db, soupName);
+	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+	        IndexSpec[] indexSpecs = dbHelper.getIndexSpecs(db, soupName);
+	        boolean hasFts = dbHelper.hasFTS(db, soupName);
+	        boolean externalStorage = usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper;
+	        boolean contentHash = usesContentHash(soupName);
+	        boolean changeJournal = usesChangeJournal(soupName);
+
+	        // Figuring out external id of every element
+	        boolean bySoupEntryId = externalIdPath.equals(SOUP_ENTRY_ID);
+	        JsonPath externalIdJsonPath = JsonPath.compile(externalIdPath);
+	        String[] externalIds = new String[soupElts.length()];
+	        for (int i = 0; i < soupElts.length(); i++) {
+	        	JSONObject soupElt = soupElts.getJSONObject(i);
+	        	if (bySoupEntryId) {
+	        		externalIds[i] = soupElt.has(SOUP_ENTRY_ID) ? soupElt.getLong(SOUP_ENTRY_ID) + "" : null;
+	        	} else {
+	        		Object externalIdObj = externalIdJsonPath.project(soupElt);
+	        		if (externalIdObj == null) {
+	        			// Cannot have empty values for user-defined external ID upsert.
+	        			throw new SmartStoreException(String.format("For upsert with external ID path '%s', value cannot be empty for any entries.", externalIdPath));
+	        		}
+	        		externalIds[i] = externalIdObj + "";
+	        	}
+	        }
+	        String externalIdColumn = bySoupEntryId ? ID_COL : dbHelper.getColumnNameForPath(db, soupName, externalIdPath);
+
+	        SQLiteStatement insertStmt = null;
+	        SQLiteStatement updateStmt = null;
+	        SQLiteStatement insertFtsStmt = null;
+	        SQLiteStatement updateFtsStmt = null;
+	        SQLiteStatement journalStmt = null;
+	        boolean success = true;
+	        try {
+	        	if (handleTx) {
+	        		db.beginTransaction();
+	        	}
+	        	Map<String, Long> externalIdToEntryId = lookupSoupEntryIds(db, soupTableName, externalIdColumn, externalIdPath, externalIds);
+	        	long nextId = dbHelper.getNextId(db, soupTableName);
+	        	JSONArray result = new JSONArray();
+	        	// Externally stored elements are written in parallel once all rows are written
+	        	Map<Long, JSONObject> soupBlobs = new LinkedHashMap<>();
+	        	for (int i = 0; i < soupElts.length() && success; i++) {
+	        		JSONObject soupElt = soupElts.getJSONObject(i);
+	        		Long entryId = externalIds[i] == null ? null : externalIdToEntryId.get(externalIds[i]);
+	        		long now = System.currentTimeMillis();
+	        		if (entryId == null && bySoupEntryId && externalIds[i] != null) {
+	        			// Same as update with a _soupEntryId that does not exist
+	        			success = false;
+	        		} else if (entryId == null) {
+	        			if (insertStmt == null) {
+	        				insertStmt = compileBatchInsert(db, soupTableName, indexSpecs, !externalStorage, contentHash);
+	        			}
+	        			long soupEntryId = nextId++;
+	        			soupElt.put(SOUP_ENTRY_ID, soupEntryId);
+	        			soupElt.put(SOUP_LAST_MODIFIED_DATE, now);
+	        			int index = 1;
+	        			insertStmt.bindLong(index++, soupEntryId);
+	        			insertStmt.bindLong(index++, now);
+	        			insertStmt.bindLong(index++, now);
+	        			if (!externalStorage) {
+	        				insertStmt.bindString(index++, soupElt.toString());
+	        			}
+	        			if (contentHash) {
+	        				insertStmt.bindString(index++, computeContentHash(soupElt));
+	        			}
+	        			bindIndexedPaths(insertStmt, index, soupElt, indexSpecs, TypeGroup.value_extracted_to_column);
+	        			success = insertStmt.executeInsert() == soupEntryId;
+	        			if (success && hasFts) {
+	        				if (insertFtsStmt == null) {
+	        					insertFtsStmt = compileBatchFtsInsert(db, soupTableName, indexSpecs);
+	        				}
+	        				insertFtsStmt.bindLong(1, soupEntryId);
+	        				bindIndexedPaths(insertFtsStmt, 2, soupElt, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+	        				insertFtsStmt.executeInsert();
+	        			}
+	        			if (success && externalStorage) {
+	        				soupBlobs.put(soupEntryId, soupElt);
+	        			}
+	        			// Later elements in the batch with the same external id should update this one
+	        			if (!bySoupEntryId) {
+	        				externalIdToEntryId.put(externalIds[i], soupEntryId);
+	        			}
+	        		} else {
+	        			if (updateStmt == null) {
+	        				updateStmt = compileBatchUpdate(db, soupTableName, indexSpecs, !externalStorage, contentHash);
+	        			}
+	        			long soupEntryId = entryId;
+	        			soupElt.put(SOUP_ENTRY_ID, soupEntryId);
+	        			soupElt.put(SOUP_LAST_MODIFIED_DATE, now);
+	        			int index = 1;
+	        			updateStmt.bindLong(index++, now);
+	        			if (!externalStorage) {
+	        				updateStmt.bindString(index++, soupElt.toString());
+	        			}
+	        			if (contentHash) {
+	        				updateStmt.bindString(index++, computeContentHash(soupElt));
+	        			}
+	        			index = bindIndexedPaths(updateStmt, index, soupElt, indexSpecs, TypeGroup.value_extracted_to_column);
+	        			updateStmt.bindLong(index, soupEntryId);
+	        			updateStmt.execute();
+	        			if (hasFts) {
+	        				if (updateFtsStmt == null) {
+	        					updateFtsStmt = compileBatchFtsUpdate(db, soupTableName, indexSpecs);
+	        				}
+	        				index = bindIndexedPaths(updateFtsStmt, 1, soupElt, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+	        				updateFtsStmt.bindLong(index, soupEntryId);
+	        				updateFtsStmt.execute();
+	        			}
+	        			if (externalStorage) {
+	        				soupBlobs.put(soupEntryId, soupElt);
+	        			}
+	        		}
+	        		if (success && changeJournal) {
+	        			if (journalStmt == null) {
+	        				journalStmt = compileChangeJournalInsert(db, soupTableName);
+	        			}
+	        			journalStmt.bindLong(1, soupElt.getLong(SOUP_ENTRY_ID));
+	        			journalStmt.execute();
+	        		}
+	        		result.put(soupElt);
+	        	}
+	        	if (success && !soupBlobs.isEmpty()) {
+	        		success = saveSoupBlobs(soupTableName, soupBlobs);
+	        	}
+
+	        	// Commit if successful
+	        	if (success) {
+	        		if (handleTx) {
+	        			db.setTransactionSuccessful();
+	        		}
+	        		return result;
+	        	} else {
+	        		return null;
+	        	}
+	        } finally {
+	        	safeClose(insertStmt);
+	        	safeClose(updateStmt);
+	        	safeClose(insertFtsStmt);
+	        	safeClose(updateFtsStmt);
+	        	safeClose(journalStmt);
+	        	if (handleTx) {
+	        		db.endTransaction();
+	        	}
+	        }
+    	}
+    }
+
+    /**
+     * Write externally stored soup elements in parallel
+     *
+     * @param soupTableName
+     * @param soupBlobs map of soup entry id to soup element
+     * @return true if all were written
+     */
+    private boolean saveSoupBlobs(String soupTableName, Map<Long, JSONObject> soupBlobs) {
+    	long[] soupEntryIds = new long[soupBlobs.size()];
+    	String[] soupEltStrs = new String[soupBlobs.size()];
+    	int i = 0;
+    	for (Map.Entry<Long, JSONObject> entry : soupBlobs.entrySet()) {
+    		soupEntryIds[i] = entry.getKey();
+    		soupEltStrs[i] = entry.getValue().toString();
+    		i++;
+    	}
+    	return ((DBOpenHelper) dbOpenHelper).saveSoupBlobsFromStrings(soupTableName, soupEntryIds, soupEltStrs, encryptionKey);
+    }
+
+    /**
+     * Look for soup elements where column's value is one of the given values
+     * Throw an exception if more than one soup element are found for the same value
+     *
+     * @param db
+     * @param soupTableName
+     * @param columnName
+     * @param fieldPath
+     * @param fieldValues (null values are skipped, duplicate values are looked up once)
+     * @return map of value to soupEntryId for the values found
+     */
+    private Map<String, Long> lookupSoupEntryIds(SQLiteDatabase db, String soupTableName, String columnName, String fieldPath, String[] fieldValues) {
+    	Map<String, Long> valueToEntryId = new HashMap<>();
+    	// Deduplicating so that a value showing up in two chunks is not mistaken for two soup elements
+    	Set<String> distinctValues = new LinkedHashSet<>();
+    	for (String fieldValue : fieldValues) {
+    		if (fieldValue != null) {
+    			distinctValues.add(fieldValue);
+    		}
+    	}
+    	List<String> values = new ArrayList<>(distinctValues);
+    	for (int start = 0; start < values.size(); start += MAX_IN_ARGS) {
+    		List<String> chunk = values.subList(start, Math.min(start + MAX_IN_ARGS, values.size()));
+    		String placeholders = TextUtils.join(",", Collections.nCopies(chunk.size(), "?"));
+    		Cursor cursor = null;
+    		try {
+    			cursor = db.query(soupTableName, new String[] {columnName, ID_COL}, buildInStatement(columnName, placeholders), chunk.toArray(new String[0]), null, null, null);
+    			while (cursor.moveToNext()) {
+    				String fieldValue = cursor.getString(0);
+    				if (valueToEntryId.put(fieldValue, cursor.getLong(1)) != null) {
+    					throw new SmartStoreException(String.format("There are more than one soup elements where %s is %s", fieldPath, fieldValue));
+    				}
+    			}
+    		} finally {
+    			safeClose(cursor);
+    		}
+    	}
+    	return valueToEntryId;
+    }
+
+    /**
+     * Bind values of index specs that have a type in typeGroup to statement starting at index
+     * @param statement
+     * @param index
+     * @param soupElt
+     * @param indexSpecs
+     * @param typeGroup
+     * @return next index to bind
+     */
+    private int bindIndexedPaths(SQLiteStatement statement, int index, JSONObject soupElt, IndexSpec[] indexSpecs, TypeGroup typeGroup) {
+    	for (IndexSpec indexSpec : indexSpecs) {
+    		if (typeGroup.isMember(indexSpec.type)) {
+    			bindIndexedPath(statement, index++, soupElt, indexSpec);
+    		}
+    	}
+    	return index;
+    }
+
+    /**
+     * Same as projectIndexedPath but binding the projected value into a compiled statement
+     * @param statement
+     * @param index
+     * @param soupElt
+     * @param indexSpec
+     */
+    private void bindIndexedPath(SQLiteStatement statement, int index, JSONObject soupElt, IndexSpec indexSpec) {
+    	Object value = indexSpec.getJsonPath().project(soupElt);
+
+    	statement.bindNull(index); // fall back
+    	if (value != null) {
+    		try {
+    			switch (indexSpec.type) {
+    				case integer:
+    					statement.bindLong(index, ((Number) value).longValue());
+    					break;
+    				case string:
+    				case full_text:
+    					statement.bindString(index, value.toString());
+    					break;
+    				case floating:
+    					statement.bindDouble(index, ((Number) value).doubleValue());
+    					break;
+    			}
+    		} catch (Exception e) {
+    			// Ignore (will use the null value)
+    			SmartStoreLogger.e(TAG, "Unexpected error", e);
+    		}
+    	}
+    }
+
+    private SQLiteStatement compileBatchInsert(SQLiteDatabase db, String soupTableName, IndexSpec[] indexSpecs, boolean withSoupCol, boolean withContentHashCol) {
+    	List<String> columns = new ArrayList<>(Arrays.asList(ID_COL, CREATED_COL, LAST_MODIFIED_COL));
+    	if (withSoupCol) {
+    		columns.add(SOUP_COL);
+    	}
+    	if (withContentHashCol) {
+    		columns.add(CONTENT_HASH_COL);
+    	}
+    	columns.addAll(getIndexedColumns(indexSpecs, TypeGroup.value_extracted_to_column));
+    	return db.compileStatement(String.format("INSERT INTO %s (%s) VALUES (%s)", soupTableName,
+    			TextUtils.join(",", columns), TextUtils.join(",", Collections.nCopies(columns.size(), "?"))));
+    }
+
+    private SQLiteStatement compileBatchUpdate(SQLiteDatabase db, String soupTableName, IndexSpec[] indexSpecs, boolean withSoupCol, boolean withContentHashCol) {
+    	List<String> columns = new ArrayList<>();
+    	columns.add(LAST_MODIFIED_COL);
+    	if (withSoupCol) {
+    		columns.add(SOUP_COL);
+    	}
+    	if (withContentHashCol) {
+    		columns.add(CONTENT_HASH_COL);
+    	}
+    	columns.addAll(getIndexedColumns(indexSpecs, TypeGroup.value_extracted_to_column));
+    	return db.compileStatement(String.format("UPDATE %s SET %s = ? WHERE %s", soupTableName,
+    			TextUtils.join(" = ?, ", columns), ID_PREDICATE));
+    }
+
+    private SQLiteStatement compileChangeJournalInsert(SQLiteDatabase db, String soupTableName) {
+    	return db.compileStatement(String.format("INSERT OR IGNORE INTO %s%s (%s) VALUES (?)", soupTableName, JOURNAL_SUFFIX, ID_COL));
+    }
+
+    private SQLiteStatement compileBatchFtsInsert(SQLiteDatabase db, String soupTableName, IndexSpec[] indexSpecs) {
+    	List<String> columns = new ArrayList<>();
+    	columns.add(ROWID_COL);
+    	columns.addAll(getIndexedColumns(indexSpecs, TypeGroup.value_extracted_to_fts_column));
+    	return db.compileStatement(String.format("INSERT INTO %s%s (%s) VALUES (%s)", soupTableName, FTS_SUFFIX,
+    			TextUtils.join(",", columns), TextUtils.join(",", Collections.nCopies(columns.size(), "?"))));
+    }
+
+    private SQLiteStatement compileBatchFtsUpdate(SQLiteDatabase db, String soupTableName, IndexSpec[] indexSpecs) {
+    	List<String> columns = getIndexedColumns(indexSpecs, TypeGroup.value_extracted_to_fts_column);
+    	return db.compileStatement(String.format("UPDATE %s%s SET %s = ? WHERE %s", soupTableName, FTS_SUFFIX,
+    			TextUtils.join(" = ?, ", columns), ROWID_PREDICATE));
+    }
+
+    private List<String> getIndexedColumns(IndexSpec[] indexSpecs, TypeGroup typeGroup) {
+    	List<String> columns = new ArrayList<>();
+    	for (IndexSpec indexSpec : indexSpecs) {
+    		if (typeGroup.isMember(indexSpec.type)) {
+    			columns.add(indexSpec.columnName);
+    		}
+    	}
+    	return columns;
+    }
+
     /**
      * Look for a soup element where fieldPath's value is fieldValue
      * Return its soupEntryId
@@ -1363,6 +2271,10 @@ public class SmartStore  {
 					db.delete(soupTableName + FTS_SUFFIX, getRowIdsPredicate(soupEntryIds), (String[]) null);
 				}
 
+				if (usesChangeJournal(soupName)) {
+					db.delete(soupTableName + JOURNAL_SUFFIX, getSoupEntryIdsPredicate(soupEntryIds), (String[]) null);
+				}
+
 				if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
 					((DBOpenHelper) dbOpenHelper).removeSoupBlob(soupTableName, soupEntryIds);
 				}
@@ -1408,30 +2320,85 @@ public class SmartStore  {
                 String subQuerySql = String.format("SELECT %s FROM (%s) LIMIT %d", ID_COL, convertSmartSql(querySpec.idsSmartSql), querySpec.pageSize);
                 String[] args = querySpec.getArgs();
 
-                if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-					// Query list of ids and remove them from external storage
-					Cursor c = null;
-					try {
-						c = db.query(soupTableName, new String[] { ID_COL }, buildInStatement(ID_COL, subQuerySql), args, null, null, null);
-						if (c.moveToFirst()) {
-							Long[] ids = new Long[c.getCount()];
-							int counter = 0;
-							do {
-								ids[counter++] = c.getLong(0);
-							} while (c.moveToNext());
-							((DBOpenHelper) dbOpenHelper).removeSoupBlob(soupTableName, ids);
-						}
-					} finally {
-						if (c != null) {
-							c.close();
-						}
+				// Running query once, staging ids in temporary table
+				createBulkDeleteTables(db);
+				try {
+					db.execSQL(String.format("INSERT INTO %s (%s) %s", BULK_DELETE_IDS_TABLE, ID_COL, subQuerySql), args == null ? new Object[0] : args);
+					deleteStagedIds(db, soupName, soupTableName);
+				} finally {
+					clearBulkDeleteTables(db);
+				}
+
+				if (handleTx) {
+					db.setTransactionSuccessful();
+				}
+			} finally {
+				if (handleTx) {
+					db.endTransaction();
+				}
+			}
+			removeDeletedSoupBlobs(db, false);
+		}
+	}
+
+	/**
+	 * Delete soup elements that have one of the given values at path (and commits)
+	 * @param soupName
+	 * @param path path with an index spec
+	 * @param values values of soup elements to delete
+	 */
+	public void deleteByValues(String soupName, String path, Collection<String> values) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized(db) {
+			deleteByValues(soupName, path, values, true);
+		}
+	}
+
+	/**
+	 * Delete soup elements that have one of the given values at path
+	 * Values are staged in a temporary table and soup elements deleted with one set-based statement per table,
+	 * so there is no limit on the number of values and ids are never brought to memory
+	 * (except for soups using external storage: their blobs are then removed in the background once the delete is committed)
+	 *
+	 * @param soupName
+	 * @param path path with an index spec
+	 * @param values values of soup elements to delete
+	 * @param handleTx
+	 */
+	public void deleteByValues(String soupName, String path, Collection<String> values, boolean handleTx) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized(db) {
+			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+			if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+			if (values.isEmpty()) {
+				// Nothing to do
+				return;
+			}
+			if (handleTx) {
+				db.beginTransaction();
+			}
+			try {
+				createBulkDeleteTables(db);
+				SQLiteStatement insertValue = null;
+				try {
+					// Staging values
+					insertValue = db.compileStatement(String.format("INSERT OR IGNORE INTO %s (%s) VALUES (?)", BULK_DELETE_VALUES_TABLE, VALUE_COL));
+					for (String value : values) {
+						insertValue.bindString(1, value);
+						insertValue.executeInsert();
 					}
-                }
 
-                db.delete(soupTableName, buildInStatement(ID_COL, subQuerySql), args);
+					// Staging ids of matching soup elements
+					String idsSql = convertSmartSql(String.format("SELECT {%s:%s} FROM {%s} WHERE {%s:%s} IN (SELECT %s FROM %s)",
+							soupName, SOUP_ENTRY_ID, soupName, soupName, path, VALUE_COL, BULK_DELETE_VALUES_TABLE));
+					db.execSQL(String.format("INSERT INTO %s (%s) %s", BULK_DELETE_IDS_TABLE, ID_COL, idsSql));
 
-				if (hasFTS(soupName)) {
-                    db.delete(soupTableName + FTS_SUFFIX, buildInStatement(ROWID_COL, subQuerySql), args);
+					deleteStagedIds(db, soupName, soupTableName);
+				} finally {
+					if (insertValue != null) {
+						insertValue.close();
+					}
+					clearBulkDeleteTables(db);
 				}
 
 				if (handleTx) {
@@ -1442,6 +2409,124 @@ public class SmartStore  {
 					db.endTransaction();
 				}
 			}
+			removeDeletedSoupBlobs(db, true);
+		}
+	}
+
+	/**
+	 * Helper method for bulk deletes
+	 * Create temporary tables used to stage bulk deletes (if they don't exist on this connection yet)
+	 */
+	private void createBulkDeleteTables(SQLiteDatabase db) {
+		db.execSQL(String.format("CREATE TABLE IF NOT EXISTS %s (%s INTEGER PRIMARY KEY)", BULK_DELETE_IDS_TABLE, ID_COL));
+		db.execSQL(String.format("CREATE TABLE IF NOT EXISTS %s (%s TEXT PRIMARY KEY)", BULK_DELETE_VALUES_TABLE, VALUE_COL));
+	}
+
+	/**
+	 * Helper method for bulk deletes
+	 * Empty temporary tables used to stage bulk deletes
+	 */
+	private void clearBulkDeleteTables(SQLiteDatabase db) {
+		db.execSQL("DELETE FROM " + BULK_DELETE_IDS_TABLE);
+		db.execSQL("DELETE FROM " + BULK_DELETE_VALUES_TABLE);
+	}
+
+	/**
+	 * Helper method for bulk deletes
+	 * Delete soup elements (and fts rows) whose ids are staged in the bulk delete ids table
+	 * Ids of externally stored soup elements are recorded so that their blobs get removed by removeDeletedSoupBlobs
+	 *
+	 * @param db
+	 * @param soupName
+	 * @param soupTableName
+	 */
+	private void deleteStagedIds(SQLiteDatabase db, String soupName, String soupTableName) {
+		String stagedIdsSql = String.format("SELECT %s FROM %s", ID_COL, BULK_DELETE_IDS_TABLE);
+
+		// Grabbing ids (only needed to remove external blobs)
+		Long[] ids = null;
+		if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
+			Cursor c = null;
+			try {
+				c = db.rawQuery(stagedIdsSql, null);
+				ids = new Long[c.getCount()];
+				int counter = 0;
+				while (c.moveToNext()) {
+					ids[counter++] = c.getLong(0);
+				}
+			} finally {
+				safeClose(c);
+			}
+		}
+
+		db.delete(soupTableName, buildInStatement(ID_COL, stagedIdsSql), (String[]) null);
+
+		if (hasFTS(soupName)) {
+			db.delete(soupTableName + FTS_SUFFIX, buildInStatement(ROWID_COL, stagedIdsSql), (String[]) null);
+		}
+
+		if (usesChangeJournal(soupName)) {
+			db.delete(soupTableName + JOURNAL_SUFFIX, buildInStatement(ID_COL, stagedIdsSql), (String[]) null);
+		}
+
+		if (ids != null && ids.length > 0) {
+			// Blobs can't be removed until the transaction commits (it could still be rolled back)
+			List<Long> deletedBlobIds = soupNameToDeletedBlobIds.get(soupName);
+			if (deletedBlobIds == null) {
+				deletedBlobIds = new ArrayList<>();
+				soupNameToDeletedBlobIds.put(soupName, deletedBlobIds);
+			}
+			deletedBlobIds.addAll(Arrays.asList(ids));
+		}
+	}
+
+	/**
+	 * Helper method for bulk deletes
+	 * Remove external blobs of soup elements deleted by deleteStagedIds, once no transaction is in progress
+	 * Soup elements still in their table (i.e. whose delete was rolled back) keep their blob
+	 * NB: caller should have synchronized(db)
+	 *
+	 * @param db
+	 * @param inBackground true to remove the blobs in the background
+	 */
+	private void removeDeletedSoupBlobs(SQLiteDatabase db, boolean inBackground) {
+		if (soupNameToDeletedBlobIds.isEmpty() || db.inTransaction()) {
+			return;
+		}
+		try {
+			for (Map.Entry<String, List<Long>> entry : soupNameToDeletedBlobIds.entrySet()) {
+				String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, entry.getKey());
+				if (soupTableName == null) {
+					// Soup was dropped along with its blobs
+					continue;
+				}
+				Set<Long> deletedIds = new LinkedHashSet<>(entry.getValue());
+				List<Long> ids = new ArrayList<>(deletedIds);
+				for (int start = 0; start < ids.size(); start += MAX_IN_ARGS) {
+					Long[] chunk = ids.subList(start, Math.min(start + MAX_IN_ARGS, ids.size())).toArray(new Long[0]);
+					Cursor c = null;
+					try {
+						c = db.query(soupTableName, new String[] {ID_COL}, getSoupEntryIdsPredicate(chunk), null, null, null, null);
+						while (c.moveToNext()) {
+							deletedIds.remove(c.getLong(0));
+						}
+					} finally {
+						safeClose(c);
+					}
+				}
+				if (deletedIds.isEmpty()) {
+					continue;
+				}
+				Long[] removedIds = deletedIds.toArray(new Long[0]);
+				if (inBackground) {
+					// Soup entry ids are never reused (autoincrement) so late removal cannot affect new soup elements
+					((DBOpenHelper) dbOpenHelper).removeSoupBlobsInBackground(soupTableName, removedIds);
+				} else {
+					((DBOpenHelper) dbOpenHelper).removeSoupBlob(soupTableName, removedIds);
+				}
+			}
+		} finally {
+			soupNameToDeletedBlobIds.clear();
 		}
 	}
 
@@ -1502,6 +2587,15 @@ public class SmartStore  {
         }
     }
 
+    /**
+     * @param statement
+     */
+    private void safeClose(SQLiteStatement statement) {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+
     /**
      * @param soup
      * @param path
@@ -1524,43 +2618,9 @@ public class SmartStore  {
         if (path == null || path.equals("")) {
             return soup;
         }
-        String[] pathElements = path.split("[.]");
-		return project(soup, pathElements, 0);
+        return JsonPath.compile(path).project(soup);
     }
 
-	private static Object project(Object jsonObj, String[] pathElements, int index) {
-		Object result = null;
-		if (index == pathElements.length) {
-			return jsonObj;
-		}
-
-		if (null != jsonObj) {
-			String pathElement = pathElements[index];
-
-			if (jsonObj instanceof JSONObject) {
-				JSONObject jsonDict = (JSONObject) jsonObj;
-				Object dictVal = JSONObjectHelper.opt(jsonDict, pathElement);
-				result = project(dictVal, pathElements, index+1);
-			}
-			else if (jsonObj instanceof JSONArray) {
-				JSONArray jsonArr = (JSONArray) jsonObj;
-				result = new JSONArray();
-				for (int i=0; i<jsonArr.length(); i++) {
-					Object arrayElt = JSONObjectHelper.opt(jsonArr, i);
-					Object resultPart = project(arrayElt, pathElements, index);
-					if (resultPart != null) {
-						((JSONArray) result).put(resultPart);
-					}
-				}
-				if (((JSONArray) result).length() == 0) {
-					result = null;
-				}
-			}
-		}
-
-		return result;
-	}
-
     /**
      * Enum for column type
      */
@@ -1669,6 +2729,171 @@ public class SmartStore  {
 		}
 	}
 
+	/**
+	 * Determines if the given soup keeps a content hash for its elements.
+	 *
+	 * @param soupName Name of the soup.
+	 *
+	 * @return  True if soup has the content hash feature; false otherwise.
+	 */
+	public boolean usesContentHash(String soupName) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			return DBHelper.getInstance(db).getFeatures(db, soupName).contains(SoupSpec.FEATURE_CONTENT_HASH);
+		}
+	}
+
+	/**
+	 * Determines if the given soup keeps a change journal.
+	 *
+	 * @param soupName Name of the soup.
+	 *
+	 * @return  True if soup has the change journal feature; false otherwise.
+	 */
+	public boolean usesChangeJournal(String soupName) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			return DBHelper.getInstance(db).getFeatures(db, soupName).contains(SoupSpec.FEATURE_CHANGE_JOURNAL);
+		}
+	}
+
+	/**
+	 * Return ids of the soup elements created or updated since they were last cleared from the change journal
+	 * Deleted soup elements are removed from the journal
+	 * Only soups with the change journal feature keep one (see SoupSpec.FEATURE_CHANGE_JOURNAL)
+	 *
+	 * @param soupName
+	 * @return soup entry ids in ascending order
+	 */
+	public List<Long> getChangeJournal(String soupName) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+			if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+			if (!usesChangeJournal(soupName)) throw new SmartStoreException("Soup: " + soupName + " does not keep a change journal");
+			List<Long> soupEntryIds = new ArrayList<>();
+			Cursor cursor = null;
+			try {
+				cursor = db.query(soupTableName + JOURNAL_SUFFIX, new String[] {ID_COL}, null, null, null, null, ID_COL);
+				while (cursor.moveToNext()) {
+					soupEntryIds.add(cursor.getLong(0));
+				}
+			} finally {
+				safeClose(cursor);
+			}
+			return soupEntryIds;
+		}
+	}
+
+	/**
+	 * Remove soup elements from the change journal
+	 *
+	 * @param soupName
+	 * @param soupEntryIds
+	 * @param handleTx
+	 */
+	public void clearChangeJournal(String soupName, Collection<Long> soupEntryIds, boolean handleTx) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+			if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+			if (!usesChangeJournal(soupName) || soupEntryIds.isEmpty()) {
+				// Nothing to do
+				return;
+			}
+			if (handleTx) {
+				db.beginTransaction();
+			}
+			try {
+				List<Long> idsList = new ArrayList<>(soupEntryIds);
+				for (int start = 0; start < idsList.size(); start += MAX_IN_ARGS) {
+					List<Long> chunk = idsList.subList(start, Math.min(start + MAX_IN_ARGS, idsList.size()));
+					db.delete(soupTableName + JOURNAL_SUFFIX, getSoupEntryIdsPredicate(chunk.toArray(new Long[0])), (String[]) null);
+				}
+				if (handleTx) {
+					db.setTransactionSuccessful();
+				}
+			} finally {
+				if (handleTx) {
+					db.endTransaction();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method to record a soup element in the change journal
+	 */
+	private void addToChangeJournal(SQLiteDatabase db, String soupTableName, long soupEntryId) {
+		db.execSQL(String.format("INSERT OR IGNORE INTO %s%s (%s) VALUES (?)", soupTableName, JOURNAL_SUFFIX, ID_COL), new Object[] { soupEntryId });
+	}
+
+	/**
+	 * Return content hashes of the soup elements where the value at path is one of the given values
+	 * Only soups with the content hash feature keep them (see SoupSpec.FEATURE_CONTENT_HASH)
+	 *
+	 * @param soupName
+	 * @param path indexed path (e.g. an id field)
+	 * @param values
+	 * @return map of value to content hash (values not found are not in the map)
+	 */
+	public Map<String, String> getContentHashes(String soupName, String path, Collection<String> values) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			final DBHelper dbHelper = DBHelper.getInstance(db);
+			String soupTableName = dbHelper.getSoupTableName(db, soupName);
+			if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+			if (!usesContentHash(soupName)) throw new SmartStoreException("Soup: " + soupName + " does not keep content hashes");
+			String columnName = dbHelper.getColumnNameForPath(db, soupName, path);
+			List<String> valuesList = new ArrayList<>(values);
+			Map<String, String> valueToHash = new HashMap<>();
+			for (int start = 0; start < valuesList.size(); start += MAX_IN_ARGS) {
+				List<String> chunk = valuesList.subList(start, Math.min(start + MAX_IN_ARGS, valuesList.size()));
+				String placeholders = TextUtils.join(",", Collections.nCopies(chunk.size(), "?"));
+				Cursor cursor = null;
+				try {
+					cursor = db.query(soupTableName, new String[] {columnName, CONTENT_HASH_COL}, buildInStatement(columnName, placeholders), chunk.toArray(new String[0]), null, null, null);
+					while (cursor.moveToNext()) {
+						if (!cursor.isNull(1)) {
+							valueToHash.put(cursor.getString(0), cursor.getString(1));
+						}
+					}
+				} finally {
+					safeClose(cursor);
+				}
+			}
+			return valueToHash;
+		}
+	}
+
+	/**
+	 * Compute hash of the content of a soup element, ignoring the fields set by SmartStore (soup entry id, dates)
+	 * Two soup elements with the same fields in the same order have the same hash
+	 *
+	 * @param soupElt
+	 * @return hash as base64 string
+	 */
+	public static String computeContentHash(JSONObject soupElt) {
+		StringBuilder sb = new StringBuilder();
+		Iterator<String> keys = soupElt.keys();
+		while (keys.hasNext()) {
+			String key = keys.next();
+			if (key.equals(SOUP_ENTRY_ID) || key.equals(SOUP_LAST_MODIFIED_DATE) || key.equals(SOUP_CREATED_DATE)) {
+				continue;
+			}
+			Object value = soupElt.opt(key);
+			sb.append(JSONObject.quote(key)).append(':')
+					.append(value instanceof String ? JSONObject.quote((String) value) : String.valueOf(value))
+					.append(',');
+		}
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+			return Base64.encodeToString(hash, Base64.NO_WRAP);
+		} catch (NoSuchAlgorithmException e) {
+			throw new SmartStoreException("Could not compute content hash: " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Get compile options
 	 *
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import android.database.Cursor;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Soup Cursor
+ * Iterator over the results of a query that reads rows one at a time from the underlying database cursor
+ * Use it to process or write out large pages without building them in memory first
+ *
+ * Obtained through {@link SmartStore#openSoupCursor(QuerySpec, int)} - must be closed when done
+ */
+public class SoupCursor implements Closeable {
+
+	private final SmartStore smartStore;
+	private final QuerySpec querySpec;
+	private final Cursor cursor;
+
+	SoupCursor(SmartStore smartStore, QuerySpec querySpec, Cursor cursor) {
+		this.smartStore = smartStore;
+		this.querySpec = querySpec;
+		this.cursor = cursor;
+	}
+
+	/**
+	 * Move to next row
+	 * @return false if there are no more rows
+	 */
+	public boolean moveToNext() {
+		final SQLiteDatabase db = smartStore.getDatabase();
+		synchronized (db) {
+			return cursor.moveToNext();
+		}
+	}
+
+	/**
+	 * Write current row as json to out
+	 * Soup elements are written as json objects (including externally stored ones) and
+	 * rows of smart queries or queries with select paths are written as json arrays
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeRow(Appendable out) throws IOException {
+		final SQLiteDatabase db = smartStore.getDatabase();
+		synchronized (db) {
+			smartStore.appendRowAsString(out, cursor, querySpec, 0);
+		}
+	}
+
+	/**
+	 * @return current row as a JSONObject (soup element) or JSONArray (smart queries or queries with select paths)
+	 * @throws JSONException
+	 */
+	public Object getRow() throws JSONException {
+		StringBuilder rowBuilder = new StringBuilder();
+		try {
+			writeRow(rowBuilder);
+		} catch (IOException e) {
+			// Not expected when appending to a StringBuilder
+			throw new SmartStore.SmartStoreException("Failed to append row: " + e.getMessage());
+		}
+		String row = rowBuilder.toString();
+		return row.startsWith("[") ? new JSONArray(row) : new JSONObject(row);
+	}
+
+	/**
+	 * Write all remaining rows as a json array to out
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeAll(Appendable out) throws IOException {
+		out.append("[");
+		boolean first = true;
+		while (moveToNext()) {
+			if (!first) {
+				out.append(", ");
+			}
+			first = false;
+			writeRow(out);
+		}
+		out.append("]");
+	}
+
+	@Override
+	public void close() {
+		final SQLiteDatabase db = smartStore.getDatabase();
+		synchronized (db) {
+			cursor.close();
+		}
+	}
+}
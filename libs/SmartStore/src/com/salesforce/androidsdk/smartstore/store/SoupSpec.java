@@ -40,9 +40,11 @@ import org.json.JSONObject;
 public class SoupSpec {
     /** Soup features **/
     public static final String FEATURE_EXTERNAL_STORAGE = "externalStorage";
+    public static final String FEATURE_CONTENT_HASH = "contentHash"; // keeps a hash of every soup element (see SmartStore.getContentHashes)
+    public static final String FEATURE_CHANGE_JOURNAL = "changeJournal"; // keeps track of soup elements written since last cleared (see SmartStore.getChangeJournal)
 
     /** List of all possible features for building soup_attrs table **/
-    public static final String[] ALL_FEATURES = { FEATURE_EXTERNAL_STORAGE };
+    public static final String[] ALL_FEATURES = { FEATURE_EXTERNAL_STORAGE, FEATURE_CONTENT_HASH, FEATURE_CHANGE_JOURNAL };
 
     private String soupName;
     private List<String> features;
@@ -29,6 +29,11 @@ package com.salesforce.androidsdk.smartstore.store;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Store Cursor 
  * We don't actually keep a cursor opened, instead, we wrap the query spec and page index
@@ -54,6 +59,10 @@ public class StoreCursor {
 	
 	// Current page can change - by calling moveToPageIndex
 	private int currentPageIndex;
+
+	// Keyset pagination - keyset of the row preceding each page we know about
+	private final boolean useKeyset;
+	private final Map<Integer, QuerySpec.Keyset> pageIndexToPrecedingKeyset = new HashMap<>();
 	
 	/**
 	 * @param smartStore
@@ -61,13 +70,24 @@ public class StoreCursor {
 	 * @throws JSONException 
 	 */
 	public StoreCursor(SmartStore smartStore, QuerySpec querySpec) {
+		this(smartStore, querySpec, false);
+	}
+
+	/**
+	 * @param smartStore
+	 * @param querySpec
+	 * @param useKeyset true to page with keyset (seek) pagination when querySpec supports it (see {@link SmartStore#supportsKeysetPagination(QuerySpec)})
+	 *                  pages are then fetched by seeking past the last row of the previous page instead of skipping offset rows
+	 */
+	public StoreCursor(SmartStore smartStore, QuerySpec querySpec, boolean useKeyset) {
 		int countRows = smartStore.countQuery(querySpec);
-		
+
 		this.cursorId = LAST_ID++;
 		this.querySpec = querySpec;
 		this.totalEntries = countRows;
 		this.totalPages = (int) Math.ceil( (double) countRows / querySpec.pageSize);
 		this.currentPageIndex = 0;
+		this.useKeyset = useKeyset && smartStore.supportsKeysetPagination(querySpec);
 	}
 	
 	/**
@@ -85,17 +105,68 @@ public class StoreCursor {
 	 */
 	public FakeJSONObject getData(SmartStore smartStore)  {
 		StringBuilder resultBuilder = new StringBuilder();
-		resultBuilder.append("{")
-			.append("\"").append(CURSOR_ID).append("\":").append(cursorId).append(", ")
-			.append("\"").append(CURRENT_PAGE_INDEX).append("\":").append(currentPageIndex).append(", ")
-			.append("\"").append(PAGE_SIZE).append("\":").append(querySpec.pageSize).append(", ")
-			.append("\"").append(TOTAL_ENTRIES).append("\":").append(totalEntries).append(", ")
-			.append("\"").append(TOTAL_PAGES).append("\":").append(totalPages).append(", ")
-			.append("\"").append(CURRENT_PAGE_ORDERED_ENTRIES).append("\":");
-		smartStore.queryAsString(resultBuilder, querySpec, currentPageIndex);
-		resultBuilder.append("}");
+		try {
+			writeData(smartStore, resultBuilder);
+		} catch (IOException e) {
+			// Not expected when appending to a StringBuilder
+			throw new SmartStore.SmartStoreException("Failed to append data: " + e.getMessage());
+		}
 		return new FakeJSONObject(resultBuilder.toString());
 	}
+
+	/**
+	 * Writes cursor meta data (page index, size etc) and data (entries in page) as json to out
+	 * Entries are read from the database and written to out one at a time
+	 * @param smartStore
+	 * @param out
+	 * @throws IOException
+	 */
+	public void getData(SmartStore smartStore, Writer out) throws IOException {
+		writeData(smartStore, out);
+	}
+
+	private void writeData(SmartStore smartStore, Appendable out) throws IOException {
+		out.append("{")
+			.append("\"").append(CURSOR_ID).append("\":").append(Integer.toString(cursorId)).append(", ")
+			.append("\"").append(CURRENT_PAGE_INDEX).append("\":").append(Integer.toString(currentPageIndex)).append(", ")
+			.append("\"").append(PAGE_SIZE).append("\":").append(Integer.toString(querySpec.pageSize)).append(", ")
+			.append("\"").append(TOTAL_ENTRIES).append("\":").append(Integer.toString(totalEntries)).append(", ")
+			.append("\"").append(TOTAL_PAGES).append("\":").append(Integer.toString(totalPages)).append(", ")
+			.append("\"").append(CURRENT_PAGE_ORDERED_ENTRIES).append("\":");
+		if (useKeyset) {
+			queryPageWithKeyset(smartStore, out);
+		} else {
+			smartStore.queryAsString(out, querySpec, currentPageIndex);
+		}
+		out.append("}");
+	}
+
+	/**
+	 * Append current page to out using keyset pagination
+	 * When moving page by page, the keyset returned for a page is used to seek to the next one
+	 * When jumping to a page never reached before, the keyset preceding it is looked up first
+	 * @param smartStore
+	 * @param out
+	 * @throws IOException
+	 */
+	private void queryPageWithKeyset(SmartStore smartStore, Appendable out) throws IOException {
+		QuerySpec.Keyset after = null;
+		if (currentPageIndex > 0) {
+			after = pageIndexToPrecedingKeyset.get(currentPageIndex);
+			if (after == null) {
+				after = smartStore.getKeysetAt(querySpec, currentPageIndex * querySpec.pageSize - 1);
+			}
+			if (after == null) {
+				// Fewer rows than when the cursor was created (or floating point order value) - falling back to offset pagination
+				smartStore.queryAsString(out, querySpec, currentPageIndex);
+				return;
+			}
+		}
+		QuerySpec.Keyset last = smartStore.queryAsString(out, querySpec, after);
+		if (last != null) {
+			pageIndexToPrecedingKeyset.put(currentPageIndex + 1, last);
+		}
+	}
 }
 
 /**
@@ -26,6 +26,8 @@
  */
 package com.salesforce.androidsdk.smartsync.manager;
 
+import android.os.SystemClock;
+
 import com.salesforce.androidsdk.accounts.UserAccount;
 import com.salesforce.androidsdk.analytics.EventBuilderHelper;
 import com.salesforce.androidsdk.app.SalesforceSDKManager;
@@ -39,9 +41,12 @@ import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException
 import com.salesforce.androidsdk.smartsync.app.Features;
 import com.salesforce.androidsdk.smartsync.app.SmartSyncSDKManager;
 import com.salesforce.androidsdk.smartsync.target.AdvancedSyncUpTarget;
+import com.salesforce.androidsdk.smartsync.target.BatchSyncUpTarget;
 import com.salesforce.androidsdk.smartsync.target.SyncDownTarget;
 import com.salesforce.androidsdk.smartsync.target.SyncUpTarget;
+import com.salesforce.androidsdk.smartsync.target.SyncUpTarget.RecordModDate;
 import com.salesforce.androidsdk.smartsync.util.SmartSyncLogger;
+import com.salesforce.androidsdk.smartsync.util.SyncMetrics;
 import com.salesforce.androidsdk.smartsync.util.SyncOptions;
 import com.salesforce.androidsdk.smartsync.util.SyncState;
 import com.salesforce.androidsdk.smartsync.util.SyncState.MergeMode;
@@ -53,12 +58,20 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Sync Manager
@@ -68,6 +81,7 @@ public class SyncManager {
     // Constants
     private static final int UNCHANGED = -1;
     private static final String TAG = "SyncManager";
+    private static final int STREAMING_SAVE_SIZE = 100; // records written to the local store at once when streaming
 
     // For user agent
     private static final String SMART_SYNC = "SmartSync";
@@ -76,9 +90,16 @@ public class SyncManager {
     private static Map<String, SyncManager> INSTANCES = new HashMap<String, SyncManager>();
 
     // Members
-    private Set<Long> runningSyncIds = new HashSet<Long>();
+    private final Set<Long> runningSyncIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
     public final String apiVersion;
-    private final ExecutorService threadPool = Executors.newFixedThreadPool(1);
+    private final SyncScheduler scheduler = new SyncScheduler(1);
+    private final ExecutorService prefetchThreadPool = Executors.newCachedThreadPool();
+    private volatile int syncDownPrefetchSize = 0;
+    private volatile boolean syncDownStreaming = false;
+    private volatile int cleanGhostsConcurrency = 0;
+    private final SyncProgressThrottle progressThrottle = new SyncProgressThrottle();
+    private final ThreadLocal<SyncMetrics> currentMetrics = new ThreadLocal<>(); // metrics of the sync running on the current thread
+    private final List<SyncMetricsListener> metricsListeners = new CopyOnWriteArrayList<>();
 	private SmartStore smartStore;
 	private RestClient restClient;
 
@@ -167,7 +188,8 @@ public class SyncManager {
      */
     public static synchronized void reset() {
         for (SyncManager syncManager : INSTANCES.values()) {
-            syncManager.threadPool.shutdownNow();
+            syncManager.scheduler.shutdownNow();
+            syncManager.prefetchThreadPool.shutdownNow();
         }
         INSTANCES.clear();
     }
@@ -184,7 +206,8 @@ public class SyncManager {
                     if (key.startsWith(account.getUserId())) {
                         keysToRemove.add(key);
                         SyncManager syncManager = INSTANCES.get(key);
-                        syncManager.threadPool.shutdownNow();
+                        syncManager.scheduler.shutdownNow();
+                        syncManager.prefetchThreadPool.shutdownNow();
                     }
                 }
                 // NB: keySet returns a Set view of the keys contained in this map.
@@ -193,6 +216,122 @@ public class SyncManager {
 	    }
     }
 
+    /**
+     * Set how many syncs can run at the same time
+     * NB: syncs (and clean resync ghosts) for the same soup always run one at a time
+     *
+     * @param maxConcurrentSyncs 1 (default) to run all syncs one at a time
+     */
+    public void setMaxConcurrentSyncs(int maxConcurrentSyncs) {
+        scheduler.setMaxConcurrentSyncs(maxConcurrentSyncs);
+    }
+
+    /**
+     * @return how many syncs can run at the same time
+     */
+    public int getMaxConcurrentSyncs() {
+        return scheduler.getMaxConcurrentSyncs();
+    }
+
+    /**
+     * @return number of syncs (and clean resync ghosts) waiting to start
+     */
+    public int getQueueDepth() {
+        return scheduler.getQueueDepth();
+    }
+
+    /**
+     * @return ids of the syncs currently running
+     */
+    public Set<Long> getRunningSyncIds() {
+        return new HashSet<>(runningSyncIds);
+    }
+
+    /**
+     * Set how many batches of records a sync down can fetch ahead (on another thread)
+     * while the previous batch is being saved to the local store
+     * NB: targets that do not support it (see SyncDownTarget.supportsPrefetch) are always fetched sequentially
+     *
+     * @param prefetchSize 0 (default) to only fetch the next batch once the previous one has been saved
+     */
+    public void setSyncDownPrefetchSize(int prefetchSize) {
+        this.syncDownPrefetchSize = Math.max(0, prefetchSize);
+    }
+
+    /**
+     * @return how many batches of records a sync down can fetch ahead
+     */
+    public int getSyncDownPrefetchSize() {
+        return syncDownPrefetchSize;
+    }
+
+    /**
+     * Set how often the progress of a running sync gets saved and reported to its callback
+     * A progress update goes through if progress moved by at least minProgressDelta percent or if minIntervalMillis elapsed since the last one
+     * NB: status changes (including a sync finishing or failing) always go through
+     *
+     * @param minIntervalMillis 250 by default
+     * @param minProgressDelta 5 by default, pass 0 to save and report every progress update
+     */
+    public void setProgressUpdateThrottle(long minIntervalMillis, int minProgressDelta) {
+        progressThrottle.setThresholds(minIntervalMillis, minProgressDelta);
+    }
+
+    /**
+     * Set whether sync downs should parse server responses as they are read
+     * and save records in small batches instead of loading whole pages of records in memory
+     * NB: only targets that support it (see SyncDownTarget.supportsStreaming) are streamed, prefetching does not apply to them
+     *
+     * @param streaming false (default) to fetch and save whole pages of records
+     */
+    public void setSyncDownStreaming(boolean streaming) {
+        this.syncDownStreaming = streaming;
+    }
+
+    /**
+     * Add listener called with the final metrics of every sync once it is done or has failed
+     *
+     * @param listener
+     */
+    public void addMetricsListener(SyncMetricsListener listener) {
+        metricsListeners.add(listener);
+    }
+
+    /**
+     * Remove listener added with addMetricsListener
+     *
+     * @param listener
+     */
+    public void removeMetricsListener(SyncMetricsListener listener) {
+        metricsListeners.remove(listener);
+    }
+
+    /**
+     * @return true if sync downs parse server responses as they are read
+     */
+    public boolean isSyncDownStreaming() {
+        return syncDownStreaming;
+    }
+
+    /**
+     * Set how many id queries clean resync ghosts can have in flight at once
+     * When greater than 0, local ids are checked against the server one window at a time and ghosts are deleted as they are found
+     * (see SyncDownTarget.cleanGhostsInChunks) instead of loading all local and remote ids in memory first
+     * NB: only targets that support it (see SyncDownTarget.supportsChunkedGhostCleanup) are cleaned up in chunks
+     *
+     * @param maxConcurrentQueries 0 (default) to clean ghosts in one go
+     */
+    public void setCleanGhostsConcurrency(int maxConcurrentQueries) {
+        this.cleanGhostsConcurrency = Math.max(0, maxConcurrentQueries);
+    }
+
+    /**
+     * @return how many id queries clean resync ghosts can have in flight at once (0 if ghosts are cleaned up in one go)
+     */
+    public int getCleanGhostsConcurrency() {
+        return cleanGhostsConcurrency;
+    }
+
     /**
      * Get details of a sync by id
      * @param syncId
@@ -309,6 +448,17 @@ public class SyncManager {
      * @throws JSONException
      */
     public SyncState reSync(long syncId, SyncUpdateCallback callback) throws JSONException {
+        return reSync(syncId, SyncScheduler.Priority.NORMAL, callback);
+    }
+
+    /**
+     * Re-run sync but only fetch new/modified records
+     * @param syncId
+     * @param priority priority of the sync relative to other work waiting to start
+     * @param callback
+     * @throws JSONException
+     */
+    public SyncState reSync(long syncId, SyncScheduler.Priority priority, SyncUpdateCallback callback) throws JSONException {
         if (runningSyncIds.contains(syncId)) {
             throw new SmartSyncException("Cannot run reSync:" + syncId + ": still running");
         }
@@ -318,7 +468,7 @@ public class SyncManager {
         }
         sync.setTotalSize(-1);
         SmartSyncLogger.d(TAG, "reSync called", sync);
-        runSync(sync, callback);
+        runSync(sync, priority, callback);
         return sync;
     }
 
@@ -342,10 +492,24 @@ public class SyncManager {
 	 * @param callback
 	 */
 	public void runSync(final SyncState sync, final SyncUpdateCallback callback) {
+		runSync(sync, SyncScheduler.Priority.NORMAL, callback);
+	}
+
+    /**
+     * Run a sync
+     * NB: syncs on different soups can run concurrently (see setMaxConcurrentSyncs), syncs writing to a same soup run one at a time
+     * @param sync
+     * @param priority priority of the sync relative to other syncs waiting to start
+     * @param callback
+     */
+	public void runSync(final SyncState sync, SyncScheduler.Priority priority, final SyncUpdateCallback callback) {
 		updateSync(sync, SyncState.Status.RUNNING, 0, callback);
-		threadPool.execute(new Runnable() {
+		scheduler.submit(sync.getTarget().getSoupNames(sync.getSoupName()), priority, new Runnable() {
             @Override
             public void run() {
+                final SyncMetrics metrics = new SyncMetrics();
+                sync.setMetrics(metrics);
+                currentMetrics.set(metrics);
                 try {
                     switch (sync.getType()) {
                         case syncDown:
@@ -366,6 +530,8 @@ public class SyncManager {
                     sync.setError(e.getMessage());
                     // Update status to failed
                     updateSync(sync, SyncState.Status.FAILED, UNCHANGED, callback);
+                } finally {
+                    currentMetrics.remove();
                 }
             }
         });
@@ -436,6 +602,19 @@ public class SyncManager {
      * @throws IOException
      */
     public void cleanResyncGhosts(final long syncId, final CleanResyncGhostsCallback callback) throws JSONException {
+        cleanResyncGhosts(syncId, SyncScheduler.Priority.NORMAL, callback);
+    }
+
+    /**
+     * Removes local copies of records that have been deleted on the server
+     * or do not match the query results on the server anymore.
+     *
+     * @param syncId
+     * @param priority priority of the cleanup relative to other work waiting to start
+     * @param callback Callback to get clean resync ghosts completion status.
+     * @throws JSONException
+     */
+    public void cleanResyncGhosts(final long syncId, SyncScheduler.Priority priority, final CleanResyncGhostsCallback callback) throws JSONException {
         if (runningSyncIds.contains(syncId)) {
             throw new SmartSyncException("Cannot run cleanResyncGhosts:" + syncId + ": still running");
         }
@@ -451,11 +630,15 @@ public class SyncManager {
         final SyncDownTarget target = (SyncDownTarget) sync.getTarget();
 
         // Ask target to clean up ghosts
-        threadPool.execute(new Runnable() {
+        scheduler.submit(target.getSoupNames(soupName), priority, new Runnable() {
             @Override
             public void run() {
                 try {
-                    final int localIdSize = target.cleanGhosts(SyncManager.this, soupName, syncId);
+                    final int concurrency = cleanGhostsConcurrency;
+                    final int localIdSize = concurrency > 0 && target.supportsChunkedGhostCleanup()
+                            ? target.cleanGhostsInChunks(SyncManager.this, soupName, syncId, concurrency,
+                                callback instanceof CleanResyncGhostsProgressCallback ? (CleanResyncGhostsProgressCallback) callback : null)
+                            : target.cleanGhosts(SyncManager.this, soupName, syncId);
 
                     final JSONObject attributes = new JSONObject();
                     if (localIdSize > 0) {
@@ -488,6 +671,24 @@ public class SyncManager {
 
     }
 
+    /**
+     * Call metrics listeners with the final metrics of a sync
+     * @param sync
+     */
+    private void notifyMetricsListeners(SyncState sync) {
+        final SyncMetrics metrics = sync.getMetrics();
+        if (metrics == null) {
+            return;
+        }
+        for (final SyncMetricsListener listener : metricsListeners) {
+            try {
+                listener.onSyncMetrics(sync, metrics);
+            } catch (RuntimeException e) {
+                SmartSyncLogger.e(TAG, "Metrics listener failed for sync: " + sync.getId(), e);
+            }
+        }
+    }
+
 	/**
      * Update sync with new status, progress, totalSize
      * @param sync
@@ -496,16 +697,23 @@ public class SyncManager {
 	 * @param callback
      */
     private void updateSync(SyncState sync, SyncState.Status status, int progress, SyncUpdateCallback callback) {
-    	try {
-    		sync.setStatus(status);
-    		if (progress != UNCHANGED) {
-                sync.setProgress(progress);
+        final boolean statusChanged = sync.getStatus() != status;
+        sync.setStatus(status);
+        if (progress != UNCHANGED) {
+            sync.setProgress(progress);
+        }
+        if (status == SyncState.Status.RUNNING) {
+            runningSyncIds.add(sync.getId());
+
+            // Coalescing progress updates
+            if (!progressThrottle.shouldReport(sync.getId(), statusChanged, sync.getProgress(), sync.getTotalSize(), SystemClock.elapsedRealtime())) {
+                return;
             }
+        }
+    	try {
             switch (status) {
                 case NEW:
-                    break;
                 case RUNNING:
-                    runningSyncIds.add(sync.getId());
                     break;
                 case DONE:
                 case FAILED:
@@ -519,11 +727,18 @@ public class SyncManager {
                         attributes.put("syncTarget", sync.getTarget().getClass().getName());
                         attributes.put(EventBuilderHelper.START_TIME, sync.getStartTime());
                         attributes.put(EventBuilderHelper.END_TIME, sync.getEndTime());
+                        final SyncMetrics metrics = sync.getMetrics();
+                        if (metrics != null) {
+                            metrics.finish();
+                            attributes.put(SyncState.SYNC_METRICS, metrics.asJSON());
+                        }
                     } catch (JSONException e) {
                         SmartSyncLogger.e(TAG, "Exception thrown while building attributes", e);
                     }
                     EventBuilderHelper.createAndStoreEvent(sync.getType().name(), null, TAG, attributes);
+                    notifyMetricsListeners(sync);
                     runningSyncIds.remove(sync.getId());
+                    progressThrottle.forget(sync.getId());
                     break;
             }
             sync.save(smartStore);
@@ -540,28 +755,85 @@ public class SyncManager {
 		final String soupName = sync.getSoupName();
         final SyncUpTarget target = (SyncUpTarget) sync.getTarget();
 		final SyncOptions options = sync.getOptions();
+        final SyncMetrics metrics = sync.getMetrics();
         final Set<String> dirtyRecordIds = target.getIdsOfRecordsToSyncUp(this, soupName);
 		int totalSize = dirtyRecordIds.size();
         sync.setTotalSize(totalSize);
         updateSync(sync, SyncState.Status.RUNNING, 0, callback);
+
+        // Batch sync up target take it from here
+        if (target instanceof BatchSyncUpTarget) {
+            syncUpInBatches(sync, (BatchSyncUpTarget) target, dirtyRecordIds, callback);
+            return;
+        }
+
+        // With leave-if-changed, server mod dates are fetched for many records at once
+        final boolean leaveIfChanged = options.getMergeMode() == MergeMode.LEAVE_IF_CHANGED;
+        final int chunkSize = leaveIfChanged ? SyncUpTarget.MAX_RECORDS_PER_TIMESTAMPS_QUERY : 1;
+        final List<String> ids = new ArrayList<>(dirtyRecordIds);
         int i = 0;
-        for (final String id : dirtyRecordIds) {
-            JSONObject record = target.getFromLocalStore(this, soupName, id);
-            syncUpOneRecord(target, soupName, record, options);
+        for (int start = 0; start < totalSize; start += chunkSize) {
+            final List<String> chunkIds = ids.subList(start, Math.min(start + chunkSize, totalSize));
+            Map<String, RecordModDate> idToRemoteModDates = null;
+            if (leaveIfChanged) {
+                final long checkStart = System.nanoTime();
+                idToRemoteModDates = target.fetchLastModifiedDates(this, target.getFromLocalStore(this, soupName, chunkIds));
+                metrics.addTime(SyncMetrics.Phase.CONFLICT_CHECK, System.nanoTime() - checkStart);
+            }
+            for (final String id : chunkIds) {
+
+                // Record is read right before being sent, so local edits made while earlier records were synced are not lost
+                final List<JSONObject> records = target.getFromLocalStore(this, soupName, Collections.singletonList(id));
+                if (!records.isEmpty()) {
+                    metrics.addRecords(1);
+                    syncUpOneRecord(target, soupName, records.get(0), options, idToRemoteModDates, metrics);
+                }
+
+                // Updating status
+                int progress = (i + 1) * 100 / totalSize;
+                if (progress < 100) {
+                    updateSync(sync, SyncState.Status.RUNNING, progress, callback);
+                }
+
+                // Incrementing i
+                i++;
+            }
+        }
+	}
+
+    private void syncUpInBatches(SyncState sync, BatchSyncUpTarget target, Set<String> dirtyRecordIds, SyncUpdateCallback callback) throws JSONException, IOException {
+        final String soupName = sync.getSoupName();
+        final SyncOptions options = sync.getOptions();
+        final int totalSize = dirtyRecordIds.size();
+        final int maxBatchSize = target.getMaxBatchSize();
+        final List<String> ids = new ArrayList<>(dirtyRecordIds);
+        for (int start = 0; start < totalSize; start += maxBatchSize) {
+            final int end = Math.min(start + maxBatchSize, totalSize);
+            final List<JSONObject> batch = new ArrayList<>(end - start);
+
+            // Records deleted locally since their ids were collected are skipped
+            for (final JSONObject record : target.getFromLocalStore(this, soupName, ids.subList(start, end))) {
+                if (record != null) {
+                    batch.add(record);
+                }
+            }
+            if (!batch.isEmpty()) {
+                target.syncUpRecords(this, soupName, batch, options.getFieldlist(), options.getMergeMode());
+                sync.getMetrics().addRecords(batch.size());
+            }
 
             // Updating status
-            int progress = (i + 1) * 100 / totalSize;
+            int progress = end * 100 / totalSize;
             if (progress < 100) {
                 updateSync(sync, SyncState.Status.RUNNING, progress, callback);
             }
-
-            // Incrementing i
-            i++;
         }
-	}
+    }
 
     private void syncUpOneRecord(SyncUpTarget target, String soupName,
-                                 JSONObject record, SyncOptions options) throws JSONException, IOException {
+                                 JSONObject record, SyncOptions options,
+                                 Map<String, RecordModDate> idToRemoteModDates,
+                                 SyncMetrics metrics) throws JSONException, IOException {
         SmartSyncLogger.d(TAG, "syncUpOneRecord called", record);
 
         /*
@@ -571,8 +843,13 @@ public class SyncManager {
          * circumstances, we will do nothing and return here.
          */
         final MergeMode mergeMode = options.getMergeMode();
-        if (mergeMode == MergeMode.LEAVE_IF_CHANGED &&
-                !target.isNewerThanServer(this, record)) {
+        boolean newerThanServer = true;
+        if (mergeMode == MergeMode.LEAVE_IF_CHANGED) {
+            final long checkStart = System.nanoTime();
+            newerThanServer = target.isNewerThanServer(this, record, idToRemoteModDates);
+            metrics.addTime(SyncMetrics.Phase.CONFLICT_CHECK, System.nanoTime() - checkStart);
+        }
+        if (!newerThanServer) {
 
             // Nothing to do for this record
             SmartSyncLogger.d(TAG, "syncUpOneRecord: Record not synched since client does not have the latest from server", record);
@@ -662,40 +939,125 @@ public class SyncManager {
     private void syncDown(SyncState sync, SyncUpdateCallback callback) throws Exception {
         String soupName = sync.getSoupName();
         SyncDownTarget target = (SyncDownTarget) sync.getTarget();
+        if (syncDownStreaming && target.supportsStreaming()) {
+            syncDownStreaming(sync, target, callback);
+            return;
+        }
         MergeMode mergeMode = sync.getMergeMode();
+        boolean skipUnchanged = sync.getOptions() != null && sync.getOptions().isSkipUnchanged();
         long maxTimeStamp = sync.getMaxTimeStamp();
+        final SyncMetrics metrics = sync.getMetrics();
+        SyncMetrics.FetchTiming fetchTiming = metrics.startFetch();
         JSONArray records = target.startFetch(this, maxTimeStamp);
+        fetchTiming.end();
         int countSaved = 0;
+        int countWritten = 0;
         int totalSize = target.getTotalSize();
         sync.setTotalSize(totalSize);
-        updateSync(sync, SyncState.Status.RUNNING, 0, callback);
-        final String idField = sync.getTarget().getIdFieldName();
+        sync.setCountRecordsWritten(0);
+        sync.setCountRecordsSkipped(0);
+
+        // Fetch next records while saving the ones we have (if enabled)
+        SyncDownPrefetcher prefetcher = null;
+        Future<?> prefetcherFuture = null;
+        if (records != null && syncDownPrefetchSize > 0 && target.supportsPrefetch()) {
+            prefetcher = new SyncDownPrefetcher(target, syncDownPrefetchSize, metrics);
+            prefetcherFuture = prefetchThreadPool.submit(prefetcher);
+        }
+
+        try {
+            updateSync(sync, SyncState.Status.RUNNING, 0, callback);
+            final String idField = sync.getTarget().getIdFieldName();
+
+            // Get ids of records to leave alone
+            Set<String> idsToSkip = null;
+            if (mergeMode == MergeMode.LEAVE_IF_CHANGED) {
+                idsToSkip = target.getIdsToSkip(this, soupName);
+            }
+
+            while (records != null) {
+                metrics.addRecords(records.length());
+
+                // Figure out records to save
+                final long saveStart = System.nanoTime();
+                JSONArray recordsToSave = idsToSkip == null ? records : removeWithIds(records, idsToSkip, idField);
+                if (skipUnchanged) {
+                    recordsToSave = target.removeUnchangedRecords(this, soupName, recordsToSave, sync.getId());
+                }
+
+                // Save to smartstore.
+                target.saveRecordsToLocalStore(this, soupName, recordsToSave, sync.getId());
+                metrics.addTime(SyncMetrics.Phase.SAVE, System.nanoTime() - saveStart);
+                countSaved += records.length();
+                countWritten += recordsToSave.length();
+                sync.setCountRecordsWritten(countWritten);
+                sync.setCountRecordsSkipped(countSaved - countWritten);
+                maxTimeStamp = Math.max(maxTimeStamp, target.getLatestModificationTimeStamp(records));
+
+                // Update sync status.
+                if (countSaved < totalSize) {
+                    updateSync(sync, SyncState.Status.RUNNING, countSaved*100 / totalSize, callback);
+                }
+
+                // Fetch next records, if any.
+                if (prefetcher != null) {
+                    records = prefetcher.next();
+                } else {
+                    fetchTiming = metrics.startFetch();
+                    records = target.continueFetch(this);
+                    fetchTiming.end();
+                }
+            }
+        } finally {
+            if (prefetcher != null) {
+                // No-op if all records were fetched, otherwise stops fetching (e.g. when saving failed)
+                prefetcher.cancel();
+                prefetcherFuture.cancel(true);
+            }
+        }
+        sync.setMaxTimeStamp(maxTimeStamp);
+	}
+
+    private void syncDownStreaming(SyncState sync, SyncDownTarget target, SyncUpdateCallback callback) throws Exception {
+        final String soupName = sync.getSoupName();
 
         // Get ids of records to leave alone
         Set<String> idsToSkip = null;
-        if (mergeMode == MergeMode.LEAVE_IF_CHANGED) {
+        if (sync.getMergeMode() == MergeMode.LEAVE_IF_CHANGED) {
             idsToSkip = target.getIdsToSkip(this, soupName);
         }
 
-        while (records != null) {
-            // Figure out records to save
-            JSONArray recordsToSave = idsToSkip == null ? records : removeWithIds(records, idsToSkip, idField);
-
-            // Save to smartstore.
-            target.saveRecordsToLocalStore(this, soupName, recordsToSave, sync.getId());
-            countSaved += records.length();
-            maxTimeStamp = Math.max(maxTimeStamp, target.getLatestModificationTimeStamp(records));
-
+        final boolean skipUnchanged = sync.getOptions() != null && sync.getOptions().isSkipUnchanged();
+        final SyncMetrics metrics = sync.getMetrics();
+        final StreamingRecordSaver saver = new StreamingRecordSaver(target, soupName, sync.getId(), idsToSkip, skipUnchanged, sync.getMaxTimeStamp(), metrics);
+        SyncMetrics.FetchTiming fetchTiming = metrics.startFetch();
+        target.startStreamingFetch(this, sync.getMaxTimeStamp(), saver);
+        saver.flush();
+        fetchTiming.end();
+        int totalSize = target.getTotalSize();
+        sync.setTotalSize(totalSize);
+        sync.setCountRecordsWritten(saver.countWritten);
+        sync.setCountRecordsSkipped(saver.countSaved - saver.countWritten);
+        updateSync(sync, SyncState.Status.RUNNING, 0, callback);
+        boolean fetched = true;
+        while (fetched) {
             // Update sync status.
-            if (countSaved < totalSize) {
-                updateSync(sync, SyncState.Status.RUNNING, countSaved*100 / totalSize, callback);
+            sync.setCountRecordsWritten(saver.countWritten);
+            sync.setCountRecordsSkipped(saver.countSaved - saver.countWritten);
+            if (saver.countSaved < totalSize) {
+                updateSync(sync, SyncState.Status.RUNNING, saver.countSaved * 100 / totalSize, callback);
             }
 
-            // Fetch next records, if any.
-            records = target.continueFetch(this);
+            // Fetch and save next records, if any.
+            fetchTiming = metrics.startFetch();
+            fetched = target.continueStreamingFetch(this, saver);
+            saver.flush();
+            fetchTiming.end();
         }
-        sync.setMaxTimeStamp(maxTimeStamp);
-	}
+        sync.setCountRecordsWritten(saver.countWritten);
+        sync.setCountRecordsSkipped(saver.countSaved - saver.countWritten);
+        sync.setMaxTimeStamp(saver.maxTimeStamp);
+    }
 
     private JSONArray removeWithIds(JSONArray records, Set<String> idsToSkip, String idField) throws JSONException {
         JSONArray arr = new JSONArray();
@@ -711,6 +1073,142 @@ public class SyncManager {
         return arr;
     }
 
+    /**
+     * Saves the records of a streaming sync down to the local store, STREAMING_SAVE_SIZE at a time
+     */
+    private class StreamingRecordSaver implements SyncDownTarget.RecordHandler {
+
+        private final SyncDownTarget target;
+        private final String soupName;
+        private final long syncId;
+        private final Set<String> idsToSkip;
+        private final boolean skipUnchanged;
+        private final String idField;
+        private final SyncMetrics metrics;
+        private JSONArray records = new JSONArray();
+        int countSaved;
+        int countWritten;
+        long maxTimeStamp;
+
+        StreamingRecordSaver(SyncDownTarget target, String soupName, long syncId, Set<String> idsToSkip, boolean skipUnchanged, long maxTimeStamp, SyncMetrics metrics) {
+            this.target = target;
+            this.soupName = soupName;
+            this.syncId = syncId;
+            this.idsToSkip = idsToSkip;
+            this.skipUnchanged = skipUnchanged;
+            this.idField = target.getIdFieldName();
+            this.maxTimeStamp = maxTimeStamp;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void onRecord(JSONObject record) throws JSONException {
+            records.put(record);
+            if (records.length() >= STREAMING_SAVE_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Save records received since last flush
+         */
+        void flush() throws JSONException {
+            if (records.length() > 0) {
+                final long saveStart = System.nanoTime();
+                JSONArray recordsToSave = idsToSkip == null ? records : removeWithIds(records, idsToSkip, idField);
+                if (skipUnchanged) {
+                    recordsToSave = target.removeUnchangedRecords(SyncManager.this, soupName, recordsToSave, syncId);
+                }
+                maxTimeStamp = Math.max(maxTimeStamp, target.getLatestModificationTimeStamp(records));
+                countSaved += records.length();
+                countWritten += recordsToSave.length();
+                target.saveRecordsToLocalStore(SyncManager.this, soupName, recordsToSave, syncId, false);
+                metrics.addRecords(records.length());
+                metrics.addTime(SyncMetrics.Phase.SAVE, System.nanoTime() - saveStart);
+                records = new JSONArray();
+            }
+        }
+    }
+
+    /**
+     * Fetches the next batches of records of a sync down on another thread
+     * (at most prefetchSize batches ahead of the ones being saved)
+     */
+    private class SyncDownPrefetcher implements Runnable {
+
+        private final SyncDownTarget target;
+        private final BlockingQueue<FetchResult> fetched;
+        private final SyncMetrics metrics;
+        private volatile boolean cancelled;
+
+        SyncDownPrefetcher(SyncDownTarget target, int prefetchSize, SyncMetrics metrics) {
+            this.target = target;
+            this.fetched = new ArrayBlockingQueue<>(prefetchSize);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            currentMetrics.set(metrics);
+            try {
+                JSONArray records;
+                do {
+                    SyncMetrics.FetchTiming fetchTiming = metrics.startFetch();
+                    records = target.continueFetch(SyncManager.this);
+                    fetchTiming.end();
+                    fetched.put(new FetchResult(records, null));
+                } while (records != null && !cancelled);
+            } catch (InterruptedException e) {
+                // Cancelled
+            } catch (Throwable e) {
+                // Errors are handed over too, otherwise the sync down would wait forever
+                try {
+                    fetched.put(new FetchResult(null, e));
+                } catch (InterruptedException ie) {
+                    // Cancelled
+                }
+            } finally {
+                currentMetrics.remove();
+            }
+        }
+
+        /**
+         * @return next batch of records (waiting for it if needed) or null if there are no more records to fetch
+         * @throws Exception if fetching failed
+         */
+        JSONArray next() throws Exception {
+            FetchResult result = fetched.take();
+            if (result.error instanceof Error) {
+                throw (Error) result.error;
+            }
+            if (result.error != null) {
+                throw (Exception) result.error;
+            }
+            return result.records;
+        }
+
+        /**
+         * Stop fetching
+         */
+        void cancel() {
+            cancelled = true;
+            fetched.clear();
+        }
+    }
+
+    /**
+     * Batch of records (or error) handed by the prefetcher to the sync down
+     */
+    private static class FetchResult {
+        final JSONArray records;
+        final Throwable error;
+
+        FetchResult(JSONArray records, Throwable error) {
+            this.records = records;
+            this.error = error;
+        }
+    }
+
     /**
      * Send request after adding user-agent header that says SmartSync
 	 * @param restRequest
@@ -719,8 +1217,19 @@ public class SyncManager {
 	 */
 	public RestResponse sendSyncWithSmartSyncUserAgent(RestRequest restRequest) throws IOException {
         SmartSyncLogger.d(TAG, "sendSyncWithSmartSyncUserAgent called with request: ", restRequest);
-        RestResponse restResponse = restClient.sendSync(restRequest, new HttpAccess.UserAgentInterceptor(SalesforceSDKManager.getInstance().getUserAgent(SMART_SYNC)));
-        return restResponse;
+        final HttpAccess.UserAgentInterceptor userAgentInterceptor = new HttpAccess.UserAgentInterceptor(SalesforceSDKManager.getInstance().getUserAgent(SMART_SYNC));
+
+        // Recording server calls made while running a sync in its metrics
+        final SyncMetrics metrics = currentMetrics.get();
+        if (metrics == null) {
+            return restClient.sendSync(restRequest, userAgentInterceptor);
+        }
+        final SyncMetricsInterceptor metricsInterceptor = new SyncMetricsInterceptor(metrics);
+        try {
+            return restClient.sendSync(restRequest, userAgentInterceptor, metricsInterceptor);
+        } finally {
+            metrics.addRetries(Math.max(0, metricsInterceptor.getAttempts() - 1));
+        }
     }
 
     /**
@@ -780,6 +1289,18 @@ public class SyncManager {
 		void onUpdate(SyncState sync);
 	}
 
+    /**
+     * Listener to get the final metrics of syncs
+     */
+    public interface SyncMetricsListener {
+        /**
+         * Called once when a sync is done or has failed
+         * @param sync Sync (with status DONE or FAILED)
+         * @param metrics Final metrics of the sync
+         */
+        void onSyncMetrics(SyncState sync, SyncMetrics metrics);
+    }
+
     /**
      * Callback to get clean resync ghosts completion status
      */
@@ -796,4 +1317,17 @@ public class SyncManager {
          */
         void onError(Exception e);
     }
+
+    /**
+     * Callback to get clean resync ghosts progress (only called when ghosts are cleaned up in chunks, see setCleanGhostsConcurrency)
+     */
+    public interface CleanResyncGhostsProgressCallback extends CleanResyncGhostsCallback {
+        /**
+         * Called after each window of local ids has been checked against the server
+         * @param numRecordsChecked Number of local records checked so far
+         * @param numRecordsToCheck Number of local records to check
+         * @param numGhostsRemoved Number of local ghosts removed so far
+         */
+        void onProgress(int numRecordsChecked, int numRecordsToCheck, int numGhostsRemoved);
+    }
 }
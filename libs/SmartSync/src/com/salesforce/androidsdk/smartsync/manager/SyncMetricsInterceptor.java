@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.manager;
+
+import com.salesforce.androidsdk.smartsync.util.SyncMetrics;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Network interceptor recording server calls of a sync in its metrics:
+ * number of attempts, bytes sent and received and time spent until the response body has been read
+ */
+class SyncMetricsInterceptor implements Interceptor {
+
+    private final SyncMetrics metrics;
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    SyncMetricsInterceptor(SyncMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return number of times the request went to the network (more than one when retried or redirected)
+     */
+    int getAttempts() {
+        return attempts.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Request request = chain.request();
+        attempts.incrementAndGet();
+        metrics.addRequest(request.body() == null ? 0 : request.body().contentLength());
+        final long start = System.nanoTime();
+        final Response response;
+        try {
+            response = chain.proceed(request);
+        } finally {
+            metrics.addTime(SyncMetrics.Phase.NETWORK, System.nanoTime() - start);
+        }
+        final ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+
+        // Counting bytes and time as the body is read
+        final ForwardingSource source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                final long readStart = System.nanoTime();
+                try {
+                    final long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        metrics.addBytesReceived(read);
+                    }
+                    return read;
+                } finally {
+                    metrics.addTime(SyncMetrics.Phase.NETWORK, System.nanoTime() - readStart);
+                }
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.manager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which progress updates of running syncs get persisted and reported.
+ *
+ * An update goes through if the sync status changed, if the total size changed,
+ * if progress moved by at least minProgressDelta percent or if minIntervalMillis elapsed since the last update that went through.
+ * Updates that end a sync (done / failed) are not subject to throttling.
+ */
+class SyncProgressThrottle {
+
+    static final long DEFAULT_MIN_INTERVAL_MILLIS = 250;
+    static final int DEFAULT_MIN_PROGRESS_DELTA = 5;
+
+    private volatile long minIntervalMillis = DEFAULT_MIN_INTERVAL_MILLIS;
+    private volatile int minProgressDelta = DEFAULT_MIN_PROGRESS_DELTA;
+    private final Map<Long, Mark> syncIdToLastReported = new ConcurrentHashMap<>();
+
+    /**
+     * Change thresholds
+     * @param minIntervalMillis
+     * @param minProgressDelta pass 0 to let every update through
+     */
+    void setThresholds(long minIntervalMillis, int minProgressDelta) {
+        this.minIntervalMillis = Math.max(0, minIntervalMillis);
+        this.minProgressDelta = Math.max(0, minProgressDelta);
+    }
+
+    /**
+     * Return true if the update should be persisted and reported (and remember it as the last one)
+     * @param syncId
+     * @param statusChanged
+     * @param progress
+     * @param totalSize
+     * @param nowMillis
+     * @return
+     */
+    boolean shouldReport(long syncId, boolean statusChanged, int progress, int totalSize, long nowMillis) {
+        final Mark last = syncIdToLastReported.get(syncId);
+        final boolean report = statusChanged
+                || last == null
+                || totalSize != last.totalSize
+                || Math.abs(progress - last.progress) >= minProgressDelta
+                || nowMillis - last.timeMillis >= minIntervalMillis;
+        if (report) {
+            syncIdToLastReported.put(syncId, new Mark(progress, totalSize, nowMillis));
+        }
+        return report;
+    }
+
+    /**
+     * Forget about a sync that is no longer running
+     * @param syncId
+     */
+    void forget(long syncId) {
+        syncIdToLastReported.remove(syncId);
+    }
+
+    /**
+     * Last update that went through
+     */
+    private static class Mark {
+        final int progress;
+        final int totalSize;
+        final long timeMillis;
+
+        Mark(int progress, int totalSize, long timeMillis) {
+            this.progress = progress;
+            this.totalSize = totalSize;
+            this.timeMillis = timeMillis;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.manager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the work submitted by the sync manager (syncs, resyncs, ghost cleanups) on a bounded pool of threads.
+ *
+ * Work for different soups runs concurrently (up to getMaxConcurrentSyncs() at a time).
+ * Work sharing a soup runs one at a time (work can involve several soups, e.g. parent and children soups).
+ * Waiting work is started by priority first and in submission order second.
+ */
+public class SyncScheduler {
+
+    /**
+     * Priority of submitted work
+     * The sync manager submits everything with NORMAL priority (i.e. in submission order)
+     * unless a priority is passed to SyncManager.runSync, reSync or cleanResyncGhosts
+     */
+    public enum Priority {
+        LOW,    // background work
+        NORMAL, // default
+        HIGH    // user initiated work
+    }
+
+    // Idle threads are let go after that long
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final Set<String> busySoups = new HashSet<>(); // guarded by this, soups with started work
+    private final TreeSet<Task> waitingTasks = new TreeSet<>(); // guarded by this, work waiting for its soups
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param maxConcurrentSyncs
+     */
+    SyncScheduler(int maxConcurrentSyncs) {
+        final int poolSize = Math.max(1, maxConcurrentSyncs);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submit work
+     * @param soupName soup the work reads and writes - work for the same soup never runs concurrently
+     * @param priority
+     * @param runnable
+     */
+    public void submit(String soupName, Priority priority, Runnable runnable) {
+        submit(Collections.singleton(soupName), priority, runnable);
+    }
+
+    /**
+     * Submit work
+     * @param soupNames soups the work reads and writes - work sharing a soup never runs concurrently
+     * @param priority
+     * @param runnable
+     */
+    public synchronized void submit(Collection<String> soupNames, Priority priority, Runnable runnable) {
+        waitingTasks.add(new Task(new HashSet<>(soupNames), priority, sequence.getAndIncrement(), runnable));
+        startWaitingTasks();
+    }
+
+    /**
+     * Set how many soups can be worked on at the same time
+     * @param maxConcurrentSyncs
+     */
+    public synchronized void setMaxConcurrentSyncs(int maxConcurrentSyncs) {
+        final int poolSize = Math.max(1, maxConcurrentSyncs);
+        if (poolSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(poolSize);
+            executor.setCorePoolSize(poolSize);
+        } else {
+            executor.setCorePoolSize(poolSize);
+            executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /**
+     * @return how many soups can be worked on at the same time
+     */
+    public int getMaxConcurrentSyncs() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return number of submitted tasks that have not started yet
+     */
+    public synchronized int getQueueDepth() {
+        return executor.getQueue().size() + waitingTasks.size();
+    }
+
+    /**
+     * @return number of tasks running right now
+     */
+    public int getRunningCount() {
+        return runningCount.get();
+    }
+
+    /**
+     * @return number of tasks that have run to completion (successfully or not) since creation
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Stop running tasks and drop waiting ones
+     */
+    public synchronized void shutdownNow() {
+        waitingTasks.clear();
+        busySoups.clear();
+        executor.shutdownNow();
+    }
+
+    private synchronized void onTaskDone(Task task) {
+        busySoups.removeAll(task.soupNames);
+        startWaitingTasks();
+    }
+
+    /**
+     * Start waiting tasks whose soups are free, by priority then submission order
+     * A task that can't start keeps later tasks sharing one of its soups waiting, so they don't get ahead of it
+     */
+    private void startWaitingTasks() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        final Set<String> blockedSoups = new HashSet<>(busySoups);
+        final Iterator<Task> iterator = waitingTasks.iterator();
+        while (iterator.hasNext()) {
+            final Task task = iterator.next();
+            if (Collections.disjoint(task.soupNames, blockedSoups)) {
+                iterator.remove();
+                busySoups.addAll(task.soupNames);
+                executor.execute(task);
+            }
+            blockedSoups.addAll(task.soupNames);
+        }
+    }
+
+    /**
+     * Submitted work
+     * Ordered by priority (highest first) then by submission order
+     */
+    private class Task implements Runnable, Comparable<Task> {
+        final Set<String> soupNames;
+        final Priority priority;
+        final long sequenceNumber;
+        final Runnable runnable;
+
+        Task(Set<String> soupNames, Priority priority, long sequenceNumber, Runnable runnable) {
+            this.soupNames = soupNames;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runningCount.incrementAndGet();
+            try {
+                runnable.run();
+            } finally {
+                runningCount.decrementAndGet();
+                completedCount.incrementAndGet();
+                onTaskDone(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) {
+                return other.priority.compareTo(priority);
+            }
+            return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.target;
+
+import com.salesforce.androidsdk.rest.RestRequest;
+import com.salesforce.androidsdk.rest.RestResponse;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartsync.manager.SyncManager;
+import com.salesforce.androidsdk.smartsync.util.Constants;
+import com.salesforce.androidsdk.smartsync.util.SmartSyncLogger;
+import com.salesforce.androidsdk.smartsync.util.SyncState.MergeMode;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sync up target that uploads records in batches using the sObject Collections API
+ * instead of one request per record.
+ *
+ * During a sync up, sync manager hands it up to getMaxBatchSize() records at a time through syncUpRecords.
+ * For each batch, it does the following:
+ *
+ * 1) if merge mode is leave-if-changed, it drops records for which isNewerThanServer returns false
+ *
+ * 2) it sends one collection create, one collection update and one collection delete request (skipping empty ones)
+ *    records that were updated locally but deleted on the server are re-created when merge mode is overwrite
+ *
+ * 3) it saves the outcome of every record in the local store in one transaction:
+ *    cleaned records are saved, failed records are saved with their last error, deleted records are removed
+ *
+ */
+public class BatchSyncUpTarget extends SyncUpTarget {
+
+    // Constants
+    public static final String TAG = "BatchSyncUpTarget";
+    public static final String MAX_BATCH_SIZE = "maxBatchSize";
+    public static final int DEFAULT_MAX_BATCH_SIZE = 200; // largest batch accepted by the sObject Collections API
+
+    // Keys in sObject Collections responses
+    private static final String SUCCESS = "success";
+    private static final String ERRORS = "errors";
+    private static final String STATUS_CODE = "statusCode";
+    private static final String ENTITY_IS_DELETED = "ENTITY_IS_DELETED";
+
+    // Fields
+    protected int maxBatchSize;
+
+    /**
+     * Construct BatchSyncUpTarget
+     */
+    public BatchSyncUpTarget() {
+        this(null, null);
+    }
+
+    /**
+     * Construct BatchSyncUpTarget
+     * @param createFieldlist
+     * @param updateFieldlist
+     */
+    public BatchSyncUpTarget(List<String> createFieldlist, List<String> updateFieldlist) {
+        this(createFieldlist, updateFieldlist, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Construct BatchSyncUpTarget
+     * @param createFieldlist
+     * @param updateFieldlist
+     * @param maxBatchSize number of records sent per request (capped at DEFAULT_MAX_BATCH_SIZE)
+     */
+    public BatchSyncUpTarget(List<String> createFieldlist, List<String> updateFieldlist, int maxBatchSize) {
+        super(createFieldlist, updateFieldlist);
+        setMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * Construct BatchSyncUpTarget from json
+     * @param target
+     * @throws JSONException
+     */
+    public BatchSyncUpTarget(JSONObject target) throws JSONException {
+        super(target);
+        setMaxBatchSize(target.optInt(MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE));
+    }
+
+    /**
+     * @return json representation of target
+     * @throws JSONException
+     */
+    public JSONObject asJSON() throws JSONException {
+        JSONObject target = super.asJSON();
+        target.put(MAX_BATCH_SIZE, maxBatchSize);
+        return target;
+    }
+
+    /**
+     * @return maximum number of records handed to syncUpRecords at once
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    private void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize > 0 && maxBatchSize <= DEFAULT_MAX_BATCH_SIZE ? maxBatchSize : DEFAULT_MAX_BATCH_SIZE;
+    }
+
+    /**
+     * Sync up a batch of records
+     * @param syncManager
+     * @param soupName
+     * @param records records to sync up (at most getMaxBatchSize())
+     * @param fieldlist fields to sync up (this.createFieldlist / this.updateFieldlist will be used instead if provided)
+     * @param mergeMode
+     * @throws JSONException
+     * @throws IOException
+     */
+    public void syncUpRecords(SyncManager syncManager, String soupName, List<JSONObject> records, List<String> fieldlist, MergeMode mergeMode) throws JSONException, IOException {
+        final List<JSONObject> recordsToCreate = new ArrayList<>();
+        final List<JSONObject> recordsToUpdate = new ArrayList<>();
+        final List<JSONObject> recordsToDelete = new ArrayList<>();
+        final List<JSONObject> recordsToClean = new ArrayList<>();
+        final List<JSONObject> recordsWithError = new ArrayList<>();
+        final List<JSONObject> recordsToDeleteLocally = new ArrayList<>();
+
+        final Map<String, RecordModDate> idToRemoteModDates = mergeMode == MergeMode.LEAVE_IF_CHANGED
+                ? fetchLastModifiedDates(syncManager, records)
+                : null;
+        for (JSONObject record : records) {
+            if (mergeMode == MergeMode.LEAVE_IF_CHANGED && !isNewerThanServer(syncManager, record, idToRemoteModDates)) {
+                // Nothing to do for this record
+                SmartSyncLogger.d(TAG, "syncUpRecords: Record not synched since client does not have the latest from server", record);
+                continue;
+            }
+            if (isLocallyDeleted(record)) {
+                if (isLocallyCreated(record)) {
+                    // Never made it to the server
+                    recordsToDeleteLocally.add(record);
+                } else {
+                    recordsToDelete.add(record);
+                }
+            } else if (isLocallyCreated(record)) {
+                recordsToCreate.add(record);
+            } else if (isLocallyUpdated(record)) {
+                recordsToUpdate.add(record);
+            }
+        }
+
+        // Server round trips
+        createRecordsOnServer(syncManager, recordsToCreate, fieldlist, recordsToClean, recordsWithError);
+        final List<JSONObject> recordsRemotelyDeleted = updateRecordsOnServer(syncManager, recordsToUpdate, fieldlist, recordsToClean, recordsWithError);
+        if (mergeMode == MergeMode.OVERWRITE) {
+            createRecordsOnServer(syncManager, recordsRemotelyDeleted, fieldlist, recordsToClean, recordsWithError);
+        }
+        deleteRecordsOnServer(syncManager, recordsToDelete, recordsToDeleteLocally, recordsWithError);
+
+        // Local changes for the whole batch
+        saveBatchInLocalStore(syncManager, soupName, recordsToClean, recordsWithError, recordsToDeleteLocally);
+    }
+
+    /**
+     * Create records on server with one collection request
+     * Records created get their server id and are added to recordsToClean, the others to recordsWithError
+     * @param syncManager
+     * @param records
+     * @param fieldlist
+     * @param recordsToClean
+     * @param recordsWithError
+     * @throws JSONException
+     * @throws IOException
+     */
+    protected void createRecordsOnServer(SyncManager syncManager, List<JSONObject> records, List<String> fieldlist,
+                                         List<JSONObject> recordsToClean, List<JSONObject> recordsWithError) throws JSONException, IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        fieldlist = this.createFieldlist != null ? this.createFieldlist : fieldlist;
+        final JSONArray recordsJson = new JSONArray();
+        for (JSONObject record : records) {
+            recordsJson.put(buildCollectionRecord(record, fieldlist, false));
+        }
+        final RestRequest request = RestRequest.getRequestForCollectionCreate(syncManager.apiVersion, false, recordsJson);
+        final RestResponse response = syncManager.sendSyncWithSmartSyncUserAgent(request);
+        if (!response.isSuccess()) {
+            addError(records, response.asString(), recordsWithError);
+            return;
+        }
+        final JSONArray results = response.asJSONArray();
+        for (int i = 0; i < records.size(); i++) {
+            final JSONObject record = records.get(i);
+            final JSONObject result = results.getJSONObject(i);
+            if (result.optBoolean(SUCCESS)) {
+                record.put(getIdFieldName(), result.getString(Constants.LID));
+                recordsToClean.add(record);
+            } else {
+                addError(record, result, recordsWithError);
+            }
+        }
+    }
+
+    /**
+     * Update records on server with one collection request
+     * Records updated are added to recordsToClean, the others to recordsWithError unless they were deleted on the server
+     * @param syncManager
+     * @param records
+     * @param fieldlist
+     * @param recordsToClean
+     * @param recordsWithError
+     * @return records deleted on the server
+     * @throws JSONException
+     * @throws IOException
+     */
+    protected List<JSONObject> updateRecordsOnServer(SyncManager syncManager, List<JSONObject> records, List<String> fieldlist,
+                                                     List<JSONObject> recordsToClean, List<JSONObject> recordsWithError) throws JSONException, IOException {
+        final List<JSONObject> recordsRemotelyDeleted = new ArrayList<>();
+        if (records.isEmpty()) {
+            return recordsRemotelyDeleted;
+        }
+        fieldlist = this.updateFieldlist != null ? this.updateFieldlist : fieldlist;
+        final JSONArray recordsJson = new JSONArray();
+        for (JSONObject record : records) {
+            recordsJson.put(buildCollectionRecord(record, fieldlist, true));
+        }
+        final RestRequest request = RestRequest.getRequestForCollectionUpdate(syncManager.apiVersion, false, recordsJson);
+        final RestResponse response = syncManager.sendSyncWithSmartSyncUserAgent(request);
+        if (!response.isSuccess()) {
+            addError(records, response.asString(), recordsWithError);
+            return recordsRemotelyDeleted;
+        }
+        final JSONArray results = response.asJSONArray();
+        for (int i = 0; i < records.size(); i++) {
+            final JSONObject record = records.get(i);
+            final JSONObject result = results.getJSONObject(i);
+            if (result.optBoolean(SUCCESS)) {
+                recordsToClean.add(record);
+            } else if (isEntityDeleted(result)) {
+                recordsRemotelyDeleted.add(record);
+            } else {
+                addError(record, result, recordsWithError);
+            }
+        }
+        return recordsRemotelyDeleted;
+    }
+
+    /**
+     * Delete records on server with one collection request
+     * Records deleted (or already gone) are added to recordsToDeleteLocally, the others to recordsWithError
+     * @param syncManager
+     * @param records
+     * @param recordsToDeleteLocally
+     * @param recordsWithError
+     * @throws JSONException
+     * @throws IOException
+     */
+    protected void deleteRecordsOnServer(SyncManager syncManager, List<JSONObject> records,
+                                         List<JSONObject> recordsToDeleteLocally, List<JSONObject> recordsWithError) throws JSONException, IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        final List<String> objectIds = new ArrayList<>();
+        for (JSONObject record : records) {
+            objectIds.add(record.getString(getIdFieldName()));
+        }
+        final RestRequest request = RestRequest.getRequestForCollectionDelete(syncManager.apiVersion, false, objectIds);
+        final RestResponse response = syncManager.sendSyncWithSmartSyncUserAgent(request);
+        if (!response.isSuccess()) {
+            addError(records, response.asString(), recordsWithError);
+            return;
+        }
+        final JSONArray results = response.asJSONArray();
+        for (int i = 0; i < records.size(); i++) {
+            final JSONObject record = records.get(i);
+            final JSONObject result = results.getJSONObject(i);
+            if (result.optBoolean(SUCCESS) || isEntityDeleted(result)) {
+                recordsToDeleteLocally.add(record);
+            } else {
+                addError(record, result, recordsWithError);
+            }
+        }
+    }
+
+    /**
+     * Save the outcome of a batch in the local store in a single transaction
+     * @param syncManager
+     * @param soupName
+     * @param recordsToClean
+     * @param recordsWithError
+     * @param recordsToDeleteLocally
+     * @throws JSONException
+     */
+    protected void saveBatchInLocalStore(SyncManager syncManager, String soupName, List<JSONObject> recordsToClean,
+                                         List<JSONObject> recordsWithError, List<JSONObject> recordsToDeleteLocally) throws JSONException {
+        final SmartStore smartStore = syncManager.getSmartStore();
+        synchronized(smartStore.getDatabase()) {
+            try {
+                smartStore.beginTransaction();
+                for (JSONObject record : recordsToClean) {
+                    cleanAndSaveInSmartStore(smartStore, soupName, record, getIdFieldName(), false);
+                }
+                for (JSONObject record : recordsWithError) {
+                    saveInSmartStore(smartStore, soupName, record, getIdFieldName(), false);
+                }
+                if (!recordsToDeleteLocally.isEmpty()) {
+                    final Long[] soupEntryIds = new Long[recordsToDeleteLocally.size()];
+                    for (int i = 0; i < soupEntryIds.length; i++) {
+                        soupEntryIds[i] = recordsToDeleteLocally.get(i).getLong(SmartStore.SOUP_ENTRY_ID);
+                    }
+                    smartStore.delete(soupName, soupEntryIds, false);
+                }
+                smartStore.setTransactionSuccessful();
+            }
+            finally {
+                smartStore.endTransaction();
+            }
+        }
+        SmartSyncLogger.d(TAG, "saveBatchInLocalStore: cleaned " + recordsToClean.size()
+                + ", failed " + recordsWithError.size()
+                + ", deleted " + recordsToDeleteLocally.size());
+    }
+
+    private JSONObject buildCollectionRecord(JSONObject record, List<String> fieldlist, boolean includeId) throws JSONException {
+        final String objectType = (String) SmartStore.project(record, Constants.SOBJECT_TYPE);
+        final Map<String, Object> fields = buildFieldsMap(record, fieldlist, getIdFieldName(), getModificationDateFieldName());
+        final JSONObject collectionRecord = new JSONObject(fields);
+        collectionRecord.put(RestRequest.ATTRIBUTES, new JSONObject().put(RestRequest.TYPE, objectType));
+        if (includeId) {
+            collectionRecord.put(Constants.ID, record.getString(getIdFieldName()));
+        }
+        return collectionRecord;
+    }
+
+    private boolean isEntityDeleted(JSONObject result) {
+        final JSONArray errors = result.optJSONArray(ERRORS);
+        if (errors != null) {
+            for (int i = 0; i < errors.length(); i++) {
+                final JSONObject error = errors.optJSONObject(i);
+                if (error != null && ENTITY_IS_DELETED.equals(error.optString(STATUS_CODE))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addError(JSONObject record, JSONObject result, List<JSONObject> recordsWithError) throws JSONException {
+        final JSONArray errors = result.optJSONArray(ERRORS);
+        record.put(SyncTarget.LAST_ERROR, errors != null ? errors.toString() : result.toString());
+        recordsWithError.add(record);
+    }
+
+    private void addError(List<JSONObject> records, String error, List<JSONObject> recordsWithError) throws JSONException {
+        for (JSONObject record : records) {
+            record.put(SyncTarget.LAST_ERROR, error);
+            recordsWithError.add(record);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.target;
+
+import com.salesforce.androidsdk.smartsync.manager.SyncManager;
+import com.salesforce.androidsdk.smartsync.util.SmartSyncLogger;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Removes ghosts (local non-dirty records no longer on the server) one window of local ids at a time.
+ *
+ * Local ids are read in ascending order, a window at a time (keyset paging, so deletions don't shift windows).
+ * Each window is cut in slices of getCountIdsPerGhostQuery() ids which are checked against the server concurrently
+ * (at most maxConcurrentQueries calls in flight). Ghosts of a window are deleted before the next window is read.
+ */
+class ChunkedGhostCleaner {
+
+    private static final String TAG = "ChunkedGhostCleaner";
+
+    private final SyncDownTarget target;
+    private final SyncManager syncManager;
+    private final String soupName;
+    private final long syncId;
+    private final int maxConcurrentQueries;
+    private final SyncManager.CleanResyncGhostsProgressCallback progressCallback;
+
+    /**
+     * Constructor
+     * @param target
+     * @param syncManager
+     * @param soupName
+     * @param syncId
+     * @param maxConcurrentQueries
+     * @param progressCallback can be null
+     */
+    ChunkedGhostCleaner(SyncDownTarget target, SyncManager syncManager, String soupName, long syncId,
+                        int maxConcurrentQueries, SyncManager.CleanResyncGhostsProgressCallback progressCallback) {
+        this.target = target;
+        this.syncManager = syncManager;
+        this.soupName = soupName;
+        this.syncId = syncId;
+        this.maxConcurrentQueries = Math.max(1, maxConcurrentQueries);
+        this.progressCallback = progressCallback;
+    }
+
+    /**
+     * Go through all the windows
+     * @return number of ghosts removed
+     * @throws JSONException, IOException
+     */
+    int run() throws JSONException, IOException {
+        final String idFieldName = target.getIdFieldName();
+        final String additionalPredicate = target.buildSyncIdPredicateIfIndexed(syncManager, soupName, syncId);
+        final int sliceSize = Math.max(1, target.getCountIdsPerGhostQuery());
+        final int windowSize = sliceSize * maxConcurrentQueries;
+        final int countToCheck = target.countNonDirtyRecords(syncManager, soupName, idFieldName, additionalPredicate);
+        final ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentQueries);
+        int countChecked = 0;
+        int countRemoved = 0;
+        try {
+            String afterId = null;
+            while (true) {
+                final SortedSet<String> windowIds = target.getNonDirtyRecordIdsWindow(syncManager, soupName,
+                        idFieldName, additionalPredicate, afterId, windowSize);
+                if (windowIds.isEmpty()) {
+                    break;
+                }
+
+                // Checks the window against the server and deletes its ghosts
+                final Set<String> ghostIds = new HashSet<>(windowIds);
+                ghostIds.removeAll(fetchRemoteIds(executor, new ArrayList<>(windowIds), sliceSize));
+                if (ghostIds.size() > 0) {
+                    target.deleteRecordsFromLocalStore(syncManager, soupName, ghostIds, idFieldName);
+                }
+                countChecked += windowIds.size();
+                countRemoved += ghostIds.size();
+                SmartSyncLogger.d(TAG, "run", "checked:" + countChecked + "/" + countToCheck + " removed:" + countRemoved);
+                if (progressCallback != null) {
+                    progressCallback.onProgress(countChecked, Math.max(countChecked, countToCheck), countRemoved);
+                }
+                if (windowIds.size() < windowSize) {
+                    break;
+                }
+                afterId = windowIds.last();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return countRemoved;
+    }
+
+    private Set<String> fetchRemoteIds(ExecutorService executor, List<String> ids, int sliceSize) throws JSONException, IOException {
+        final List<Future<Set<String>>> futures = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += sliceSize) {
+            final List<String> slice = ids.subList(start, Math.min(ids.size(), start + sliceSize));
+            futures.add(executor.submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    return target.getRemoteIdsForSlice(syncManager, slice);
+                }
+            }));
+        }
+        final Set<String> remoteIds = new HashSet<>();
+        try {
+            for (Future<Set<String>> future : futures) {
+                final Set<String> sliceRemoteIds = future.get();
+                if (sliceRemoteIds == null) {
+                    // Target could not tell - not deleting anything from this window
+                    remoteIds.addAll(ids);
+                } else {
+                    remoteIds.addAll(sliceRemoteIds);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SyncManager.SmartSyncException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof JSONException) {
+                throw (JSONException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SyncManager.SmartSyncException(cause);
+        } finally {
+            for (Future<Set<String>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return remoteIds;
+    }
+}
@@ -119,6 +119,14 @@ public class ParentChildrenSyncDownTarget extends SoqlSyncDownTarget {
         return target;
     }
 
+    @Override
+    public Set<String> getSoupNames(String soupName) {
+        // Children are saved in their own soup
+        Set<String> soupNames = new HashSet<>(super.getSoupNames(soupName));
+        soupNames.add(childrenInfo.soupName);
+        return soupNames;
+    }
+
     @Override
     protected String getSoqlForRemoteIds() {
         // This is for clean re-sync ghosts
@@ -269,6 +277,24 @@ public class ParentChildrenSyncDownTarget extends SoqlSyncDownTarget {
         return filter;
     }
 
+    @Override
+    public boolean supportsStreaming() {
+        // Records need to be reshaped (see getRecordsFromResponseJson) and are saved as trees
+        return false;
+    }
+
+    @Override
+    public JSONArray removeUnchangedRecords(SyncManager syncManager, String soupName, JSONArray records, long syncId) {
+        // Records are saved as trees (parent and children in different soups)
+        return records;
+    }
+
+    @Override
+    public boolean supportsChunkedGhostCleanup() {
+        // Children ghosts are cleaned up along with parent ghosts (see cleanGhosts)
+        return false;
+    }
+
     @Override
     protected JSONArray getRecordsFromResponseJson(JSONObject responseJson) throws JSONException {
         JSONArray records = responseJson.getJSONArray(Constants.RECORDS);
@@ -26,6 +26,8 @@
  */
 package com.salesforce.androidsdk.smartsync.target;
 
+import android.text.TextUtils;
+
 import com.salesforce.androidsdk.rest.RestRequest;
 import com.salesforce.androidsdk.rest.RestResponse;
 import com.salesforce.androidsdk.smartsync.app.Features;
@@ -47,10 +49,14 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Target for sync that uploads parent with children records
@@ -110,11 +116,25 @@ public class ParentChildrenSyncUpTarget extends SyncUpTarget implements Advanced
         return target;
     }
 
+    @Override
+    public Set<String> getSoupNames(String soupName) {
+        // Children are saved in their own soup
+        Set<String> soupNames = new HashSet<>(super.getSoupNames(soupName));
+        soupNames.add(childrenInfo.soupName);
+        return soupNames;
+    }
+
     @Override
     protected String getDirtyRecordIdsSql(String soupName, String idField) {
         return ParentChildrenSyncTargetHelper.getDirtyRecordIdsSql(parentInfo, childrenInfo, idField);
     }
 
+    @Override
+    protected boolean supportsChangeJournal() {
+        // Parents with dirty children are not in the change journal of the parent soup
+        return false;
+    }
+
     @Override
     public String createOnServer(SyncManager syncManager, JSONObject record, List<String> fieldlist) {
         throw new UnsupportedOperationException("For advanced sync up target, call syncUpOneRecord");
@@ -468,6 +488,39 @@ public class ParentChildrenSyncUpTarget extends SyncUpTarget implements Advanced
         return idToLocalTimestamps;
     }
 
+    /**
+     * Return true if record and its children are more recent than corresponding records on server
+     * Uses last modified dates obtained from fetchLastModifiedDates(SyncManager, List)
+     *
+     * @param syncManager
+     * @param record
+     * @param idToRemoteModDates
+     * @return
+     * @throws JSONException
+     * @throws IOException
+     */
+    @Override
+    public boolean isNewerThanServer(SyncManager syncManager, JSONObject record, Map<String, RecordModDate> idToRemoteModDates) throws JSONException, IOException {
+        if (isLocallyCreated(record)) {
+            return true;
+        }
+        if (!idToRemoteModDates.containsKey(record.getString(getIdFieldName()))) {
+            return isNewerThanServer(syncManager, record);
+        }
+        Map<String, RecordModDate> idToLocalTimestamps = getLocalLastModifiedDates(syncManager, record);
+        for (String id : idToLocalTimestamps.keySet()) {
+            final RecordModDate localModDate = idToLocalTimestamps.get(id);
+            RecordModDate remoteModDate = idToRemoteModDates.get(id);
+            if (remoteModDate == null) {
+                remoteModDate = new RecordModDate(null, true); // if it wasn't returned by fetchLastModifiedDates, then the record must have been deleted
+            }
+            if (!super.isNewerThanServer(localModDate, remoteModDate)) {
+                return false; // no need to go further
+            }
+        }
+        return true;
+    }
+
     /**
      * Fetch last modified dates for a given record and its chidlren
      * @param syncManager
@@ -483,19 +536,117 @@ public class ParentChildrenSyncUpTarget extends SyncUpTarget implements Advanced
             JSONArray rows = lastModResponse.isSuccess() ? lastModResponse.asJSONObject().getJSONArray(Constants.RECORDS) : null;
             if (rows != null && rows.length() > 0) {
                 JSONObject row = rows.getJSONObject(0);
-                idToRemoteTimestamps.put(row.getString(getIdFieldName()), row.getString(getModificationDateFieldName()));
-                if (row.has(childrenInfo.sobjectTypePlural) && !row.isNull(childrenInfo.sobjectTypePlural)) {
-                    JSONArray childrenRows = row.getJSONObject(childrenInfo.sobjectTypePlural).getJSONArray(Constants.RECORDS);
-                    for (int i = 0; i < childrenRows.length(); i++) {
-                        final JSONObject childRow = childrenRows.getJSONObject(i);
-                        idToRemoteTimestamps.put(childRow.getString(childrenInfo.idFieldName), childRow.getString(childrenInfo.modificationDateFieldName));
-                    }
+                Map<String, RecordModDate> idToRemoteModDates = new HashMap<>();
+                idToRemoteModDates.put(row.getString(getIdFieldName()), new RecordModDate(row.getString(getModificationDateFieldName()), false));
+                addChildrenModDates(syncManager, row, idToRemoteModDates);
+                for (Map.Entry<String, RecordModDate> entry : idToRemoteModDates.entrySet()) {
+                    idToRemoteTimestamps.put(entry.getKey(), entry.getValue().timestamp);
                 }
             }
         }
         return idToRemoteTimestamps;
     }
 
+    /**
+     * Fetch last modified dates for a list of records and their children
+     * Uses one SOQL query (with a nested query for the children) per MAX_RECORDS_PER_TIMESTAMPS_QUERY parents
+     * and follows nextRecordsUrl for the parents and for the children
+     * Parents missing from complete results are reported as deleted, parents for which a query failed are left out
+     * Returns an empty map if a subclass overrides isNewerThanServer(SyncManager, JSONObject), fetchLastModifiedDates(SyncManager, JSONObject)
+     * or getRequestForTimestamps(String, String), so that every record goes through the overridden method
+     *
+     * @param syncManager
+     * @param records
+     * @return map of parent or child id to last modified date on server
+     * @throws JSONException
+     * @throws IOException
+     */
+    @Override
+    public Map<String, RecordModDate> fetchLastModifiedDates(SyncManager syncManager, List<JSONObject> records) throws JSONException, IOException {
+        Map<String, RecordModDate> idToRemoteModDates = new HashMap<>();
+        if (isOverridden(ParentChildrenSyncUpTarget.class, "isNewerThanServer", SyncManager.class, JSONObject.class)
+                || isOverridden(ParentChildrenSyncUpTarget.class, "fetchLastModifiedDates", SyncManager.class, JSONObject.class)
+                || isOverridden(ParentChildrenSyncUpTarget.class, "getRequestForTimestamps", String.class, String.class)) {
+            return idToRemoteModDates;
+        }
+        List<String> parentIds = new ArrayList<>();
+        for (JSONObject record : records) {
+            if (!isLocallyCreated(record)) {
+                parentIds.add(record.getString(getIdFieldName()));
+            }
+        }
+        for (int start = 0; start < parentIds.size(); start += MAX_RECORDS_PER_TIMESTAMPS_QUERY) {
+            List<String> parentIdsChunk = parentIds.subList(start, Math.min(start + MAX_RECORDS_PER_TIMESTAMPS_QUERY, parentIds.size()));
+            Set<String> incompleteParentIds = new HashSet<>();
+            boolean complete = true;
+            RestRequest lastModRequest = getRequestForTimestamps(syncManager.apiVersion, parentIdsChunk);
+            while (lastModRequest != null) {
+                RestResponse lastModResponse = syncManager.sendSyncWithSmartSyncUserAgent(lastModRequest);
+                if (!lastModResponse.isSuccess()) {
+                    complete = false;
+                    break;
+                }
+                JSONObject responseJson = lastModResponse.asJSONObject();
+                JSONArray rows = responseJson.getJSONArray(Constants.RECORDS);
+                for (int i = 0; i < rows.length(); i++) {
+                    JSONObject row = rows.getJSONObject(i);
+                    String parentId = row.getString(getIdFieldName());
+                    idToRemoteModDates.put(parentId, new RecordModDate(row.getString(getModificationDateFieldName()), false));
+                    if (!addChildrenModDates(syncManager, row, idToRemoteModDates)) {
+                        incompleteParentIds.add(parentId);
+                    }
+                }
+                String nextUrl = JSONObjectHelper.optString(responseJson, Constants.NEXT_RECORDS_URL);
+                lastModRequest = nextUrl == null ? null : new RestRequest(RestRequest.RestMethod.GET, nextUrl);
+            }
+            for (String parentId : parentIdsChunk) {
+                if (incompleteParentIds.contains(parentId)) {
+                    // Leaving it out - isNewerThanServer will check it on its own
+                    idToRemoteModDates.remove(parentId);
+                } else if (complete && !idToRemoteModDates.containsKey(parentId)) {
+                    idToRemoteModDates.put(parentId, new RecordModDate(null, true));
+                }
+            }
+        }
+        return idToRemoteModDates;
+    }
+
+    /**
+     * Add last modified dates of the children in a parent row returned by the timestamps query
+     * Follows nextRecordsUrl when the children do not fit in the parent row
+     *
+     * @param syncManager
+     * @param row
+     * @param idToRemoteModDates
+     * @return false if some children could not be fetched
+     * @throws JSONException
+     * @throws IOException
+     */
+    protected boolean addChildrenModDates(SyncManager syncManager, JSONObject row, Map<String, RecordModDate> idToRemoteModDates) throws JSONException, IOException {
+        if (!row.has(childrenInfo.sobjectTypePlural) || row.isNull(childrenInfo.sobjectTypePlural)) {
+            return true;
+        }
+        JSONObject childrenJson = row.getJSONObject(childrenInfo.sobjectTypePlural);
+        while (childrenJson != null) {
+            JSONArray childrenRows = childrenJson.getJSONArray(Constants.RECORDS);
+            for (int j = 0; j < childrenRows.length(); j++) {
+                final JSONObject childRow = childrenRows.getJSONObject(j);
+                idToRemoteModDates.put(childRow.getString(childrenInfo.idFieldName), new RecordModDate(childRow.getString(childrenInfo.modificationDateFieldName), false));
+            }
+            String nextUrl = JSONObjectHelper.optString(childrenJson, Constants.NEXT_RECORDS_URL);
+            if (nextUrl == null) {
+                childrenJson = null;
+            } else {
+                RestResponse childrenResponse = syncManager.sendSyncWithSmartSyncUserAgent(new RestRequest(RestRequest.RestMethod.GET, nextUrl));
+                if (!childrenResponse.isSuccess()) {
+                    return false;
+                }
+                childrenJson = childrenResponse.asJSONObject();
+            }
+        }
+        return true;
+    }
+
     /**
      * Build SOQL request to get current time stamps
      *
@@ -505,11 +656,23 @@ public class ParentChildrenSyncUpTarget extends SyncUpTarget implements Advanced
      * @throws UnsupportedEncodingException
      */
     protected RestRequest getRequestForTimestamps(String apiVersion, String parentId) throws UnsupportedEncodingException {
+        return getRequestForTimestamps(apiVersion, Collections.singletonList(parentId));
+    }
+
+    /**
+     * Build SOQL request to get current time stamps of several parents and their children
+     *
+     * @param apiVersion
+     * @param parentIds
+     * @return
+     * @throws UnsupportedEncodingException
+     */
+    protected RestRequest getRequestForTimestamps(String apiVersion, List<String> parentIds) throws UnsupportedEncodingException {
         SOQLBuilder builderNested = SOQLBuilder.getInstanceWithFields(childrenInfo.idFieldName, childrenInfo.modificationDateFieldName);
         builderNested.from(childrenInfo.sobjectTypePlural);
         SOQLBuilder builder = SOQLBuilder.getInstanceWithFields(getIdFieldName(), getModificationDateFieldName(), String.format("(%s)", builderNested.build()));
         builder.from(parentInfo.sobjectType);
-        builder.where(String.format("%s = '%s'", getIdFieldName(), parentId));
+        builder.where(String.format("%s IN ('%s')", getIdFieldName(), TextUtils.join("', '", parentIds)));
         return RestRequest.getRequestForQuery(apiVersion, builder.build());
     }
 
@@ -141,6 +141,12 @@ public class RefreshSyncDownTarget extends SyncDownTarget {
         return page > 0 ? getIdsFromSmartStoreAndFetchFromServer(syncManager) : null;
     }
 
+    @Override
+    public boolean supportsPrefetch() {
+        // Ids to fetch are read page by page from the soup being written to
+        return false;
+    }
+
     private JSONArray getIdsFromSmartStoreAndFetchFromServer(SyncManager syncManager) throws IOException, JSONException {
         // Read from smartstore
         final QuerySpec querySpec;
@@ -224,6 +230,17 @@ public class RefreshSyncDownTarget extends SyncDownTarget {
         return remoteIds;
     }
 
+    @Override
+    public boolean supportsChunkedGhostCleanup() {
+        // getRemoteIds only asks the server about the ids passed in
+        return true;
+    }
+
+    @Override
+    public int getCountIdsPerGhostQuery() {
+        return getCountIdsPerSoql();
+    }
+
     /**
      * @return field list for this target
      */
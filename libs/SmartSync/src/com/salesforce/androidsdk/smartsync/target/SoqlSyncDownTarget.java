@@ -27,6 +27,8 @@
 package com.salesforce.androidsdk.smartsync.target;
 
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import com.salesforce.androidsdk.rest.RestRequest;
 import com.salesforce.androidsdk.rest.RestResponse;
@@ -39,8 +41,12 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -158,6 +164,79 @@ public class SoqlSyncDownTarget extends SyncDownTarget {
         return records;
     }
 
+    /**
+     * Only nextRecordsUrl is shared between fetches and it is only used by continueFetch
+     * Subclasses (which might keep other state) have to opt in
+     * @return true for SoqlSyncDownTarget itself
+     */
+    @Override
+    public boolean supportsPrefetch() {
+        return getClass() == SoqlSyncDownTarget.class;
+    }
+
+    /**
+     * Streaming goes straight to the REST query api and bypasses startFetch / continueFetch
+     * so subclasses (which might override them) have to opt in
+     * @return true for SoqlSyncDownTarget itself
+     */
+    @Override
+    public boolean supportsStreaming() {
+        return getClass() == SoqlSyncDownTarget.class;
+    }
+
+    @Override
+    public void startStreamingFetch(SyncManager syncManager, long maxTimeStamp, RecordHandler recordHandler) throws IOException, JSONException {
+        RestRequest request = RestRequest.getRequestForQuery(syncManager.apiVersion, getQuery(maxTimeStamp));
+        streamResponse(syncManager, request, recordHandler, true);
+    }
+
+    @Override
+    public boolean continueStreamingFetch(SyncManager syncManager, RecordHandler recordHandler) throws IOException, JSONException {
+        if (nextRecordsUrl == null) {
+            return false;
+        }
+        RestRequest request = new RestRequest(RestRequest.RestMethod.GET, nextRecordsUrl);
+        streamResponse(syncManager, request, recordHandler, false);
+        return true;
+    }
+
+    /**
+     * Send request and read response with a pull parser, handing records to recordHandler as they are read
+     * Captures next records URL (and total size if asked to)
+     */
+    private void streamResponse(SyncManager syncManager, RestRequest request, RecordHandler recordHandler, boolean captureTotalSize) throws IOException, JSONException {
+        RestResponse response = syncManager.sendSyncWithSmartSyncUserAgent(request);
+        if (!response.isSuccess()) {
+            // Rest API errors are returned as JSON array
+            throw new SyncManager.SmartSyncException(response.asString());
+        }
+        String newNextRecordsUrl = null;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(response.asInputStream(), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (Constants.RECORDS.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        recordHandler.onRecord(JSONObjectHelper.readJSONObject(reader));
+                    }
+                    reader.endArray();
+                } else if (captureTotalSize && Constants.TOTAL_SIZE.equals(name)) {
+                    totalSize = reader.nextInt();
+                } else if (Constants.NEXT_RECORDS_URL.equals(name) && reader.peek() != JsonToken.NULL) {
+                    newNextRecordsUrl = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            // Unexpected structure
+            throw new SyncManager.SmartSyncException(e);
+        }
+        nextRecordsUrl = newNextRecordsUrl;
+    }
+
     @Override
     protected Set<String> getRemoteIds(SyncManager syncManager, Set<String> localIds) throws IOException, JSONException {
         return getRemoteIdsWithSoql(syncManager, getSoqlForRemoteIds());
@@ -178,6 +257,37 @@ public class SoqlSyncDownTarget extends SyncDownTarget {
         return remoteIds;
     }
 
+    /**
+     * Subclasses (which might override getRemoteIdsForSlice or keep other state) have to opt in
+     * @return true for SoqlSyncDownTarget itself unless its query has a limit or an offset
+     */
+    @Override
+    public boolean supportsChunkedGhostCleanup() {
+        if (getClass() != SoqlSyncDownTarget.class) {
+            return false;
+        }
+        // Restricting the query to a slice of ids would change the results of a query with a limit or an offset
+        final String lowerCaseQuery = query.toLowerCase(Locale.US);
+        return !lowerCaseQuery.contains(" limit ") && !lowerCaseQuery.contains(" offset ");
+    }
+
+    @Override
+    protected Set<String> getRemoteIdsForSlice(SyncManager syncManager, List<String> localIds) throws IOException, JSONException {
+        final Set<String> remoteIds = new HashSet<>();
+        final String idPredicate = getIdFieldName() + " IN ('" + TextUtils.join("', '", localIds) + "')";
+        final String soql = addPredicate(getSoqlForRemoteIds(), idPredicate);
+
+        // Not using startFetch / continueFetch which keep track of nextRecordsUrl in the target
+        RestRequest request = RestRequest.getRequestForQuery(syncManager.apiVersion, soql);
+        while (request != null) {
+            final JSONObject responseJson = getResponseJson(syncManager.sendSyncWithSmartSyncUserAgent(request));
+            remoteIds.addAll(parseIdsFromResponse(getRecordsFromResponseJson(responseJson)));
+            final String nextUrl = JSONObjectHelper.optString(responseJson, Constants.NEXT_RECORDS_URL);
+            request = nextUrl == null ? null : new RestRequest(RestRequest.RestMethod.GET, nextUrl);
+        }
+        return remoteIds;
+    }
+
     protected String getSoqlForRemoteIds() {
         // Alters the SOQL query to get only IDs.
         final StringBuilder soql = new StringBuilder("SELECT ");
@@ -191,13 +301,17 @@ public class SoqlSyncDownTarget extends SyncDownTarget {
     protected static String addFilterForReSync(String query, String modificationFieldDatName, long maxTimeStamp) {
         if (maxTimeStamp > 0) {
             String extraPredicate = modificationFieldDatName + " > " + Constants.TIMESTAMP_FORMAT.format(new Date(maxTimeStamp));
-            query = query.toLowerCase().contains(" where ")
-                    ? query.replaceFirst("( [wW][hH][eE][rR][eE] )", "$1" + extraPredicate + " and ")
-                    : query.replaceFirst("( [fF][rR][oO][mM][ ]+[^ ]*)", "$1 where " + extraPredicate);
+            query = addPredicate(query, extraPredicate);
         }
         return query;
     }
 
+    protected static String addPredicate(String query, String extraPredicate) {
+        return query.toLowerCase().contains(" where ")
+                ? query.replaceFirst("( [wW][hH][eE][rR][eE] )", "$1" + extraPredicate + " and ")
+                : query.replaceFirst("( [fF][rR][oO][mM][ ]+[^ ]*)", "$1 where " + extraPredicate);
+    }
+
     /**
      * @return soql query for this target
      */
@@ -27,6 +27,8 @@
 package com.salesforce.androidsdk.smartsync.target;
 
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartsync.manager.SyncManager;
 import com.salesforce.androidsdk.smartsync.util.Constants;
 import com.salesforce.androidsdk.smartsync.util.SmartSyncLogger;
@@ -38,10 +40,14 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Target for sync down:
@@ -53,6 +59,7 @@ public abstract class SyncDownTarget extends SyncTarget {
     // Constants
     private static final String TAG = "SyncDownTarget";
 	public static final String QUERY_TYPE = "type";
+    public static final int DEFAULT_COUNT_IDS_PER_GHOST_QUERY = 200;
 
     // Fields
 	protected QueryType queryType;
@@ -138,6 +145,61 @@ public abstract class SyncDownTarget extends SyncTarget {
      */
     public abstract JSONArray continueFetch(SyncManager syncManager) throws IOException, JSONException;
 
+    /**
+     * Return true if continueFetch can run while the previously fetched records are being saved
+     * (on another thread) i.e. if fetching does not depend on what is in the local store
+     * and the state it uses (e.g. next records url) is not touched by the other methods of the target
+     * Only used when the sync manager prefetches (see SyncManager.setSyncDownPrefetchSize)
+     * @return false by default
+     */
+    public boolean supportsPrefetch() {
+        return false;
+    }
+
+    /**
+     * Return true if startStreamingFetch / continueStreamingFetch parse responses incrementally
+     * i.e. without holding a whole page of records in memory
+     * Only used when the sync manager streams (see SyncManager.setSyncDownStreaming)
+     * @return false by default
+     */
+    public boolean supportsStreaming() {
+        return false;
+    }
+
+    /**
+     * Start fetching records conforming to target, handing them to recordHandler one at a time
+     * Default implementation simply goes through the records returned by startFetch
+     * @param syncManager
+     * @param maxTimeStamp
+     * @param recordHandler
+     * @throws IOException, JSONException
+     */
+    public void startStreamingFetch(SyncManager syncManager, long maxTimeStamp, RecordHandler recordHandler) throws IOException, JSONException {
+        handleRecords(startFetch(syncManager, maxTimeStamp), recordHandler);
+    }
+
+    /**
+     * Continue fetching records conforming to target if any, handing them to recordHandler one at a time
+     * Default implementation simply goes through the records returned by continueFetch
+     * @param syncManager
+     * @param recordHandler
+     * @return false if there are no more records to fetch
+     * @throws IOException, JSONException
+     */
+    public boolean continueStreamingFetch(SyncManager syncManager, RecordHandler recordHandler) throws IOException, JSONException {
+        return handleRecords(continueFetch(syncManager), recordHandler);
+    }
+
+    private boolean handleRecords(JSONArray records, RecordHandler recordHandler) throws JSONException {
+        if (records == null) {
+            return false;
+        }
+        for (int i = 0; i < records.length(); i++) {
+            recordHandler.onRecord(records.getJSONObject(i));
+        }
+        return true;
+    }
+
     /**
      * Delete from local store records that a full sync down would no longer download
      * @param syncManager
@@ -167,6 +229,86 @@ public abstract class SyncDownTarget extends SyncTarget {
         return localIdSize;
     }
 
+    /**
+     * Delete from local store records that a full sync down would no longer download
+     * Local ids are processed in sorted windows: each window is checked against the server with
+     * up to maxConcurrentQueries concurrent calls and its ghosts are deleted before moving on to the next one
+     * Only used when the sync manager cleans ghosts in chunks (see SyncManager.setCleanGhostsConcurrency)
+     * @param syncManager
+     * @param soupName
+     * @param syncId
+     * @param maxConcurrentQueries
+     * @param progressCallback can be null
+     * @return number of ghosts removed
+     * @throws JSONException, IOException
+     */
+    public int cleanGhostsInChunks(SyncManager syncManager, String soupName, long syncId, int maxConcurrentQueries,
+                                   SyncManager.CleanResyncGhostsProgressCallback progressCallback) throws JSONException, IOException {
+        return new ChunkedGhostCleaner(this, syncManager, soupName, syncId, maxConcurrentQueries, progressCallback).run();
+    }
+
+    /**
+     * Return true if cleanGhostsInChunks can be used i.e. if getRemoteIdsForSlice only asks the server about the ids passed in
+     * and does not change the state of the target (it is called from several threads at once)
+     * @return false by default
+     */
+    public boolean supportsChunkedGhostCleanup() {
+        return false;
+    }
+
+    /**
+     * @return number of local ids checked with a single server call by cleanGhostsInChunks
+     */
+    public int getCountIdsPerGhostQuery() {
+        return DEFAULT_COUNT_IDS_PER_GHOST_QUERY;
+    }
+
+    /**
+     * Fetches remote IDs still present on the server from a slice of local IDs
+     * Default implementation simply calls getRemoteIds
+     * @param syncManager
+     * @param localIds
+     * @return ids still present on the server or null if it could not be determined
+     * @throws IOException, JSONException
+     */
+    protected Set<String> getRemoteIdsForSlice(SyncManager syncManager, List<String> localIds) throws IOException, JSONException {
+        return getRemoteIds(syncManager, new TreeSet<>(localIds));
+    }
+
+    /**
+     * Return the next window of ids of non-dirty records
+     * @param syncManager
+     * @param soupName
+     * @param idField
+     * @param additionalPredicate
+     * @param afterId only ids greater than afterId are returned (all ids if null)
+     * @param windowSize maximum number of ids returned
+     * @return
+     * @throws JSONException
+     */
+    protected SortedSet<String> getNonDirtyRecordIdsWindow(SyncManager syncManager, String soupName, String idField,
+                                                           String additionalPredicate, String afterId, int windowSize) throws JSONException {
+        String predicate = additionalPredicate;
+        if (afterId != null) {
+            predicate += String.format(" AND {%s:%s} > '%s'", soupName, idField, afterId.replace("'", "''"));
+        }
+        final String sql = getNonDirtyRecordIdsSql(soupName, idField, predicate);
+        return toSortedSet(syncManager.getSmartStore().query(QuerySpec.buildSmartQuerySpec(sql, windowSize), 0));
+    }
+
+    /**
+     * Return number of non-dirty records
+     * @param syncManager
+     * @param soupName
+     * @param idField
+     * @param additionalPredicate
+     * @return
+     */
+    protected int countNonDirtyRecords(SyncManager syncManager, String soupName, String idField, String additionalPredicate) {
+        final String sql = getNonDirtyRecordIdsSql(soupName, idField, additionalPredicate);
+        return syncManager.getSmartStore().countQuery(QuerySpec.buildSmartQuerySpec(sql, 1));
+    }
+
     /**
      * Return predicate to target records with this sync id if there is an index on __sync_id__
      * @param syncManager
@@ -282,6 +424,50 @@ public abstract class SyncDownTarget extends SyncTarget {
         return getDirtyRecordIds(syncManager, soupName, getIdFieldName());
     }
 
+    /**
+     * Return records that would change the local store if saved
+     * i.e. leave out records identical to the ones already in the local store
+     * Only soups with the content hash feature can tell (see SoupSpec.FEATURE_CONTENT_HASH), for other soups all records are returned
+     * NB: records with a local copy get cleaned and stamped with the sync id in place (as saveRecordsToLocalStore would do)
+     * @param syncManager
+     * @param soupName
+     * @param records
+     * @param syncId
+     * @return records to save
+     * @throws JSONException
+     */
+    public JSONArray removeUnchangedRecords(SyncManager syncManager, String soupName, JSONArray records, long syncId) throws JSONException {
+        final SmartStore smartStore = syncManager.getSmartStore();
+        if (records.length() == 0 || !smartStore.usesContentHash(soupName)) {
+            return records;
+        }
+        final String idFieldName = getIdFieldName();
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < records.length(); i++) {
+            final String id = JSONObjectHelper.optString(records.getJSONObject(i), idFieldName);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        final Map<String, String> idToLocalHash = smartStore.getContentHashes(soupName, idFieldName, ids);
+        final JSONArray recordsToSave = new JSONArray();
+        for (int i = 0; i < records.length(); i++) {
+            final JSONObject record = records.getJSONObject(i);
+            final String id = JSONObjectHelper.optString(record, idFieldName);
+            final String localHash = id == null ? null : idToLocalHash.get(id);
+            if (localHash != null) {
+                // Same changes as saveRecordsToLocalStore so that hashes can be compared
+                addSyncId(record, syncId);
+                cleanRecord(record);
+                if (localHash.equals(SmartStore.computeContentHash(record))) {
+                    continue;
+                }
+            }
+            recordsToSave.put(record);
+        }
+        return recordsToSave;
+    }
+
     /**
      * Enum for query type.
      */
@@ -314,4 +500,11 @@ public abstract class SyncDownTarget extends SyncTarget {
         }
         return remoteIds;
     }
+
+    /**
+     * Receives the records of a streaming fetch one at a time
+     */
+    public interface RecordHandler {
+        void onRecord(JSONObject record) throws JSONException;
+    }
 }
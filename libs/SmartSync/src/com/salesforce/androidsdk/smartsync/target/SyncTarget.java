@@ -26,8 +26,6 @@
  */
 package com.salesforce.androidsdk.smartsync.target;
 
-import android.text.TextUtils;
-
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartsync.manager.SyncManager;
@@ -39,6 +37,11 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -122,6 +125,16 @@ public abstract class SyncTarget {
         return modificationDateFieldName;
     }
 
+    /**
+     * Return the soups written to by a sync using this target
+     * Syncs, resyncs and ghost cleanups writing to a same soup never run concurrently
+     * @param soupName soup of the sync
+     * @return
+     */
+    public Set<String> getSoupNames(String soupName) {
+        return Collections.singleton(soupName);
+    }
+
     /**
      * Return ids of "dirty" records (records locally created/upated or deleted)
      * @param syncManager
@@ -182,7 +195,31 @@ public abstract class SyncTarget {
 
     protected void cleanAndSaveInSmartStore(SmartStore smartStore, String soupName, JSONObject record, String idFieldName, boolean handleTx) throws JSONException {
         cleanRecord(record);
-        saveInSmartStore(smartStore, soupName, record, idFieldName, handleTx);
+        if (!smartStore.usesChangeJournal(soupName)) {
+            saveInSmartStore(smartStore, soupName, record, idFieldName, handleTx);
+            return;
+        }
+
+        // Clean record no longer needs to be in the change journal
+        synchronized(smartStore.getDatabase()) {
+            try {
+                if (handleTx) {
+                    smartStore.beginTransaction();
+                }
+                saveInSmartStore(smartStore, soupName, record, idFieldName, false);
+                if (record.has(SmartStore.SOUP_ENTRY_ID)) {
+                    smartStore.clearChangeJournal(soupName, Collections.singletonList(record.getLong(SmartStore.SOUP_ENTRY_ID)), false);
+                }
+                if (handleTx) {
+                    smartStore.setTransactionSuccessful();
+                }
+            }
+            finally {
+                if (handleTx) {
+                    smartStore.endTransaction();
+                }
+            }
+        }
     }
 
     protected void saveInSmartStore(SmartStore smartStore, String soupName, JSONObject record, String idFieldName, boolean handleTx) throws JSONException {
@@ -213,14 +250,48 @@ public abstract class SyncTarget {
      * @throws JSONException
      */
     public void saveRecordsToLocalStore(SyncManager syncManager, String soupName, JSONArray records, long syncId) throws JSONException {
+        saveRecordsToLocalStore(syncManager, soupName, records, syncId, true);
+    }
+
+    /**
+     * Save records to local store
+     * @param syncManager
+     * @param soupName
+     * @param records
+     * @param syncId
+     * @param copyRecords pass false if the records are not used after the call (they then get modified in place)
+     * @throws JSONException
+     */
+    public void saveRecordsToLocalStore(SyncManager syncManager, String soupName, JSONArray records, long syncId, boolean copyRecords) throws JSONException {
         SmartStore smartStore = syncManager.getSmartStore();
         synchronized(smartStore.getDatabase()) {
             try {
                 smartStore.beginTransaction();
+                JSONArray recordsFromServer = new JSONArray();
                 for (int i = 0; i < records.length(); i++) {
-                    JSONObject record = new JSONObject(records.getJSONObject(i).toString());
+                    JSONObject record = copyRecords
+                            ? new JSONObject(records.getJSONObject(i).toString())
+                            : records.getJSONObject(i);
                     addSyncId(record, syncId);
-                    cleanAndSaveInSmartStore(syncManager.getSmartStore(), soupName, record, getIdFieldName(), false);
+                    if (record.has(SmartStore.SOUP_ENTRY_ID)) {
+                        // Record came from smartstore
+                        cleanAndSaveInSmartStore(smartStore, soupName, record, getIdFieldName(), false);
+                    }
+                    else {
+                        // Record came from server - upserted in bulk below
+                        cleanRecord(record);
+                        recordsFromServer.put(record);
+                    }
+                }
+                if (recordsFromServer.length() > 0) {
+                    smartStore.upsertAll(soupName, recordsFromServer, getIdFieldName(), false);
+                    if (smartStore.usesChangeJournal(soupName)) {
+                        List<Long> soupEntryIds = new ArrayList<>(recordsFromServer.length());
+                        for (int i = 0; i < recordsFromServer.length(); i++) {
+                            soupEntryIds.add(recordsFromServer.getJSONObject(i).getLong(SmartStore.SOUP_ENTRY_ID));
+                        }
+                        smartStore.clearChangeJournal(soupName, soupEntryIds, false);
+                    }
                 }
                 smartStore.setTransactionSuccessful();
             }
@@ -245,15 +316,17 @@ public abstract class SyncTarget {
      */
     protected void deleteRecordsFromLocalStore(SyncManager syncManager, String soupName, Set<String> ids, String idField) {
         if (ids.size() > 0) {
-            String smartSql = String.format("SELECT {%s:%s} FROM {%s} WHERE {%s:%s} IN (%s)",
-                    soupName, SmartStore.SOUP_ENTRY_ID, soupName, soupName, idField,
-                    "'" + TextUtils.join("', '", ids) + "'");
-            QuerySpec querySpec = QuerySpec.buildSmartQuerySpec(smartSql, Integer.MAX_VALUE /* delete all */);
-            syncManager.getSmartStore().deleteByQuery(soupName, querySpec);
+            syncManager.getSmartStore().deleteByValues(soupName, idField, ids);
         }
     }
 
-    private SortedSet<String> toSortedSet(JSONArray jsonArray) throws JSONException {
+    /**
+     * Return ids found in the first column of the results of a smart sql query
+     * @param jsonArray
+     * @return
+     * @throws JSONException
+     */
+    protected SortedSet<String> toSortedSet(JSONArray jsonArray) throws JSONException {
         SortedSet<String> set = new TreeSet<>();
         for (int i = 0; i < jsonArray.length(); i++) {
             set.add(jsonArray.getJSONArray(i).getString(0));
@@ -308,6 +381,35 @@ public abstract class SyncTarget {
         return syncManager.getSmartStore().retrieve(soupName, Long.valueOf(storeId)).getJSONObject(0);
     }
 
+    /**
+     * Get records from local store by storeId with one query
+     * @param syncManager
+     * @param soupName
+     * @param storeIds
+     * @return records in the order of storeIds (records not found are skipped)
+     * @throws JSONException
+     */
+    public List<JSONObject> getFromLocalStore(SyncManager syncManager, String soupName, List<String> storeIds) throws JSONException {
+        Long[] soupEntryIds = new Long[storeIds.size()];
+        for (int i = 0; i < soupEntryIds.length; i++) {
+            soupEntryIds[i] = Long.valueOf(storeIds.get(i));
+        }
+        JSONArray rows = syncManager.getSmartStore().retrieve(soupName, soupEntryIds);
+        Map<String, JSONObject> storeIdToRecord = new HashMap<>();
+        for (int i = 0; i < rows.length(); i++) {
+            JSONObject record = rows.getJSONObject(i);
+            storeIdToRecord.put(record.getString(SmartStore.SOUP_ENTRY_ID), record);
+        }
+        List<JSONObject> records = new ArrayList<>(storeIdToRecord.size());
+        for (String storeId : storeIds) {
+            JSONObject record = storeIdToRecord.get(storeId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
     /**
      * Delete record from local store
      * @param syncManager
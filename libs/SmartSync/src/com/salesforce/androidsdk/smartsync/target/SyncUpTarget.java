@@ -26,11 +26,14 @@
  */
 package com.salesforce.androidsdk.smartsync.target;
 
+import android.text.TextUtils;
+
 import com.salesforce.androidsdk.rest.RestRequest;
 import com.salesforce.androidsdk.rest.RestResponse;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartsync.manager.SyncManager;
 import com.salesforce.androidsdk.smartsync.util.Constants;
+import com.salesforce.androidsdk.smartsync.util.SOQLBuilder;
 import com.salesforce.androidsdk.util.JSONObjectHelper;
 
 import org.json.JSONArray;
@@ -40,11 +43,14 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Target for sync up:
@@ -57,9 +63,10 @@ import java.util.Set;
  *
  * 2) for each id it does:
  *
- *   a) if calls getFromLocalStore to get the record itself
+ *   a) if calls getFromLocalStore to get the record itself (right before it is synced up, so that local edits made in the meantime are not lost)
  *
  *   b) if merge mode is leave-if-changed, it calls isNewerThanServer, if that returns false, it goes to the next id
+ *      NB: server modification dates are fetched ahead of time with fetchLastModifiedDates, MAX_RECORDS_PER_TIMESTAMPS_QUERY records at a time
  *
  *   c) otherwise it does one of the following three operations:
  *      - calls deleteOnServer if isLocallyDeleted returns true for the record (unless it is also locally created, in which case it gets deleted locally right away)
@@ -79,6 +86,7 @@ public class SyncUpTarget extends SyncTarget {
     public static final String TAG = "SyncUpTarget";
     public static final String CREATE_FIELDLIST = "createFieldlist";
     public static final String UPDATE_FIELDLIST = "updateFieldlist";
+    public static final int MAX_RECORDS_PER_TIMESTAMPS_QUERY = 200; // keeps the SOQL query well under the URI length limit
 
     // Fields
     protected List<String> createFieldlist;
@@ -298,6 +306,109 @@ public class SyncUpTarget extends SyncTarget {
         );
     }
 
+    /**
+     * Fetch last modified dates for a list of records
+     * Uses one SOQL query per object type and per MAX_RECORDS_PER_TIMESTAMPS_QUERY records
+     * Records missing from the results are reported as deleted, records for which a query failed are left out
+     * Returns an empty map if a subclass overrides isNewerThanServer(SyncManager, JSONObject) or fetchLastModifiedDate,
+     * so that every record goes through the overridden method
+     *
+     * @param syncManager
+     * @param records
+     * @return map of record id to last modified date on server
+     * @throws JSONException
+     * @throws IOException
+     */
+    public Map<String, RecordModDate> fetchLastModifiedDates(SyncManager syncManager, List<JSONObject> records) throws JSONException, IOException {
+        final Map<String, RecordModDate> idToRemoteModDates = new HashMap<>();
+        if (isOverridden(SyncUpTarget.class, "isNewerThanServer", SyncManager.class, JSONObject.class)
+                || isOverridden(SyncUpTarget.class, "fetchLastModifiedDate", SyncManager.class, JSONObject.class)) {
+            return idToRemoteModDates;
+        }
+        final Map<String, List<String>> objectTypeToIds = new HashMap<>();
+        for (JSONObject record : records) {
+            if (isLocallyCreated(record)) {
+                continue;
+            }
+            final String objectType = (String) SmartStore.project(record, Constants.SOBJECT_TYPE);
+            List<String> ids = objectTypeToIds.get(objectType);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                objectTypeToIds.put(objectType, ids);
+            }
+            ids.add(record.getString(getIdFieldName()));
+        }
+        for (Map.Entry<String, List<String>> entry : objectTypeToIds.entrySet()) {
+            final List<String> ids = entry.getValue();
+            for (int start = 0; start < ids.size(); start += MAX_RECORDS_PER_TIMESTAMPS_QUERY) {
+                final List<String> idsChunk = ids.subList(start, Math.min(start + MAX_RECORDS_PER_TIMESTAMPS_QUERY, ids.size()));
+                final String soql = SOQLBuilder.getInstanceWithFields(getIdFieldName(), getModificationDateFieldName())
+                        .from(entry.getKey())
+                        .where(getIdFieldName() + " IN ('" + TextUtils.join("', '", idsChunk) + "')")
+                        .build();
+                final RestResponse response = syncManager.sendSyncWithSmartSyncUserAgent(RestRequest.getRequestForQuery(syncManager.apiVersion, soql));
+                if (!response.isSuccess()) {
+                    // Leaving those out - isNewerThanServer will fetch them one by one
+                    continue;
+                }
+                final JSONArray rows = response.asJSONObject().getJSONArray(Constants.RECORDS);
+                for (int i = 0; i < rows.length(); i++) {
+                    final JSONObject row = rows.getJSONObject(i);
+                    idToRemoteModDates.put(row.getString(getIdFieldName()), new RecordModDate(row.getString(getModificationDateFieldName()), false));
+                }
+                for (String id : idsChunk) {
+                    if (!idToRemoteModDates.containsKey(id)) {
+                        idToRemoteModDates.put(id, new RecordModDate(null, true));
+                    }
+                }
+            }
+        }
+        return idToRemoteModDates;
+    }
+
+    /**
+     * Return true if this class or a super class below baseClass declares the given method
+     * @param baseClass
+     * @param methodName
+     * @param parameterTypes
+     * @return
+     */
+    protected boolean isOverridden(Class<? extends SyncUpTarget> baseClass, String methodName, Class<?>... parameterTypes) {
+        for (Class<?> c = getClass(); c != baseClass; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(methodName, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not declared here, checking super class
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true if record is more recent than corresponding record on server
+     * Same as isNewerThanServer(SyncManager, JSONObject) but using last modified dates obtained from fetchLastModifiedDates
+     * Falls back to fetching the last modified date of the record if it is missing from idToRemoteModDates
+     *
+     * @param syncManager
+     * @param record
+     * @param idToRemoteModDates
+     * @return
+     * @throws JSONException
+     * @throws IOException
+     */
+    public boolean isNewerThanServer(SyncManager syncManager, JSONObject record, Map<String, RecordModDate> idToRemoteModDates) throws JSONException, IOException {
+        final RecordModDate remoteModDate = isLocallyCreated(record) ? null : idToRemoteModDates.get(record.getString(getIdFieldName()));
+        if (remoteModDate == null) {
+            return isNewerThanServer(syncManager, record);
+        }
+        final RecordModDate localModDate = new RecordModDate(
+                JSONObjectHelper.optString(record, getModificationDateFieldName()),
+                isLocallyDeleted(record)
+        );
+        return isNewerThanServer(localModDate, remoteModDate);
+    }
+
     /**
      * Return true if record is more recent than corresponding record on server
      * NB: also return true if both were deleted or if local mod date is missing
@@ -344,9 +455,60 @@ public class SyncUpTarget extends SyncTarget {
      * @return
      */
     public Set<String> getIdsOfRecordsToSyncUp(SyncManager syncManager, String soupName) throws JSONException {
+        if (supportsChangeJournal() && syncManager.getSmartStore().usesChangeJournal(soupName)) {
+            return getDirtyRecordIdsFromChangeJournal(syncManager, soupName);
+        }
         return getDirtyRecordIds(syncManager, soupName, SmartStore.SOUP_ENTRY_ID);
     }
 
+    /**
+     * @return true if dirty records can be found with the change journal of the soup (see SoupSpec.FEATURE_CHANGE_JOURNAL)
+     * False by default for targets that override getDirtyRecordIdsSql or getDirtyRecordIds (their notion of dirty might differ)
+     * Targets that sync up records based on other soups should return false
+     */
+    protected boolean supportsChangeJournal() {
+        return !isOverridden(SyncUpTarget.class, "getDirtyRecordIdsSql", String.class, String.class)
+                && !isOverridden(SyncUpTarget.class, "getDirtyRecordIds", SyncManager.class, String.class, String.class);
+    }
+
+    /**
+     * Return ids of dirty records using the change journal of the soup instead of querying the whole soup
+     * Journaled records that are not dirty are removed from the journal
+     * @param syncManager
+     * @param soupName
+     * @return
+     * @throws JSONException
+     */
+    protected SortedSet<String> getDirtyRecordIdsFromChangeJournal(SyncManager syncManager, String soupName) throws JSONException {
+        final SmartStore smartStore = syncManager.getSmartStore();
+        final SortedSet<String> dirtyRecordIds = new TreeSet<>();
+        synchronized(smartStore.getDatabase()) {
+            try {
+                smartStore.beginTransaction();
+                final List<Long> journaledIds = smartStore.getChangeJournal(soupName);
+                final List<Long> cleanIds = new ArrayList<>();
+                for (int start = 0; start < journaledIds.size(); start += MAX_RECORDS_PER_TIMESTAMPS_QUERY) {
+                    final List<Long> chunk = journaledIds.subList(start, Math.min(start + MAX_RECORDS_PER_TIMESTAMPS_QUERY, journaledIds.size()));
+                    final JSONArray records = smartStore.retrieve(soupName, chunk.toArray(new Long[0]));
+                    for (int i = 0; i < records.length(); i++) {
+                        final JSONObject record = records.getJSONObject(i);
+                        if (record.optBoolean(LOCAL, false)) {
+                            dirtyRecordIds.add(record.getString(SmartStore.SOUP_ENTRY_ID));
+                        } else {
+                            cleanIds.add(record.getLong(SmartStore.SOUP_ENTRY_ID));
+                        }
+                    }
+                }
+                smartStore.clearChangeJournal(soupName, cleanIds, false);
+                smartStore.setTransactionSuccessful();
+            }
+            finally {
+                smartStore.endTransaction();
+            }
+        }
+        return dirtyRecordIds;
+    }
+
     /**
      * Build map with the values for the fields in fieldlist from record
      * @param record
@@ -368,7 +530,7 @@ public class SyncUpTarget extends SyncTarget {
     /**
      * Helper class used by isNewerThanServer
      */
-    protected static class RecordModDate {
+    public static class RecordModDate {
 
         public final String timestamp;   // time stamp in the Constants.TIMESTAMP_FORMAT format - can be null if unknown
         public final boolean isDeleted;  // true if the record was deleted
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.util;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counters collected while a sync runs
+ * Thread safe: during a sync down, records can be fetched and saved on different threads
+ */
+public class SyncMetrics {
+
+    // Keys in json representation
+    public static final String REQUESTS = "requests";
+    public static final String RETRIES = "retries";
+    public static final String BYTES_SENT = "bytesSent";
+    public static final String BYTES_RECEIVED = "bytesReceived";
+    public static final String RECORDS = "records";
+    public static final String ELAPSED_MILLIS = "elapsedMillis";
+    public static final String RECORDS_PER_SECOND = "recordsPerSecond";
+
+    /**
+     * Enum for the phases of a sync
+     */
+    public enum Phase {
+        FETCH("fetchMillis"),                   // startFetch / continueFetch calls (network, parsing and saving when streaming)
+        PARSE("parseMillis"),                   // time spent in fetch calls outside of the network and saving
+        NETWORK("networkMillis"),               // server calls (until the whole response has been read)
+        SAVE("saveMillis"),                     // saving fetched records in the local store
+        CONFLICT_CHECK("conflictCheckMillis");  // checking server modification dates during sync up
+
+        public final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final long startNanos;
+    private final AtomicLong[] phaseNanos = new AtomicLong[Phase.values().length];
+    private final ThreadLocal<long[]> threadPhaseNanos = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[Phase.values().length];
+        }
+    };
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private volatile long elapsedMillis;
+
+    /**
+     * Constructor - starts the clock for elapsed time
+     */
+    public SyncMetrics() {
+        startNanos = System.nanoTime();
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Build SyncMetrics from json
+     * @param json
+     * @return
+     */
+    public static SyncMetrics fromJSON(JSONObject json) {
+        if (json == null) {
+            return null;
+        }
+        SyncMetrics metrics = new SyncMetrics();
+        for (Phase phase : Phase.values()) {
+            metrics.phaseNanos[phase.ordinal()].set(TimeUnit.MILLISECONDS.toNanos(json.optLong(phase.key)));
+        }
+        metrics.requests.set(json.optLong(REQUESTS));
+        metrics.retries.set(json.optLong(RETRIES));
+        metrics.bytesSent.set(json.optLong(BYTES_SENT));
+        metrics.bytesReceived.set(json.optLong(BYTES_RECEIVED));
+        metrics.records.set(json.optLong(RECORDS));
+        metrics.elapsedMillis = json.optLong(ELAPSED_MILLIS);
+        return metrics;
+    }
+
+    /**
+     * @return json representation of metrics
+     * @throws JSONException
+     */
+    public JSONObject asJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Phase phase : Phase.values()) {
+            json.put(phase.key, getMillis(phase));
+        }
+        json.put(REQUESTS, getRequests());
+        json.put(RETRIES, getRetries());
+        json.put(BYTES_SENT, getBytesSent());
+        json.put(BYTES_RECEIVED, getBytesReceived());
+        json.put(RECORDS, getRecords());
+        json.put(ELAPSED_MILLIS, getElapsedMillis());
+        json.put(RECORDS_PER_SECOND, getRecordsPerSecond());
+        return json;
+    }
+
+    /**
+     * Add time spent in a phase by the calling thread
+     * @param phase
+     * @param nanos
+     */
+    public void addTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].addAndGet(nanos);
+        threadPhaseNanos.get()[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Start timing a fetch on the calling thread
+     * @return fetch timing to end once the fetch call returns
+     */
+    public FetchTiming startFetch() {
+        return new FetchTiming();
+    }
+
+    /**
+     * Record a server call
+     * @param bytesSent size of the request body
+     */
+    public void addRequest(long bytesSent) {
+        requests.incrementAndGet();
+        this.bytesSent.addAndGet(Math.max(0, bytesSent));
+    }
+
+    public void addRetries(long count) {
+        retries.addAndGet(count);
+    }
+
+    public void addBytesReceived(long count) {
+        bytesReceived.addAndGet(count);
+    }
+
+    public void addRecords(long count) {
+        records.addAndGet(count);
+    }
+
+    /**
+     * Stop the clock for elapsed time
+     */
+    public void finish() {
+        elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public long getMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos[phase.ordinal()].get());
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * @return elapsed time (once finished) or time elapsed so far
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis > 0 ? elapsedMillis : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public double getRecordsPerSecond() {
+        long millis = getElapsedMillis();
+        return millis > 0 ? getRecords() * 1000.0 / millis : 0;
+    }
+
+    private long getThreadNanos(Phase phase) {
+        return threadPhaseNanos.get()[phase.ordinal()];
+    }
+
+    /**
+     * Times a fetch call: parsing is whatever the calling thread did not spend on the network or saving records
+     */
+    public class FetchTiming {
+        private final long fetchStartNanos = System.nanoTime();
+        private final long networkStartNanos = getThreadNanos(Phase.NETWORK);
+        private final long saveStartNanos = getThreadNanos(Phase.SAVE);
+
+        public void end() {
+            long elapsed = System.nanoTime() - fetchStartNanos;
+            long network = getThreadNanos(Phase.NETWORK) - networkStartNanos;
+            long save = getThreadNanos(Phase.SAVE) - saveStartNanos;
+            addTime(Phase.FETCH, elapsed);
+            addTime(Phase.PARSE, Math.max(0, elapsed - network - save));
+        }
+    }
+}
@@ -41,12 +41,14 @@ import java.util.List;
 public class SyncOptions {
 
     public static final String MERGEMODE = "mergeMode";
+    public static final String SKIP_UNCHANGED = "skipUnchanged";
 
 	// Fieldlist really belongs in sync up/down target - keeping it here for backwards compatibility
 	public static final String FIELDLIST = "fieldlist";
 
     private MergeMode mergeMode;
 	private List<String> fieldlist;
+	private boolean skipUnchanged;
 
 	/**
 	 * Build SyncOptions from json
@@ -61,7 +63,7 @@ public class SyncOptions {
         String mergeModeStr = JSONObjectHelper.optString(options, MERGEMODE);
         MergeMode mergeMode = mergeModeStr == null ? null : MergeMode.valueOf(mergeModeStr);
 		List<String> fieldlist = JSONObjectHelper.toList(options.optJSONArray(FIELDLIST));
-		return new SyncOptions(fieldlist, mergeMode);
+		return new SyncOptions(fieldlist, mergeMode, options.optBoolean(SKIP_UNCHANGED, false));
 	}
 
 	/**
@@ -69,7 +71,7 @@ public class SyncOptions {
 	 * @return
 	 */
 	public static SyncOptions optionsForSyncUp(List<String> fieldlist) {
-		return new SyncOptions(fieldlist, MergeMode.OVERWRITE);
+		return new SyncOptions(fieldlist, MergeMode.OVERWRITE, false);
 	}
 
     /**
@@ -78,7 +80,7 @@ public class SyncOptions {
      * @return
      */
     public static SyncOptions optionsForSyncUp(List<String> fieldlist, MergeMode mergeMode) {
-        return new SyncOptions(fieldlist, mergeMode);
+        return new SyncOptions(fieldlist, mergeMode, false);
     }
 
     /**
@@ -86,17 +88,29 @@ public class SyncOptions {
      * @return
      */
     public static SyncOptions optionsForSyncDown(MergeMode mergeMode) {
-        return new SyncOptions(null, mergeMode);
+        return new SyncOptions(null, mergeMode, false);
+    }
+
+    /**
+     * @param mergeMode
+     * @param skipUnchanged true to not rewrite records identical to the ones in the local store
+     *                      (only for soups with the content hash feature, see SoupSpec.FEATURE_CONTENT_HASH)
+     * @return
+     */
+    public static SyncOptions optionsForSyncDown(MergeMode mergeMode, boolean skipUnchanged) {
+        return new SyncOptions(null, mergeMode, skipUnchanged);
     }
 
 	/**
 	 * Private constructor
 	 * @param fieldlist
      * @param mergeMode
+     * @param skipUnchanged
 	 */
-	private SyncOptions(List<String> fieldlist, MergeMode mergeMode) {
+	private SyncOptions(List<String> fieldlist, MergeMode mergeMode, boolean skipUnchanged) {
 		this.fieldlist = fieldlist;
         this.mergeMode = mergeMode;
+        this.skipUnchanged = skipUnchanged;
 	}
 	
 	/**
@@ -107,6 +121,7 @@ public class SyncOptions {
 		JSONObject options = new JSONObject();
         if (mergeMode != null) options.put(MERGEMODE, mergeMode.name());
 		if (fieldlist != null) options.put(FIELDLIST, new JSONArray(fieldlist));
+		if (skipUnchanged) options.put(SKIP_UNCHANGED, true);
 		return options;
 	}
 
@@ -118,4 +133,8 @@ public class SyncOptions {
         return mergeMode;
     }
 
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
 }
@@ -58,6 +58,9 @@ public class SyncState {
 	public static final String SYNC_START_TIME = "startTime";
 	public static final String SYNC_END_TIME = "endTime";
 	public static final String SYNC_ERROR = "error";
+	public static final String SYNC_COUNT_RECORDS_WRITTEN = "countRecordsWritten";
+	public static final String SYNC_COUNT_RECORDS_SKIPPED = "countRecordsSkipped";
+	public static final String SYNC_METRICS = "metrics";
 
 	private long id;
 	private Type type;
@@ -70,6 +73,13 @@ public class SyncState {
 	private int totalSize;
     private long maxTimeStamp;
 
+	// Records fetched during last sync down that were written to / left alone in the local store
+	private int countRecordsWritten;
+	private int countRecordsSkipped;
+
+	// Timings and counters of last run
+	private SyncMetrics metrics;
+
 	// Start and end time in milliseconds since 1970
 	private long startTime;
 	private long endTime;
@@ -206,6 +216,9 @@ public class SyncState {
 		state.startTime = sync.optLong(SYNC_START_TIME, 0);
 		state.endTime = sync.optLong(SYNC_START_TIME, 0);
 		state.errorJSON = JSONObjectHelper.optString(sync, SYNC_ERROR, "");
+		state.countRecordsWritten = sync.optInt(SYNC_COUNT_RECORDS_WRITTEN, 0);
+		state.countRecordsSkipped = sync.optInt(SYNC_COUNT_RECORDS_SKIPPED, 0);
+		state.metrics = SyncMetrics.fromJSON(sync.optJSONObject(SYNC_METRICS));
 		return state;
 	}
 	
@@ -310,6 +323,9 @@ public class SyncState {
 		sync.put(SYNC_START_TIME, startTime);
 		sync.put(SYNC_END_TIME, endTime);
 		sync.put(SYNC_ERROR, errorJSON);
+		sync.put(SYNC_COUNT_RECORDS_WRITTEN, countRecordsWritten);
+		sync.put(SYNC_COUNT_RECORDS_SKIPPED, countRecordsSkipped);
+		if (metrics != null) sync.put(SYNC_METRICS, metrics.asJSON());
 		return sync;
 	}
 	
@@ -377,6 +393,28 @@ public class SyncState {
 		return errorJSON;
 	}
 
+	/**
+	 * @return number of records fetched during last sync down that were written to the local store
+	 */
+	public int getCountRecordsWritten() {
+		return countRecordsWritten;
+	}
+
+	/**
+	 * @return number of records fetched during last sync down that were not written to the local store
+	 * (locally modified records with leave-if-changed merge mode, unchanged records when skipping them)
+	 */
+	public int getCountRecordsSkipped() {
+		return countRecordsSkipped;
+	}
+
+	/**
+	 * @return timings and counters of the current or last run (null if the sync never ran)
+	 */
+	public SyncMetrics getMetrics() {
+		return metrics;
+	}
+
 	public void setMaxTimeStamp(long maxTimeStamp) {
         this.maxTimeStamp = maxTimeStamp;
     }
@@ -388,6 +426,18 @@ public class SyncState {
 	public void setTotalSize(int totalSize) {
 		this.totalSize = totalSize;
 	}
+
+	public void setCountRecordsWritten(int countRecordsWritten) {
+		this.countRecordsWritten = countRecordsWritten;
+	}
+
+	public void setCountRecordsSkipped(int countRecordsSkipped) {
+		this.countRecordsSkipped = countRecordsSkipped;
+	}
+
+	public void setMetrics(SyncMetrics metrics) {
+		this.metrics = metrics;
+	}
 	
 	public void setStatus(Status status) {
 		if (this.status == Status.NEW && status == Status.RUNNING) {
@@ -29,6 +29,11 @@ package com.salesforce.androidsdk.analytics.security;
 import androidx.test.filters.SmallTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -139,6 +144,38 @@ public class EncryptorTest {
 		}
 	}
 
+	/**
+	 * Test to make sure that streamed encryption/decryption is interchangeable with one-shot encryption/decryption.
+	 */
+    @Test
+	public void testEncryptDecryptWithStreams() throws Exception {
+		final StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			large.append("fake-token-").append(i);
+		}
+		final String[] allData = new String[] { TEST_DATA[0], TEST_DATA[1], large.toString() };
+		for (final String key : TEST_KEYS) {
+			for (final String data : allData) {
+				final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+				final OutputStream out = Encryptor.getEncryptingOutputStream(bytesOut, key);
+				out.write(data.getBytes("UTF-8"));
+				out.close();
+				final String streamEncrypted = new String(bytesOut.toByteArray(), "UTF-8");
+                Assert.assertEquals("Decrypt should restore original", data, Encryptor.decrypt(streamEncrypted, key));
+				final String encrypted = Encryptor.encrypt(data, key);
+				final InputStream in = Encryptor.getDecryptingInputStream(new ByteArrayInputStream(encrypted.getBytes("UTF-8")), key);
+				final ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+				final byte[] buffer = new byte[1024];
+				int count;
+				while ((count = in.read(buffer)) >= 0) {
+					decrypted.write(buffer, 0, count);
+				}
+				in.close();
+                Assert.assertEquals("Decrypting stream should restore original", data, new String(decrypted.toByteArray(), "UTF-8"));
+			}
+		}
+	}
+
 	private static String makeKey(String passcode) {
         return Encryptor.hash(passcode, "hashing-key");
 	}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Tests for HttpResponseCache
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class HttpResponseCacheTest {
+
+    private static final String TEST_KEY = "AAECAwQFBgcICQoLDA0ODw=="; // base64 encoded 128 bit key
+    private static final String DESCRIBE_BODY = "{\"name\":\"Account\",\"fields\":[{\"name\":\"Id\"}]}";
+    private static final String ETAG = "\"describe-v1\"";
+
+    private MockWebServer server;
+    private File directory;
+    private HttpResponseCache cache;
+    private OkHttpClient okHttpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        directory = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(), "HttpResponseCacheTest");
+        cache = new HttpResponseCache(directory, 1024 * 1024, TEST_KEY);
+        cache.evictAll();
+        okHttpClient = new OkHttpClient.Builder().addInterceptor(cache).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.evictAll();
+        server.shutdown();
+    }
+
+    /**
+     * Stale response with an ETag is revalidated: a 304 gets the cached body back
+     */
+    @Test
+    public void testRevalidationWithETag() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        server.enqueue(new MockResponse().setResponseCode(HttpURLConnection.HTTP_NOT_MODIFIED).setHeader("ETag", ETAG));
+        Assert.assertEquals("Wrong body", DESCRIBE_BODY, get("/describe"));
+        Assert.assertEquals("Wrong body", DESCRIBE_BODY, get("/describe"));
+        Assert.assertNull("First request should not be conditional", server.takeRequest().getHeader("If-None-Match"));
+        RecordedRequest conditionalRequest = server.takeRequest();
+        Assert.assertEquals("Second request should be conditional", ETAG, conditionalRequest.getHeader("If-None-Match"));
+        Assert.assertEquals("Wrong miss count", 1, cache.getMissCount());
+        Assert.assertEquals("Wrong revalidation count", 1, cache.getRevalidationCount());
+        Assert.assertEquals("Wrong hit count", 0, cache.getHitCount());
+    }
+
+    /**
+     * Fresh response (max-age) is served without calling the server
+     */
+    @Test
+    public void testHitWithMaxAge() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "private, max-age=600").setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        Assert.assertEquals("Wrong body", DESCRIBE_BODY, get("/metadata"));
+        Assert.assertEquals("Wrong body", DESCRIBE_BODY, get("/metadata"));
+        Assert.assertEquals("Server should have been called once", 1, server.getRequestCount());
+        Assert.assertEquals("Wrong hit count", 1, cache.getHitCount());
+        Assert.assertEquals("Wrong miss count", 1, cache.getMissCount());
+    }
+
+    /**
+     * Responses with no-store are not cached
+     */
+    @Test
+    public void testNoStore() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setHeader("ETag", ETAG).setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        get("/layout");
+        get("/layout");
+        server.takeRequest();
+        Assert.assertNull("Second request should not be conditional", server.takeRequest().getHeader("If-None-Match"));
+        Assert.assertEquals("Wrong miss count", 2, cache.getMissCount());
+        Assert.assertEquals("Nothing should be cached", 0, cache.getSize());
+    }
+
+    /**
+     * Cached responses are encrypted on disk and the cache stays under its maximum size
+     */
+    @Test
+    public void testEncryptedAndSizeBounded() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        get("/describe");
+        File[] files = directory.listFiles();
+        Assert.assertEquals("Wrong number of cached responses", 1, files.length);
+        String onDisk = readFile(files[0]);
+        Assert.assertFalse("Cached response should be encrypted", onDisk.contains("Account"));
+
+        // Cache that can only hold one response
+        long entrySize = cache.getSize();
+        cache.evictAll();
+        cache = new HttpResponseCache(directory, entrySize + entrySize / 2, TEST_KEY);
+        okHttpClient = new OkHttpClient.Builder().addInterceptor(cache).build();
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setHeader("ETag", ETAG).setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+            get("/describe" + i);
+        }
+        Assert.assertTrue("Cache should not exceed its maximum size", cache.getSize() <= entrySize + entrySize / 2);
+        Assert.assertEquals("Wrong number of cached responses", 1, directory.listFiles().length);
+    }
+
+    /**
+     * Cached response is only served for requests with the same values for the headers named in Vary
+     */
+    @Test
+    public void testVary() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "private, max-age=600").setHeader("Vary", "Accept-Language").setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "private, max-age=600").setHeader("Vary", "Accept-Language").setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        get("/describe", "en");
+        get("/describe", "en");
+        Assert.assertEquals("Server should have been called once", 1, server.getRequestCount());
+        get("/describe", "fr");
+        Assert.assertEquals("Different Accept-Language should go to the server", 2, server.getRequestCount());
+        Assert.assertEquals("Wrong hit count", 1, cache.getHitCount());
+    }
+
+    /**
+     * Cache directory can be deleted without a cache using it
+     */
+    @Test
+    public void testDeleteDirectory() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", ETAG).setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        get("/describe");
+        Assert.assertTrue("Cache directory should exist", directory.exists());
+        HttpResponseCache.deleteDirectory(directory);
+        Assert.assertFalse("Cache directory should have been deleted", directory.exists());
+    }
+
+    private String get(String path) throws Exception {
+        return get(path, null);
+    }
+
+    private String get(String path, String acceptLanguage) throws Exception {
+        Request.Builder builder = new Request.Builder().url(server.url(path));
+        if (acceptLanguage != null) {
+            builder.header("Accept-Language", acceptLanguage);
+        }
+        Request request = builder.build();
+        try (Response response = okHttpClient.newCall(request).execute()) {
+            Assert.assertEquals("Wrong status", HttpURLConnection.HTTP_OK, response.code());
+            return response.body().string();
+        }
+    }
+
+    private static String readFile(File file) throws Exception {
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        }
+        return new String(bytes, "US-ASCII");
+    }
+}
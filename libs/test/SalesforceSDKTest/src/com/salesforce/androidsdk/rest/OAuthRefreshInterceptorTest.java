@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.salesforce.androidsdk.rest.RestClient.AuthTokenProvider;
+import com.salesforce.androidsdk.rest.RestClient.ClientInfo;
+import com.salesforce.androidsdk.rest.RestClient.OAuthRefreshInterceptor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Tests for the token refresh done by OAuthRefreshInterceptor
+ * Uses a mock server that only accepts the new token
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class OAuthRefreshInterceptorTest {
+
+    private static final String OLD_TOKEN = "old-token";
+    private static final String NEW_TOKEN = "new-token";
+    private static final int NUMBER_REQUESTS = 50;
+    private static final long REFRESH_LATENCY_MS = 200;
+
+    private MockWebServer server;
+    private AtomicInteger refreshCount;
+    private AtomicInteger requestsWithOldToken;
+    private OAuthRefreshInterceptor interceptor;
+    private OkHttpClient okHttpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        requestsWithOldToken = new AtomicInteger();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (("Bearer " + NEW_TOKEN).equals(request.getHeader("Authorization"))) {
+                    return new MockResponse().setResponseCode(HttpURLConnection.HTTP_OK).setBody("{}");
+                }
+                requestsWithOldToken.incrementAndGet();
+                return new MockResponse().setResponseCode(HttpURLConnection.HTTP_UNAUTHORIZED);
+            }
+        });
+        server.start();
+        final String instanceUrl = server.url("/").toString();
+        final ClientInfo clientInfo = new ClientInfo(server.url("/").uri(), server.url("/").uri(),
+                server.url("/id").uri(), "mock-account", "mock-user",
+                "mock-user-id", "mock-org-id", null, null, null, null, null, null, null, null, null);
+        refreshCount = new AtomicInteger();
+        interceptor = new OAuthRefreshInterceptor(clientInfo, OLD_TOKEN, new AuthTokenProvider() {
+            @Override
+            public String getNewAuthToken() {
+                refreshCount.incrementAndGet();
+                try {
+                    // Slow refresh so that many requests get a 401 while it is in flight
+                    Thread.sleep(REFRESH_LATENCY_MS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                return NEW_TOKEN;
+            }
+
+            @Override
+            public String getRefreshToken() {
+                return "mock-refresh-token";
+            }
+
+            @Override
+            public long getLastRefreshTime() {
+                return -1;
+            }
+
+            @Override
+            public String getInstanceUrl() {
+                return instanceUrl;
+            }
+        });
+        okHttpClient = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    /**
+     * Send requests in parallel with an expired token, make sure they all succeed with a single refresh
+     */
+    @Test
+    public void testConcurrentRequestsShareOneRefresh() throws Exception {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_REQUESTS);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < NUMBER_REQUESTS; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        startSignal.await();
+                        return sendRequest();
+                    }
+                }));
+            }
+            startSignal.countDown();
+            for (Future<Integer> result : results) {
+                Assert.assertEquals("Request should have succeeded", HttpURLConnection.HTTP_OK, (int) result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("Token should have been refreshed exactly once", 1, refreshCount.get());
+        Assert.assertEquals("Wrong token", NEW_TOKEN, interceptor.getAuthToken());
+        Assert.assertTrue("Some requests should have been rejected", requestsWithOldToken.get() > 0);
+    }
+
+    /**
+     * Once the token was refreshed, requests go out with the new token and don't trigger another refresh
+     */
+    @Test
+    public void testRequestsAfterRefreshUseNewToken() throws Exception {
+        Assert.assertEquals("Request should have succeeded", HttpURLConnection.HTTP_OK, sendRequest());
+        Assert.assertEquals("Wrong number of rejected requests", 1, requestsWithOldToken.get());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("Request should have succeeded", HttpURLConnection.HTTP_OK, sendRequest());
+        }
+        Assert.assertEquals("Stale token should not have been sent again", 1, requestsWithOldToken.get());
+        Assert.assertEquals("Token should have been refreshed exactly once", 1, refreshCount.get());
+    }
+
+    private int sendRequest() throws Exception {
+        final Request request = new Request.Builder().url(server.url("/services/data")).build();
+        try (Response response = okHttpClient.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Tests for RequestCoalescingInterceptor
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class RequestCoalescingInterceptorTest {
+
+    private static final String DESCRIBE_BODY = "{\"name\":\"Account\"}";
+    private static final int NUMBER_OF_CALLERS = 10;
+
+    private MockWebServer server;
+    private RequestCoalescingInterceptor interceptor;
+    private OkHttpClient okHttpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        interceptor = new RequestCoalescingInterceptor();
+        okHttpClient = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    /**
+     * Identical GETs in flight at the same time should result in a single server call
+     */
+    @Test
+    public void testConcurrentGetsAreCoalesced() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setBodyDelay(500, TimeUnit.MILLISECONDS));
+        final List<String> bodies = sendConcurrently(new Request.Builder().url(server.url("/describe")).build());
+        Assert.assertEquals("Wrong number of responses", NUMBER_OF_CALLERS, bodies.size());
+        for (String body : bodies) {
+            Assert.assertEquals("Wrong body", DESCRIBE_BODY, body);
+        }
+        Assert.assertEquals("Server should have been called once", 1, server.getRequestCount());
+        Assert.assertEquals("Wrong coalesced count", NUMBER_OF_CALLERS - 1, interceptor.getCoalescedCount());
+    }
+
+    /**
+     * Requests with different headers should not be coalesced
+     */
+    @Test
+    public void testDifferentHeadersAreNotCoalesced() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setBodyDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setBodyDelay(200, TimeUnit.MILLISECONDS));
+        final Call first = okHttpClient.newCall(new Request.Builder().url(server.url("/describe")).header("X-Caller", "1").build());
+        final Call second = okHttpClient.newCall(new Request.Builder().url(server.url("/describe")).header("X-Caller", "2").build());
+        final List<String> bodies = executeConcurrently(first, second);
+        Assert.assertEquals("Wrong number of responses", 2, bodies.size());
+        Assert.assertEquals("Server should have been called twice", 2, server.getRequestCount());
+        Assert.assertEquals("Wrong coalesced count", 0, interceptor.getCoalescedCount());
+    }
+
+    /**
+     * Cancelling a waiting caller should not affect the other callers
+     */
+    @Test
+    public void testCancelWaitingCaller() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setHeadersDelay(1, TimeUnit.SECONDS));
+        final Request request = new Request.Builder().url(server.url("/describe")).build();
+        final Call leader = okHttpClient.newCall(request);
+        final Call follower = okHttpClient.newCall(request);
+        final List<String> results = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        final Thread leaderThread = startCall(leader, results, done);
+        waitForRequests(1);
+        startCall(follower, results, done);
+        Thread.sleep(200);
+        follower.cancel();
+        Assert.assertTrue("Calls did not complete", done.await(10, TimeUnit.SECONDS));
+        leaderThread.join();
+        Assert.assertTrue("Leader should get the response", results.contains(DESCRIBE_BODY));
+        Assert.assertTrue("Follower should be cancelled", results.contains("Canceled"));
+        Assert.assertEquals("Server should have been called once", 1, server.getRequestCount());
+    }
+
+    /**
+     * Requests with Cache-Control no-cache should not be coalesced
+     */
+    @Test
+    public void testNoCacheIsNotCoalesced() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setBodyDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setBodyDelay(200, TimeUnit.MILLISECONDS));
+        final Request request = new Request.Builder().url(server.url("/describe")).header("Cache-Control", "no-cache").build();
+        final List<String> bodies = executeConcurrently(okHttpClient.newCall(request), okHttpClient.newCall(request));
+        Assert.assertEquals("Wrong number of responses", 2, bodies.size());
+        Assert.assertEquals("Server should have been called twice", 2, server.getRequestCount());
+        Assert.assertEquals("Wrong coalesced count", 0, interceptor.getCoalescedCount());
+    }
+
+    /**
+     * Non-json responses should not be shared: the waiting caller sends its own request
+     */
+    @Test
+    public void testNonJsonResponseIsNotShared() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/octet-stream").setBody("file").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/octet-stream").setBody("file"));
+        final Request request = new Request.Builder().url(server.url("/file")).build();
+        final List<String> results = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        startCall(okHttpClient.newCall(request), results, done);
+        waitForRequests(1);
+        startCall(okHttpClient.newCall(request), results, done);
+        Assert.assertTrue("Calls did not complete", done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Wrong results", 2, results.size());
+        Assert.assertEquals("Wrong body", "file", results.get(0));
+        Assert.assertEquals("Wrong body", "file", results.get(1));
+        Assert.assertEquals("Server should have been called twice", 2, server.getRequestCount());
+        Assert.assertEquals("Wrong coalesced count", 0, interceptor.getCoalescedCount());
+    }
+
+    /**
+     * A GET sent after a write should not join a GET that was in flight before the write
+     */
+    @Test
+    public void testGetAfterWriteIsNotCoalesced() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY).setHeadersDelay(1, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setResponseCode(204));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(DESCRIBE_BODY));
+        final Request get = new Request.Builder().url(server.url("/record")).build();
+        final Request patch = new Request.Builder().url(server.url("/record")).patch(RequestBody.create(MediaType.parse("application/json"), "{}")).build();
+        final List<String> results = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        startCall(okHttpClient.newCall(get), results, done);
+        waitForRequests(1);
+        okHttpClient.newCall(patch).execute().close();
+        startCall(okHttpClient.newCall(get), results, done);
+        Assert.assertTrue("Calls did not complete", done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Server should have been called three times", 3, server.getRequestCount());
+        Assert.assertEquals("Wrong coalesced count", 0, interceptor.getCoalescedCount());
+    }
+
+    private List<String> sendConcurrently(Request request) throws Exception {
+        final Call[] calls = new Call[NUMBER_OF_CALLERS];
+        for (int i = 0; i < NUMBER_OF_CALLERS; i++) {
+            calls[i] = okHttpClient.newCall(request);
+        }
+        return executeConcurrently(calls);
+    }
+
+    private List<String> executeConcurrently(Call... calls) throws Exception {
+        final List<String> results = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(calls.length);
+        for (Call call : calls) {
+            startCall(call, results, done);
+        }
+        Assert.assertTrue("Calls did not complete", done.await(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private Thread startCall(final Call call, final List<String> results, final CountDownLatch done) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String result;
+                try (Response response = call.execute()) {
+                    result = response.body().string();
+                } catch (IOException e) {
+                    result = e.getMessage();
+                }
+                synchronized (results) {
+                    results.add(result);
+                }
+                done.countDown();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void waitForRequests(int count) throws Exception {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (server.getRequestCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
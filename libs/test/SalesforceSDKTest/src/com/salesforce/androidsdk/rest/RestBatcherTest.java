@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.salesforce.androidsdk.auth.HttpAccess;
+import com.salesforce.androidsdk.rest.RestClient.AsyncRequestCallback;
+import com.salesforce.androidsdk.rest.RestClient.ClientInfo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Tests for RestBatcher
+ * Uses a mock server that answers batch requests with the url of each subrequest
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class RestBatcherTest {
+
+    private static final String API_VERSION = "v46.0";
+    private static final String PATH = "path";
+    private static final String FLAKY_PATH = "/services/data/" + API_VERSION + "/sobjects/Account/flaky";
+    private static final String RATE_LIMITED_PATH = "/services/data/" + API_VERSION + "/sobjects/Account/rateLimited";
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    private MockWebServer server;
+    private AtomicInteger batchCount;
+    private AtomicInteger directCount;
+    private AtomicInteger flakyCount;
+    private AtomicInteger rateLimitedCount;
+    private RestBatcher batcher;
+
+    @Before
+    public void setUp() throws Exception {
+        batchCount = new AtomicInteger();
+        directCount = new AtomicInteger();
+        flakyCount = new AtomicInteger();
+        rateLimitedCount = new AtomicInteger();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                try {
+                    if (request.getPath().endsWith("/composite/batch")) {
+                        batchCount.incrementAndGet();
+                        final JSONArray subrequests = new JSONObject(request.getBody().readUtf8()).getJSONArray(RestRequest.BATCH_REQUESTS);
+                        final JSONArray results = new JSONArray();
+                        boolean rateLimited = false;
+                        for (int i = 0; i < subrequests.length(); i++) {
+                            final String url = "/services/data/" + subrequests.getJSONObject(i).getString(RestRequest.URL);
+                            final JSONObject result = new JSONObject();
+                            if (url.equals(FLAKY_PATH) && flakyCount.getAndIncrement() == 0) {
+                                result.put("statusCode", HttpURLConnection.HTTP_UNAVAILABLE);
+                                result.put("result", new JSONArray("[{\"errorCode\":\"SERVER_UNAVAILABLE\"}]"));
+                            } else if (url.equals(RATE_LIMITED_PATH) && rateLimitedCount.getAndIncrement() == 0) {
+                                rateLimited = true;
+                                result.put("statusCode", TOO_MANY_REQUESTS);
+                                result.put("result", new JSONArray("[{\"errorCode\":\"REQUEST_LIMIT_EXCEEDED\"}]"));
+                            } else {
+                                result.put("statusCode", HttpURLConnection.HTTP_OK);
+                                result.put("result", new JSONObject().put(PATH, url));
+                            }
+                            results.put(result);
+                        }
+                        final MockResponse response = new MockResponse().setBody(new JSONObject().put("hasErrors", rateLimited).put("results", results).toString());
+                        return rateLimited ? response.setHeader("Retry-After", RETRY_AFTER_SECONDS) : response;
+                    }
+                    directCount.incrementAndGet();
+                    return new MockResponse().setBody(new JSONObject().put(PATH, request.getPath()).toString());
+                } catch (Exception e) {
+                    return new MockResponse().setResponseCode(HttpURLConnection.HTTP_INTERNAL_ERROR);
+                }
+            }
+        });
+        server.start();
+        final ClientInfo clientInfo = new ClientInfo(server.url("/").uri(), server.url("/").uri(),
+                server.url("/id").uri(), "mock-account", "mock-user",
+                "mock-user-id-" + UUID.randomUUID(), "mock-org-id", null, null, null, null, null, null, null, null, null);
+        final RestClient restClient = new RestClient(clientInfo, "mock-token", new HttpAccess(null, "dummy-agent"), null);
+        batcher = new RestBatcher(restClient, API_VERSION, 200, RestBatcher.DEFAULT_MAX_RETRIES);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        batcher.shutdown();
+        server.shutdown();
+    }
+
+    /**
+     * Requests sent within the window should go out as one batch, each caller getting its own response
+     */
+    @Test
+    public void testRequestsAreBatched() throws Exception {
+        final int count = 10;
+        final Map<String, String> paths = send(count, null);
+        Assert.assertEquals("Wrong number of responses", count, paths.size());
+        for (Map.Entry<String, String> entry : paths.entrySet()) {
+            Assert.assertEquals("Wrong response", entry.getKey(), entry.getValue());
+        }
+        Assert.assertEquals("Wrong number of batch requests", 1, batchCount.get());
+        Assert.assertEquals("Wrong number of direct requests", 0, directCount.get());
+    }
+
+    /**
+     * No more than MAX_BATCH_SIZE subrequests should go in a batch
+     */
+    @Test
+    public void testBatchSizeLimit() throws Exception {
+        final Map<String, String> paths = send(RestBatcher.MAX_BATCH_SIZE * 2, null);
+        Assert.assertEquals("Wrong number of responses", RestBatcher.MAX_BATCH_SIZE * 2, paths.size());
+        Assert.assertEquals("Wrong number of batch requests", 2, batchCount.get());
+    }
+
+    /**
+     * Subrequest that failed with a server error should be retried
+     */
+    @Test
+    public void testFailedSubrequestIsRetried() throws Exception {
+        final Map<String, String> paths = send(5, new RestRequest(RestRequest.RestMethod.GET, FLAKY_PATH));
+        Assert.assertEquals("Wrong number of responses", 6, paths.size());
+        Assert.assertEquals("Retried request should succeed", FLAKY_PATH, paths.get(FLAKY_PATH));
+        Assert.assertEquals("Wrong number of batch requests", 1, batchCount.get());
+        Assert.assertEquals("Retried request should be sent on its own", 1, directCount.get());
+    }
+
+    /**
+     * Non idempotent subrequest that failed with a server error should not be retried (it might have run)
+     */
+    @Test
+    public void testFailedNonIdempotentSubrequestIsNotRetried() throws Exception {
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put("Name", "updated");
+        final Map<String, String> paths = send(5, new RestRequest(RestRequest.RestMethod.PATCH, FLAKY_PATH, new JSONObject(fields)));
+        Assert.assertEquals("Wrong number of responses", 6, paths.size());
+        Assert.assertEquals("Failure should be reported", "" + HttpURLConnection.HTTP_UNAVAILABLE, paths.get(FLAKY_PATH));
+        Assert.assertEquals("Wrong number of batch requests", 1, batchCount.get());
+        Assert.assertEquals("Request should not have been retried", 0, directCount.get());
+        Assert.assertEquals("Request should have been sent once", 1, flakyCount.get());
+    }
+
+    /**
+     * Rate limited subrequest should be retried after the delay asked by the server
+     */
+    @Test
+    public void testRateLimitedSubrequestHonorsRetryAfter() throws Exception {
+        final long start = System.currentTimeMillis();
+        final Map<String, String> paths = send(5, new RestRequest(RestRequest.RestMethod.GET, RATE_LIMITED_PATH));
+        final long elapsed = System.currentTimeMillis() - start;
+        Assert.assertEquals("Retried request should succeed", RATE_LIMITED_PATH, paths.get(RATE_LIMITED_PATH));
+        Assert.assertEquals("Request should have been sent twice", 2, rateLimitedCount.get());
+        Assert.assertTrue("Retry should wait for Retry-After delay", elapsed >= TimeUnit.SECONDS.toMillis(RETRY_AFTER_SECONDS));
+    }
+
+    /**
+     * Send count retrieve requests (and the extra one if any) through the batcher
+     * @return map of request path to path returned by server (or status code if not successful)
+     */
+    private Map<String, String> send(int count, RestRequest extraRequest) throws Exception {
+        final Map<String, String> paths = new HashMap<>();
+        final CountDownLatch done = new CountDownLatch(count + (extraRequest == null ? 0 : 1));
+        final AsyncRequestCallback callback = new AsyncRequestCallback() {
+            @Override
+            public void onSuccess(RestRequest request, RestResponse response) {
+                String result;
+                try {
+                    result = response.isSuccess() ? response.asJSONObject().getString(PATH) : "" + response.getStatusCode();
+                } catch (Exception e) {
+                    result = e.getMessage();
+                }
+                synchronized (paths) {
+                    paths.put(request.getPath(), result);
+                }
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception exception) {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            batcher.send(RestRequest.getRequestForRetrieve(API_VERSION, "Account", "id" + i, null), callback);
+        }
+        if (extraRequest != null) {
+            batcher.send(extraRequest, callback);
+        }
+        Assert.assertTrue("Requests did not complete", done.await(10, TimeUnit.SECONDS));
+        return paths;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.rest;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.salesforce.androidsdk.auth.HttpAccess;
+import com.salesforce.androidsdk.rest.RestClient.ClientInfo;
+import com.salesforce.androidsdk.rest.RestClientMetrics.EndpointMetrics;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.UUID;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Tests for RestClientMetrics
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class RestClientMetricsTest {
+
+    private static final String API_VERSION = "v46.0";
+    private static final String BODY = "{\"Id\":\"001\"}";
+
+    private MockWebServer server;
+    private RestClient restClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        final ClientInfo clientInfo = new ClientInfo(server.url("/").uri(), server.url("/").uri(),
+                server.url("/id").uri(), "mock-account", "mock-user",
+                "mock-user-id-" + UUID.randomUUID(), "mock-org-id", null, null, null, null, null, null, null, null, null);
+        restClient = new RestClient(clientInfo, "mock-token", new HttpAccess(null, "dummy-agent"), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    /**
+     * Calls should be aggregated by endpoint template
+     */
+    @Test
+    public void testMetricsPerEndpoint() throws Exception {
+        final int count = 3;
+        for (int i = 0; i < count; i++) {
+            server.enqueue(new MockResponse().setBody(BODY));
+            restClient.sendSync(RestRequest.getRequestForRetrieve(API_VERSION, "Account", "001" + i, null)).consume();
+        }
+        server.enqueue(new MockResponse().setBody("{\"records\":[]}"));
+        restClient.sendSync(RestRequest.getRequestForQuery(API_VERSION, "SELECT Id FROM Account")).consume();
+
+        final RestClientMetrics metrics = restClient.getNetworkMetrics();
+        final EndpointMetrics sobjectsMetrics = metrics.getEndpointMetrics(RestClientMetrics.SOBJECTS);
+        Assert.assertNotNull("Missing sobjects metrics", sobjectsMetrics);
+        Assert.assertEquals("Wrong number of calls", count, sobjectsMetrics.getCalls());
+        Assert.assertEquals("Wrong number of failures", 0, sobjectsMetrics.getFailures());
+        Assert.assertEquals("Wrong number of retries", 0, sobjectsMetrics.getRetries());
+        Assert.assertEquals("Connection should be reused after first call", count - 1, sobjectsMetrics.getConnectionReuses());
+        Assert.assertEquals("Connect should only be timed once", 1, sobjectsMetrics.getConnect().getCount());
+        Assert.assertEquals("Wrong number of time to first byte values", count, sobjectsMetrics.getTimeToFirstByte().getCount());
+        Assert.assertEquals("Wrong number of total time values", count, sobjectsMetrics.getTotal().getCount());
+        Assert.assertEquals("Wrong response size", count * BODY.length(), sobjectsMetrics.getResponseSize().getSum());
+        Assert.assertEquals("Wrong number of query calls", 1, metrics.getEndpointMetrics(RestClientMetrics.QUERY).getCalls());
+
+        final JSONArray json = metrics.asJSON();
+        Assert.assertEquals("Wrong number of endpoints", 2, json.length());
+        metrics.reset();
+        Assert.assertTrue("Metrics should have been reset", metrics.getEndpoints().isEmpty());
+    }
+
+    /**
+     * Test endpoint templates
+     */
+    @Test
+    public void testGetEndpointTemplate() {
+        Assert.assertEquals(RestClientMetrics.SOBJECTS, RestClientMetrics.getEndpointTemplate("/services/data/v46.0/sobjects/Account/001"));
+        Assert.assertEquals(RestClientMetrics.QUERY, RestClientMetrics.getEndpointTemplate("/services/data/v46.0/query"));
+        Assert.assertEquals(RestClientMetrics.QUERY, RestClientMetrics.getEndpointTemplate("/services/data/v46.0/queryAll"));
+        Assert.assertEquals(RestClientMetrics.COMPOSITE, RestClientMetrics.getEndpointTemplate("/services/data/v46.0/composite/sobjects"));
+        Assert.assertEquals(RestClientMetrics.CONNECT_FILES, RestClientMetrics.getEndpointTemplate("/services/data/v46.0/connect/files/069/content"));
+        Assert.assertEquals(RestClientMetrics.SEARCH, RestClientMetrics.getEndpointTemplate("/services/data/v46.0/search"));
+        Assert.assertEquals(RestClientMetrics.OTHER, RestClientMetrics.getEndpointTemplate("/services/data/"));
+    }
+
+    /**
+     * Test histogram buckets
+     */
+    @Test
+    public void testHistogram() {
+        final RestClientMetrics.Histogram histogram = new RestClientMetrics.Histogram(new long[] { 10, 100 });
+        histogram.record(5);
+        histogram.record(10);
+        histogram.record(50);
+        histogram.record(500);
+        Assert.assertEquals("Wrong count", 4, histogram.getCount());
+        Assert.assertEquals("Wrong sum", 565, histogram.getSum());
+        Assert.assertEquals("Wrong min", 5, histogram.getMin());
+        Assert.assertEquals("Wrong max", 500, histogram.getMax());
+        Assert.assertEquals("Wrong first bucket", 2, histogram.getBucket(0));
+        Assert.assertEquals("Wrong second bucket", 1, histogram.getBucket(1));
+        Assert.assertEquals("Wrong overflow bucket", 1, histogram.getBucket(2));
+    }
+}
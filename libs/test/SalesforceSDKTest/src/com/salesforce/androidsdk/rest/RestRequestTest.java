@@ -444,6 +444,45 @@ public class RestRequestTest {
         JSONTestHelper.assertSameJSON("Wrong request entity", expectedBodyJson, actualBodyJson);
     }
 
+    /**
+     * Test for getRequestForCollectionCreate and getRequestForCollectionUpdate
+     * @throws JSONException
+     */
+    @Test
+    public void testGetRequestForCollectionCreateAndUpdate() throws JSONException, IOException {
+        JSONObject record = new JSONObject(TEST_FIELDS);
+        record.put("attributes", new JSONObject().put("type", TEST_OBJECT_TYPE));
+        JSONArray records = new JSONArray();
+        records.put(record);
+        JSONObject expectedBodyJson = new JSONObject();
+        expectedBodyJson.put("allOrNone", false);
+        expectedBodyJson.put("records", records);
+
+        RestRequest request = RestRequest.getRequestForCollectionCreate(TEST_API_VERSION, false, records);
+        Assert.assertEquals("Wrong method", RestMethod.POST, request.getMethod());
+        Assert.assertEquals("Wrong path", "/services/data/" + TEST_API_VERSION + "/composite/sobjects", request.getPath());
+        Assert.assertNull("Wrong additional headers", request.getAdditionalHttpHeaders());
+        JSONTestHelper.assertSameJSON("Wrong request entity", expectedBodyJson, new JSONObject(bodyToString(request)));
+
+        request = RestRequest.getRequestForCollectionUpdate(TEST_API_VERSION, false, records);
+        Assert.assertEquals("Wrong method", RestMethod.PATCH, request.getMethod());
+        Assert.assertEquals("Wrong path", "/services/data/" + TEST_API_VERSION + "/composite/sobjects", request.getPath());
+        JSONTestHelper.assertSameJSON("Wrong request entity", expectedBodyJson, new JSONObject(bodyToString(request)));
+    }
+
+    /**
+     * Test for getRequestForCollectionDelete
+     * @throws UnsupportedEncodingException
+     */
+    @Test
+    public void testGetRequestForCollectionDelete() throws UnsupportedEncodingException {
+        RestRequest request = RestRequest.getRequestForCollectionDelete(TEST_API_VERSION, true, Arrays.asList("id1", "id2"));
+        Assert.assertEquals("Wrong method", RestMethod.DELETE, request.getMethod());
+        Assert.assertEquals("Wrong path", "/services/data/" + TEST_API_VERSION + "/composite/sobjects?ids=id1%2Cid2&allOrNone=true", request.getPath());
+        Assert.assertNull("Wrong request entity", request.getRequestBody());
+        Assert.assertNull("Wrong additional headers", request.getAdditionalHttpHeaders());
+    }
+
     private static String bodyToString(final RestRequest request) throws IOException {
 		final Buffer buffer = new Buffer();
 		request.getRequestBody().writeTo(buffer);
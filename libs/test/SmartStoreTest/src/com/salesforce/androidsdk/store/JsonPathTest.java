@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.JsonPath;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.util.JSONObjectHelper;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Test class for JsonPath (including a micro benchmark against the former String.split based projection)
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class JsonPathTest {
+
+    private static final String TAG = "JsonPathTest";
+    private static final int NUMBER_RECORDS = 1000;
+    private static final int NUMBER_ITERATIONS = 20;
+    private static final int NS_IN_MS = 1000000;
+
+    // Typical index spec paths for Salesforce records
+    private static final String[] PATHS = new String[] {
+            "Id", "Name", "LastModifiedDate", "attributes.type", "Owner.Name", "Owner.Manager.Email",
+            "Contacts.records.Email", "__local__", "Missing.Path"
+    };
+
+    /**
+     * Test that compiled paths project the same values as the former String.split based projection
+     * @throws JSONException
+     */
+    @Test
+    public void testProjectSameAsLegacy() throws JSONException {
+        JSONObject record = makeRecord(1);
+        for (String path : PATHS) {
+            assertSameProjection(record, path);
+        }
+        JSONObject json = new JSONObject("{\"a\":\"a1\", \"b\":null, \"c\":[{\"cc\":\"cc1\"}, null, {\"cc\":[1,2,3]}, {}, {\"cc\":{\"cc5\":5}}], \"d\":[{\"dd\":[{\"ddd\":\"ddd11\"},{\"ddd\":\"ddd12\"}]}, {\"dd\":[{\"ddd\":\"ddd21\"}]}]}");
+        for (String path : new String[] {"a", "a.x", "b", "b.x", "c", "c.cc", "c.cc.cc5", "d.dd.ddd", "d.dd.x", "a.", "c.cc.", "a..b", ".a"}) {
+            assertSameProjection(json, path);
+        }
+    }
+
+    /**
+     * Test edge cases (null soup / null or empty path)
+     * @throws JSONException
+     */
+    @Test
+    public void testProjectEdgeCases() throws JSONException {
+        JSONObject json = new JSONObject("{'a':'va'}");
+        Assert.assertNull("Should have been null", JsonPath.compile("a").project(null));
+        JSONTestHelper.assertSameJSON("Should have returned whole object", json, JsonPath.compile(null).project(json));
+        JSONTestHelper.assertSameJSON("Should have returned whole object", json, JsonPath.compile("").project(json));
+        Assert.assertEquals("Wrong path", "a.b", new IndexSpec("a.b", Type.string).getJsonPath().getPath());
+    }
+
+    /**
+     * Micro benchmark comparing compiled paths with the former String.split based projection
+     * @throws JSONException
+     */
+    @Test
+    public void testProjectSpeed() throws JSONException {
+        JSONObject[] records = new JSONObject[NUMBER_RECORDS];
+        for (int i = 0; i < NUMBER_RECORDS; i++) {
+            records[i] = makeRecord(i);
+        }
+        JsonPath[] jsonPaths = new JsonPath[PATHS.length];
+        for (int i = 0; i < PATHS.length; i++) {
+            jsonPaths[i] = JsonPath.compile(PATHS[i]);
+        }
+
+        // Warm up
+        projectAllLegacy(records);
+        projectAllCompiled(records, jsonPaths);
+
+        long legacyDuration = 0;
+        long compiledDuration = 0;
+        for (int i = 0; i < NUMBER_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            projectAllLegacy(records);
+            legacyDuration += System.nanoTime() - start;
+            start = System.nanoTime();
+            projectAllCompiled(records, jsonPaths);
+            compiledDuration += System.nanoTime() - start;
+        }
+        Log.i(TAG, String.format("Projecting %d paths of %d records: average time per iteration --> split based %.3f ms, compiled %.3f ms",
+                PATHS.length, NUMBER_RECORDS, ((double) legacyDuration) / NUMBER_ITERATIONS / NS_IN_MS, ((double) compiledDuration) / NUMBER_ITERATIONS / NS_IN_MS));
+    }
+
+    private void assertSameProjection(JSONObject json, String path) throws JSONException {
+        Object expected = projectLegacy(json, path);
+        Object actual = JsonPath.compile(path).project(json);
+        if (expected instanceof JSONObject || expected instanceof JSONArray) {
+            JSONTestHelper.assertSameJSON("Wrong value for path " + path, expected, actual);
+        } else {
+            Assert.assertEquals("Wrong value for path " + path, expected, actual);
+        }
+    }
+
+    private int projectAllLegacy(JSONObject[] records) {
+        int count = 0;
+        for (JSONObject record : records) {
+            for (String path : PATHS) {
+                if (projectLegacy(record, path) != null) count++;
+            }
+        }
+        return count;
+    }
+
+    private int projectAllCompiled(JSONObject[] records, JsonPath[] jsonPaths) {
+        int count = 0;
+        for (JSONObject record : records) {
+            for (JsonPath jsonPath : jsonPaths) {
+                if (jsonPath.project(record) != null) count++;
+            }
+        }
+        return count;
+    }
+
+    private JSONObject makeRecord(int i) throws JSONException {
+        JSONObject record = new JSONObject();
+        record.put("attributes", new JSONObject().put("type", "Account").put("url", "/services/data/v46.0/sobjects/Account/001" + i));
+        record.put("Id", "001" + i);
+        record.put("Name", "Account " + i);
+        record.put("LastModifiedDate", "2019-06-01T10:00:00.000Z");
+        record.put("Owner", new JSONObject().put("Name", "Owner " + i).put("Manager", new JSONObject().put("Email", "manager" + i + "@example.com")));
+        JSONArray contacts = new JSONArray();
+        for (int j = 0; j < 3; j++) {
+            contacts.put(new JSONObject().put("Id", "003" + i + "_" + j).put("Email", "contact" + j + "@example.com"));
+        }
+        record.put("Contacts", new JSONObject().put("totalSize", 3).put("records", contacts));
+        record.put("__local__", false);
+        return record;
+    }
+
+    /*
+     * Former implementation of SmartStore.project
+     */
+    private static Object projectLegacy(JSONObject soup, String path) {
+        if (soup == null) {
+            return null;
+        }
+        if (path == null || path.equals("")) {
+            return soup;
+        }
+        String[] pathElements = path.split("[.]");
+        return projectLegacy(soup, pathElements, 0);
+    }
+
+    private static Object projectLegacy(Object jsonObj, String[] pathElements, int index) {
+        Object result = null;
+        if (index == pathElements.length) {
+            return jsonObj;
+        }
+        if (null != jsonObj) {
+            String pathElement = pathElements[index];
+            if (jsonObj instanceof JSONObject) {
+                JSONObject jsonDict = (JSONObject) jsonObj;
+                Object dictVal = JSONObjectHelper.opt(jsonDict, pathElement);
+                result = projectLegacy(dictVal, pathElements, index + 1);
+            } else if (jsonObj instanceof JSONArray) {
+                JSONArray jsonArr = (JSONArray) jsonObj;
+                result = new JSONArray();
+                for (int i = 0; i < jsonArr.length(); i++) {
+                    Object arrayElt = JSONObjectHelper.opt(jsonArr, i);
+                    Object resultPart = projectLegacy(arrayElt, pathElements, index);
+                    if (resultPart != null) {
+                        ((JSONArray) result).put(resultPart);
+                    }
+                }
+                if (((JSONArray) result).length() == 0) {
+                    result = null;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -199,6 +199,31 @@ public class SmartSqlTest extends SmartStoreTestCase {
 		// XXX join query with json1 will only run if all the json1 columns are qualified by table or alias
 	}
 
+	/**
+	 * Testing that converted smart sql is not reused once the soup has been altered or dropped
+	 */
+    @Test
+	public void testConvertSmartSqlAfterAlterAndDropSoup() throws JSONException {
+		String smartSql = "select {employees:education} from {employees}";
+        Assert.assertEquals("select json_extract(soup, '$.education') from TABLE_1", store.convertSmartSql(smartSql));
+        Assert.assertEquals("select json_extract(soup, '$.education') from TABLE_1", store.convertSmartSql(smartSql));
+
+		store.alterSoup(EMPLOYEES_SOUP, new IndexSpec[] {new IndexSpec(EDUCATION, Type.string)}, true);
+        Assert.assertEquals("select TABLE_1_0 from TABLE_1", store.convertSmartSql(smartSql));
+
+		store.dropSoup(EMPLOYEES_SOUP);
+		try {
+			store.convertSmartSql(smartSql);
+			Assert.fail("Should have thrown exception for dropped soup");
+		} catch (SmartSqlException e) {
+			// Expected
+		}
+
+		store.registerSoup(EMPLOYEES_SOUP, new IndexSpec[] {new IndexSpec(EDUCATION, Type.json1)});
+        Assert.assertEquals("select json_extract(soup, '$.education') from TABLE_3", store.convertSmartSql(smartSql));
+        Assert.assertEquals("select TABLE_2_1 from TABLE_2", store.convertSmartSql("select {departments:name} from {departments}"));
+	}
+
 	/**
 	 * Test running smart query that does a select count
 	 * @throws JSONException 
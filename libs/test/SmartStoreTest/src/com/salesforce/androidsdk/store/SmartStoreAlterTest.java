@@ -35,6 +35,7 @@ import com.salesforce.androidsdk.smartstore.store.DBHelper;
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
 import com.salesforce.androidsdk.smartstore.store.LongOperation;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.ReIndexSoupLongOperation;
 import com.salesforce.androidsdk.smartstore.store.SmartSqlHelper;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartstore.store.SoupSpec;
@@ -645,6 +646,41 @@ public class SmartStoreAlterTest extends SmartStoreTestCase {
         assertRowCount(1, "address.street", "1 market");
     }
 
+    /**
+     * Test reIndexSoup with a chunk size (including resume of an interrupted re-index)
+     * @throws JSONException
+     */
+    @Test
+    public void testReIndexSoupInChunks() throws JSONException {
+        IndexSpec[] indexSpecs = new IndexSpec[] {new IndexSpec("lastName", SmartStore.Type.string)};
+        store.registerSoup(TEST_SOUP, indexSpecs);
+        for (int i = 0; i < 5; i++) {
+            store.create(TEST_SOUP, new JSONObject("{'lastName':'Doe" + i + "', 'address':{'city':'San Francisco','street':'1 market'}}"));
+        }
+
+        // Alter soup - add city + street
+        IndexSpec[] indexSpecsNew = new IndexSpec[] {new IndexSpec("lastName", SmartStore.Type.string), new IndexSpec("address.city", SmartStore.Type.string), new IndexSpec("address.street", SmartStore.Type.string)};
+        store.alterSoup(TEST_SOUP, indexSpecsNew, false);
+        assertRowCount(0, "address.city", "San Francisco");
+
+        // Re-index city two soup elements at a time
+        store.reIndexSoup(TEST_SOUP, new String[] {"address.city"}, 2);
+        assertRowCount(5, "address.city", "San Francisco");
+        Assert.assertEquals("No long operation expected", 0, store.getLongOperations().length);
+
+        // Re-index street interrupted before it could run
+        new ReIndexSoupLongOperation(store, TEST_SOUP, new String[] {"address.street"}, 2);
+        LongOperation[] operations = store.getLongOperations();
+        Assert.assertEquals("Wrong number of long operations found", 1, operations.length);
+        Assert.assertEquals("Wrong high-water mark", -1, ((ReIndexSoupLongOperation) operations[0]).getHighWaterMark());
+        assertRowCount(0, "address.street", "1 market");
+
+        // Simulate restart
+        store.resumeLongOperations();
+        assertRowCount(5, "address.street", "1 market");
+        Assert.assertEquals("No long operation expected", 0, store.getLongOperations().length);
+    }
+
     /**
      * Helper function for testReIndexSoup: count rows where field has value
      * @param expectedCount
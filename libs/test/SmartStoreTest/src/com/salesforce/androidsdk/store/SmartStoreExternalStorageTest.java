@@ -50,6 +50,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -113,6 +114,63 @@ public class SmartStoreExternalStorageTest extends SmartStoreTest {
 		JSONTestHelper.assertSameJSON("Wrong result for query", soupElt, result.getJSONObject(0));
 	}
 
+	/**
+	 * Ensure a temp file left behind by an interrupted rekey is cleaned up and does not break the next rekey
+	 */
+    @Test
+	public void testChangeKeyWithLeftoverFromInterruptedRekey() throws Exception {
+		JSONObject soupElt = store.create(TEST_SOUP, new JSONObject("{'key':'ka3', 'value':'testValue'}"));
+		String newPasscode = Encryptor.hash("123test", "hashing-key");
+
+		// Simulate a rekey interrupted while writing the re-encrypted copy of the blob
+		File blob = ((DBOpenHelper) dbOpenHelper).getSoupBlobFile(getSoupTableName(TEST_SOUP), soupElt.getLong(SmartStore.SOUP_ENTRY_ID));
+		File leftover = new File(blob.getPath() + ".rekey");
+		try (FileOutputStream out = new FileOutputStream(leftover)) {
+			out.write("partial".getBytes());
+		}
+
+		// Act
+		final SQLiteDatabase db = dbOpenHelper.getWritableDatabase(getEncryptionKey());
+		SmartStore.changeKey(db, getEncryptionKey(), newPasscode);
+		store = new SmartStore(dbOpenHelper, newPasscode);
+
+		// Verify that leftover is gone and that data is still accessible
+		Assert.assertFalse("Leftover should have been deleted", leftover.exists());
+		JSONArray result = store.query(QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "ka3", null, null, 10), 0);
+		Assert.assertEquals("One result expected", 1, result.length());
+		JSONTestHelper.assertSameJSON("Wrong result for query", soupElt, result.getJSONObject(0));
+	}
+
+	/**
+	 * Ensure blobs of soup elements deleted by a bulk delete are only removed once the delete is committed
+	 */
+    @Test
+	public void testDeleteByQueryRemovesBlobsOnlyOnCommit() throws JSONException {
+		JSONObject soupElt = store.create(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"));
+		long id = soupElt.getLong(SmartStore.SOUP_ENTRY_ID);
+		File blob = ((DBOpenHelper) dbOpenHelper).getSoupBlobFile(getSoupTableName(TEST_SOUP), id);
+		QuerySpec querySpec = QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "ka1", null, null, 10);
+		final SQLiteDatabase db = dbOpenHelper.getWritableDatabase(getEncryptionKey());
+
+		// Rolled back delete
+		synchronized(db) {
+			store.beginTransaction();
+			try {
+				store.deleteByQuery(TEST_SOUP, querySpec, false);
+				Assert.assertTrue("Blob should not be removed before commit", blob.exists());
+			} finally {
+				store.endTransaction();
+			}
+		}
+		Assert.assertTrue("Blob should still exist after rollback", blob.exists());
+		JSONTestHelper.assertSameJSON("Wrong result for retrieve", soupElt, store.retrieve(TEST_SOUP, id).getJSONObject(0));
+
+		// Committed delete
+		store.deleteByQuery(TEST_SOUP, querySpec);
+		Assert.assertFalse("Blob should be removed after commit", blob.exists());
+		Assert.assertEquals("Soup element should be gone", 0, store.retrieve(TEST_SOUP, id).length());
+	}
+
 	/**
 	 * Test for getDatabaseSize
 	 *
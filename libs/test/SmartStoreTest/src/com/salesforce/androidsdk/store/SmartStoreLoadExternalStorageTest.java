@@ -27,13 +27,20 @@
 package com.salesforce.androidsdk.store;
 
 import androidx.test.filters.LargeTest;
+import android.util.Log;
 
 import com.salesforce.androidsdk.analytics.security.Encryptor;
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
 import com.salesforce.androidsdk.smartstore.store.SoupSpec;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
@@ -47,6 +54,8 @@ import java.util.Collection;
 @LargeTest
 public class SmartStoreLoadExternalStorageTest extends SmartStoreLoadTest {
 
+    private static final int BLOB_BATCH_SIZE = 500;
+
     @Override
     protected String getEncryptionKey() {
         return Encryptor.hash("test123", "hashing-key");
@@ -57,6 +66,51 @@ public class SmartStoreLoadExternalStorageTest extends SmartStoreLoadTest {
         store.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_EXTERNAL_STORAGE), indexSpecs);
     }
 
+    /**
+     * Writes a batch of externally stored entries with upsertAll then reads them back with a query and a retrieve
+     * (blobs are written / read in parallel) and logs the throughput of each
+     */
+    @Test
+    public void testBlobThroughput() throws JSONException {
+        setupSoup(TEST_SOUP, numberIndexes, indexType);
+        JSONArray entries = new JSONArray();
+        for (int entryNumber = 0; entryNumber < BLOB_BATCH_SIZE; entryNumber++) {
+            JSONObject entry = new JSONObject();
+            for (int fieldNumber = 0; fieldNumber < numberFieldsPerEntry; fieldNumber++) {
+                entry.put("k_" + fieldNumber, pad("v_" + entryNumber + "_" + fieldNumber + "_", numberCharactersPerField));
+            }
+            entries.put(entry);
+        }
+
+        long start = System.nanoTime();
+        JSONArray upserted = store.upsertAll(TEST_SOUP, entries, SmartStore.SOUP_ENTRY_ID);
+        logThroughput("Writing", System.nanoTime() - start);
+        Assert.assertEquals("Wrong number of entries written", BLOB_BATCH_SIZE, upserted.length());
+
+        start = System.nanoTime();
+        JSONArray queried = store.query(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, BLOB_BATCH_SIZE), 0);
+        logThroughput("Querying", System.nanoTime() - start);
+        Assert.assertEquals("Wrong number of entries queried", BLOB_BATCH_SIZE, queried.length());
+
+        Long[] soupEntryIds = new Long[BLOB_BATCH_SIZE];
+        for (int i = 0; i < BLOB_BATCH_SIZE; i++) {
+            soupEntryIds[i] = upserted.getJSONObject(i).getLong(SmartStore.SOUP_ENTRY_ID);
+        }
+        start = System.nanoTime();
+        JSONArray retrieved = store.retrieve(TEST_SOUP, soupEntryIds);
+        logThroughput("Retrieving", System.nanoTime() - start);
+        Assert.assertEquals("Wrong number of entries retrieved", BLOB_BATCH_SIZE, retrieved.length());
+        for (int i = 0; i < BLOB_BATCH_SIZE; i++) {
+            Assert.assertEquals("Wrong entry retrieved", upserted.getJSONObject(i).toString(), retrieved.getJSONObject(i).toString());
+        }
+    }
+
+    private void logThroughput(String operation, long durationNanos) {
+        Log.i(getTag(), String.format("%s %d external storage entries with %d fields with %d characters: %.3f ms --> %.1f entries per second",
+                operation, BLOB_BATCH_SIZE, numberFieldsPerEntry, numberCharactersPerField, (double) durationNanos / NS_IN_MS,
+                BLOB_BATCH_SIZE * 1e9 / durationNanos));
+    }
+
     @Parameterized.Parameters(name = "{0}")
     public static Collection<Object[]> data() {
         return Arrays.asList(new Object[][]{
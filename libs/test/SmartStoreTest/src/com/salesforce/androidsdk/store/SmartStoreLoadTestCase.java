@@ -31,9 +31,14 @@ import android.util.Log;
 
 import com.salesforce.androidsdk.smartstore.store.DBOpenHelper;
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
 
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Before;
@@ -41,6 +46,8 @@ import org.junit.Before;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Super class for smartstore load tests
@@ -103,6 +110,117 @@ public class SmartStoreLoadTestCase extends SmartStoreTestCase {
                 numberBatches * numberEntriesPerBatch, numberEntriesPerBatch, numberFieldsPerEntry, numberCharactersPerField, avgMilliseconds));
     }
 
+    /**
+     * Walk all the results of querySpec page by page with offset pagination then with keyset pagination
+     * and log the average time per page for the first and last tenth of the pages for both
+     * With offset pagination the cost of a page grows with its index, with keyset pagination it should stay flat
+     */
+    protected void compareOffsetAndKeysetPagination(QuerySpec querySpec) throws JSONException {
+        List<Long> offsetTimes = new ArrayList<Long>();
+        boolean hasMore = true;
+        for (int pageIndex = 0; hasMore; pageIndex++) {
+            long start = System.nanoTime();
+            JSONArray results = store.query(querySpec, pageIndex);
+            offsetTimes.add(System.nanoTime() - start);
+            hasMore = (results.length() == querySpec.pageSize);
+        }
+        List<Long> keysetTimes = new ArrayList<Long>();
+        QuerySpec.Keyset after = null;
+        do {
+            long start = System.nanoTime();
+            after = store.queryAsString(new StringBuilder(), querySpec, after);
+            keysetTimes.add(System.nanoTime() - start);
+        } while (after != null);
+        logFirstAndLastPagesTimes("offset", querySpec, offsetTimes);
+        logFirstAndLastPagesTimes("keyset", querySpec, keysetTimes);
+    }
+
+    private void logFirstAndLastPagesTimes(String paginationMode, QuerySpec querySpec, List<Long> times) {
+        int tenth = Math.max(1, times.size() / 10);
+        double firstPagesMilliseconds = average(times.subList(0, tenth)) / NS_IN_MS;
+        double lastPagesMilliseconds = average(times.subList(times.size() - tenth, times.size())) / NS_IN_MS;
+        Log.i(getTag(), String.format("Querying %d pages of %d with %s pagination: average time per page --> first pages %.3f ms, last pages %.3f ms",
+                times.size(), querySpec.pageSize, paginationMode, firstPagesMilliseconds, lastPagesMilliseconds));
+    }
+
+    /**
+     * Run queries from numberReaders threads for durationMs while another thread keeps upserting batches of entries
+     * in transactions the way a sync down does, then log the number of queries and batches completed
+     *
+     * @return number of queries completed
+     */
+    protected int measureQueryThroughputDuringWrites(final QuerySpec querySpec, int numberReaders, long durationMs) throws Exception {
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicInteger numberQueries = new AtomicInteger(0);
+        final AtomicInteger numberBatches = new AtomicInteger(0);
+        final List<Exception> errors = new ArrayList<Exception>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        // Writer
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final SQLiteDatabase db = store.getDatabase();
+                    while (!stop.get()) {
+                        synchronized (db) {
+                            store.beginTransaction();
+                            try {
+                                for (int entryNumber = 0; entryNumber < NUMBER_ENTRIES_PER_BATCH; entryNumber++) {
+                                    JSONObject entry = new JSONObject();
+                                    entry.put("k_0", pad("w_" + numberBatches.get() + "_" + entryNumber + "_", 20));
+                                    store.upsert(TEST_SOUP, entry, SmartStore.SOUP_ENTRY_ID, false);
+                                }
+                                store.setTransactionSuccessful();
+                            } finally {
+                                store.endTransaction();
+                            }
+                        }
+                        numberBatches.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }
+        }));
+
+        // Readers
+        for (int i = 0; i < numberReaders; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (!stop.get()) {
+                            store.queryAsString(new StringBuilder(), querySpec, 0);
+                            numberQueries.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(durationMs);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+        Log.i(getTag(), String.format("Querying with %d threads for %d ms with concurrent reads %s during writes: %d queries (%.1f per second), %d batches of %d entries written",
+                numberReaders, durationMs, store.isConcurrentReadsEnabled() ? "on" : "off", numberQueries.get(), numberQueries.get() * 1000.0 / durationMs,
+                numberBatches.get(), NUMBER_ENTRIES_PER_BATCH));
+        return numberQueries.get();
+    }
+
     protected String pad(String s, int numberCharacters) {
         StringBuffer sb = new StringBuffer(numberCharacters);
         sb.append(s);
@@ -31,9 +31,13 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import android.util.Log;
 
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
+import com.salesforce.androidsdk.smartstore.store.ReadConnectionPool;
 import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
 
 import org.json.JSONException;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -54,6 +58,42 @@ public class SmartStoreOtherLoadTest extends SmartStoreLoadTestCase {
         tryAlterSoup(Type.json1);
     }
 
+    @Test
+    public void testKeysetPagination() throws JSONException {
+        setupSoup(TEST_SOUP, 1, Type.string);
+        upsertEntries(NUMBER_ENTRIES * 10 / NUMBER_ENTRIES_PER_BATCH, NUMBER_ENTRIES_PER_BATCH, 1, 20);
+        compareOffsetAndKeysetPagination(QuerySpec.buildAllQuerySpec(TEST_SOUP, "k_0", Order.ascending, 100));
+        compareOffsetAndKeysetPagination(QuerySpec.buildLikeQuerySpec(TEST_SOUP, "k_0", "v_1%", "k_0", Order.descending, 10));
+    }
+
+    @Test
+    public void testQueryThroughputDuringSyncDown() throws Exception {
+        setupSoup(TEST_SOUP, 1, Type.string);
+        upsertEntries(NUMBER_ENTRIES / NUMBER_ENTRIES_PER_BATCH, NUMBER_ENTRIES_PER_BATCH, 1, 20);
+        QuerySpec querySpec = QuerySpec.buildLikeQuerySpec(TEST_SOUP, "k_0", "v_1%", "k_0", Order.ascending, 20);
+        int serializedQueries = measureQueryThroughputDuringWrites(querySpec, 4, 5000);
+        store.enableConcurrentReads(ReadConnectionPool.DEFAULT_MAX_CONNECTIONS);
+        try {
+            Assert.assertTrue("Concurrent reads should be on", store.isConcurrentReadsEnabled());
+            int concurrentQueries = measureQueryThroughputDuringWrites(querySpec, 4, 5000);
+            Log.i(getTag(), String.format("Query throughput during sync down with concurrent reads on vs off --> x%.2f",
+                    concurrentQueries / (double) Math.max(1, serializedQueries)));
+            Assert.assertTrue("Queries should have run", concurrentQueries > 0);
+
+            // Results should be the same as through the main connection
+            StringBuilder concurrentResults = new StringBuilder();
+            store.queryAsString(concurrentResults, querySpec, 0);
+            StringBuilder mainResults = new StringBuilder();
+            synchronized (store.getDatabase()) {
+                store.queryAsString(mainResults, querySpec, 0);
+            }
+            Assert.assertEquals("Wrong results", mainResults.toString(), concurrentResults.toString());
+        } finally {
+            store.disableConcurrentReads();
+        }
+        Assert.assertFalse("Concurrent reads should be off", store.isConcurrentReadsEnabled());
+    }
+
     private void tryAlterSoup(Type indexType) throws JSONException {
         Log.i(getTag(), "In testAlterSoup");
         Log.i(getTag(), String.format("Initial database size: %d bytes", store.getDatabaseSize()));
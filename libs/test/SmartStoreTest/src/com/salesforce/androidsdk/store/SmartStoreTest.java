@@ -37,7 +37,9 @@ import com.salesforce.androidsdk.smartstore.store.QuerySpec;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupCursor;
 import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.smartstore.store.StoreCursor;
 import com.salesforce.androidsdk.util.test.JSONTestHelper;
 
 import net.sqlcipher.database.SQLiteDatabase;
@@ -51,9 +53,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Main test suite for SmartStore
@@ -471,6 +476,276 @@ public class SmartStoreTest extends SmartStoreTestCase {
 		}
 	}
 
+	/**
+	 * Testing upsertAll with external id: upsert a batch that creates some elements, updates others
+	 * and contains the same external id twice, check them all
+	 * @throws JSONException
+	 */
+    @Test
+	public void testUpsertAllWithExternalId() throws JSONException {
+		JSONObject soupElt1 = store.upsert(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"), "key");
+		JSONObject soupElt2 = store.upsert(TEST_SOUP, new JSONObject("{'key':'ka2', 'value':'va2'}"), "key");
+		JSONArray batch = new JSONArray("[{'key':'ka2', 'value':'va2u'}, {'key':'ka3', 'value':'va3'}, {'key':'ka4', 'value':'va4'}, {'key':'ka3', 'value':'va3u'}]");
+		JSONArray upserted = store.upsertAll(TEST_SOUP, batch, "key");
+		Assert.assertEquals("Wrong number of elements upserted", 4, upserted.length());
+		Assert.assertEquals("Wrong id for updated element", idOf(soupElt2), idOf(upserted.getJSONObject(0)));
+		Assert.assertEquals("Duplicate external id should update element created in same batch", idOf(upserted.getJSONObject(1)), idOf(upserted.getJSONObject(3)));
+		Assert.assertEquals("Expected four soup elements", 4, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", soupElt1, store.retrieve(TEST_SOUP, idOf(soupElt1)).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", upserted.getJSONObject(0), store.retrieve(TEST_SOUP, idOf(soupElt2)).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", upserted.getJSONObject(3), store.retrieve(TEST_SOUP, idOf(upserted.getJSONObject(1))).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", upserted.getJSONObject(2), store.retrieve(TEST_SOUP, idOf(upserted.getJSONObject(2))).getJSONObject(0));
+		Assert.assertEquals("Wrong id found through index", idOf(upserted.getJSONObject(2)), store.lookupSoupEntryId(TEST_SOUP, "key", "ka4"));
+	}
+
+	/**
+	 * Testing upsertAll with external id: the same existing external id more than one IN chunk apart
+	 * should not be reported as belonging to more than one soup element
+	 * @throws JSONException
+	 */
+    @Test
+	public void testUpsertAllWithExternalIdDuplicatedAcrossChunks() throws JSONException {
+		JSONObject soupElt = store.upsert(TEST_SOUP, new JSONObject("{'key':'k0', 'value':'v0'}"), "key");
+		JSONArray batch = new JSONArray();
+		batch.put(new JSONObject("{'key':'k0', 'value':'v0u'}"));
+		for (int i = 1; i <= 500; i++) {
+			batch.put(new JSONObject("{'key':'k" + i + "', 'value':'v" + i + "'}"));
+		}
+		batch.put(new JSONObject("{'key':'k0', 'value':'v0u2'}"));
+		JSONArray upserted = store.upsertAll(TEST_SOUP, batch, "key");
+		Assert.assertEquals("Wrong number of elements upserted", 502, upserted.length());
+		Assert.assertEquals("Wrong id for first update", idOf(soupElt), idOf(upserted.getJSONObject(0)));
+		Assert.assertEquals("Wrong id for second update", idOf(soupElt), idOf(upserted.getJSONObject(501)));
+		Assert.assertEquals("Expected 501 soup elements", 501, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", upserted.getJSONObject(501), store.retrieve(TEST_SOUP, idOf(soupElt)).getJSONObject(0));
+	}
+
+	/**
+	 * Testing upsertAll with _soupEntryId: a missing soup entry id should make the whole batch fail
+	 * @throws JSONException
+	 */
+    @Test
+	public void testUpsertAllWithSoupEntryId() throws JSONException {
+		JSONObject soupElt1 = store.create(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"));
+		JSONArray batch = new JSONArray();
+		batch.put(new JSONObject("{'key':'ka1u', 'value':'va1u', '_soupEntryId': " + idOf(soupElt1) + "}"));
+		batch.put(new JSONObject("{'key':'ka2', 'value':'va2'}"));
+		JSONArray upserted = store.upsertAll(TEST_SOUP, batch, SmartStore.SOUP_ENTRY_ID);
+		Assert.assertEquals("Wrong number of elements upserted", 2, upserted.length());
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", upserted.getJSONObject(0), store.retrieve(TEST_SOUP, idOf(soupElt1)).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", upserted.getJSONObject(1), store.retrieve(TEST_SOUP, idOf(upserted.getJSONObject(1))).getJSONObject(0));
+
+		JSONArray failingBatch = new JSONArray("[{'key':'ka3', 'value':'va3'}, {'key':'ka4', 'value':'va4', '_soupEntryId': 999}]");
+		Assert.assertNull("Upsert with unknown soup entry id should fail", store.upsertAll(TEST_SOUP, failingBatch, SmartStore.SOUP_ENTRY_ID));
+		Assert.assertEquals("Failed batch should have been rolled back", 2, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+	}
+
+	/**
+	 * Testing content hash: kept up to date by create, update and upsertAll, same for same content
+	 * @throws JSONException
+	 */
+    @Test
+	public void testContentHash() throws JSONException {
+		final String soupName = "content_hash_soup";
+		store.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_CONTENT_HASH), new IndexSpec[] {new IndexSpec("key", Type.string)});
+		Assert.assertTrue("Soup should keep content hashes", store.usesContentHash(soupName));
+		Assert.assertFalse("Soup should not keep content hashes", store.usesContentHash(TEST_SOUP));
+
+		JSONObject soupElt1 = store.create(soupName, new JSONObject("{'key':'ka1', 'value':'va1'}"));
+		JSONObject soupElt2 = store.create(soupName, new JSONObject("{'key':'ka2', 'value':'va1'}"));
+		Map<String, String> hashes = store.getContentHashes(soupName, "key", Arrays.asList("ka1", "ka2", "ka3"));
+		Assert.assertEquals("Wrong number of hashes", 2, hashes.size());
+		Assert.assertEquals("Wrong hash", SmartStore.computeContentHash(new JSONObject("{'key':'ka1', 'value':'va1'}")), hashes.get("ka1"));
+		Assert.assertEquals("Wrong hash", SmartStore.computeContentHash(soupElt2), hashes.get("ka2"));
+		Assert.assertNotEquals("Different content should have different hashes", hashes.get("ka1"), hashes.get("ka2"));
+
+		// Update
+		soupElt1.put("value", "va1u");
+		store.update(soupName, soupElt1, idOf(soupElt1));
+		String hash1 = store.getContentHashes(soupName, "key", Arrays.asList("ka1")).get("ka1");
+		Assert.assertNotEquals("Hash should have changed", hashes.get("ka1"), hash1);
+		Assert.assertEquals("Wrong hash", SmartStore.computeContentHash(new JSONObject("{'key':'ka1', 'value':'va1u'}")), hash1);
+
+		// UpsertAll
+		JSONArray batch = new JSONArray("[{'key':'ka1', 'value':'va1u'}, {'key':'ka3', 'value':'va3'}]");
+		store.upsertAll(soupName, batch, "key");
+		hashes = store.getContentHashes(soupName, "key", Arrays.asList("ka1", "ka2", "ka3"));
+		Assert.assertEquals("Wrong number of hashes", 3, hashes.size());
+		Assert.assertEquals("Same content should have same hash", hash1, hashes.get("ka1"));
+		Assert.assertEquals("Wrong hash", SmartStore.computeContentHash(new JSONObject("{'key':'ka3', 'value':'va3'}")), hashes.get("ka3"));
+	}
+
+	/**
+	 * Testing change journal: created, updated and upserted elements are journaled until cleared, deleted elements are removed
+	 * @throws JSONException
+	 */
+	@Test
+	public void testChangeJournal() throws JSONException {
+		final String soupName = "change_journal_soup";
+		store.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_CHANGE_JOURNAL), new IndexSpec[] {new IndexSpec("key", Type.string)});
+		Assert.assertTrue("Soup should keep a change journal", store.usesChangeJournal(soupName));
+		Assert.assertFalse("Soup should not keep a change journal", store.usesChangeJournal(TEST_SOUP));
+
+		long id1 = idOf(store.create(soupName, new JSONObject("{'key':'ka1', 'value':'va1'}")));
+		long id2 = idOf(store.create(soupName, new JSONObject("{'key':'ka2', 'value':'va2'}")));
+		Assert.assertEquals("Wrong journal", Arrays.asList(id1, id2), store.getChangeJournal(soupName));
+
+		// Clear
+		store.clearChangeJournal(soupName, Arrays.asList(id1, id2), true);
+		Assert.assertTrue("Journal should be empty", store.getChangeJournal(soupName).isEmpty());
+
+		// Update
+		store.update(soupName, new JSONObject("{'key':'ka2', 'value':'va2u'}"), id2);
+		Assert.assertEquals("Wrong journal", Arrays.asList(id2), store.getChangeJournal(soupName));
+
+		// UpsertAll
+		JSONArray upserted = store.upsertAll(soupName, new JSONArray("[{'key':'ka1', 'value':'va1u'}, {'key':'ka3', 'value':'va3'}]"), "key");
+		long id3 = idOf(upserted.getJSONObject(1));
+		Assert.assertEquals("Wrong journal", Arrays.asList(id1, id2, id3), store.getChangeJournal(soupName));
+
+		// Delete
+		store.delete(soupName, id2);
+		store.deleteByValues(soupName, "key", Arrays.asList("ka3"));
+		Assert.assertEquals("Wrong journal", Arrays.asList(id1), store.getChangeJournal(soupName));
+
+		// Clear soup
+		store.clearSoup(soupName);
+		Assert.assertTrue("Journal should be empty", store.getChangeJournal(soupName).isEmpty());
+	}
+
+	/**
+	 * Testing keyset pagination: walk soup with duplicate and null values in order path page by page in both orders
+	 * @throws JSONException
+	 */
+    @Test
+	public void testQueryWithKeysetPagination() throws JSONException {
+		long[] ids = new long[6];
+		String[] keys = new String[] {"k3", "k1", null, "k2", "k1", null};
+		for (int i = 0; i < keys.length; i++) {
+			JSONObject soupElt = new JSONObject();
+			soupElt.put("key", keys[i] == null ? JSONObject.NULL : keys[i]);
+			soupElt.put("value", "v" + i);
+			ids[i] = idOf(store.create(TEST_SOUP, soupElt));
+		}
+		long[] expectedAscending = new long[] {ids[2], ids[5], ids[1], ids[4], ids[3], ids[0]};
+		long[] expectedDescending = new long[] {ids[0], ids[3], ids[4], ids[1], ids[5], ids[2]};
+		tryKeysetPagination(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 2), expectedAscending);
+		tryKeysetPagination(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.descending, 4), expectedDescending);
+		tryKeysetPagination(QuerySpec.buildRangeQuerySpec(TEST_SOUP, "key", "k1", "k2", "key", Order.ascending, 1), new long[] {ids[1], ids[4], ids[3]});
+		Assert.assertFalse("Smart query should not support keyset pagination", QuerySpec.buildSmartQuerySpec("SELECT {test_soup:key} FROM {test_soup}", 2).supportsKeysetPagination());
+		Assert.assertFalse("Query without order path should not support keyset pagination", QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 2).supportsKeysetPagination());
+	}
+
+	/**
+	 * Testing keyset pagination on a json1 order path holding integers: values should compare as numbers (10 after 9)
+	 * @throws JSONException
+	 */
+	@Test
+	public void testKeysetPaginationWithJson1IntegerOrderPath() throws JSONException {
+		registerSoup(store, OTHER_TEST_SOUP, new IndexSpec[] { new IndexSpec("num", Type.json1) });
+		int[] nums = new int[] {10, 9, 100, 9, 2, 1000};
+		long[] ids = new long[nums.length];
+		for (int i = 0; i < nums.length; i++) {
+			JSONObject soupElt = new JSONObject();
+			soupElt.put("num", nums[i]);
+			ids[i] = idOf(store.create(OTHER_TEST_SOUP, soupElt));
+		}
+		tryKeysetPagination(QuerySpec.buildAllQuerySpec(OTHER_TEST_SOUP, "num", Order.ascending, 2), new long[] {ids[4], ids[1], ids[3], ids[0], ids[2], ids[5]});
+		tryKeysetPagination(QuerySpec.buildAllQuerySpec(OTHER_TEST_SOUP, "num", Order.descending, 4), new long[] {ids[5], ids[2], ids[0], ids[3], ids[1], ids[4]});
+	}
+
+	/**
+	 * Testing keyset pagination on a floating order path: not supported by the store, store cursor should fall back to offset pagination
+	 * @throws JSONException
+	 */
+	@Test
+	public void testKeysetPaginationWithFloatingOrderPath() throws JSONException {
+		registerSoup(store, OTHER_TEST_SOUP, new IndexSpec[] { new IndexSpec("amount", Type.floating) });
+		double[] amounts = new double[] {0.3, 0.1 + 0.2, 0.1, 1.0 / 3, 0.3};
+		long[] ids = new long[amounts.length];
+		for (int i = 0; i < amounts.length; i++) {
+			JSONObject soupElt = new JSONObject();
+			soupElt.put("amount", amounts[i]);
+			ids[i] = idOf(store.create(OTHER_TEST_SOUP, soupElt));
+		}
+		QuerySpec querySpec = QuerySpec.buildAllQuerySpec(OTHER_TEST_SOUP, "amount", Order.ascending, 2);
+		Assert.assertTrue("Query spec alone should support keyset pagination", querySpec.supportsKeysetPagination());
+		Assert.assertFalse("Store should not support keyset pagination on floating order path", store.supportsKeysetPagination(querySpec));
+		long[] expectedIds = new long[] {ids[2], ids[0], ids[4], ids[1], ids[3]};
+		StoreCursor cursor = new StoreCursor(store, querySpec, true);
+		JSONArray actualIds = new JSONArray();
+		for (int pageIndex = 0; pageIndex < 3; pageIndex++) {
+			cursor.moveToPageIndex(pageIndex);
+			JSONArray page = new JSONObject(cursor.getData(store).toString()).getJSONArray(StoreCursor.CURRENT_PAGE_ORDERED_ENTRIES);
+			for (int i = 0; i < page.length(); i++) {
+				actualIds.put(idOf(page.getJSONObject(i)));
+			}
+		}
+		JSONArray expected = new JSONArray();
+		for (long expectedId : expectedIds) {
+			expected.put(expectedId);
+		}
+		JSONTestHelper.assertSameJSONArray("Wrong results", expected, actualIds);
+	}
+
+	private void tryKeysetPagination(QuerySpec querySpec, long[] expectedIds) throws JSONException {
+		Assert.assertTrue("Query should support keyset pagination", store.supportsKeysetPagination(querySpec));
+		JSONArray actualIds = new JSONArray();
+		QuerySpec.Keyset after = null;
+		do {
+			StringBuilder resultBuilder = new StringBuilder();
+			after = store.queryAsString(resultBuilder, querySpec, after);
+			JSONArray page = new JSONArray(resultBuilder.toString());
+			Assert.assertTrue("Page too large", page.length() <= querySpec.pageSize);
+			for (int i = 0; i < page.length(); i++) {
+				actualIds.put(idOf(page.getJSONObject(i)));
+			}
+		} while (after != null);
+		JSONArray expected = new JSONArray();
+		for (long expectedId : expectedIds) {
+			expected.put(expectedId);
+		}
+		JSONTestHelper.assertSameJSONArray("Wrong results", expected, actualIds);
+
+		// Jumping to a page
+		int pageIndex = (expectedIds.length - 1) / querySpec.pageSize;
+		QuerySpec.Keyset keysetBeforePage = store.getKeysetAt(querySpec, pageIndex * querySpec.pageSize - 1);
+		Assert.assertEquals("Wrong first element on last page", expectedIds[pageIndex * querySpec.pageSize], idOf(store.query(querySpec, keysetBeforePage).getJSONObject(0)));
+	}
+
+	/**
+	 * Testing streaming query: results written to a Writer or read through a SoupCursor should match regular query
+	 * @throws Exception
+	 */
+    @Test
+	public void testQueryToWriterAndSoupCursor() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			store.create(TEST_SOUP, new JSONObject("{'key':'k" + i + "', 'value':'v\"" + i + "'}"));
+		}
+		QuerySpec[] querySpecs = new QuerySpec[] {
+				QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.descending, 3),
+				QuerySpec.buildAllQuerySpec(TEST_SOUP, new String[] {"key", "_soupEntryId"}, "key", Order.ascending, 3),
+				QuerySpec.buildSmartQuerySpec("SELECT {test_soup:_soup}, {test_soup:key} FROM {test_soup} ORDER BY {test_soup:key}", 3)
+		};
+		for (QuerySpec querySpec : querySpecs) {
+			for (int pageIndex = 0; pageIndex < 2; pageIndex++) {
+				JSONArray expected = store.query(querySpec, pageIndex);
+
+				StringWriter writer = new StringWriter();
+				store.query(querySpec, pageIndex, writer);
+				JSONTestHelper.assertSameJSONArray("Wrong results written", expected, new JSONArray(writer.toString()));
+
+				JSONArray actual = new JSONArray();
+				try (SoupCursor soupCursor = store.openSoupCursor(querySpec, pageIndex)) {
+					while (soupCursor.moveToNext()) {
+						actual.put(soupCursor.getRow());
+					}
+				}
+				JSONTestHelper.assertSameJSONArray("Wrong results read", expected, actual);
+			}
+		}
+	}
+
 	/**
 	 * Testing upsert passing a non-indexed path for the external id (should fail)
 	 * @throws JSONException
@@ -641,6 +916,33 @@ public class SmartStoreTest extends SmartStoreTestCase {
         }
 	}
 
+	/**
+	 * Testing delete by values: create soup elements, delete by values and check that deleted entries are in fact gone
+	 * @throws JSONException
+	 */
+    @Test
+	public void testDeleteByValues() throws JSONException {
+		List<String> keysToDelete = new ArrayList<>();
+		List<Long> idsNotDeleted = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			JSONObject soupEltCreated = store.create(TEST_SOUP, new JSONObject("{'key':'k" + i + "', 'value':'v" + i + "'}"));
+			if (i % 2 == 0) {
+				keysToDelete.add("k" + i);
+			} else {
+				idsNotDeleted.add(idOf(soupEltCreated));
+			}
+		}
+		keysToDelete.add("not-a-key");
+		store.deleteByValues(TEST_SOUP, "key", keysToDelete);
+        Assert.assertEquals("Wrong number of soup elements left", idsNotDeleted.size(), store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 1)));
+		JSONArray retrieved = store.retrieve(TEST_SOUP, idsNotDeleted.toArray(new Long[0]));
+        Assert.assertEquals("Soup elements not deleted should still be there", idsNotDeleted.size(), retrieved.length());
+
+		// Staging tables should be left empty (deleting again is a no-op)
+		store.deleteByValues(TEST_SOUP, "key", keysToDelete);
+        Assert.assertEquals("Wrong number of soup elements left", idsNotDeleted.size(), store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 1)));
+	}
+
 	/**
 	 * Testing clear soup: create soup elements, clear soup and check database directly that there are in fact gone
 	 * @throws JSONException 
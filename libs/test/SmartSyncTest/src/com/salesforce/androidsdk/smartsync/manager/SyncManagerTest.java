@@ -30,6 +30,9 @@ import androidx.test.filters.LargeTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.smartsync.target.BatchSyncUpTarget;
 import com.salesforce.androidsdk.smartsync.target.LayoutSyncDownTarget;
 import com.salesforce.androidsdk.smartsync.target.MetadataSyncDownTarget;
 import com.salesforce.androidsdk.smartsync.target.MruSyncDownTarget;
@@ -44,6 +47,7 @@ import com.salesforce.androidsdk.smartsync.util.Constants;
 import com.salesforce.androidsdk.smartsync.util.SOQLBuilder;
 import com.salesforce.androidsdk.smartsync.util.SOSLBuilder;
 import com.salesforce.androidsdk.smartsync.util.SOSLReturningBuilder;
+import com.salesforce.androidsdk.smartsync.util.SyncMetrics;
 import com.salesforce.androidsdk.smartsync.util.SyncOptions;
 import com.salesforce.androidsdk.smartsync.util.SyncState;
 import com.salesforce.androidsdk.smartsync.util.SyncState.MergeMode;
@@ -65,9 +69,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import static java.util.Collections.singletonList;
 
@@ -222,6 +228,194 @@ public class SyncManagerTest extends SyncManagerTestCase {
         Assert.assertTrue("Wrong time stamp", syncManager.getSyncStatus(syncId).getMaxTimeStamp() > maxTimeStamp);
     }
 
+    /**
+     * Sync down the test accounts in a soup with content hashes skipping unchanged records,
+     * change one record locally, sync down everything again, make sure only the changed record is written
+     */
+    @Test
+    public void testSyncDownSkippingUnchangedRecords() throws Exception {
+        final String soupName = "accounts_with_hashes";
+        smartStore.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_CONTENT_HASH), smartStore.getSoupIndexSpecs(ACCOUNTS_SOUP));
+        try {
+            final String[] ids = idToFields.keySet().toArray(new String[0]);
+            final SoqlSyncDownTarget target = new SoqlSyncDownTarget("SELECT Id, Name, Description, LastModifiedDate FROM Account WHERE Id IN " + makeInClause(ids));
+            final SyncOptions options = SyncOptions.optionsForSyncDown(MergeMode.OVERWRITE, true);
+            final long syncId = SyncState.createSyncDown(smartStore, target, options, soupName, null).getId();
+
+            // First sync down writes everything
+            runSyncDownToCompletion(syncId);
+            SyncState sync = syncManager.getSyncStatus(syncId);
+            Assert.assertEquals("Wrong number of records written", ids.length, sync.getCountRecordsWritten());
+            Assert.assertEquals("Wrong number of records skipped", 0, sync.getCountRecordsSkipped());
+            checkDb(idToFields, soupName);
+
+            // Change one record locally (without marking it dirty)
+            final JSONObject changedRecord = smartStore.retrieve(soupName, smartStore.lookupSoupEntryId(soupName, Constants.ID, ids[0])).getJSONObject(0);
+            changedRecord.put(Constants.NAME, "locally changed");
+            smartStore.upsert(soupName, changedRecord);
+
+            // Sync down everything again: only the changed record gets written
+            sync.setMaxTimeStamp(-1);
+            sync.save(smartStore);
+            runSyncDownToCompletion(syncId);
+            sync = syncManager.getSyncStatus(syncId);
+            Assert.assertEquals("Wrong number of records written", 1, sync.getCountRecordsWritten());
+            Assert.assertEquals("Wrong number of records skipped", ids.length - 1, sync.getCountRecordsSkipped());
+            checkDb(idToFields, soupName);
+        } finally {
+            smartStore.dropSoup(soupName);
+        }
+    }
+
+    /**
+     * Write clean and dirty records in a soup with a change journal, make sure only the dirty ones are found for sync up
+     * and that clean records are removed from the journal
+     */
+    @Test
+    public void testGetIdsOfRecordsToSyncUpWithChangeJournal() throws Exception {
+        final String soupName = "accounts_with_journal";
+        smartStore.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_CHANGE_JOURNAL), smartStore.getSoupIndexSpecs(ACCOUNTS_SOUP));
+        try {
+            final SyncUpTarget target = new SyncUpTarget();
+            final Set<String> expectedIds = new HashSet<>();
+            for (int i = 0; i < 6; i++) {
+                final JSONObject record = new JSONObject();
+                record.put(Constants.ID, "id" + i);
+                record.put(Constants.NAME, "name" + i);
+                record.put(SyncTarget.LOCAL, i % 2 == 0);
+                final long soupEntryId = smartStore.create(soupName, record).getLong(SmartStore.SOUP_ENTRY_ID);
+                if (i % 2 == 0) {
+                    expectedIds.add(Long.toString(soupEntryId));
+                }
+            }
+            Assert.assertEquals("Wrong number of journaled records", 6, smartStore.getChangeJournal(soupName).size());
+            Assert.assertEquals("Wrong ids to sync up", expectedIds, target.getIdsOfRecordsToSyncUp(syncManager, soupName));
+            Assert.assertEquals("Clean records should have been removed from journal", expectedIds.size(), smartStore.getChangeJournal(soupName).size());
+
+            // Records saved clean (e.g. after being synced up) leave the journal
+            for (String id : expectedIds) {
+                target.cleanAndSaveInLocalStore(syncManager, soupName, target.getFromLocalStore(syncManager, soupName, id));
+            }
+            Assert.assertTrue("Journal should be empty", smartStore.getChangeJournal(soupName).isEmpty());
+            Assert.assertTrue("No records should be left to sync up", target.getIdsOfRecordsToSyncUp(syncManager, soupName).isEmpty());
+        } finally {
+            smartStore.dropSoup(soupName);
+        }
+    }
+
+    /**
+     * Make sure a target overriding getDirtyRecordIdsSql does not use the change journal
+     */
+    @Test
+    public void testGetIdsOfRecordsToSyncUpWithChangeJournalAndOverriddenDirtyRecordIdsSql() throws Exception {
+        final String soupName = "accounts_with_journal";
+        smartStore.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_CHANGE_JOURNAL), smartStore.getSoupIndexSpecs(ACCOUNTS_SOUP));
+        try {
+            // Target considering every record with name0 as dirty
+            final SyncUpTarget target = new SyncUpTarget() {
+                @Override
+                protected String getDirtyRecordIdsSql(String soupName, String idField) {
+                    return String.format("SELECT {%s:%s} FROM {%s} WHERE {%s:%s} = 'name0'", soupName, idField, soupName, soupName, Constants.NAME);
+                }
+            };
+            final Set<String> expectedIds = new HashSet<>();
+            for (int i = 0; i < 4; i++) {
+                final JSONObject record = new JSONObject();
+                record.put(Constants.ID, "id" + i);
+                record.put(Constants.NAME, "name" + i);
+                record.put(SyncTarget.LOCAL, false);
+                final long soupEntryId = smartStore.create(soupName, record).getLong(SmartStore.SOUP_ENTRY_ID);
+                if (i == 0) {
+                    expectedIds.add(Long.toString(soupEntryId));
+                }
+            }
+            Assert.assertEquals("Wrong ids to sync up", expectedIds, target.getIdsOfRecordsToSyncUp(syncManager, soupName));
+            Assert.assertEquals("Journal should not have been used", 4, smartStore.getChangeJournal(soupName).size());
+        } finally {
+            smartStore.dropSoup(soupName);
+        }
+    }
+
+    /**
+     * Create accounts locally, turn on the change journal with alterSoup, sync up, make sure the accounts made it to the server
+     */
+    @Test
+    public void testSyncUpAfterAlterSoupToChangeJournal() throws Exception {
+        String[] names = new String[] { createRecordName(Constants.ACCOUNT), createRecordName(Constants.ACCOUNT) };
+        createAccountsLocally(names);
+
+        // Turning on change journal
+        smartStore.alterSoup(ACCOUNTS_SOUP, new SoupSpec(ACCOUNTS_SOUP, SoupSpec.FEATURE_CHANGE_JOURNAL), smartStore.getSoupIndexSpecs(ACCOUNTS_SOUP), true);
+        Assert.assertTrue("Soup should use change journal", smartStore.usesChangeJournal(ACCOUNTS_SOUP));
+        Assert.assertEquals("Existing records should be journaled", names.length, smartStore.getChangeJournal(ACCOUNTS_SOUP).size());
+
+        // Sync up
+        trySyncUp(names.length, MergeMode.OVERWRITE);
+
+        // Check db and server
+        Map<String, Map<String, Object>> idToFieldsCreated = getIdToFieldsByName(ACCOUNTS_SOUP, new String[]{Constants.NAME, Constants.DESCRIPTION}, Constants.NAME, names);
+        Assert.assertEquals("Wrong number of records synced up", names.length, idToFieldsCreated.size());
+        checkDbStateFlags(idToFieldsCreated.keySet(), false, false, false, ACCOUNTS_SOUP);
+        checkServer(idToFieldsCreated, Constants.ACCOUNT);
+        Assert.assertTrue("Journal should be empty", smartStore.getChangeJournal(ACCOUNTS_SOUP).isEmpty());
+
+        // Adding to idToFields so that they get deleted in tearDown
+        idToFields.putAll(idToFieldsCreated);
+    }
+
+    /**
+     * Sync down the test accounts, make sure the metrics of the run are saved with the sync
+     */
+    @Test
+    public void testSyncDownMetrics() throws Exception {
+        long syncId = trySyncDown(MergeMode.OVERWRITE);
+        SyncMetrics metrics = syncManager.getSyncStatus(syncId).getMetrics();
+        Assert.assertNotNull("Metrics should have been saved", metrics);
+        Assert.assertTrue("Requests should have been counted", metrics.getRequests() > 0);
+        Assert.assertTrue("Bytes received should have been counted", metrics.getBytesReceived() > 0);
+        Assert.assertEquals("Wrong number of records", idToFields.size(), metrics.getRecords());
+        Assert.assertTrue("Fetch should include network time",
+                metrics.getMillis(SyncMetrics.Phase.FETCH) >= metrics.getMillis(SyncMetrics.Phase.NETWORK));
+        Assert.assertTrue("Elapsed time should have been recorded", metrics.getElapsedMillis() > 0);
+    }
+
+    /**
+     * Sync down the test accounts, make sure metrics listeners are called once with the final metrics
+     */
+    @Test
+    public void testSyncMetricsListener() throws Exception {
+        final List<SyncState> reportedSyncs = new ArrayList<>();
+        final List<SyncMetrics> reportedMetrics = new ArrayList<>();
+        SyncManager.SyncMetricsListener listener = new SyncManager.SyncMetricsListener() {
+            @Override
+            public void onSyncMetrics(SyncState sync, SyncMetrics metrics) {
+                reportedSyncs.add(sync);
+                reportedMetrics.add(metrics);
+            }
+        };
+        syncManager.addMetricsListener(listener);
+        try {
+            long syncId = trySyncDown(MergeMode.OVERWRITE);
+            Assert.assertEquals("Listener should have been called once", 1, reportedMetrics.size());
+            Assert.assertEquals("Wrong sync", syncId, reportedSyncs.get(0).getId());
+            Assert.assertTrue("Sync should be done", reportedSyncs.get(0).isDone());
+            Assert.assertEquals("Wrong number of records", idToFields.size(), reportedMetrics.get(0).getRecords());
+            Assert.assertTrue("Elapsed time should have been recorded", reportedMetrics.get(0).getElapsedMillis() > 0);
+        } finally {
+            syncManager.removeMetricsListener(listener);
+        }
+    }
+
+    private void runSyncDownToCompletion(long syncId) throws JSONException {
+        final SyncUpdateCallbackQueue queue = new SyncUpdateCallbackQueue();
+        syncManager.reSync(syncId, queue);
+        SyncState sync;
+        do {
+            sync = queue.getNextSyncUpdate();
+            Assert.assertFalse("Sync failed", sync.hasFailed());
+        } while (!sync.isDone());
+    }
+
     /**
      * Sync down the test accounts, modify a few on the server, re-sync using sync name, make sure only the updated ones are downloaded
      */
@@ -907,6 +1101,202 @@ public class SyncManagerTest extends SyncManagerTestCase {
         checkServerDeleted(new String[]{remotelyDeletedId}, Constants.ACCOUNT);
     }
 
+    /**
+     * Sync down the test accounts, modify a few, sync up in batches of 2, check smartstore and server afterwards
+     */
+    @Test
+    public void testBatchSyncUpWithLocallyUpdatedRecords() throws Exception {
+        // First sync down
+        trySyncDown(MergeMode.OVERWRITE);
+
+        // Update a few entries locally
+        Map<String, Map<String, Object>> idToFieldsLocallyUpdated = makeLocalChanges(idToFields, ACCOUNTS_SOUP);
+
+        // Sync up
+        trySyncUpInBatches(new BatchSyncUpTarget(null, null, 2), 3, MergeMode.OVERWRITE);
+
+        // Check that db doesn't show entries as locally modified anymore
+        Set<String> ids = idToFieldsLocallyUpdated.keySet();
+        checkDbStateFlags(ids, false, false, false, ACCOUNTS_SOUP);
+
+        // Check server
+        checkServer(idToFieldsLocallyUpdated, Constants.ACCOUNT);
+    }
+
+    /**
+     * Sync down the test accounts, update a few locally, sync up in batches of 2 with a target that also
+     * returns the id of a record missing from the soup (e.g. deleted locally once ids were collected),
+     * check that the other records are synced
+     */
+    @Test
+    public void testBatchSyncUpSkipsMissingRecords() throws Exception {
+        // First sync down
+        trySyncDown(MergeMode.OVERWRITE);
+
+        // Update a few entries locally
+        Map<String, Map<String, Object>> idToFieldsLocallyUpdated = makeLocalChanges(idToFields, ACCOUNTS_SOUP);
+
+        // Sync up
+        trySyncUpInBatches(new BatchSyncUpTargetWithMissingRecord(), 4, MergeMode.OVERWRITE);
+
+        // Check db and server
+        checkDbStateFlags(idToFieldsLocallyUpdated.keySet(), false, false, false, ACCOUNTS_SOUP);
+        checkServer(idToFieldsLocallyUpdated, Constants.ACCOUNT);
+    }
+
+    /**
+     * Create accounts locally, sync up in batches of 2, check smartstore and server afterwards
+     */
+    @Test
+    public void testBatchSyncUpWithLocallyCreatedRecords() throws Exception {
+        // Create a few entries locally
+        String[] names = new String[] { createRecordName(Constants.ACCOUNT),
+                createRecordName(Constants.ACCOUNT),
+                createRecordName(Constants.ACCOUNT) };
+        createAccountsLocally(names);
+
+        // Sync up
+        trySyncUpInBatches(new BatchSyncUpTarget(null, null, 2), 3, MergeMode.OVERWRITE);
+
+        // Check that db doesn't show entries as locally created anymore and that they use sfdc id
+        Map<String, Map<String, Object>> idToFieldsCreated = getIdToFieldsByName(ACCOUNTS_SOUP, new String[]{Constants.NAME, Constants.DESCRIPTION}, Constants.NAME, names);
+        checkDbStateFlags(idToFieldsCreated.keySet(), false, false, false, ACCOUNTS_SOUP);
+
+        // Check server
+        checkServer(idToFieldsCreated, Constants.ACCOUNT);
+
+        // Adding to idToFields so that they get deleted in tearDown
+        idToFields.putAll(idToFieldsCreated);
+    }
+
+    /**
+     * Sync down the test accounts, delete a few, sync up in batches of 2, check smartstore and server afterwards
+     */
+    @Test
+    public void testBatchSyncUpWithLocallyDeletedRecords() throws Exception {
+        // First sync down
+        trySyncDown(MergeMode.OVERWRITE);
+
+        // Delete a few entries locally
+        String[] allIds = idToFields.keySet().toArray(new String[0]);
+        String[] idsLocallyDeleted = new String[] { allIds[0], allIds[1], allIds[2] };
+        deleteRecordsLocally(ACCOUNTS_SOUP, idsLocallyDeleted);
+
+        // Sync up
+        trySyncUpInBatches(new BatchSyncUpTarget(null, null, 2), 3, MergeMode.OVERWRITE);
+
+        // Check that db doesn't contain those entries anymore
+        checkDbDeleted(ACCOUNTS_SOUP, idsLocallyDeleted, Constants.ID);
+
+        // Check server
+        checkServerDeleted(idsLocallyDeleted, Constants.ACCOUNT);
+    }
+
+    /**
+     * Sync down the test accounts, delete record on server and update same record locally, sync up in one batch,
+     * check that the remotely deleted record was re-created and the others updated
+     */
+    @Test
+    public void testBatchSyncUpWithLocallyUpdatedRemotelyDeletedRecords() throws Exception {
+        // First sync down
+        trySyncDown(MergeMode.OVERWRITE);
+
+        // Update a few entries locally
+        Map<String, Map<String, Object>> idToFieldsLocallyUpdated = makeLocalChanges(idToFields, ACCOUNTS_SOUP);
+
+        // Delete record on server
+        String remotelyDeletedId = idToFieldsLocallyUpdated.keySet().toArray(new String[0])[0];
+        deleteRecordsOnServer(new HashSet<String>(Arrays.asList(remotelyDeletedId)), Constants.ACCOUNT);
+
+        // Sync up
+        trySyncUpInBatches(new BatchSyncUpTarget(), 3, MergeMode.OVERWRITE);
+
+        // Getting id / fields of updated records looking up by name
+        Map<String, Map<String, Object>> idToFieldsUpdated = getIdToFieldsByName(ACCOUNTS_SOUP, new String[]{Constants.NAME, Constants.DESCRIPTION}, Constants.NAME, getNamesFromIdToFields(idToFieldsLocallyUpdated));
+        Assert.assertEquals(3, idToFieldsUpdated.size());
+        Assert.assertFalse(idToFieldsUpdated.containsKey(remotelyDeletedId));
+        checkDbStateFlags(idToFieldsUpdated.keySet(), false, false, false, ACCOUNTS_SOUP);
+
+        // Re-created record should get deleted in tearDown
+        idToFields.remove(remotelyDeletedId);
+        idToFields.putAll(idToFieldsUpdated);
+
+        // Check server
+        checkServer(idToFieldsUpdated, Constants.ACCOUNT);
+    }
+
+    /**
+     * Sync down the test accounts, delete one on server,
+     * check that fetchLastModifiedDates returns the server time stamps of all of them
+     * and agrees with the one-record-at-a-time isNewerThanServer
+     */
+    @Test
+    public void testFetchLastModifiedDates() throws Exception {
+        // First sync down
+        trySyncDown(MergeMode.OVERWRITE);
+
+        // Delete record on server
+        String remotelyDeletedId = idToFields.keySet().toArray(new String[0])[0];
+        deleteRecordsOnServer(new HashSet<String>(Arrays.asList(remotelyDeletedId)), Constants.ACCOUNT);
+
+        // Fetch time stamps in one go
+        QuerySpec smartStoreQuery = QuerySpec.buildAllQuerySpec(ACCOUNTS_SOUP, null, null, COUNT_TEST_ACCOUNTS);
+        JSONArray rows = smartStore.query(smartStoreQuery, 0);
+        List<JSONObject> records = new ArrayList<>();
+        for (int i = 0; i < rows.length(); i++) {
+            records.add(rows.getJSONObject(i));
+        }
+        SyncUpTarget target = new SyncUpTarget();
+        Map<String, SyncUpTarget.RecordModDate> idToRemoteModDates = target.fetchLastModifiedDates(syncManager, records);
+
+        // Check results
+        Assert.assertEquals("Wrong number of time stamps", COUNT_TEST_ACCOUNTS, idToRemoteModDates.size());
+        for (JSONObject record : records) {
+            String id = record.getString(Constants.ID);
+            SyncUpTarget.RecordModDate remoteModDate = idToRemoteModDates.get(id);
+            if (id.equals(remotelyDeletedId)) {
+                Assert.assertTrue("Record should be reported as deleted", remoteModDate.isDeleted);
+                Assert.assertNull("Deleted record should not have a time stamp", remoteModDate.timestamp);
+            } else {
+                Assert.assertFalse("Record should not be reported as deleted", remoteModDate.isDeleted);
+                Assert.assertEquals("Wrong time stamp", record.getString(Constants.LAST_MODIFIED_DATE), remoteModDate.timestamp);
+            }
+            Assert.assertEquals("Batch and single record checks should agree",
+                    target.isNewerThanServer(syncManager, record),
+                    target.isNewerThanServer(syncManager, record, idToRemoteModDates));
+        }
+
+        // Deleted record no longer needs to be cleaned up in tearDown
+        idToFields.remove(remotelyDeletedId);
+    }
+
+    /**
+     * Check that fetchLastModifiedDates leaves out all records when isNewerThanServer is overridden
+     * so that leave-if-changed still goes through the overridden method
+     */
+    @Test
+    public void testFetchLastModifiedDatesWithOverriddenIsNewerThanServer() throws Exception {
+        trySyncDown(MergeMode.OVERWRITE);
+        QuerySpec smartStoreQuery = QuerySpec.buildAllQuerySpec(ACCOUNTS_SOUP, null, null, COUNT_TEST_ACCOUNTS);
+        JSONArray rows = smartStore.query(smartStoreQuery, 0);
+        List<JSONObject> records = new ArrayList<>();
+        for (int i = 0; i < rows.length(); i++) {
+            records.add(rows.getJSONObject(i));
+        }
+        SyncUpTarget target = new SyncUpTarget() {
+            @Override
+            public boolean isNewerThanServer(SyncManager syncManager, JSONObject record) {
+                return false;
+            }
+        };
+        Map<String, SyncUpTarget.RecordModDate> idToRemoteModDates = target.fetchLastModifiedDates(syncManager, records);
+        Assert.assertTrue("No time stamps expected", idToRemoteModDates.isEmpty());
+        for (JSONObject record : records) {
+            Assert.assertFalse("Overridden method should have been used",
+                    target.isNewerThanServer(syncManager, record, idToRemoteModDates));
+        }
+    }
+
     /**
      * Test reSync while sync is running
      */
@@ -1220,6 +1610,63 @@ public class SyncManagerTest extends SyncManagerTestCase {
         checkDbDeleted(ACCOUNTS_SOUP, new String[] {idDeleted}, Constants.ID);
     }
 
+    /**
+     * Tests if ghost records are cleaned locally in chunks for a refresh target.
+     */
+    @Test
+    public void testCleanResyncGhostsInChunksForRefreshTarget() throws Exception {
+        // Setup has created records on the server
+        // Adding soup elements with just ids to soup
+        for (String id : idToFields.keySet()) {
+            JSONObject soupElement = new JSONObject();
+            soupElement.put(Constants.ID, id);
+            smartStore.create(ACCOUNTS_SOUP, soupElement);
+        }
+        // Running a refresh-sync-down for soup with two ids per soql query (so that ghosts are checked two ids at a time)
+        final RefreshSyncDownTarget target = new RefreshSyncDownTarget(REFRESH_FIELDLIST, Constants.ACCOUNT, ACCOUNTS_SOUP);
+        target.setCountIdsPerSoql(2);
+        long syncId = trySyncDown(MergeMode.OVERWRITE, target, ACCOUNTS_SOUP, idToFields.size(), idToFields.size() / 2, null);
+        checkDb(idToFields, ACCOUNTS_SOUP);
+
+        // Deletes 3 accounts on the server
+        String[] ids = idToFields.keySet().toArray(new String[0]);
+        Set<String> idsDeleted = new HashSet<>(Arrays.asList(ids[0], ids[4], ids[9]));
+        deleteRecordsOnServer(idsDeleted, Constants.ACCOUNT);
+
+        // Cleaning ghosts with two concurrent queries i.e. in windows of 4 ids
+        final ArrayBlockingQueue<String> progressQueue = new ArrayBlockingQueue<>(10);
+        final ArrayBlockingQueue<Integer> resultQueue = new ArrayBlockingQueue<>(1);
+        syncManager.setCleanGhostsConcurrency(2);
+        try {
+            syncManager.cleanResyncGhosts(syncId, new SyncManager.CleanResyncGhostsProgressCallback() {
+                @Override
+                public void onProgress(int numRecordsChecked, int numRecordsToCheck, int numGhostsRemoved) {
+                    progressQueue.offer(numRecordsChecked + "/" + numRecordsToCheck);
+                }
+
+                @Override
+                public void onSuccess(int numRecords) {
+                    resultQueue.offer(numRecords);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    resultQueue.offer(-1);
+                }
+            });
+            Assert.assertEquals("Wrong number of ghosts removed", idsDeleted.size(), resultQueue.take().intValue());
+        } finally {
+            syncManager.setCleanGhostsConcurrency(0);
+        }
+        Assert.assertEquals("Wrong progress", Arrays.asList("4/10", "8/10", "10/10"), new ArrayList<>(progressQueue));
+
+        // Make sure the soup doesn't contain the records deleted on the server anymore
+        Map<String, Map<String, Object>> idToFieldsLeft = new HashMap<>(idToFields);
+        idToFieldsLeft.keySet().removeAll(idsDeleted);
+        checkDb(idToFieldsLeft, ACCOUNTS_SOUP);
+        checkDbDeleted(ACCOUNTS_SOUP, idsDeleted.toArray(new String[0]), Constants.ID);
+    }
+
     /**
      * Sync down the test accounts, modify a few, sync up specifying update field list, check smartstore and server afterwards
      */
@@ -1484,6 +1931,27 @@ public class SyncManagerTest extends SyncManagerTestCase {
         trySyncUp(new SyncUpTarget(), numberChanges, options, false);
     }
 
+    /**
+     * Sync up helper for batch sync up targets (progress is reported once per batch)
+     * @param target
+     * @param numberChanges
+     * @param mergeMode
+     * @throws JSONException
+     */
+    private void trySyncUpInBatches(BatchSyncUpTarget target, int numberChanges, MergeMode mergeMode) throws JSONException {
+        SyncOptions options = SyncOptions.optionsForSyncUp(Arrays.asList(new String[] { Constants.NAME, Constants.DESCRIPTION }), mergeMode);
+        SyncState sync = SyncState.createSyncUp(smartStore, target, options, ACCOUNTS_SOUP, null);
+        long syncId = sync.getId();
+        SyncUpdateCallbackQueue queue = new SyncUpdateCallbackQueue();
+        syncManager.runSync(sync, queue);
+        checkStatus(queue.getNextSyncUpdate(), SyncState.Type.syncUp, syncId, target, options, SyncState.Status.RUNNING, 0, -1);
+        checkStatus(queue.getNextSyncUpdate(), SyncState.Type.syncUp, syncId, target, options, SyncState.Status.RUNNING, 0, numberChanges);
+        for (int i = target.getMaxBatchSize(); i < numberChanges; i += target.getMaxBatchSize()) {
+            checkStatus(queue.getNextSyncUpdate(), SyncState.Type.syncUp, syncId, target, options, SyncState.Status.RUNNING, i * 100 / numberChanges, numberChanges);
+        }
+        checkStatus(queue.getNextSyncUpdate(), SyncState.Type.syncUp, syncId, target, options, SyncState.Status.DONE, 100, numberChanges);
+    }
+
     /**
      * Return array of names
      * @param idToFields
@@ -1498,6 +1966,27 @@ public class SyncManagerTest extends SyncManagerTestCase {
         return names;
     }
 
+    /**
+     Batch sync up target that also returns the soup entry id of a record that is not in the soup
+     */
+    public static class BatchSyncUpTargetWithMissingRecord extends BatchSyncUpTarget {
+
+        public BatchSyncUpTargetWithMissingRecord() {
+            super(null, null, 2);
+        }
+
+        public BatchSyncUpTargetWithMissingRecord(JSONObject target) throws JSONException {
+            super(target);
+        }
+
+        @Override
+        public Set<String> getIdsOfRecordsToSyncUp(SyncManager syncManager, String soupName) throws JSONException {
+            Set<String> ids = new LinkedHashSet<>(super.getIdsOfRecordsToSyncUp(syncManager, soupName));
+            ids.add(String.valueOf(Long.MAX_VALUE));
+            return ids;
+        }
+    }
+
     /**
      Soql sync down target that pauses for a second at the beginning of the fetch
      */
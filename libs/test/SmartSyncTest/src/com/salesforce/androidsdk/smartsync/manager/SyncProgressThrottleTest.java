@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.manager;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for SyncProgressThrottle
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class SyncProgressThrottleTest {
+
+    private static final long SYNC_ID = 1;
+    private static final int TOTAL_SIZE = 1000;
+
+    /**
+     * Small progress steps close together should be coalesced
+     */
+    @Test
+    public void testCoalescesSmallSteps() {
+        SyncProgressThrottle throttle = new SyncProgressThrottle();
+        Assert.assertTrue("First update should go through", throttle.shouldReport(SYNC_ID, true, 0, TOTAL_SIZE, 0));
+        int reported = 0;
+        for (int i = 1; i <= TOTAL_SIZE; i++) {
+            // One record per ms
+            if (throttle.shouldReport(SYNC_ID, false, i * 100 / TOTAL_SIZE, TOTAL_SIZE, i)) {
+                reported++;
+            }
+        }
+        Assert.assertEquals("Wrong number of updates reported", 20, reported);
+    }
+
+    /**
+     * Status and total size changes should always go through
+     */
+    @Test
+    public void testStatusAndTotalSizeChangesGoThrough() {
+        SyncProgressThrottle throttle = new SyncProgressThrottle();
+        Assert.assertTrue(throttle.shouldReport(SYNC_ID, true, 0, -1, 0));
+        Assert.assertFalse("Same update should be coalesced", throttle.shouldReport(SYNC_ID, false, 0, -1, 1));
+        Assert.assertTrue("Total size change should go through", throttle.shouldReport(SYNC_ID, false, 0, TOTAL_SIZE, 2));
+        Assert.assertTrue("Status change should go through", throttle.shouldReport(SYNC_ID, true, 0, TOTAL_SIZE, 3));
+    }
+
+    /**
+     * Updates should go through once enough time elapsed, and all of them with zero thresholds
+     */
+    @Test
+    public void testThresholds() {
+        SyncProgressThrottle throttle = new SyncProgressThrottle();
+        Assert.assertTrue(throttle.shouldReport(SYNC_ID, true, 0, TOTAL_SIZE, 0));
+        Assert.assertFalse(throttle.shouldReport(SYNC_ID, false, 1, TOTAL_SIZE, SyncProgressThrottle.DEFAULT_MIN_INTERVAL_MILLIS - 1));
+        Assert.assertTrue("Update should go through after interval", throttle.shouldReport(SYNC_ID, false, 1, TOTAL_SIZE, SyncProgressThrottle.DEFAULT_MIN_INTERVAL_MILLIS));
+
+        throttle.setThresholds(0, 0);
+        Assert.assertTrue("Every update should go through", throttle.shouldReport(SYNC_ID, false, 1, TOTAL_SIZE, SyncProgressThrottle.DEFAULT_MIN_INTERVAL_MILLIS));
+
+        throttle.forget(SYNC_ID);
+        throttle.setThresholds(SyncProgressThrottle.DEFAULT_MIN_INTERVAL_MILLIS, SyncProgressThrottle.DEFAULT_MIN_PROGRESS_DELTA);
+        Assert.assertTrue("Forgotten sync should start over", throttle.shouldReport(SYNC_ID, false, 1, TOTAL_SIZE, 0));
+    }
+}
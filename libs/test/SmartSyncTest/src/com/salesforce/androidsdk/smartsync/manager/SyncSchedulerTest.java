@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2019-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartsync.manager;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for SyncScheduler
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class SyncSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private SyncScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new SyncScheduler(2);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Work on different soups should run concurrently
+     */
+    @Test
+    public void testDifferentSoupsRunConcurrently() throws InterruptedException {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final CountDownLatch done = new CountDownLatch(2);
+        for (String soupName : new String[] { "soup1", "soup2" }) {
+            scheduler.submit(soupName, SyncScheduler.Priority.NORMAL, new Runnable() {
+                @Override
+                public void run() {
+                    bothStarted.countDown();
+                    try {
+                        bothStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue("Work on different soups should have overlapped", bothStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertTrue("Work did not complete", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Work on the same soup should never overlap
+     */
+    @Test
+    public void testSameSoupRunsSerially() throws InterruptedException {
+        final int count = 10;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            scheduler.submit("soup", SyncScheduler.Priority.NORMAL, new Runnable() {
+                @Override
+                public void run() {
+                    int current = running.incrementAndGet();
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue("Work did not complete", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals("Work on the same soup overlapped", 1, maxRunning.get());
+        waitForCompletedCount(count);
+        Assert.assertEquals("Wrong completed count", count, scheduler.getCompletedCount());
+    }
+
+    /**
+     * Waiting work should start by priority then in submission order, and be reflected in the metrics
+     */
+    @Test
+    public void testPriorityAndMetrics() throws InterruptedException {
+        final CountDownLatch blockerStarted = new CountDownLatch(1);
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        // Occupying the soup
+        scheduler.submit("soup", SyncScheduler.Priority.NORMAL, new Runnable() {
+            @Override
+            public void run() {
+                blockerStarted.countDown();
+                try {
+                    releaseBlocker.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        });
+        Assert.assertTrue("Blocker did not start", blockerStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // Queuing up work behind it
+        submitRecording("low", SyncScheduler.Priority.LOW, order, done);
+        submitRecording("normal1", SyncScheduler.Priority.NORMAL, order, done);
+        submitRecording("high", SyncScheduler.Priority.HIGH, order, done);
+        submitRecording("normal2", SyncScheduler.Priority.NORMAL, order, done);
+        Assert.assertEquals("Wrong queue depth", 4, scheduler.getQueueDepth());
+        Assert.assertEquals("Wrong running count", 1, scheduler.getRunningCount());
+
+        // Letting it all run
+        releaseBlocker.countDown();
+        Assert.assertTrue("Work did not complete", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals("Wrong order", Arrays.asList("high", "normal1", "normal2", "low"), order);
+        Assert.assertEquals("Wrong queue depth", 0, scheduler.getQueueDepth());
+    }
+
+    /**
+     * Work on several soups should wait for all of them, and work submitted after it on one of them should wait for it
+     */
+    @Test
+    public void testSeveralSoupsRunSerially() throws InterruptedException {
+        final CountDownLatch blockerStarted = new CountDownLatch(1);
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        // Occupying the children soup
+        scheduler.submit("children", SyncScheduler.Priority.NORMAL, new Runnable() {
+            @Override
+            public void run() {
+                blockerStarted.countDown();
+                try {
+                    releaseBlocker.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                order.add("children");
+            }
+        });
+        Assert.assertTrue("Blocker did not start", blockerStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // Work on parents and children soups, then on parents soup only
+        for (final String name : new String[] { "parentsAndChildren", "parents" }) {
+            scheduler.submit(name.equals("parents") ? Collections.singletonList("parents") : Arrays.asList("parents", "children"),
+                    SyncScheduler.Priority.NORMAL, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(name);
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertEquals("Wrong queue depth", 2, scheduler.getQueueDepth());
+        Assert.assertEquals("Wrong running count", 1, scheduler.getRunningCount());
+
+        // Letting it all run
+        releaseBlocker.countDown();
+        Assert.assertTrue("Work did not complete", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals("Wrong order", Arrays.asList("children", "parentsAndChildren", "parents"), order);
+    }
+
+    /**
+     * Wait for the scheduler to count tasks as completed (which happens after the tasks' runnables return)
+     */
+    private void waitForCompletedCount(long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (scheduler.getCompletedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void submitRecording(final String name, SyncScheduler.Priority priority, final List<String> order, final CountDownLatch done) {
+        scheduler.submit("soup", priority, new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        });
+    }
+}
@@ -31,6 +31,7 @@ import androidx.test.filters.LargeTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartsync.manager.SyncManager;
 import com.salesforce.androidsdk.smartsync.target.ParentChildrenSyncTargetHelper.RelationshipType;
 import com.salesforce.androidsdk.smartsync.util.ChildrenInfo;
 import com.salesforce.androidsdk.smartsync.util.Constants;
@@ -966,4 +967,37 @@ public class ParentChildrenSyncTest extends ParentChildrenSyncTestCase {
         }
         checkServer(contactIdToFieldsExpectedOnServer, Constants.CONTACT);
     }
-}
\ No newline at end of file
+
+    /**
+     * Check that fetchLastModifiedDates leaves out all records when isNewerThanServer is overridden
+     * so that leave-if-changed still goes through the overridden method
+     */
+    @Test
+    public void testFetchLastModifiedDatesWithOverriddenIsNewerThanServer() throws Exception {
+        ParentChildrenSyncUpTarget target = new ParentChildrenSyncUpTarget(
+                new ParentInfo(Constants.ACCOUNT, ACCOUNTS_SOUP),
+                Arrays.asList(Constants.ID, Constants.NAME, Constants.DESCRIPTION),
+                Arrays.asList(Constants.NAME, Constants.DESCRIPTION),
+                new ChildrenInfo(Constants.CONTACT, Constants.CONTACT + "s", CONTACTS_SOUP, ACCOUNT_ID),
+                Arrays.asList(Constants.LAST_NAME, ACCOUNT_ID),
+                Arrays.asList(Constants.LAST_NAME, ACCOUNT_ID),
+                RelationshipType.MASTER_DETAIL) {
+            @Override
+            public boolean isNewerThanServer(SyncManager syncManager, JSONObject record) {
+                return false;
+            }
+        };
+        List<JSONObject> records = new ArrayList<>();
+        for (String id : new String[] { "001000000000001AAA", "001000000000002AAA" }) {
+            JSONObject record = new JSONObject();
+            record.put(Constants.ID, id);
+            records.add(record);
+        }
+        Map<String, SyncUpTarget.RecordModDate> idToRemoteModDates = target.fetchLastModifiedDates(syncManager, records);
+        Assert.assertTrue("No time stamps expected", idToRemoteModDates.isEmpty());
+        for (JSONObject record : records) {
+            Assert.assertFalse("Overridden method should have been used",
+                    target.isNewerThanServer(syncManager, record, idToRemoteModDates));
+        }
+    }
+}
@@ -27,20 +27,36 @@
 
 package com.salesforce.androidsdk.smartsync.target;
 
+import android.util.Log;
+
 import androidx.test.filters.SmallTest;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.salesforce.androidsdk.rest.RestClient;
+import com.salesforce.androidsdk.rest.RestClient.ClientInfo;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
 import com.salesforce.androidsdk.smartsync.manager.SyncManagerTestCase;
 import com.salesforce.androidsdk.smartsync.util.Constants;
 import com.salesforce.androidsdk.smartsync.util.SOQLBuilder;
+import com.salesforce.androidsdk.smartsync.util.SyncState;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 
 /**
  * Test class for SoqlSyncDownTarget.
@@ -49,6 +65,12 @@ import java.util.Date;
 @SmallTest
 public class SoqlSyncDownTargetTest extends SyncManagerTestCase {
 
+    private static final String TAG = "SoqlSyncDownTargetTest";
+    private static final String NEXT_RECORDS_PATH = "/services/data/v46.0/query/next-";
+    private static final int MOCK_NUMBER_PAGES = 5;
+    private static final int MOCK_RECORDS_PER_PAGE = 2000;
+    private static final long MOCK_LATENCY_MS = 500;
+
     @Before
     public void setUp() throws Exception {
         super.setUp();
@@ -87,6 +109,26 @@ public class SoqlSyncDownTargetTest extends SyncManagerTestCase {
         Assert.assertEquals("SELECT Id FROM Account WHERE Name = 'James Bond'", target.getSoqlForRemoteIds());
     }
 
+    /**
+     * Only SoqlSyncDownTarget itself should opt in to prefetching, subclasses and other targets should not by default
+     */
+    @Test
+    public void testSupportsPrefetch() {
+        Assert.assertTrue("SoqlSyncDownTarget should support prefetch", new SoqlSyncDownTarget("SELECT Id FROM Account").supportsPrefetch());
+        Assert.assertFalse("Subclass should not support prefetch by default", new SoqlSyncDownTarget("SELECT Id FROM Account") {}.supportsPrefetch());
+        Assert.assertFalse("SoslSyncDownTarget should not support prefetch", new SoslSyncDownTarget("FIND {Acme}").supportsPrefetch());
+    }
+
+    /**
+     * Test supportsChunkedGhostCleanup: only SoqlSyncDownTarget itself opts in, and not for queries with a limit
+     */
+    @Test
+    public void testSupportsChunkedGhostCleanup() {
+        Assert.assertTrue("SoqlSyncDownTarget should support chunked ghost cleanup", new SoqlSyncDownTarget("SELECT Id FROM Account").supportsChunkedGhostCleanup());
+        Assert.assertFalse("Query with limit should not support chunked ghost cleanup", new SoqlSyncDownTarget("SELECT Id FROM Account LIMIT 10").supportsChunkedGhostCleanup());
+        Assert.assertFalse("Subclass should not support chunked ghost cleanup by default", new SoqlSyncDownTarget("SELECT Id FROM Account") {}.supportsChunkedGhostCleanup());
+    }
+
     /**
      * Test query with "From_customer__c" field
      */
@@ -97,4 +139,132 @@ public class SoqlSyncDownTargetTest extends SyncManagerTestCase {
         final SoqlSyncDownTarget target = new SoqlSyncDownTarget(soqlQueryWithFromField);
         Assert.assertEquals("SELECT Id FROM Account limit 10", target.getSoqlForRemoteIds());
     }
+
+    /**
+     * Sync down from a mock server (that simulates network latency) sequentially and with prefetching
+     * Checks that both save the same records with the same progress updates and max time stamp
+     * and logs the wall-clock time of both
+     */
+    @Test
+    public void testSyncDownWithPrefetch() throws Exception {
+        MockWebServer server = startMockServer();
+        try {
+            int totalSize = MOCK_NUMBER_PAGES * MOCK_RECORDS_PER_PAGE;
+            long[] durations = new long[2];
+            for (int prefetchSize = 0; prefetchSize < 2; prefetchSize++) {
+                createAccountsSoup();
+                try {
+                    syncManager.setSyncDownPrefetchSize(prefetchSize);
+                    long start = System.nanoTime();
+                    long syncId = trySyncDown(SyncState.MergeMode.OVERWRITE, new SoqlSyncDownTarget("SELECT Id, Name, LastModifiedDate FROM Account"),
+                            ACCOUNTS_SOUP, totalSize, MOCK_NUMBER_PAGES);
+                    durations[prefetchSize] = System.nanoTime() - start;
+                    Assert.assertEquals("Wrong number of records saved", totalSize,
+                            smartStore.countQuery(QuerySpec.buildAllQuerySpec(ACCOUNTS_SOUP, null, null, 1)));
+                    Assert.assertEquals("Wrong max time stamp", mockLastModifiedDate(MOCK_NUMBER_PAGES - 1),
+                            syncManager.getSyncStatus(syncId).getMaxTimeStamp());
+                } finally {
+                    dropAccountsSoup();
+                }
+            }
+            Log.i(TAG, String.format("Sync down of %d pages of %d records with %d ms latency --> sequential %d ms, with prefetch %d ms",
+                    MOCK_NUMBER_PAGES, MOCK_RECORDS_PER_PAGE, MOCK_LATENCY_MS,
+                    TimeUnit.NANOSECONDS.toMillis(durations[0]), TimeUnit.NANOSECONDS.toMillis(durations[1])));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Sync down paged query results with streaming enabled
+     * Check that all records and the max time stamp are saved
+     */
+    @Test
+    public void testSyncDownWithStreaming() throws Exception {
+        MockWebServer server = startMockServer();
+        createAccountsSoup();
+        try {
+            int totalSize = MOCK_NUMBER_PAGES * MOCK_RECORDS_PER_PAGE;
+            syncManager.setSyncDownStreaming(true);
+            long syncId = trySyncDown(SyncState.MergeMode.OVERWRITE, new SoqlSyncDownTarget("SELECT Id, Name, LastModifiedDate FROM Account"),
+                    ACCOUNTS_SOUP, totalSize, MOCK_NUMBER_PAGES);
+            Assert.assertEquals("Wrong number of records saved", totalSize,
+                    smartStore.countQuery(QuerySpec.buildAllQuerySpec(ACCOUNTS_SOUP, null, null, 1)));
+            Assert.assertEquals("Wrong max time stamp", mockLastModifiedDate(MOCK_NUMBER_PAGES - 1),
+                    syncManager.getSyncStatus(syncId).getMaxTimeStamp());
+            JSONObject record = smartStore.retrieve(ACCOUNTS_SOUP, smartStore.lookupSoupEntryId(ACCOUNTS_SOUP, Constants.ID, "001MOCK0000300007")).getJSONObject(0);
+            Assert.assertEquals("Wrong name", "Mock account 3-7", record.getString(Constants.NAME));
+            Assert.assertEquals("Wrong type", Constants.ACCOUNT, record.getJSONObject(Constants.ATTRIBUTES).getString(TYPE));
+            Assert.assertFalse("Record should not be dirty", record.getBoolean(SyncTarget.LOCAL));
+        } finally {
+            syncManager.setSyncDownStreaming(false);
+            dropAccountsSoup();
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Start mock server serving paged query results and point the sync manager to it
+     */
+    private MockWebServer startMockServer() throws IOException {
+        // NB: formatting dates up front (date format is not thread safe and will be used by the sync thread)
+        String[] lastModifiedDates = new String[MOCK_NUMBER_PAGES];
+        for (int page = 0; page < MOCK_NUMBER_PAGES; page++) {
+            lastModifiedDates[page] = Constants.TIMESTAMP_FORMAT.format(new Date(mockLastModifiedDate(page)));
+        }
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new PagedQueryDispatcher(lastModifiedDates));
+        server.start();
+        ClientInfo clientInfo = new ClientInfo(server.url("/").uri(), server.url("/").uri(),
+                server.url("/id").uri(), "mock-account", "mock-user",
+                "mock-user-id", "mock-org-id", null, null, null, null, null, null, null, null, null);
+        syncManager.setRestClient(new RestClient(clientInfo, "mock-token", httpAccess, null));
+        return server;
+    }
+
+    private static long mockLastModifiedDate(int page) {
+        return 1546300800000L + page * 60000L; // one minute apart pages starting on 2019-01-01
+    }
+
+    /**
+     * Serves MOCK_NUMBER_PAGES pages of MOCK_RECORDS_PER_PAGE accounts for any query (after MOCK_LATENCY_MS)
+     */
+    private static class PagedQueryDispatcher extends Dispatcher {
+
+        private final String[] lastModifiedDates;
+
+        PagedQueryDispatcher(String[] lastModifiedDates) {
+            this.lastModifiedDates = lastModifiedDates;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            int page = path.startsWith(NEXT_RECORDS_PATH) ? Integer.parseInt(path.substring(NEXT_RECORDS_PATH.length())) : 0;
+            try {
+                JSONArray records = new JSONArray();
+                for (int i = 0; i < MOCK_RECORDS_PER_PAGE; i++) {
+                    JSONObject record = new JSONObject();
+                    record.put(Constants.ATTRIBUTES, new JSONObject().put(TYPE, Constants.ACCOUNT));
+                    record.put(Constants.ID, String.format("001MOCK%05d%05d", page, i));
+                    record.put(Constants.NAME, "Mock account " + page + "-" + i);
+                    record.put(Constants.LAST_MODIFIED_DATE, lastModifiedDates[page]);
+                    records.put(record);
+                }
+                JSONObject response = new JSONObject();
+                response.put(Constants.TOTAL_SIZE, MOCK_NUMBER_PAGES * MOCK_RECORDS_PER_PAGE);
+                response.put("done", page == MOCK_NUMBER_PAGES - 1);
+                if (page < MOCK_NUMBER_PAGES - 1) {
+                    response.put(Constants.NEXT_RECORDS_URL, NEXT_RECORDS_PATH + (page + 1));
+                }
+                response.put(Constants.RECORDS, records);
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody(response.toString())
+                        .setBodyDelay(MOCK_LATENCY_MS, TimeUnit.MILLISECONDS);
+            } catch (JSONException e) {
+                return new MockResponse().setResponseCode(500);
+            }
+        }
+    }
 }